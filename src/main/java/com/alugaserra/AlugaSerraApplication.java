@@ -3,11 +3,16 @@ package com.alugaserra;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.Map;
+
 @SpringBootApplication
 public class AlugaSerraApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(AlugaSerraApplication.class, args);
+        SpringApplication application = new SpringApplication(AlugaSerraApplication.class);
+        // Padrões que a configuração externa pode sobrescrever: expõe as métricas (ex: security.auth.stage) no actuator
+        application.setDefaultProperties(Map.of("management.endpoints.web.exposure.include", "health,metrics"));
+        application.run(args);
     }
 
 }
\ No newline at end of file
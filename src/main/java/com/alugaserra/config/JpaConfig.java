@@ -0,0 +1,31 @@
+package com.alugaserra.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Ajustes do Hibernate que valem em qualquer ambiente.
+ */
+@Configuration
+public class JpaConfig {
+
+    @Value("${persistence.jdbc.batch-size:50}")
+    private int batchSize;
+
+    /**
+     * Liga o JDBC batching: os INSERTs/UPDATEs de um flush são agrupados por tabela
+     * e enviados em lotes, em vez de um round trip por linha.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize);
+            properties.put(AvailableSettings.ORDER_INSERTS, true);
+            properties.put(AvailableSettings.ORDER_UPDATES, true);
+            properties.put(AvailableSettings.BATCH_VERSIONED_DATA, true);
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package com.alugaserra.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita as tarefas periódicas (@Scheduled) da aplicação,
+ * como a gravação em disco do índice de busca textual.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
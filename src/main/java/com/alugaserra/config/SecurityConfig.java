@@ -1,7 +1,11 @@
 package com.alugaserra.config;
 
+import com.alugaserra.security.BoundedPasswordEncoder;
+import com.alugaserra.security.RateLimitFilter;
 import com.alugaserra.security.SecurityFilter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -15,6 +19,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
@@ -22,6 +28,9 @@ public class SecurityConfig {
     @Autowired
     private SecurityFilter securityFilter;
 
+    @Autowired
+    private RateLimitFilter rateLimitFilter;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         return http
@@ -30,13 +39,20 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authorize -> authorize
                         // Rotas Públicas
                         .requestMatchers("/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**").permitAll()
-                        .requestMatchers(HttpMethod.POST, "/api/auth/login", "/api/auth/register").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/auth/login", "/api/auth/register", "/api/auth/refresh", "/api/auth/logout").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/properties", "/api/properties/**").permitAll()
+                        // Handshake do WebSocket/SockJS: o navegador não envia o token aqui; a sessão STOMP
+                        // é autenticada no CONNECT (StompAuthChannelInterceptor)
+                        .requestMatchers("/ws/**", "/ws-native").permitAll()
 
                         // --- NOVA REGRA ADICIONADA ---
                         // Apenas utilizadores com o papel ADMIN podem aceder a /api/admin/**
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
 
+                        // Actuator: o health é público; as métricas, só para ADMIN
+                        .requestMatchers(HttpMethod.GET, "/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
+
                         // Rotas de Locador
                         .requestMatchers(HttpMethod.POST, "/api/properties").hasRole("LOCADOR")
                         .requestMatchers(HttpMethod.PUT, "/api/properties/**").hasRole("LOCADOR")
@@ -46,6 +62,7 @@ public class SecurityConfig {
                         .anyRequest().authenticated()
                 )
                 .addFilterBefore(securityFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(rateLimitFilter, SecurityFilter.class)
                 .build();
     }
 
@@ -54,9 +71,22 @@ public class SecurityConfig {
         return authenticationConfiguration.getAuthenticationManager();
     }
 
+    /**
+     * BCrypt num pool limitado (ver {@link BoundedPasswordEncoder}). Ao aumentar o custo, as senhas
+     * antigas são regravadas com o novo custo no próximo login (AuthorizationService.updatePassword).
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${security.password.bcrypt-strength:10}") int strength,
+            @Value("${security.password.threads:0}") int threads,
+            @Value("${security.password.queue-capacity:64}") int queueCapacity,
+            @Value("${security.password.timeout:10s}") Duration timeout,
+            @Value("${security.password.retry-after:2s}") Duration retryAfter) {
+        // Padrão: metade dos núcleos, deixando a outra metade para o resto da API
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), poolSize, queueCapacity,
+                timeout, retryAfter, meterRegistry);
     }
 }
 
@@ -1,11 +1,20 @@
 package com.alugaserra.config;
 
+import com.alugaserra.security.RateLimitChannelInterceptor;
+import com.alugaserra.websocket.StompAuthChannelInterceptor;
+import com.alugaserra.websocket.StompWireFormats;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
 /**
  * Configuração central para o WebSocket.
  * Habilita o message broker e define os endpoints e prefixos para a comunicação STOMP.
@@ -14,12 +23,23 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker // Habilita o processamento de mensagens via WebSocket
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    private StompAuthChannelInterceptor stompAuthChannelInterceptor;
+
+    @Autowired
+    private RateLimitChannelInterceptor rateLimitChannelInterceptor;
+
+    @Autowired
+    private StompWireFormats stompWireFormats;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Configura o message broker que envia mensagens do servidor para o cliente.
         // /topic: para mensagens em broadcast (ex: chats em grupo)
-        // /user: para mensagens diretas para um usuário específico
-        config.enableSimpleBroker("/topic", "/user");
+        // /queue: para mensagens diretas para um usuário específico. O cliente assina "/user/queue/...",
+        // e o destino é traduzido para a fila da sessão (ex: "/queue/messages-user{sessão}")
+        // O broker simples só alcança as sessões deste nó; as mensagens de chat chegam aos outros nós pelo ChatFanout
+        config.enableSimpleBroker("/topic", "/queue");
 
         // Define o prefixo para os endpoints que recebem mensagens do cliente.
         // Ex: um cliente enviará uma mensagem para /app/chat.send
@@ -35,5 +55,32 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOrigins("http://localhost:5173")
                 // withSockJS() fornece uma alternativa (fallback) para navegadores que não suportam WebSocket.
                 .withSockJS();
+
+        // WebSocket puro, sem o fallback do SockJS: o único que transporta frames binários (CBOR)
+        registry.addEndpoint("/ws-native")
+                .setAllowedOrigins("http://localhost:5173")
+                .addInterceptors(StompWireFormats.binaryTransport());
+
+        // Os frames de uma mesma sessão são tratados em ordem: um SUBSCRIBE vale antes do SEND seguinte,
+        // e duas mensagens enviadas em sequência recebem timestamps na mesma sequência
+        registry.setPreserveReceiveOrder(true);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Autentica o CONNECT (antes dos demais, que usam o usuário da sessão), limita o envio de
+        // mensagens de chat por usuário e registra o formato pedido no CONNECT
+        registration.interceptors(stompAuthChannelInterceptor, rateLimitChannelInterceptor, stompWireFormats);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Envios do cliente em CBOR, quando o frame traz "content-type:application/cbor" (só pelo "/ws-native");
+        // sem content-type, segue o JSON padrão. As entregas em CBOR já saem em bytes do StompWireFormats
+        MappingJackson2MessageConverter cbor = new MappingJackson2MessageConverter(StompWireFormats.CBOR);
+        cbor.setObjectMapper(StompWireFormats.cborMapper());
+        cbor.setStrictContentTypeMatch(true);
+        messageConverters.add(cbor);
+        return true;
     }
 }
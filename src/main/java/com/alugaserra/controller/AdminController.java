@@ -2,13 +2,23 @@ package com.alugaserra.controller;
 
 import com.alugaserra.dto.PropertyResponseDto;
 import com.alugaserra.dto.UserAdminViewDto;
+import com.alugaserra.dto.UserImportReportDto;
+import com.alugaserra.enums.ExportFormat;
 import com.alugaserra.enums.UserRole;
 import com.alugaserra.repository.UserRepository;
 import com.alugaserra.service.AdminService;
+import com.alugaserra.service.UserImportService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -27,6 +37,9 @@ public class AdminController {
     @Autowired
     private AdminService adminService;
 
+    @Autowired
+    private UserImportService userImportService;
+
     /**
      * Endpoint para listar todos os usuários cadastrados na plataforma.
      */
@@ -48,6 +61,16 @@ public class AdminController {
         return ResponseEntity.ok(updatedUser);
     }
 
+    /**
+     * Importa usuários de um CSV enviado no corpo da requisição (text/csv, UTF-8).
+     * O arquivo é lido em streaming; as linhas inválidas não impedem a importação das demais.
+     * @return O relatório da importação, com o erro de cada linha recusada.
+     */
+    @PostMapping(value = "/users/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<UserImportReportDto> importUsers(InputStream body) throws IOException {
+        return ResponseEntity.ok(userImportService.importCsv(body));
+    }
+
     // --- NOVOS ENDPOINTS ---
 
     /**
@@ -60,6 +83,19 @@ public class AdminController {
         return ResponseEntity.ok(properties);
     }
 
+    /**
+     * Exporta o catálogo inteiro (qualquer status) em NDJSON ou CSV.
+     * As linhas são escritas na resposta enquanto são lidas do banco, com memória constante.
+     */
+    @GetMapping("/properties/export")
+    public void exportPropertiesForAdmin(@RequestParam(defaultValue = "NDJSON") ExportFormat format,
+                                         HttpServletResponse response) throws IOException {
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"imoveis." + format.getExtension() + "\"");
+        adminService.exportProperties(format, new BufferedOutputStream(response.getOutputStream(), 64 * 1024));
+    }
+
     /**
      * Endpoint para o admin deletar qualquer imóvel (ação de moderação).
      * @param propertyId O ID do imóvel a ser deletado.
@@ -1,22 +1,31 @@
 package com.alugaserra.controller;
 
+import com.alugaserra.dto.ApiErrorDto;
+import com.alugaserra.dto.ChatInboxPageDto;
 import com.alugaserra.dto.ChatMessageDto;
-import com.alugaserra.model.Chat;
-import com.alugaserra.model.ChatMessage;
-import com.alugaserra.model.User;
-import com.alugaserra.repository.ChatMessageRepository;
-import com.alugaserra.repository.ChatRepository;
-import com.alugaserra.repository.UserRepository;
+import com.alugaserra.dto.ChatMessagePageDto;
+import com.alugaserra.dto.ChatMessageViewDto;
+import com.alugaserra.dto.ChatSummaryDto;
+import com.alugaserra.exception.InvalidRequestException;
+import com.alugaserra.exception.ServiceOverloadedException;
 import com.alugaserra.service.ChatService;
+import com.alugaserra.websocket.ChatContext;
+import com.alugaserra.websocket.ChatFanout;
+import com.alugaserra.websocket.ChatSessionRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
 import org.springframework.messaging.handler.annotation.MessageMapping;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -26,55 +35,83 @@ import java.util.UUID;
 public class ChatController {
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
-
-    @Autowired
-    private ChatMessageRepository chatMessageRepository;
+    private ChatService chatService; // Injeta o nosso novo serviço
 
     @Autowired
-    private ChatRepository chatRepository;
+    private ChatFanout chatFanout;
 
     @Autowired
-    private UserRepository userRepository;
+    private ChatSessionRegistry chatSessionRegistry;
 
-    @Autowired
-    private ChatService chatService; // Injeta o nosso novo serviço
+    // Tamanho máximo do conteúdo de uma mensagem, em caracteres. Além dele, a mensagem precisa caber no relay entre os nós
+    @Value("${chat.message.max-length:2000}")
+    private int maxContentLength;
 
     // --- ENDPOINTS REST ---
 
     /**
      * Inicia uma nova conversa (ou encontra uma existente) entre o usuário logado e o dono de um imóvel.
      * @param propertyId O ID do imóvel que originou a conversa.
-     * @param currentUser O usuário autenticado que está a iniciar o chat.
-     * @return O objeto Chat criado ou encontrado.
+     * @param currentUserId O ID do usuário autenticado que está a iniciar o chat.
+     * @return O resumo do chat criado ou encontrado.
      */
     @PostMapping("/start")
-    public ResponseEntity<Chat> startChat(@RequestParam UUID propertyId, @AuthenticationPrincipal User currentUser) {
-        Chat chat = chatService.findOrCreateChat(propertyId, currentUser.getId());
-        return ResponseEntity.ok(chat);
+    public ResponseEntity<ChatSummaryDto> startChat(@RequestParam UUID propertyId, @AuthenticationPrincipal(expression = "id") UUID currentUserId) {
+        return ResponseEntity.ok(chatService.startChat(propertyId, currentUserId));
     }
 
     /**
      * Retorna uma lista de todas as conversas em que o usuário logado participa.
-     * @param currentUser O usuário autenticado.
-     * @return Uma lista de chats.
+     * @param currentUserId O ID do usuário autenticado.
+     * @return Uma lista de resumos de chat (imóvel e participantes).
      */
     @GetMapping
-    public ResponseEntity<List<Chat>> getUserChats(@AuthenticationPrincipal User currentUser) {
-        List<Chat> chats = chatService.getUserChats(currentUser.getId());
+    public ResponseEntity<List<ChatSummaryDto>> getUserChats(@AuthenticationPrincipal(expression = "id") UUID currentUserId) {
+        List<ChatSummaryDto> chats = chatService.getUserChats(currentUserId);
         return ResponseEntity.ok(chats);
     }
 
     /**
-     * Retorna o histórico de mensagens de uma conversa específica.
+     * Caixa de entrada: as conversas do usuário logado, da mais recente para a mais antiga, com o início da
+     * última mensagem e o número de não lidas. Para a próxima página, reenvie o "nextCursor" no parâmetro "before".
+     * @param currentUserId O ID do usuário autenticado.
+     * @return Uma página da caixa de entrada.
+     */
+    @GetMapping("/inbox")
+    public ResponseEntity<ChatInboxPageDto> getInbox(
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer size,
+            @AuthenticationPrincipal(expression = "id") UUID currentUserId) {
+        return ResponseEntity.ok(chatService.getInbox(currentUserId, before, size));
+    }
+
+    /**
+     * Marca a conversa como lida pelo usuário logado (zera as não lidas na caixa de entrada).
      * @param chatId O ID do chat.
-     * @param currentUser O usuário autenticado (para verificação de segurança).
-     * @return Uma lista de mensagens.
+     * @param currentUserId O ID do usuário autenticado.
+     */
+    @PostMapping("/{chatId}/read")
+    public ResponseEntity<Void> markAsRead(@PathVariable UUID chatId, @AuthenticationPrincipal(expression = "id") UUID currentUserId) {
+        chatService.markAsRead(chatId, currentUserId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Retorna o histórico de mensagens de uma conversa específica, paginado por cursor.
+     * Sem cursor, traz as mensagens mais recentes. Para as anteriores, reenvie o "nextCursor" no
+     * parâmetro "before"; ao reconectar, envie o "syncCursor" no parâmetro "since" para receber só as novas.
+     * @param chatId O ID do chat.
+     * @param currentUserId O ID do usuário autenticado (para verificação de segurança).
+     * @return Uma página de mensagens, em ordem cronológica.
      */
     @GetMapping("/{chatId}/messages")
-    public ResponseEntity<List<ChatMessage>> getChatMessages(@PathVariable UUID chatId, @AuthenticationPrincipal User currentUser) {
-        List<ChatMessage> messages = chatService.getChatMessages(chatId, currentUser.getId());
-        return ResponseEntity.ok(messages);
+    public ResponseEntity<ChatMessagePageDto> getChatMessages(
+            @PathVariable UUID chatId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Integer size,
+            @AuthenticationPrincipal(expression = "id") UUID currentUserId) {
+        return ResponseEntity.ok(chatService.getChatMessages(chatId, currentUserId, before, since, size));
     }
 
     // --- ENDPOINT WEBSOCKET ---
@@ -82,33 +119,56 @@ public class ChatController {
     /**
      * Endpoint para receber e processar o envio de uma nova mensagem.
      * Os clientes enviam mensagens para o destino "/app/chat.sendMessage".
+     * O remetente é o usuário autenticado no CONNECT e os destinatários são os outros participantes
+     * do chat, ambos do cache da sessão (ChatSessionRegistry): o envio não consulta o banco.
+     * A mensagem é entregue na hora; a gravação no banco é feita em lote logo depois (ChatMessageWriter).
+     * Uma mensagem longa demais (chat.message.max-length, ou maior que uma entrega do relay) é recusada
+     * com 400 em "/user/queue/errors".
      *
-     * @param chatMessageDto O DTO contendo os dados da mensagem.
+     * @param chatMessageDto O DTO contendo o chat e o conteúdo da mensagem.
      */
     @MessageMapping("/chat.sendMessage")
-    @Transactional
-    public void sendMessage(ChatMessageDto chatMessageDto) {
-        // 1. Busca as entidades no banco de dados
-        Chat chat = chatRepository.findById(chatMessageDto.getChatId())
-                .orElseThrow(() -> new RuntimeException("Chat não encontrado"));
-        User sender = userRepository.findById(chatMessageDto.getSenderId())
-                .orElseThrow(() -> new RuntimeException("Remetente não encontrado"));
-
-        // 2. Cria a entidade da mensagem
-        ChatMessage chatMessage = new ChatMessage();
-        chatMessage.setChat(chat);
-        chatMessage.setSender(sender);
-        chatMessage.setContent(chatMessageDto.getContent());
-
-        // 3. Salva a mensagem no banco de dados
-        ChatMessage savedMessage = chatMessageRepository.save(chatMessage);
-
-        // 4. Envia a mensagem para o destinatário correto via WebSocket.
-        messagingTemplate.convertAndSendToUser(
-                chatMessageDto.getRecipientId().toString(), // ID do destinatário
-                "/queue/messages", // Tópico privado
-                savedMessage // Envia a mensagem completa salva
-        );
+    public void sendMessage(ChatMessageDto chatMessageDto, SimpMessageHeaderAccessor headers) {
+        // 1. Valida o tamanho e o chat pela sessão, define id e timestamp e põe a mensagem na fila de gravação
+        checkContentLength(chatMessageDto.getContent());
+        String sessionId = headers.getSessionId();
+        ChatContext chat = chatSessionRegistry.chatOf(sessionId, chatMessageDto.getChatId());
+        UUID senderId = chatSessionRegistry.userOf(sessionId);
+        ChatMessageViewDto message = chatService.sendMessage(chat, senderId, chatMessageDto.getContent());
+
+        // 2. Entrega aos destinatários, estejam conectados neste nó ou em outro (ChatFanout)
+        for (UUID recipientId : chat.recipientsFor(senderId)) {
+            chatFanout.deliver(recipientId, message);
+        }
+    }
+
+    private void checkContentLength(String content) {
+        if (content != null && (content.length() > maxContentLength || !chatFanout.fitsRelay(content))) {
+            throw new InvalidRequestException("A mensagem é longa demais. O limite é de " + maxContentLength + " caracteres.");
+        }
     }
-}
 
+    /**
+     * Erros do envio pelo WebSocket. Sem o STOMP não há status HTTP: o erro vai só para a sessão que
+     * enviou, em "/user/queue/errors", no mesmo formato das respostas de erro da API (o "status" é o
+     * que a API REST devolveria e o "path" é o destino do envio). A sessão continua aberta.
+     */
+    @MessageExceptionHandler({ServiceOverloadedException.class, IllegalStateException.class,
+            AccessDeniedException.class, InvalidRequestException.class})
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public ApiErrorDto handleMessageException(Exception ex, SimpMessageHeaderAccessor headers) {
+        HttpStatus status;
+        String message = ex.getMessage();
+        if (ex instanceof ServiceOverloadedException) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
+        } else if (ex instanceof AccessDeniedException) {
+            status = HttpStatus.FORBIDDEN;
+            message = "Acesso negado. Você não tem permissão para realizar esta operação.";
+        } else if (ex instanceof InvalidRequestException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else {
+            status = HttpStatus.CONFLICT;
+        }
+        return new ApiErrorDto(LocalDateTime.now(), status.value(), status.getReasonPhrase(), message, headers.getDestination());
+    }
+}
@@ -1,19 +1,39 @@
 package com.alugaserra.controller;
 
+import com.alugaserra.dto.GeoArea;
 import com.alugaserra.dto.PropertyCreateDto;
+import com.alugaserra.dto.PropertyFacetsDto;
+import com.alugaserra.dto.PropertyPageDto;
 import com.alugaserra.dto.PropertyResponseDto;
+import com.alugaserra.dto.PropertySearchFilter;
 import com.alugaserra.dto.PropertyUpdateDto;
+import com.alugaserra.enums.PropertySort;
 import com.alugaserra.enums.PropertyType; // <-- Importar
 import com.alugaserra.model.User;
+import com.alugaserra.search.CatalogVersion;
+import com.alugaserra.security.CurrentUser;
 import com.alugaserra.service.PropertyService;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.UUID;
 
 @RestController
@@ -23,41 +43,160 @@ public class PropertyController {
     @Autowired
     private PropertyService propertyService;
 
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    // Por quanto tempo um proxy reverso (ou o próprio cliente) pode reutilizar as respostas sem revalidar
+    @Value("${properties.http.search-max-age:10s}")
+    private Duration searchMaxAge;
+
+    @Value("${properties.http.detail-max-age:30s}")
+    private Duration detailMaxAge;
+
     // **** MÉTODO GET ATUALIZADO PARA ACEITAR FILTROS ****
+    /**
+     * Busca imóveis ativos com filtros opcionais, paginada por cursor.
+     * Para obter a próxima página, reenvie o "nextCursor" da resposta no parâmetro "cursor",
+     * mantendo os mesmos filtros e a mesma ordenação.
+     * Com o parâmetro "q", a busca é textual e, por padrão, ordenada por relevância.
+     * Com lat/lng/radiusKm (ou bbox), a busca se limita à área do mapa e pode ser ordenada por distância.
+     * O ETag é derivado da versão do catálogo: com If-None-Match igual, responde 304 sem consultar os imóveis.
+     */
     @GetMapping
-    public ResponseEntity<List<PropertyResponseDto>> getAllProperties(
+    @ApiResponse(responseCode = "200", content = @Content(mediaType = "application/json",
+            schema = @Schema(implementation = PropertyPageDto.class)))
+    public ResponseEntity<byte[]> getAllProperties(
+            @RequestParam(required = false) PropertyType type,
+            @RequestParam(required = false) Double maxRent,
+            @RequestParam(required = false) Integer minRooms,
+            @RequestParam(required = false) Boolean hasGarage,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lng,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(required = false) String bbox, // minLat,minLng,maxLat,maxLng
+            @RequestParam(required = false) PropertySort sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        var filter = new PropertySearchFilter(type, maxRent, minRooms, hasGarage, q, GeoArea.of(lat, lng, radiusKm, bbox));
+        CacheControl cacheControl = CacheControl.maxAge(searchMaxAge).cachePublic();
+
+        // A versão é lida antes da busca: se o catálogo mudar no meio, o ETag fica "velho" e o
+        // próximo GET condicional simplesmente recebe a página inteira de novo.
+        String etag = "\"c-" + catalogVersion.current() + "-" + fingerprint(filter, sort, cursor, size) + "\"";
+        if (matchesETag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        // A página já vem serializada (e, nas buscas sem texto, possivelmente do cache)
+        byte[] page = propertyService.searchPropertiesAsJson(filter, sort, cursor, size);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(page);
+    }
+
+    /**
+     * Contagens por tipo, quartos, faixa de aluguel, garagem e mobília para a barra lateral da busca.
+     * Recebe os mesmos filtros da busca; cada faceta é contada ignorando o próprio filtro.
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<PropertyFacetsDto> getFacets(
             @RequestParam(required = false) PropertyType type,
             @RequestParam(required = false) Double maxRent,
             @RequestParam(required = false) Integer minRooms,
-            @RequestParam(required = false) Boolean hasGarage
+            @RequestParam(required = false) Boolean hasGarage,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lng,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(required = false) String bbox, // minLat,minLng,maxLat,maxLng
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
     ) {
-        var properties = propertyService.searchProperties(type, maxRent, minRooms, hasGarage);
-        return ResponseEntity.ok(properties);
+        var filter = new PropertySearchFilter(type, maxRent, minRooms, hasGarage, q, GeoArea.of(lat, lng, radiusKm, bbox));
+        CacheControl cacheControl = CacheControl.maxAge(searchMaxAge).cachePublic();
+        String etag = "\"f-" + catalogVersion.current() + "-" + fingerprint(filter) + "\"";
+        if (matchesETag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
+        var facets = propertyService.getFacets(filter);
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(facets);
     }
 
+    /**
+     * Detalhe de um imóvel. O ETag é a versão da linha mais a última alteração do dono (o detalhe mostra
+     * o contato dele), consultadas sem carregar o imóvel, então um If-None-Match atual é respondido
+     * com 304 antes de qualquer conversão.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<PropertyResponseDto> getPropertyById(@PathVariable UUID id) {
+    public ResponseEntity<PropertyResponseDto> getPropertyById(
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        CacheControl cacheControl = CacheControl.maxAge(detailMaxAge).cachePublic();
+        String etag = "\"" + id + "-" + propertyService.findPropertyVersion(id) + "\"";
+        if (matchesETag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+
         var propertyDto = propertyService.findPropertyById(id);
-        return ResponseEntity.ok(propertyDto);
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(propertyDto);
     }
 
     @PostMapping
-    public ResponseEntity<PropertyResponseDto> createProperty(@RequestBody @Valid PropertyCreateDto propertyDto, @AuthenticationPrincipal User currentUser, UriComponentsBuilder uriBuilder) {
+    public ResponseEntity<PropertyResponseDto> createProperty(@RequestBody @Valid PropertyCreateDto propertyDto, @CurrentUser User currentUser, UriComponentsBuilder uriBuilder) {
         PropertyResponseDto responseDto = propertyService.createProperty(propertyDto, currentUser);
         var uri = uriBuilder.path("/api/properties/{id}").buildAndExpand(responseDto.id()).toUri();
         return ResponseEntity.created(uri).body(responseDto);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<PropertyResponseDto> updateProperty(@PathVariable UUID id, @RequestBody @Valid PropertyUpdateDto propertyDto, @AuthenticationPrincipal User currentUser) {
-        PropertyResponseDto updatedProperty = propertyService.updateProperty(id, propertyDto, currentUser);
+    public ResponseEntity<PropertyResponseDto> updateProperty(@PathVariable UUID id, @RequestBody @Valid PropertyUpdateDto propertyDto, @AuthenticationPrincipal(expression = "id") UUID currentUserId) {
+        PropertyResponseDto updatedProperty = propertyService.updateProperty(id, propertyDto, currentUserId);
         return ResponseEntity.ok(updatedProperty);
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteProperty(@PathVariable UUID id, @AuthenticationPrincipal User currentUser) {
-        propertyService.deleteProperty(id, currentUser);
+    public ResponseEntity<Void> deleteProperty(@PathVariable UUID id, @AuthenticationPrincipal(expression = "id") UUID currentUserId) {
+        propertyService.deleteProperty(id, currentUserId);
         return ResponseEntity.noContent().build();
     }
-}
 
+    /**
+     * Compara o cabeçalho If-None-Match (que pode trazer vários ETags, fracos ou "*") com o ETag atual.
+     */
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resume os parâmetros da busca no ETag com SHA-256: dois pedidos diferentes só teriam o mesmo
+     * ETag por uma colisão do hash, e um hash de 32 bits (como hashCode) colide com facilidade.
+     */
+    private static String fingerprint(Object... parameters) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(Arrays.deepToString(parameters).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Toda JVM é obrigada a oferecer SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
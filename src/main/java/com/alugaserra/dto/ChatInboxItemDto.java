@@ -0,0 +1,33 @@
+package com.alugaserra.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Uma conversa na caixa de entrada do usuário.
+ * @param lastMessagePreview Início da última mensagem (nulo se a conversa ainda não tem mensagens).
+ * @param unreadCount Mensagens dos outros participantes ainda não lidas pelo usuário.
+ */
+public record ChatInboxItemDto(
+        UUID chatId,
+        UUID propertyId,
+        String propertyTitle,
+        String lastMessagePreview,
+        UUID lastMessageSenderId,
+        LocalDateTime lastActivityAt,
+        int unreadCount,
+        List<ChatParticipantDto> participants
+) {
+
+    // Usado pela consulta da caixa de entrada; os participantes são buscados depois, numa consulta só
+    public ChatInboxItemDto(UUID chatId, UUID propertyId, String propertyTitle, String lastMessagePreview,
+                            UUID lastMessageSenderId, LocalDateTime lastActivityAt, int unreadCount) {
+        this(chatId, propertyId, propertyTitle, lastMessagePreview, lastMessageSenderId, lastActivityAt, unreadCount, null);
+    }
+
+    public ChatInboxItemDto withParticipants(List<ChatParticipantDto> participants) {
+        return new ChatInboxItemDto(chatId, propertyId, propertyTitle, lastMessagePreview, lastMessageSenderId,
+                lastActivityAt, unreadCount, participants);
+    }
+}
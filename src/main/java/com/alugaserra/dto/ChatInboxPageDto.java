@@ -0,0 +1,13 @@
+package com.alugaserra.dto;
+
+import java.util.List;
+
+/**
+ * Página da caixa de entrada, da conversa mais recente para a mais antiga.
+ * @param nextCursor Para a próxima página (parâmetro "before"); nulo quando não há mais conversas.
+ */
+public record ChatInboxPageDto(
+        List<ChatInboxItemDto> items,
+        String nextCursor
+) {
+}
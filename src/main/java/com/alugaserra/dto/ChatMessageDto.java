@@ -7,11 +7,10 @@ import java.util.UUID;
 /**
  * DTO para transportar informações de uma mensagem de chat.
  * Usado para a comunicação entre o cliente e o servidor via WebSocket.
+ * O remetente e os destinatários não vêm do cliente: saem da sessão autenticada e dos participantes do chat.
  */
 @Data
 public class ChatMessageDto {
     private UUID chatId;
-    private UUID senderId;
-    private UUID recipientId; // Precisamos de saber para quem enviar a mensagem
     private String content;
 }
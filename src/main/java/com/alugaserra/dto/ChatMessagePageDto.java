@@ -0,0 +1,17 @@
+package com.alugaserra.dto;
+
+import java.util.List;
+
+/**
+ * Página do histórico de um chat, sempre em ordem cronológica (a mais antiga primeiro).
+ * @param nextCursor Continua na mesma direção da consulta: mensagens mais antigas (parâmetro "before")
+ *                   ou mais novas (parâmetro "since"). Nulo quando não há mais mensagens nessa direção.
+ * @param syncCursor Posição da mensagem mais nova já entregue; ao reconectar, o cliente o envia no
+ *                   parâmetro "since" para receber só o que perdeu.
+ */
+public record ChatMessagePageDto(
+        List<ChatMessageViewDto> messages,
+        String nextCursor,
+        String syncCursor
+) {
+}
@@ -0,0 +1,16 @@
+package com.alugaserra.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Uma mensagem de chat como é entregue ao cliente: só ids e conteúdo, sem o grafo das entidades.
+ */
+public record ChatMessageViewDto(
+        UUID id,
+        UUID chatId,
+        UUID senderId,
+        String content,
+        LocalDateTime timestamp
+) {
+}
@@ -0,0 +1,12 @@
+package com.alugaserra.dto;
+
+import java.util.UUID;
+
+/**
+ * Participante de um chat, só com o que a tela de conversas mostra.
+ */
+public record ChatParticipantDto(
+        UUID id,
+        String name
+) {
+}
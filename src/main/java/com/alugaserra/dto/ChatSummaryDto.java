@@ -0,0 +1,17 @@
+package com.alugaserra.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resumo de um chat: o imóvel (id e título) e os participantes, sem o grafo das entidades.
+ */
+public record ChatSummaryDto(
+        UUID id,
+        UUID propertyId,
+        String propertyTitle,
+        List<ChatParticipantDto> participants,
+        LocalDateTime createdAt
+) {
+}
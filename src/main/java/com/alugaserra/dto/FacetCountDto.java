@@ -0,0 +1,11 @@
+package com.alugaserra.dto;
+
+/**
+ * Um valor de faceta e quantos imóveis o selecionariam.
+ * O "value" é o mesmo valor aceito pelo parâmetro correspondente da busca (ex: "CASA", "2", "1500").
+ */
+public record FacetCountDto(
+        String value,
+        long count
+) {
+}
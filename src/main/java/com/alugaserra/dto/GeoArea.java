@@ -0,0 +1,141 @@
+package com.alugaserra.dto;
+
+import com.alugaserra.exception.InvalidRequestException;
+
+/**
+ * Área geográfica da busca de imóveis: um círculo (lat, lng, radiusKm) ou um retângulo
+ * (bbox = minLat,minLng,maxLat,maxLng), como a área visível de um mapa.
+ * Com um retângulo, lat/lng são opcionais e servem apenas para ordenar por distância.
+ */
+public record GeoArea(
+        Double latitude,
+        Double longitude,
+        Double radiusKm,
+        Double minLatitude,
+        Double minLongitude,
+        Double maxLatitude,
+        Double maxLongitude
+) {
+    public static final double MAX_RADIUS_KM = 100;
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /**
+     * Monta a área a partir dos parâmetros da busca.
+     * @return A área, ou nulo quando nenhum parâmetro geográfico foi informado.
+     * @throws InvalidRequestException se a combinação de parâmetros for inválida.
+     */
+    public static GeoArea of(Double latitude, Double longitude, Double radiusKm, String bbox) {
+        if (latitude == null && longitude == null && radiusKm == null && (bbox == null || bbox.isBlank())) {
+            return null;
+        }
+        if ((latitude == null) != (longitude == null)) {
+            throw new InvalidRequestException("Informe 'lat' e 'lng' juntos.");
+        }
+        if (latitude != null) {
+            requireRange(latitude, -90, 90, "lat");
+            requireRange(longitude, -180, 180, "lng");
+        }
+
+        if (bbox != null && !bbox.isBlank()) {
+            if (radiusKm != null) {
+                throw new InvalidRequestException("Informe 'radiusKm' ou 'bbox', não os dois.");
+            }
+            double[] corners = parseBbox(bbox);
+            return new GeoArea(latitude, longitude, null, corners[0], corners[1], corners[2], corners[3]);
+        }
+
+        if (latitude == null || radiusKm == null) {
+            throw new InvalidRequestException("A busca por raio exige 'lat', 'lng' e 'radiusKm'.");
+        }
+        if (!(radiusKm > 0) || radiusKm > MAX_RADIUS_KM) {
+            throw new InvalidRequestException("O raio deve ser maior que zero e de no máximo " + (int) MAX_RADIUS_KM + " km.");
+        }
+        return new GeoArea(latitude, longitude, radiusKm, null, null, null, null);
+    }
+
+    private static double[] parseBbox(String bbox) {
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            throw new InvalidRequestException("O parâmetro 'bbox' deve ser 'minLat,minLng,maxLat,maxLng'.");
+        }
+        double[] corners = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                corners[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("O parâmetro 'bbox' deve ser 'minLat,minLng,maxLat,maxLng'.");
+        }
+        requireRange(corners[0], -90, 90, "bbox");
+        requireRange(corners[2], -90, 90, "bbox");
+        requireRange(corners[1], -180, 180, "bbox");
+        requireRange(corners[3], -180, 180, "bbox");
+        if (corners[0] > corners[2] || corners[1] > corners[3]) {
+            throw new InvalidRequestException("No parâmetro 'bbox', os mínimos devem ser menores que os máximos.");
+        }
+        return corners;
+    }
+
+    private static void requireRange(double value, double min, double max, String name) {
+        if (!(value >= min && value <= max)) {
+            throw new InvalidRequestException("Valor fora do intervalo permitido para '" + name + "'.");
+        }
+    }
+
+    public boolean hasCenter() {
+        return latitude != null && longitude != null;
+    }
+
+    public boolean isCircle() {
+        return radiusKm != null;
+    }
+
+    // Limites do retângulo que envolve a área (para o círculo, o retângulo que o circunscreve)
+    public double southLatitude() {
+        return isCircle() ? Math.max(-90, latitude - radiusKm / 111.32) : minLatitude;
+    }
+
+    public double northLatitude() {
+        return isCircle() ? Math.min(90, latitude + radiusKm / 111.32) : maxLatitude;
+    }
+
+    public double westLongitude() {
+        return isCircle() ? Math.max(-180, longitude - longitudeSpan()) : minLongitude;
+    }
+
+    public double eastLongitude() {
+        return isCircle() ? Math.min(180, longitude + longitudeSpan()) : maxLongitude;
+    }
+
+    private double longitudeSpan() {
+        double cos = Math.cos(Math.toRadians(latitude));
+        return cos < 1e-6 ? 180 : radiusKm / (111.32 * cos);
+    }
+
+    /**
+     * Verifica, de forma exata, se o ponto está dentro da área.
+     */
+    public boolean contains(double lat, double lng) {
+        if (isCircle()) {
+            return distanceKm(latitude, longitude, lat, lng) <= radiusKm;
+        }
+        return lat >= minLatitude && lat <= maxLatitude && lng >= minLongitude && lng <= maxLongitude;
+    }
+
+    /**
+     * Distância em km do centro da área até o ponto, ou 0 quando a área não tem centro.
+     */
+    public double distanceFromCenterKm(double lat, double lng) {
+        return hasCenter() ? distanceKm(latitude, longitude, lat, lng) : 0;
+    }
+
+    // Distância de grande círculo (fórmula de haversine)
+    public static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -1,4 +1,8 @@
 package com.alugaserra.dto;
 
-public record LoginResponseDto(String token) {
+/**
+ * Par de tokens de uma sessão: o access token (JWT, curto) e o refresh token (opaco, rotativo).
+ * @param expiresIn Validade do access token, em segundos.
+ */
+public record LoginResponseDto(String token, String refreshToken, long expiresIn) {
 }
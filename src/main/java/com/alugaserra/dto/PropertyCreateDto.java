@@ -1,6 +1,8 @@
 package com.alugaserra.dto;
 
 import com.alugaserra.enums.PropertyType;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -47,4 +49,13 @@ public class PropertyCreateDto {
 
     @NotBlank(message = "A localização aproximada é obrigatória")
     private String approximateLocation;
+
+    // Opcionais: sem coordenadas, o imóvel não aparece nas buscas por raio ou área do mapa
+    @DecimalMin(value = "-90.0", message = "A latitude deve estar entre -90 e 90")
+    @DecimalMax(value = "90.0", message = "A latitude deve estar entre -90 e 90")
+    private Double latitude;
+
+    @DecimalMin(value = "-180.0", message = "A longitude deve estar entre -180 e 180")
+    @DecimalMax(value = "180.0", message = "A longitude deve estar entre -180 e 180")
+    private Double longitude;
 }
\ No newline at end of file
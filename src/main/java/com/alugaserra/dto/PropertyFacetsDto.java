@@ -0,0 +1,22 @@
+package com.alugaserra.dto;
+
+import java.util.List;
+
+/**
+ * Contagens para a barra lateral da busca de imóveis.
+ *
+ * Cada faceta é contada com todos os filtros selecionados, EXCETO o da própria faceta
+ * (navegação "disjuntiva"): com type=CASA selecionado, "type" continua mostrando quantos
+ * apartamentos existem, para que o usuário possa trocar de tipo sem perder as outras opções.
+ * As facetas minRooms e maxRent são cumulativas, como os próprios filtros ("2 ou mais quartos",
+ * "até R$ 1500").
+ */
+public record PropertyFacetsDto(
+        long total,                  // Imóveis que satisfazem todos os filtros selecionados
+        List<FacetCountDto> type,
+        List<FacetCountDto> minRooms,
+        List<FacetCountDto> maxRent,
+        long hasGarage,
+        long furnished
+) {
+}
@@ -0,0 +1,14 @@
+package com.alugaserra.dto;
+
+import java.util.List;
+
+/**
+ * Página de resultados da busca de imóveis.
+ * O nextCursor é opaco para o cliente e deve ser reenviado (parâmetro "cursor")
+ * para obter a página seguinte. Quando for nulo, não há mais resultados.
+ */
+public record PropertyPageDto(
+        List<PropertyResponseDto> content,
+        String nextCursor
+) {
+}
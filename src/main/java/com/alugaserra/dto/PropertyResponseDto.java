@@ -21,6 +21,8 @@ public record PropertyResponseDto(
         List<String> photoUrls,
         String videoUrl,
         String approximateLocation,
+        Double latitude,
+        Double longitude,
         OwnerSummaryDto owner,
         LocalDateTime createdAt // <-- Campo adicionado
 ) {
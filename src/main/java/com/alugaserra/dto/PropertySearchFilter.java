@@ -0,0 +1,32 @@
+package com.alugaserra.dto;
+
+import com.alugaserra.enums.PropertyType;
+
+/**
+ * Agrupa os filtros opcionais da busca pública de imóveis.
+ * Campos nulos significam "sem filtro".
+ */
+public record PropertySearchFilter(
+        PropertyType type,
+        Double maxRent,
+        Integer minRooms,
+        Boolean hasGarage,
+        String q,    // Busca textual livre (título, descrição e bairro)
+        GeoArea area // Raio ou retângulo do mapa
+) {
+    public PropertySearchFilter(PropertyType type, Double maxRent, Integer minRooms, Boolean hasGarage) {
+        this(type, maxRent, minRooms, hasGarage, null, null);
+    }
+
+    public static PropertySearchFilter empty() {
+        return new PropertySearchFilter(null, null, null, null, null, null);
+    }
+
+    public boolean hasText() {
+        return q != null && !q.isBlank();
+    }
+
+    public boolean requiresGarage() {
+        return hasGarage != null && hasGarage;
+    }
+}
@@ -2,6 +2,8 @@ package com.alugaserra.dto;
 
 import com.alugaserra.enums.PropertyStatus;
 import com.alugaserra.enums.PropertyType;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -20,6 +22,8 @@ public record PropertyUpdateDto(
         @NotNull Boolean isFurnished,
         List<String> photoUrls, // Permite atualizar a lista de fotos
         String videoUrl,
-        @NotBlank String approximateLocation
+        @NotBlank String approximateLocation,
+        @DecimalMin("-90.0") @DecimalMax("90.0") Double latitude,     // Opcional
+        @DecimalMin("-180.0") @DecimalMax("180.0") Double longitude   // Opcional
 ) {
 }
@@ -0,0 +1,9 @@
+package com.alugaserra.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record RefreshTokenRequestDto(
+        @NotBlank(message = "O refresh token é obrigatório")
+        String refreshToken
+) {
+}
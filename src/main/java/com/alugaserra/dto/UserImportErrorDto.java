@@ -0,0 +1,12 @@
+package com.alugaserra.dto;
+
+/**
+ * Uma linha do CSV de importação que não virou usuário.
+ * @param line Número da linha no arquivo (o cabeçalho é a linha 1).
+ */
+public record UserImportErrorDto(
+        long line,
+        String email,
+        String message
+) {
+}
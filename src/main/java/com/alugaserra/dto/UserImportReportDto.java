@@ -0,0 +1,19 @@
+package com.alugaserra.dto;
+
+import java.util.List;
+
+/**
+ * Resultado da importação de usuários em lote.
+ * A lista de erros é limitada; "failed" conta todas as linhas recusadas.
+ * @param abortedAtLine Linha do registro malformado (aspas não fechadas, campo grande demais) em que a
+ *                      leitura parou, ou nulo se o arquivo foi lido até o fim. As linhas anteriores foram
+ *                      importadas normalmente; as seguintes não foram lidas.
+ */
+public record UserImportReportDto(
+        long totalRows,
+        long imported,
+        long failed,
+        List<UserImportErrorDto> errors,
+        Long abortedAtLine
+) {
+}
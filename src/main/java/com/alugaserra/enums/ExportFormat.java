@@ -0,0 +1,25 @@
+package com.alugaserra.enums;
+
+/**
+ * Formatos da exportação do catálogo de imóveis.
+ */
+public enum ExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"), // Um objeto JSON por linha
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    ExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
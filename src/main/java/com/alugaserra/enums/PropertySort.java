@@ -0,0 +1,12 @@
+package com.alugaserra.enums;
+
+/**
+ * Define as ordenações disponíveis na busca de imóveis.
+ */
+public enum PropertySort {
+    NEWEST,     // Mais recentes primeiro (createdAt desc, id desc)
+    PRICE_ASC,  // Menor aluguel primeiro (rentValue asc, id asc)
+    PRICE_DESC, // Maior aluguel primeiro (rentValue desc, id desc)
+    RELEVANCE,  // Mais relevantes para a busca textual primeiro (exige o parâmetro "q")
+    DISTANCE    // Mais próximos primeiro (exige os parâmetros "lat" e "lng")
+}
@@ -0,0 +1,11 @@
+package com.alugaserra.event;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Evento publicado quando uma conversa é criada (depois do commit).
+ * Os caches por sessão do WebSocket dos participantes escutam este evento.
+ */
+public record ChatCreatedEvent(UUID chatId, UUID propertyId, List<UUID> participantIds) {
+}
@@ -0,0 +1,25 @@
+package com.alugaserra.event;
+
+import com.alugaserra.search.PropertySnapshot;
+
+/**
+ * Evento publicado sempre que um imóvel é criado, alterado ou removido.
+ * Os componentes que mantêm dados derivados dos imóveis (índices, caches) escutam este evento.
+ *
+ * @param before O estado anterior do imóvel, ou nulo quando ele acabou de ser criado.
+ * @param after O novo estado do imóvel, ou nulo quando ele foi removido.
+ */
+public record PropertyChangedEvent(PropertySnapshot before, PropertySnapshot after) {
+
+    public static PropertyChangedEvent created(PropertySnapshot after) {
+        return new PropertyChangedEvent(null, after);
+    }
+
+    public static PropertyChangedEvent updated(PropertySnapshot before, PropertySnapshot after) {
+        return new PropertyChangedEvent(before, after);
+    }
+
+    public static PropertyChangedEvent deleted(PropertySnapshot before) {
+        return new PropertyChangedEvent(before, null);
+    }
+}
@@ -3,9 +3,11 @@ package com.alugaserra.exception;
 import com.alugaserra.dto.ApiErrorDto;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -48,6 +50,19 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorDto, HttpStatus.CONFLICT);
     }
 
+    // Trata parâmetros inválidos enviados pelo cliente (ex: cursor de paginação corrompido).
+    // Outras IllegalArgumentException são erros internos e caem no handler genérico, sem expor a mensagem.
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ApiErrorDto> handleInvalidRequestException(InvalidRequestException ex, HttpServletRequest request) {
+        ApiErrorDto errorDto = new ApiErrorDto(
+                LocalDateTime.now(),
+                HttpStatus.BAD_REQUEST.value(),
+                HttpStatus.BAD_REQUEST.getReasonPhrase(),
+                ex.getMessage(),
+                request.getRequestURI());
+        return new ResponseEntity<>(errorDto, HttpStatus.BAD_REQUEST);
+    }
+
     // Trata erros quando uma entidade não é encontrada no banco de dados
     @ExceptionHandler(EntityNotFoundException.class)
     public ResponseEntity<ApiErrorDto> handleEntityNotFoundException(EntityNotFoundException ex, HttpServletRequest request) {
@@ -72,6 +87,32 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorDto, HttpStatus.FORBIDDEN);
     }
 
+    // Trata falhas de autenticação (ex: senha errada, refresh token inválido ou já usado)
+    @ExceptionHandler(AuthenticationException.class)
+    public ResponseEntity<ApiErrorDto> handleAuthenticationException(AuthenticationException ex, HttpServletRequest request) {
+        ApiErrorDto errorDto = new ApiErrorDto(
+                LocalDateTime.now(),
+                HttpStatus.UNAUTHORIZED.value(),
+                HttpStatus.UNAUTHORIZED.getReasonPhrase(),
+                ex.getMessage(),
+                request.getRequestURI());
+        return new ResponseEntity<>(errorDto, HttpStatus.UNAUTHORIZED);
+    }
+
+    // Trata sobrecarga de recursos limitados (ex: pool de hash de senhas cheio), indicando quando tentar de novo
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ApiErrorDto> handleServiceOverloadedException(ServiceOverloadedException ex, HttpServletRequest request) {
+        ApiErrorDto errorDto = new ApiErrorDto(
+                LocalDateTime.now(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase(),
+                ex.getMessage(),
+                request.getRequestURI());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(errorDto);
+    }
+
     // Um handler genérico para qualquer outra exceção não tratada
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiErrorDto> handleGenericException(HttpServletRequest request) {
@@ -0,0 +1,17 @@
+package com.alugaserra.exception;
+
+/**
+ * Lançada quando um parâmetro enviado pelo cliente é inválido (ex: cursor corrompido, tamanho de página fora do limite).
+ * Vira um 400 com a mensagem no {@link GlobalExceptionHandler}; as demais {@link IllegalArgumentException}
+ * são erros internos e não têm o texto exposto.
+ */
+public class InvalidRequestException extends IllegalArgumentException {
+
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+
+    public InvalidRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
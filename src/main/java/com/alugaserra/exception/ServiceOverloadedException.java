@@ -0,0 +1,21 @@
+package com.alugaserra.exception;
+
+import java.time.Duration;
+
+/**
+ * Lançada quando um recurso limitado (ex: o pool de hash de senhas) está saturado.
+ * Vira um 503 com o cabeçalho Retry-After no {@link GlobalExceptionHandler}.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ServiceOverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
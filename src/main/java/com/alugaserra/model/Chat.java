@@ -9,7 +9,10 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "chats")
+@Table(name = "chats", uniqueConstraints = {
+        // Uma única conversa por imóvel e par de participantes
+        @UniqueConstraint(name = "uk_chats_conversation_key", columnNames = "conversation_key")
+})
 @Data
 public class Chat {
 
@@ -31,7 +34,41 @@ public class Chat {
     )
     private List<User> participants;
 
+    // Chave canônica da conversa: imóvel + par de participantes em ordem (ver conversationKey).
+    // Chats antigos, sem chave, são preenchidos na subida (ChatBackfill)
+    @Column(name = "conversation_key", nullable = false, updatable = false, length = 110)
+    private String conversationKey;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
+
+    /**
+     * Monta a chave da conversa entre dois usuários sobre um imóvel. A ordem dos usuários não importa:
+     * quem inicia o chat e o dono do imóvel chegam sempre à mesma chave.
+     */
+    public static String conversationKey(UUID propertyId, UUID userA, UUID userB) {
+        boolean ordered = userA.compareTo(userB) <= 0;
+        return propertyId + ":" + (ordered ? userA : userB) + ":" + (ordered ? userB : userA);
+    }
+
+    /**
+     * Chave de um chat que não é a conversa canônica de um par (ex: não tem dois participantes, ou é uma
+     * duplicata antiga de outra conversa). Nunca coincide com a de outro chat.
+     */
+    public static String uniqueConversationKey(UUID chatId) {
+        return "chat:" + chatId;
+    }
+
+    // Chats de dois participantes criados sem a chave (ex: diretamente pelo repositório) também a recebem;
+    // os demais recebem uma chave única (o id ainda não foi gerado aqui)
+    @PrePersist
+    void fillConversationKey() {
+        if (conversationKey == null && property != null && participants != null && participants.size() == 2) {
+            conversationKey = conversationKey(property.getId(), participants.get(0).getId(), participants.get(1).getId());
+        }
+        if (conversationKey == null) {
+            conversationKey = uniqueConversationKey(UUID.randomUUID());
+        }
+    }
 }
@@ -8,7 +8,10 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = {
+        // Histórico de um chat paginado por (timestamp, id), nas duas direções
+        @Index(name = "idx_chat_messages_chat_timestamp", columnList = "chat_id, timestamp, id")
+})
 @Data
 public class ChatMessage {
 
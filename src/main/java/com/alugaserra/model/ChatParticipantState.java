@@ -0,0 +1,56 @@
+package com.alugaserra.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Estado de um chat para um participante: o que a caixa de entrada mostra (última mensagem,
+ * última atividade e mensagens não lidas). Desnormalizado: é atualizado junto com a gravação de cada
+ * lote de mensagens (ChatMessageWriter), para a caixa de entrada não precisar varrer chat_messages.
+ */
+@Entity
+@Table(name = "chat_participant_states",
+        uniqueConstraints = @UniqueConstraint(name = "uk_chat_participant_states_chat_user", columnNames = {"chat_id", "user_id"}),
+        indexes = {
+                // Caixa de entrada do usuário, da conversa mais recente para a mais antiga
+                @Index(name = "idx_chat_participant_states_inbox", columnList = "user_id, last_activity_at, chat_id")
+        })
+@Data
+public class ChatParticipantState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "chat_id", nullable = false)
+    private Chat chat;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    // Última mensagem do chat (de qualquer participante); nulos enquanto a conversa não tem mensagens
+    @Column(name = "last_message_id")
+    private UUID lastMessageId;
+
+    @Column(name = "last_message_preview")
+    private String lastMessagePreview;
+
+    @Column(name = "last_sender_id")
+    private UUID lastSenderId;
+
+    // Começa na criação do chat e avança a cada mensagem
+    @Column(name = "last_activity_at", nullable = false)
+    private LocalDateTime lastActivityAt;
+
+    // Mensagens dos outros participantes enviadas depois da última leitura
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+
+    @Column(name = "last_read_at")
+    private LocalDateTime lastReadAt;
+}
@@ -4,14 +4,20 @@ import com.alugaserra.enums.PropertyStatus;
 import com.alugaserra.enums.PropertyType;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "properties")
+@Table(name = "properties", indexes = {
+        // Índices que sustentam a paginação por chave da busca pública (ver PropertySpecification.after)
+        @Index(name = "idx_properties_status_created", columnList = "status, created_at, id"),
+        @Index(name = "idx_properties_status_rent", columnList = "status, rent_value, id")
+})
 @Data
 public class Property {
     @Id
@@ -41,6 +47,10 @@ public class Property {
 
     private String approximateLocation; // Bairro ou ponto de referência
 
+    // Coordenadas opcionais (WGS84), usadas na busca por raio e por área do mapa
+    private Double latitude;
+    private Double longitude;
+
     @Enumerated(EnumType.STRING)
     private PropertyStatus status = PropertyStatus.ACTIVE; // ACTIVE, PAUSED, RENTED
 
@@ -48,4 +58,14 @@ public class Property {
     @CreationTimestamp // Define automaticamente a data e hora no momento da criação
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
-}
\ No newline at end of file
+
+    // Usado para reindexar apenas o que mudou desde o último snapshot do índice textual
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
+    // Versão da linha: controle otimista de concorrência e ETag do detalhe do imóvel.
+    // O default permite adicionar a coluna em tabelas que já têm dados.
+    @Version
+    @ColumnDefault("0")
+    private Long version;
+}
@@ -0,0 +1,46 @@
+package com.alugaserra.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Refresh token de uma sessão de login. Cada uso troca o token por um novo (rotação);
+ * todos os tokens de um mesmo login compartilham o sessionId.
+ */
+@Entity
+@Table(name = "refresh_tokens", indexes = @Index(name = "idx_refresh_tokens_session", columnList = "session_id"))
+@Data
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    // SHA-256 (hex) do token entregue ao cliente; o token em si nunca é gravado.
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    @Column(name = "session_id", nullable = false)
+    private UUID sessionId;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    // Preenchido quando o token é trocado por um novo. Um segundo uso indica roubo do token.
+    private LocalDateTime usedAt;
+
+    // Preenchido quando a sessão inteira é encerrada (logout ou reuso de um token já trocado).
+    private LocalDateTime revokedAt;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
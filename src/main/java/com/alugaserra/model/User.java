@@ -1,18 +1,23 @@
 package com.alugaserra.model;
 
 import com.alugaserra.enums.UserRole;
+import com.alugaserra.security.UserCacheInvalidator;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserCacheInvalidator.class)
 @Data
 public class User implements UserDetails {
     @Id
@@ -36,6 +41,15 @@ public class User implements UserDetails {
 
     private boolean verified = false;
 
+    // Incrementada para revogar todos os tokens já emitidos (ex.: quando o papel muda)
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int tokenVersion = 0;
+
+    // Entra no ETag do detalhe de imóvel, que mostra o nome e o telefone do dono
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
     // Métodos da interface UserDetails
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -1,17 +1,40 @@
 package com.alugaserra.repository;
 
+import com.alugaserra.dto.ChatMessageViewDto;
 import com.alugaserra.model.ChatMessage;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
 
-    /**
-     * Encontra todas as mensagens de um chat específico, ordenadas pela data de envio (timestamp).
-     * O Spring Data JPA cria esta consulta automaticamente.
-     */
-    List<ChatMessage> findByChatIdOrderByTimestampAsc(UUID chatId);
+    String VIEW = "SELECT new com.alugaserra.dto.ChatMessageViewDto(m.id, m.chat.id, m.sender.id, m.content, m.timestamp) " +
+            "FROM ChatMessage m ";
+
+    // As consultas abaixo percorrem o índice (chat_id, timestamp, id) e param no limite, sem OFFSET.
+    // Projetam direto na view: só as colunas da mensagem, sem carregar chat nem remetente.
+
+    // Mensagens mais recentes do chat, da mais nova para a mais antiga
+    @Query(VIEW + "WHERE m.chat.id = :chatId ORDER BY m.timestamp DESC, m.id DESC")
+    List<ChatMessageViewDto> findLatest(@Param("chatId") UUID chatId, Limit limit);
+
+    // Mensagens anteriores ao cursor, da mais nova para a mais antiga
+    @Query(VIEW + "WHERE m.chat.id = :chatId " +
+            "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) " +
+            "ORDER BY m.timestamp DESC, m.id DESC")
+    List<ChatMessageViewDto> findBefore(@Param("chatId") UUID chatId, @Param("timestamp") LocalDateTime timestamp,
+                                                 @Param("id") UUID id, Limit limit);
+
+    // Mensagens posteriores ao cursor, da mais antiga para a mais nova
+    @Query(VIEW + "WHERE m.chat.id = :chatId " +
+            "AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id)) " +
+            "ORDER BY m.timestamp ASC, m.id ASC")
+    List<ChatMessageViewDto> findAfter(@Param("chatId") UUID chatId, @Param("timestamp") LocalDateTime timestamp,
+                                        @Param("id") UUID id, Limit limit);
 }
 
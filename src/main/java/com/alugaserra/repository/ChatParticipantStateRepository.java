@@ -0,0 +1,39 @@
+package com.alugaserra.repository;
+
+import com.alugaserra.dto.ChatInboxItemDto;
+import com.alugaserra.model.ChatParticipantState;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface ChatParticipantStateRepository extends JpaRepository<ChatParticipantState, UUID> {
+
+    // As consultas da caixa de entrada percorrem o índice (user_id, last_activity_at, chat_id), sem OFFSET.
+
+    String INBOX_ITEM = "SELECT new com.alugaserra.dto.ChatInboxItemDto(c.id, p.id, p.title, s.lastMessagePreview, " +
+            "s.lastSenderId, s.lastActivityAt, s.unreadCount) " +
+            "FROM ChatParticipantState s JOIN s.chat c JOIN c.property p ";
+
+    // Conversas mais recentes do usuário
+    @Query(INBOX_ITEM + "WHERE s.user.id = :userId ORDER BY s.lastActivityAt DESC, c.id DESC")
+    List<ChatInboxItemDto> findInbox(@Param("userId") UUID userId, Limit limit);
+
+    // Conversas com atividade anterior ao cursor
+    @Query(INBOX_ITEM + "WHERE s.user.id = :userId " +
+            "AND (s.lastActivityAt < :activityAt OR (s.lastActivityAt = :activityAt AND c.id < :chatId)) " +
+            "ORDER BY s.lastActivityAt DESC, c.id DESC")
+    List<ChatInboxItemDto> findInboxBefore(@Param("userId") UUID userId, @Param("activityAt") LocalDateTime activityAt,
+                                           @Param("chatId") UUID chatId, Limit limit);
+
+    // Marca o chat como lido pelo usuário. Retorna 0 se ele não participa do chat
+    @Modifying
+    @Query("UPDATE ChatParticipantState s SET s.unreadCount = 0, s.lastReadAt = :readAt " +
+            "WHERE s.chat.id = :chatId AND s.user.id = :userId")
+    int markRead(@Param("chatId") UUID chatId, @Param("userId") UUID userId, @Param("readAt") LocalDateTime readAt);
+}
@@ -1,22 +1,40 @@
 package com.alugaserra.repository;
 
 import com.alugaserra.model.Chat;
-import com.alugaserra.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface ChatRepository extends JpaRepository<Chat, UUID> {
 
-    // Procura por um chat que contenha exatamente dois participantes específicos para um determinado imóvel.
-    @Query("SELECT c FROM Chat c JOIN c.participants p1 JOIN c.participants p2 WHERE c.property.id = :propertyId AND p1.id = :userId1 AND p2.id = :userId2")
-    Optional<Chat> findChatByParticipantsAndProperty(@Param("userId1") UUID userId1, @Param("userId2") UUID userId2, @Param("propertyId") UUID propertyId);
+    // Procura a conversa pela chave canônica (imóvel + par de participantes), no índice único.
+    @Query("SELECT c.id FROM Chat c WHERE c.conversationKey = :key")
+    Optional<UUID> findIdByConversationKey(@Param("key") String key);
 
-    // Encontra todos os chats nos quais um determinado usuário é participante.
-    List<Chat> findByParticipantsContains(User user);
+    // Resumo de um chat: [id do chat, id do imóvel, título do imóvel, criação].
+    @Query("SELECT c.id, p.id, p.title, c.createdAt FROM Chat c JOIN c.property p WHERE c.id = :chatId")
+    List<Object[]> findSummaryRow(@Param("chatId") UUID chatId);
+
+    // Chats do usuário para a listagem: [id do chat, id do imóvel, título do imóvel, criação], sem carregar entidades.
+    @Query("SELECT c.id, p.id, p.title, c.createdAt FROM Chat c JOIN c.property p JOIN c.participants u " +
+            "WHERE u.id = :userId ORDER BY c.createdAt DESC, c.id")
+    List<Object[]> findSummaryRowsByParticipant(@Param("userId") UUID userId);
+
+    // Participantes dos chats informados: [id do chat, id do usuário, nome].
+    @Query("SELECT c.id, u.id, u.name FROM Chat c JOIN c.participants u WHERE c.id IN :chatIds")
+    List<Object[]> findParticipantRows(@Param("chatIds") Collection<UUID> chatIds);
+
+    // Todos os chats do usuário com os seus participantes: [id do chat, id do imóvel, id do participante].
+    @Query("SELECT c.id, c.property.id, u.id FROM Chat c JOIN c.participants u " +
+            "WHERE c.id IN (SELECT c2.id FROM Chat c2 JOIN c2.participants me WHERE me.id = :userId)")
+    List<Object[]> findContextRowsByParticipant(@Param("userId") UUID userId);
+
+    // O usuário participa do chat? (uma consulta no índice, sem carregar o chat)
+    boolean existsByIdAndParticipants_Id(UUID chatId, UUID userId);
 }
 
@@ -0,0 +1,46 @@
+package com.alugaserra.repository;
+
+import com.alugaserra.dto.PropertyResponseDto;
+import com.alugaserra.model.Property;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Modelo de leitura das listagens de imóveis: monta o {@link PropertyResponseDto} direto das colunas,
+ * sem carregar entidades. Cada chamada faz no máximo duas consultas: a página de imóveis
+ * (já com nome e telefone do dono) e um único IN com as fotos da página.
+ */
+public interface PropertyListingRepository {
+
+    /**
+     * Busca os imóveis que satisfazem a especificação, na ordem pedida.
+     * @param limit Quantidade máxima de imóveis, ou 0 para não limitar.
+     */
+    List<PropertyResponseDto> findListings(Specification<Property> spec, Sort sort, int limit);
+
+    /**
+     * Busca os imóveis pelos ids, preservando a ordem recebida. Ids inexistentes são ignorados.
+     */
+    List<PropertyResponseDto> findListingsByIds(Collection<UUID> ids);
+
+    /**
+     * Percorre o catálogo inteiro (qualquer status) com um cursor somente-para-frente,
+     * entregando um imóvel por vez, em ordem de id. A memória usada não depende do tamanho do catálogo.
+     * Deve ser chamado dentro de uma transação, para que o driver respeite o "fetchSize".
+     * @param fetchSize Quantas linhas o driver traz do banco a cada ida.
+     * @param clearEvery A cada quantos imóveis o contexto de persistência é limpo.
+     * @return Quantos imóveis foram entregues.
+     * @throws IOException Repassada do "visitor" (ex: o cliente desconectou); a leitura é interrompida.
+     */
+    long forEachListing(int fetchSize, int clearEvery, ListingVisitor visitor) throws IOException;
+
+    @FunctionalInterface
+    interface ListingVisitor {
+        void accept(PropertyResponseDto listing) throws IOException;
+    }
+}
@@ -0,0 +1,221 @@
+package com.alugaserra.repository;
+
+import com.alugaserra.dto.OwnerSummaryDto;
+import com.alugaserra.dto.PropertyResponseDto;
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.model.Property;
+import com.alugaserra.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Implementação do {@link PropertyListingRepository}, combinada pelo Spring Data ao {@link PropertyRepository}.
+ */
+class PropertyListingRepositoryImpl implements PropertyListingRepository {
+
+    // Limite de parâmetros por IN; listagens maiores (ex: a do admin) são divididas em blocos.
+    private static final int MAX_IN_PARAMETERS = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PropertyResponseDto> findListings(Specification<Property> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Property> root = query.from(Property.class);
+        selectListingColumns(query, root);
+
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        if (sort != null && sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (limit > 0) {
+            typedQuery.setMaxResults(limit);
+        }
+        return withPhotos(typedQuery.getResultList());
+    }
+
+    @Override
+    public List<PropertyResponseDto> findListingsByIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Property> root = query.from(Property.class);
+        selectListingColumns(query, root);
+        query.where(root.get("id").in(ids));
+
+        Map<UUID, PropertyResponseDto> byId = new HashMap<>();
+        for (PropertyResponseDto dto : withPhotos(entityManager.createQuery(query).getResultList())) {
+            byId.put(dto.id(), dto);
+        }
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public long forEachListing(int fetchSize, int clearEvery, ListingVisitor visitor) throws IOException {
+        Session session = entityManager.unwrap(Session.class);
+        // Uma linha por foto (LEFT JOIN), em ordem de id: as linhas de um mesmo imóvel chegam juntas
+        // e são agrupadas sem precisar guardar o resultado inteiro.
+        String hql = "SELECT p.id, p.title, p.description, p.type, p.status, p.rentValue, p.rooms, p.bathrooms, " +
+                "p.hasGarage, p.isFurnished, p.videoUrl, p.approximateLocation, p.createdAt, o.name, o.phone, url, " +
+                "p.latitude, p.longitude " +
+                "FROM Property p JOIN p.owner o LEFT JOIN p.photoUrls url ORDER BY p.id";
+
+        long delivered = 0;
+        try (ScrollableResults<Object[]> rows = session.createSelectionQuery(hql, Object[].class)
+                .setReadOnly(true)
+                .setFetchSize(fetchSize)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            Object[] current = null;
+            List<String> photos = new ArrayList<>();
+            while (rows.next()) {
+                Object[] row = rows.get();
+                if (current != null && !current[0].equals(row[0])) {
+                    visitor.accept(toListing(current, photos));
+                    photos = new ArrayList<>();
+                    if (++delivered % clearEvery == 0) {
+                        // Nada fica gerenciado numa projeção, mas garante que nada se acumule na sessão
+                        session.clear();
+                    }
+                }
+                current = row;
+                if (row[15] != null) {
+                    photos.add((String) row[15]);
+                }
+            }
+            if (current != null) {
+                visitor.accept(toListing(current, photos));
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    private static PropertyResponseDto toListing(Object[] row, List<String> photos) {
+        return new PropertyResponseDto(
+                (UUID) row[0],
+                (String) row[1],
+                (String) row[2],
+                (PropertyType) row[3],
+                (PropertyStatus) row[4],
+                (Double) row[5],
+                (Integer) row[6],
+                (Integer) row[7],
+                (Boolean) row[8],
+                (Boolean) row[9],
+                photos,
+                (String) row[10],
+                (String) row[11],
+                (Double) row[16],
+                (Double) row[17],
+                new OwnerSummaryDto((String) row[13], (String) row[14]),
+                (LocalDateTime) row[12]);
+    }
+
+    private static void selectListingColumns(CriteriaQuery<Tuple> query, Root<Property> root) {
+        // Join explícito: o dono vem na mesma linha, em vez de um SELECT por imóvel.
+        Join<Property, User> owner = root.join("owner");
+        query.multiselect(
+                root.get("id").alias("id"),
+                root.get("title").alias("title"),
+                root.get("description").alias("description"),
+                root.get("type").alias("type"),
+                root.get("status").alias("status"),
+                root.get("rentValue").alias("rentValue"),
+                root.get("rooms").alias("rooms"),
+                root.get("bathrooms").alias("bathrooms"),
+                root.get("hasGarage").alias("hasGarage"),
+                root.get("isFurnished").alias("isFurnished"),
+                root.get("videoUrl").alias("videoUrl"),
+                root.get("approximateLocation").alias("approximateLocation"),
+                root.get("createdAt").alias("createdAt"),
+                root.get("latitude").alias("latitude"),
+                root.get("longitude").alias("longitude"),
+                owner.get("name").alias("ownerName"),
+                owner.get("phone").alias("ownerPhone"));
+    }
+
+    /**
+     * Busca as fotos de todos os imóveis da página de uma vez e monta os DTOs na ordem das linhas.
+     */
+    private List<PropertyResponseDto> withPhotos(List<Tuple> rows) {
+        Map<UUID, List<String>> photosById = new LinkedHashMap<>();
+        for (Tuple row : rows) {
+            photosById.put(row.get("id", UUID.class), new ArrayList<>());
+        }
+
+        List<UUID> ids = new ArrayList<>(photosById.keySet());
+        for (int from = 0; from < ids.size(); from += MAX_IN_PARAMETERS) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + MAX_IN_PARAMETERS, ids.size()));
+            List<Object[]> photos = entityManager.createQuery(
+                            "SELECT p.id, url FROM Property p JOIN p.photoUrls url WHERE p.id IN :ids", Object[].class)
+                    .setParameter("ids", chunk)
+                    .getResultList();
+            for (Object[] photo : photos) {
+                photosById.get((UUID) photo[0]).add((String) photo[1]);
+            }
+        }
+
+        List<PropertyResponseDto> result = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            UUID id = row.get("id", UUID.class);
+            result.add(new PropertyResponseDto(
+                    id,
+                    row.get("title", String.class),
+                    row.get("description", String.class),
+                    row.get("type", PropertyType.class),
+                    row.get("status", PropertyStatus.class),
+                    row.get("rentValue", Double.class),
+                    row.get("rooms", Integer.class),
+                    row.get("bathrooms", Integer.class),
+                    row.get("hasGarage", Boolean.class),
+                    row.get("isFurnished", Boolean.class),
+                    photosById.get(id),
+                    row.get("videoUrl", String.class),
+                    row.get("approximateLocation", String.class),
+                    row.get("latitude", Double.class),
+                    row.get("longitude", Double.class),
+                    new OwnerSummaryDto(row.get("ownerName", String.class), row.get("ownerPhone", String.class)),
+                    row.get("createdAt", LocalDateTime.class)));
+        }
+        return result;
+    }
+}
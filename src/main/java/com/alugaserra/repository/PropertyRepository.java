@@ -3,17 +3,55 @@ package com.alugaserra.repository;
 import com.alugaserra.enums.PropertyStatus;
 import com.alugaserra.model.Property;
 import com.alugaserra.model.User;
+import com.alugaserra.search.PropertySnapshot;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor; // <-- 1. IMPORTAR
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 
 // 2. ADICIONAR JpaSpecificationExecutor
-public interface PropertyRepository extends JpaRepository<Property, UUID>, JpaSpecificationExecutor<Property> {
+public interface PropertyRepository extends JpaRepository<Property, UUID>, JpaSpecificationExecutor<Property>,
+        PropertyListingRepository {
 
     List<Property> findByStatus(PropertyStatus status);
 
     long countByOwnerAndStatus(User owner, PropertyStatus status);
+
+    long countByStatus(PropertyStatus status);
+
+    /**
+     * Carrega apenas os campos usados pelos índices de busca em memória, sem montar as entidades
+     * (e, portanto, sem buscar o dono ou as fotos de cada imóvel).
+     */
+    @Query("SELECT new com.alugaserra.search.PropertySnapshot(p.id, p.type, p.status, p.rentValue, p.rooms, p.hasGarage, p.isFurnished, p.createdAt, " +
+            "p.title, p.description, p.approximateLocation, p.latitude, p.longitude) " +
+            "FROM Property p WHERE p.status = :status")
+    List<PropertySnapshot> findSnapshotsByStatus(@Param("status") PropertyStatus status);
+
+    // Imóveis (de qualquer status) alterados depois do instante informado
+    @Query("SELECT new com.alugaserra.search.PropertySnapshot(p.id, p.type, p.status, p.rentValue, p.rooms, p.hasGarage, p.isFurnished, p.createdAt, " +
+            "p.title, p.description, p.approximateLocation, p.latitude, p.longitude) " +
+            "FROM Property p WHERE p.updatedAt > :since")
+    List<PropertySnapshot> findSnapshotsUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT p.id FROM Property p WHERE p.status = :status")
+    List<UUID> findIdsByStatus(@Param("status") PropertyStatus status);
+
+    // Apenas a versão do imóvel e a última alteração do dono, para responder a GETs condicionais sem carregar o imóvel
+    @Query("SELECT p.version, p.owner.updatedAt FROM Property p WHERE p.id = :id")
+    List<Object[]> findVersionsById(@Param("id") UUID id);
+
+    // Resumo barato do catálogo inteiro: muda com qualquer criação, edição ou remoção, feita em qualquer nó
+    @Query("SELECT COUNT(p), COALESCE(SUM(p.version), 0), MAX(p.updatedAt) FROM Property p")
+    List<Object[]> findCatalogFingerprint();
+
+    // Só o id do dono, sem carregar o imóvel (ex: para montar a chave de uma conversa)
+    @Query("SELECT p.owner.id FROM Property p WHERE p.id = :id")
+    Optional<UUID> findOwnerIdById(@Param("id") UUID id);
 }
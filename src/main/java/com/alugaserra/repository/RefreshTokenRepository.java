@@ -0,0 +1,34 @@
+package com.alugaserra.repository;
+
+import com.alugaserra.model.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID> {
+
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    // Marca o token como usado só se ninguém o usou antes: dois refresh simultâneos não geram duas sessões.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update RefreshToken r set r.usedAt = :now where r.id = :id and r.usedAt is null")
+    int markUsed(@Param("id") UUID id, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update RefreshToken r set r.revokedAt = :now where r.sessionId = :sessionId and r.revokedAt is null")
+    int revokeSession(@Param("sessionId") UUID sessionId, @Param("now") LocalDateTime now);
+
+    // Sessões encerradas desde o instante informado (as anteriores já não têm access token válido)
+    @Query("select distinct r.sessionId from RefreshToken r where r.revokedAt > :since")
+    List<UUID> findSessionsRevokedSince(@Param("since") LocalDateTime since);
+
+    @Modifying
+    @Query("delete from RefreshToken r where r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -2,7 +2,11 @@ package com.alugaserra.repository;
 
 import com.alugaserra.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -11,5 +15,20 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     // O Spring Data JPA é inteligente o suficiente para usar este método para o UserDetailsService também.
     Optional<User> findByEmail(String email);
 
+    // Pares (id, tokenVersion) dos usuários que já tiveram os tokens revogados
+    @Query("select u.id, u.tokenVersion from User u where u.tokenVersion > 0")
+    List<Object[]> findRevokedTokenVersions();
+
+    // Quais destes e-mails/CPFs já estão cadastrados (usado na importação em lote)
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("select u.cpf from User u where u.cpf in :cpfs")
+    List<String> findExistingCpfs(@Param("cpfs") Collection<String> cpfs);
+
+    // Quais destes usuários ainda existem (usado para revogar os tokens de usuários removidos)
+    @Query("select u.id from User u where u.id in :ids")
+    List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+
 }
 
@@ -0,0 +1,41 @@
+package com.alugaserra.repository.specification;
+
+import com.alugaserra.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Posição de paginação por chave (keyset) no histórico de um chat: o (timestamp, id) de uma mensagem.
+ * Serve tanto para buscar as mensagens anteriores ("before") quanto as posteriores ("since").
+ * A caixa de entrada usa o mesmo formato com (última atividade, id do chat).
+ * Para o cliente, o cursor é uma string opaca (Base64 URL-safe).
+ */
+public record ChatMessageCursor(
+        LocalDateTime timestamp,
+        UUID id
+) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = timestamp + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica um cursor recebido do cliente.
+     * @throws InvalidRequestException se o cursor for inválido.
+     */
+    public static ChatMessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            return new ChatMessageCursor(LocalDateTime.parse(parts[0]), UUID.fromString(parts[1]));
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Cursor de mensagens inválido.", e);
+        }
+    }
+}
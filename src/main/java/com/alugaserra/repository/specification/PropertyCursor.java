@@ -0,0 +1,63 @@
+package com.alugaserra.repository.specification;
+
+import com.alugaserra.enums.PropertySort;
+import com.alugaserra.dto.PropertyResponseDto;
+import com.alugaserra.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Posição de paginação por chave (keyset) na busca de imóveis.
+ * Guarda o último valor da chave de ordenação e o id do último imóvel entregue,
+ * de forma que a próxima página é buscada com um "WHERE chave > última chave",
+ * sem OFFSET. Para o cliente, o cursor é uma string opaca (Base64 URL-safe).
+ */
+public record PropertyCursor(
+        PropertySort sort,
+        LocalDateTime createdAt, // Usado quando a ordenação é NEWEST
+        double sortValue,        // Preço (PRICE_*) ou pontuação (RELEVANCE)
+        UUID id
+) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Cria o cursor que aponta para logo depois do imóvel informado.
+     */
+    public static PropertyCursor after(PropertyResponseDto property, PropertySort sort) {
+        return new PropertyCursor(sort, property.createdAt(), property.rentValue(), property.id());
+    }
+
+    public String encode() {
+        String key = sort == PropertySort.NEWEST ? createdAt.toString() : Double.toString(sortValue);
+        String raw = sort.name() + SEPARATOR + key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica um cursor recebido do cliente.
+     * @throws InvalidRequestException se o cursor for inválido ou não corresponder à ordenação pedida.
+     */
+    public static PropertyCursor decode(String cursor, PropertySort expectedSort) {
+        PropertyCursor decoded;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            PropertySort sort = PropertySort.valueOf(parts[0]);
+            UUID id = UUID.fromString(parts[2]);
+            decoded = sort == PropertySort.NEWEST
+                    ? new PropertyCursor(sort, LocalDateTime.parse(parts[1]), 0, id)
+                    : new PropertyCursor(sort, null, Double.parseDouble(parts[1]), id);
+        } catch (RuntimeException e) {
+            throw new InvalidRequestException("Cursor de paginação inválido.", e);
+        }
+
+        if (decoded.sort() != expectedSort) {
+            throw new InvalidRequestException("O cursor de paginação não corresponde à ordenação pedida.");
+        }
+        return decoded;
+    }
+}
@@ -1,10 +1,16 @@
 package com.alugaserra.repository.specification;
 
+import com.alugaserra.enums.PropertySort;
 import com.alugaserra.enums.PropertyStatus;
 import com.alugaserra.enums.PropertyType;
+import com.alugaserra.exception.InvalidRequestException;
 import com.alugaserra.model.Property;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.time.LocalDateTime;
+import java.util.UUID;
+
 /**
  * Classe utilitária para criar especificações (filtros) dinâmicas para a entidade Property.
  */
@@ -50,4 +56,44 @@ public class PropertySpecification {
         return (root, query, criteriaBuilder) ->
                 criteriaBuilder.equal(root.get("status"), PropertyStatus.ACTIVE);
     }
+
+    /**
+     * Retorna a ordenação estável (com o id como desempate) usada pela paginação por chave.
+     */
+    public static Sort sortFor(PropertySort sort) {
+        return switch (sort) {
+            case NEWEST -> Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+            case PRICE_ASC -> Sort.by(Sort.Order.asc("rentValue"), Sort.Order.asc("id"));
+            case PRICE_DESC -> Sort.by(Sort.Order.desc("rentValue"), Sort.Order.desc("id"));
+            case RELEVANCE -> throw new InvalidRequestException("A ordenação por relevância exige o parâmetro 'q'.");
+            case DISTANCE -> throw new InvalidRequestException("A ordenação por distância exige os parâmetros 'lat' e 'lng'.");
+        };
+    }
+
+    /**
+     * Retorna uma especificação que seleciona apenas os imóveis posicionados depois do cursor,
+     * de acordo com a ordenação do próprio cursor. Substitui o OFFSET: o custo de uma página
+     * profunda é o mesmo da primeira, desde que exista um índice sobre a chave de ordenação.
+     */
+    public static Specification<Property> after(PropertyCursor cursor) {
+        return (root, query, criteriaBuilder) -> switch (cursor.sort()) {
+            case NEWEST -> criteriaBuilder.or(
+                    criteriaBuilder.lessThan(root.<LocalDateTime>get("createdAt"), cursor.createdAt()),
+                    criteriaBuilder.and(
+                            criteriaBuilder.equal(root.get("createdAt"), cursor.createdAt()),
+                            criteriaBuilder.lessThan(root.<UUID>get("id"), cursor.id())));
+            case PRICE_ASC -> criteriaBuilder.or(
+                    criteriaBuilder.greaterThan(root.<Double>get("rentValue"), cursor.sortValue()),
+                    criteriaBuilder.and(
+                            criteriaBuilder.equal(root.get("rentValue"), cursor.sortValue()),
+                            criteriaBuilder.greaterThan(root.<UUID>get("id"), cursor.id())));
+            case PRICE_DESC -> criteriaBuilder.or(
+                    criteriaBuilder.lessThan(root.<Double>get("rentValue"), cursor.sortValue()),
+                    criteriaBuilder.and(
+                            criteriaBuilder.equal(root.get("rentValue"), cursor.sortValue()),
+                            criteriaBuilder.lessThan(root.<UUID>get("id"), cursor.id())));
+            case RELEVANCE -> throw new InvalidRequestException("A ordenação por relevância exige o parâmetro 'q'.");
+            case DISTANCE -> throw new InvalidRequestException("A ordenação por distância exige os parâmetros 'lat' e 'lng'.");
+        };
+    }
 }
@@ -0,0 +1,111 @@
+package com.alugaserra.search;
+
+import com.alugaserra.event.PropertyChangedEvent;
+import com.alugaserra.repository.PropertyRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Versão do catálogo de imóveis, usada nas buscas (ETag de coleção). É um hash do resumo do catálogo
+ * lido do banco (quantidade, soma das versões e última alteração): qualquer criação, edição ou remoção
+ * de imóvel muda o resumo, e todos os nós que leem o mesmo banco chegam à mesma versão para o mesmo
+ * conteúdo. Assim um cliente que alterna entre nós continua recebendo 304.
+ *
+ * As alterações feitas neste nó marcam a versão para ser relida na próxima consulta (e de novo depois
+ * do commit). As feitas em outros nós são percebidas lendo o resumo periodicamente. Essas não passaram
+ * pelos eventos deste nó, então, a cada mudança do resumo, os índices em memória alcançam o banco
+ * ({@link SearchIndexCatchUp}) e o {@link SearchResultCache} é esvaziado antes de a versão nova ser
+ * publicada: nenhuma página anterior à mudança sai com o ETag novo.
+ */
+@Component
+public class CatalogVersion {
+
+    @Autowired
+    private PropertyRepository propertyRepository;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private SearchIndexCatchUp searchIndexCatchUp;
+
+    // Resumo lido por último; nulo antes da primeira leitura
+    private String fingerprint;
+    // Última alteração de imóvel que esse resumo mostrava
+    private LocalDateTime lastUpdate;
+    private volatile String version;
+    // Uma escrita deste nó ainda não refletida na versão
+    private volatile boolean stale = true;
+
+    @EventListener
+    public void onPropertyChanged(PropertyChangedEvent event) {
+        stale = true;
+        // Uma leitura antes do commit ainda enxerga o resumo antigo: relê de novo depois dele
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    stale = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Confere no banco se o catálogo mudou desde a última leitura (ex: por uma escrita em outro nó).
+     */
+    @Scheduled(fixedDelayString = "${properties.search.catalog-version.poll-interval-ms:2000}")
+    public void pollDatabase() {
+        refresh();
+    }
+
+    /**
+     * A versão atual do catálogo. Deve ser lida ANTES de calcular a busca: se o catálogo mudar
+     * no meio do cálculo, a resposta fica mais nova que a versão, nunca mais velha.
+     */
+    public String current() {
+        if (stale) {
+            stale = false;
+            refresh();
+        }
+        return version;
+    }
+
+    private synchronized void refresh() {
+        List<Object[]> rows = propertyRepository.findCatalogFingerprint();
+        String latest = rows.isEmpty() ? "" : Arrays.toString(rows.get(0));
+        if (latest.equals(fingerprint)) {
+            return;
+        }
+        // Não dá para saber se a mudança veio só deste nó: os índices e o cache inteiro podem estar velhos
+        if (fingerprint != null) {
+            searchIndexCatchUp.catchUp(lastUpdate);
+            searchResultCache.invalidateAll();
+        }
+        fingerprint = latest;
+        lastUpdate = rows.isEmpty() ? null : (LocalDateTime) rows.get(0)[2];
+        version = hash(latest);
+    }
+
+    private static String hash(String fingerprint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(fingerprint.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            // Toda JVM é obrigada a oferecer SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.alugaserra.search;
+
+import com.alugaserra.dto.GeoArea;
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.event.PropertyChangedEvent;
+import com.alugaserra.repository.PropertyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice espacial em memória dos imóveis ATIVOS que têm coordenadas.
+ *
+ * O mapa é dividido numa grade de células de tamanho fixo (em graus). Uma busca primeiro
+ * resolve as células que cobrem o retângulo envolvente da área e só então calcula a distância
+ * exata dos imóveis dessas células, em vez de percorrer o catálogo inteiro.
+ * Mantido pelos eventos {@link PropertyChangedEvent} e pelo {@link SearchIndexCatchUp}, como o
+ * {@link PropertyFilterIndex}.
+ */
+@Component
+public class GeoGridIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoGridIndex.class);
+
+    // Linhas da grade são multiplicadas por este fator para formar a chave da célula
+    private static final long ROW_FACTOR = 10_000_000L;
+
+    @Autowired
+    private PropertyRepository propertyRepository;
+
+    // 0.02 grau ~ 2,2 km de latitude: poucas células por busca de bairro, poucos imóveis por célula
+    @Value("${properties.search.geo.cell-size-degrees:0.02}")
+    private double cellSize = 0.02;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Set<UUID>> cells = new HashMap<>();
+    private final Map<UUID, double[]> points = new HashMap<>();
+
+    private volatile boolean ready = false;
+
+    // --- Manutenção ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFromDatabase() {
+        long start = System.nanoTime();
+        rebuild(propertyRepository.findSnapshotsByStatus(PropertyStatus.ACTIVE));
+        log.info("Índice geográfico de imóveis reconstruído com {} imóveis em {} ms",
+                size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void rebuild(Collection<PropertySnapshot> snapshots) {
+        lock.writeLock().lock();
+        try {
+            cells.clear();
+            points.clear();
+            for (PropertySnapshot snapshot : snapshots) {
+                if (snapshot.isActive() && snapshot.hasCoordinates()) {
+                    putLocked(snapshot.id(), snapshot.latitude(), snapshot.longitude());
+                }
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onPropertyChanged(PropertyChangedEvent event) {
+        if (event.after() != null) {
+            index(event.after());
+        } else {
+            remove(event.before().id());
+        }
+    }
+
+    /**
+     * Indexa (ou reindexa) um imóvel. Imóveis inativos ou sem coordenadas saem do índice.
+     */
+    public void index(PropertySnapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(snapshot.id());
+            if (snapshot.isActive() && snapshot.hasCoordinates()) {
+                putLocked(snapshot.id(), snapshot.latitude(), snapshot.longitude());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Consultas ---
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return points.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Encontra os imóveis dentro da área.
+     * @return Mapa de id do imóvel para a distância (km) até o centro da área (0 se a área não tiver centro).
+     */
+    public Map<UUID, Double> search(GeoArea area) {
+        long firstRow = row(area.southLatitude()), lastRow = row(area.northLatitude());
+        long firstCol = col(area.westLongitude()), lastCol = col(area.eastLongitude());
+        long cellCount = (lastRow - firstRow + 1) * (lastCol - firstCol + 1);
+
+        Map<UUID, Double> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (cellCount > points.size()) {
+                // Área enorme em relação ao catálogo: percorrer os pontos sai mais barato que as células
+                points.forEach((id, point) -> collect(area, id, point, result));
+                return result;
+            }
+            for (long r = firstRow; r <= lastRow; r++) {
+                for (long c = firstCol; c <= lastCol; c++) {
+                    Set<UUID> ids = cells.get(r * ROW_FACTOR + c);
+                    if (ids != null) {
+                        for (UUID id : ids) {
+                            collect(area, id, points.get(id), result);
+                        }
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Internos ---
+
+    private static void collect(GeoArea area, UUID id, double[] point, Map<UUID, Double> result) {
+        if (area.contains(point[0], point[1])) {
+            result.put(id, area.distanceFromCenterKm(point[0], point[1]));
+        }
+    }
+
+    private long row(double latitude) {
+        return (long) Math.floor((latitude + 90) / cellSize);
+    }
+
+    private long col(double longitude) {
+        return (long) Math.floor((longitude + 180) / cellSize);
+    }
+
+    private long cellOf(double latitude, double longitude) {
+        return row(latitude) * ROW_FACTOR + col(longitude);
+    }
+
+    private void putLocked(UUID id, double latitude, double longitude) {
+        points.put(id, new double[]{latitude, longitude});
+        cells.computeIfAbsent(cellOf(latitude, longitude), key -> new HashSet<>()).add(id);
+    }
+
+    private void removeLocked(UUID id) {
+        double[] point = points.remove(id);
+        if (point == null) {
+            return;
+        }
+        long cell = cellOf(point[0], point[1]);
+        Set<UUID> ids = cells.get(cell);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+    }
+}
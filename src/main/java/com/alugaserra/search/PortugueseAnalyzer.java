@@ -0,0 +1,112 @@
+package com.alugaserra.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Analisador de texto em português usado pela busca textual.
+ *
+ * Etapas: minúsculas, remoção de acentos ("aluguél" e "aluguel" viram o mesmo termo),
+ * separação em palavras, remoção de palavras vazias ("de", "com", "para"...) e um stemming leve
+ * que reduz plural, feminino, diminutivo/aumentativo e a vogal temática
+ * ("casinhas" -> "cas", "quintais" -> "quintal", "apartamentos" -> "apartament").
+ * O mesmo analisador é aplicado aos imóveis e às consultas, então basta que seja consistente.
+ */
+public final class PortugueseAnalyzer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^a-z0-9]+");
+    private static final Locale PT_BR = Locale.forLanguageTag("pt-BR");
+
+    // Já sem acentos, pois a comparação é feita depois da remoção dos diacríticos.
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "o", "as", "os", "um", "uma", "uns", "umas",
+            "de", "da", "do", "das", "dos", "e", "em", "no", "na", "nos", "nas",
+            "ao", "aos", "com", "para", "pra", "por", "pelo", "pela", "pelos", "pelas",
+            "que", "se", "ou", "mais", "muito", "muita", "bem", "ja", "esta", "este", "essa", "esse",
+            "num", "numa", "seu", "sua", "meu", "minha", "ha", "tem", "como", "sao", "ser", "foi");
+
+    private static final int MIN_AUGMENTATIVE_STEM = 6;
+
+    private PortugueseAnalyzer() {
+    }
+
+    /**
+     * Transforma um texto livre na lista de termos indexáveis, na ordem em que aparecem.
+     */
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text.toLowerCase(PT_BR), Normalizer.Form.NFD)).replaceAll("");
+        for (String token : NON_WORD.split(folded)) {
+            if (token.isEmpty() || STOPWORDS.contains(token)) {
+                continue;
+            }
+            terms.add(stem(token));
+        }
+        return terms;
+    }
+
+    /**
+     * Stemming leve (inspirado no "light stemmer" de Savoy para o português).
+     * Números e palavras curtas são mantidos como estão.
+     */
+    static String stem(String word) {
+        if (word.length() < 4 || !Character.isLetter(word.charAt(0))) {
+            return word;
+        }
+        String w = removePlural(word);
+        w = removeDiminutiveOrAugmentative(w);
+        w = removeFeminine(w);
+        return removeThematicVowel(w);
+    }
+
+    private static String removePlural(String w) {
+        if (!w.endsWith("s") || w.length() < 4) return w;
+        if (w.endsWith("oes") || w.endsWith("aes")) return w.substring(0, w.length() - 3) + "ao";
+        if (w.endsWith("ais")) return w.substring(0, w.length() - 2) + "l";
+        if (w.endsWith("eis")) return w.substring(0, w.length() - 3) + "el";
+        if (w.endsWith("ois")) return w.substring(0, w.length() - 2) + "l";
+        if (w.endsWith("ns")) return w.substring(0, w.length() - 2) + "m";
+        if (w.endsWith("res") || w.endsWith("zes") || w.endsWith("les")) return w.substring(0, w.length() - 2);
+        if (w.endsWith("ss") || w.endsWith("us") || w.endsWith("is")) return w;
+        return w.substring(0, w.length() - 1);
+    }
+
+    private static String removeDiminutiveOrAugmentative(String w) {
+        for (String suffix : new String[]{"zinho", "zinha", "inho", "inha", "zao", "zona"}) {
+            if (w.endsWith(suffix) && w.length() - suffix.length() >= 3) {
+                return w.substring(0, w.length() - suffix.length());
+            }
+        }
+        // "ao" e "ona" também terminam palavras comuns ("portão", "salão", "poltrona"); só são tratados
+        // como aumentativo em radicais longos, senão "portão" viraria "port" e casaria com "porta".
+        for (String suffix : new String[]{"ao", "ona"}) {
+            if (w.endsWith(suffix) && w.length() - suffix.length() >= MIN_AUGMENTATIVE_STEM) {
+                return w.substring(0, w.length() - suffix.length());
+            }
+        }
+        return w;
+    }
+
+    private static String removeFeminine(String w) {
+        if (w.length() < 5) return w;
+        if (w.endsWith("ona")) return w.substring(0, w.length() - 1);
+        if (w.endsWith("ora")) return w.substring(0, w.length() - 1);
+        if (w.endsWith("eira")) return w.substring(0, w.length() - 1) + "o";
+        return w;
+    }
+
+    private static String removeThematicVowel(String w) {
+        if (w.length() > 3 && (w.endsWith("a") || w.endsWith("e") || w.endsWith("o"))) {
+            return w.substring(0, w.length() - 1);
+        }
+        return w;
+    }
+}
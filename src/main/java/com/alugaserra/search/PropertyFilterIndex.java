@@ -0,0 +1,564 @@
+package com.alugaserra.search;
+
+import com.alugaserra.dto.FacetCountDto;
+import com.alugaserra.dto.PropertyFacetsDto;
+import com.alugaserra.dto.PropertySearchFilter;
+import com.alugaserra.enums.PropertySort;
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.event.PropertyChangedEvent;
+import com.alugaserra.repository.PropertyRepository;
+import com.alugaserra.repository.specification.PropertyCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Índice em memória dos imóveis ATIVOS, usado para resolver os filtros da busca sem ir ao banco.
+ *
+ * Cada imóvel ocupa uma posição ("slot") fixa. Os filtros de baixa cardinalidade (tipo, garagem,
+ * mobília) são bitmaps por slot; os filtros de faixa (aluguel, quartos) usam arrays primitivos
+ * ordenados, onde uma busca binária encontra o prefixo/sufixo que satisfaz o filtro.
+ * Uma combinação de filtros vira um AND de bitmaps, e a ordenação pedida percorre um array de
+ * slots já ordenado, devolvendo os ids na ordem certa.
+ *
+ * O índice é reconstruído por completo quando a aplicação sobe e mantido atualizado pelos
+ * eventos {@link PropertyChangedEvent} das escritas deste nó; as de outros nós chegam pelo
+ * {@link SearchIndexCatchUp}. Cada escrita insere/remove o slot dos arrays ordenados
+ * por busca binária (um deslocamento de memória, sem reordenar nada), e as consultas só
+ * precisam do lock de leitura.
+ */
+@Component
+public class PropertyFilterIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PropertyFilterIndex.class);
+
+    /**
+     * Ordena UUIDs como o PostgreSQL e o H2 (bytes sem sinal), para que o desempate por id
+     * seja o mesmo nos dois caminhos de busca.
+     */
+    public static final Comparator<UUID> ID_ORDER = (a, b) -> {
+        int cmp = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return cmp != 0 ? cmp : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    @Autowired
+    private PropertyRepository propertyRepository;
+
+    // Opções mostradas nas facetas de quartos ("N ou mais") e de aluguel ("até R$ X"), em ordem crescente
+    @Value("${properties.search.facets.room-buckets:1,2,3,4}")
+    private int[] roomBuckets = {1, 2, 3, 4};
+
+    @Value("${properties.search.facets.rent-bands:500,1000,1500,2000,3000,5000}")
+    private double[] rentBands = {500, 1000, 1500, 2000, 3000, 5000};
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // --- Dados por slot ---
+    private UUID[] idBySlot = new UUID[1024];
+    private double[] rentBySlot = new double[1024];
+    private int[] roomsBySlot = new int[1024];
+    private long[] createdBySlot = new long[1024]; // createdAt em nanos desde a época (UTC)
+    private final Map<UUID, Integer> slotById = new HashMap<>();
+    private final BitSet freeSlots = new BitSet();
+    private int slotCount = 0;
+
+    // --- Bitmaps ---
+    private final BitSet live = new BitSet();
+    private final Map<PropertyType, BitSet> byType = new EnumMap<>(PropertyType.class);
+    private final BitSet withGarage = new BitSet();
+    private final BitSet furnished = new BitSet();
+
+    // --- Visões ordenadas: as "sortedCount" primeiras posições de cada array são válidas ---
+    private int[] slotsByRent = new int[1024];      // Crescente por (aluguel, id)
+    private double[] sortedRent = new double[1024];
+    private int[] slotsByRooms = new int[1024];     // Crescente por (quartos, slot)
+    private int[] sortedRooms = new int[1024];
+    private int[] slotsByNewest = new int[1024];    // Crescente por (createdAt, id); NEWEST percorre de trás para frente
+    private long[] sortedCreated = new long[1024];
+    private int sortedCount = 0;
+
+    private volatile boolean ready = false;
+
+    public PropertyFilterIndex() {
+        for (PropertyType type : PropertyType.values()) {
+            byType.put(type, new BitSet());
+        }
+    }
+
+    // --- Manutenção ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFromDatabase() {
+        long start = System.nanoTime();
+        List<PropertySnapshot> active = propertyRepository.findSnapshotsByStatus(PropertyStatus.ACTIVE);
+        rebuild(active);
+        log.info("Índice de filtros de imóveis reconstruído com {} imóveis ativos em {} ms",
+                active.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Descarta o conteúdo atual e indexa novamente todos os imóveis informados.
+     */
+    public void rebuild(Collection<PropertySnapshot> snapshots) {
+        lock.writeLock().lock();
+        try {
+            slotById.clear();
+            freeSlots.clear();
+            live.clear();
+            withGarage.clear();
+            furnished.clear();
+            byType.values().forEach(BitSet::clear);
+            slotCount = 0;
+            Arrays.fill(idBySlot, null);
+
+            for (PropertySnapshot snapshot : snapshots) {
+                if (snapshot.isActive()) {
+                    putSlot(snapshot);
+                }
+            }
+            sortAll();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onPropertyChanged(PropertyChangedEvent event) {
+        if (event.after() != null && event.after().isActive()) {
+            upsert(event.after());
+        } else {
+            UUID id = event.after() != null ? event.after().id() : event.before().id();
+            remove(id);
+        }
+    }
+
+    public void upsert(PropertySnapshot snapshot) {
+        lock.writeLock().lock();
+        try {
+            removeSlot(snapshot.id());
+            insertSorted(putSlot(snapshot));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            removeSlot(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Consultas ---
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Resolve os filtros e devolve, na ordem pedida, até "limit" ids de imóveis posicionados
+     * depois do cursor (ou desde o início, quando o cursor for nulo).
+     */
+    public List<UUID> search(PropertySearchFilter filter, PropertySort sort, PropertyCursor cursor, int limit) {
+        return search(filter, sort, cursor, limit, id -> true);
+    }
+
+    /**
+     * Igual a {@link #search(PropertySearchFilter, PropertySort, PropertyCursor, int)}, mas considera
+     * apenas os ids aceitos por "restrictTo" (ex: os imóveis encontrados pela busca textual).
+     */
+    public List<UUID> search(PropertySearchFilter filter, PropertySort sort, PropertyCursor cursor, int limit,
+                             Predicate<UUID> restrictTo) {
+        if (sort == PropertySort.RELEVANCE || sort == PropertySort.DISTANCE) {
+            // Ordenações por uma chave calculada na consulta: ver retainMatching
+            throw new IllegalArgumentException("Ordenação não suportada pelo índice de filtros: " + sort);
+        }
+        return read(() -> {
+            BitSet matches = matchLocked(filter);
+            List<UUID> result = new ArrayList<>(Math.min(limit, 256));
+            // O cursor é localizado por busca binária: uma página funda custa o mesmo que a primeira
+            if (sort == PropertySort.PRICE_ASC) {
+                int from = cursor == null ? 0 : rentBound(cursor.sortValue(), cursor.id(), true);
+                for (int i = from; i < sortedCount && result.size() < limit; i++) {
+                    collect(slotsByRent[i], matches, restrictTo, result);
+                }
+            } else {
+                int[] order;
+                int from;
+                if (sort == PropertySort.NEWEST) {
+                    order = slotsByNewest;
+                    from = cursor == null ? sortedCount : newestBound(toNanos(cursor.createdAt()), cursor.id());
+                } else {
+                    order = slotsByRent;
+                    from = cursor == null ? sortedCount : rentBound(cursor.sortValue(), cursor.id(), false);
+                }
+                // Ordem decrescente: começa logo antes da posição do cursor e anda para trás
+                for (int i = from - 1; i >= 0 && result.size() < limit; i--) {
+                    collect(order[i], matches, restrictTo, result);
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Devolve, dentre os candidatos (ex: encontrados pela busca textual ou geográfica),
+     * os que satisfazem os filtros. O custo é proporcional ao número de candidatos.
+     */
+    public List<UUID> retainMatching(PropertySearchFilter filter, Collection<UUID> candidates) {
+        return read(() -> {
+            BitSet matches = matchLocked(filter);
+            List<UUID> ids = new ArrayList<>(Math.min(candidates.size(), 1024));
+            for (UUID id : candidates) {
+                Integer slot = slotById.get(id);
+                if (slot != null && matches.get(slot)) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        });
+    }
+
+    /**
+     * Conta as facetas da busca numa única passada sobre os bitmaps, sem listar os imóveis.
+     * Cada faceta ignora o próprio filtro (ver {@link PropertyFacetsDto}).
+     * @param restrictTo Se não for nulo, considera apenas estes ids (ex: os encontrados pela busca textual).
+     */
+    public PropertyFacetsDto facets(PropertySearchFilter filter, Collection<UUID> restrictTo) {
+        return read(() -> {
+            BitSet restriction = restrictTo != null ? slotsOf(restrictTo) : live;
+
+            BitSet all = matchLocked(filter);
+            all.and(restriction);
+
+            BitSet anyType = matchLocked(new PropertySearchFilter(null, filter.maxRent(), filter.minRooms(), filter.hasGarage()));
+            anyType.and(restriction);
+            List<FacetCountDto> types = new ArrayList<>();
+            for (PropertyType type : PropertyType.values()) {
+                types.add(new FacetCountDto(type.name(), intersectionCount(anyType, byType.get(type))));
+            }
+
+            BitSet anyRooms = matchLocked(new PropertySearchFilter(filter.type(), filter.maxRent(), null, filter.hasGarage()));
+            anyRooms.and(restriction);
+            long[] roomCounts = new long[roomBuckets.length];
+            for (int slot = anyRooms.nextSetBit(0); slot >= 0; slot = anyRooms.nextSetBit(slot + 1)) {
+                for (int b = 0; b < roomBuckets.length && roomsBySlot[slot] >= roomBuckets[b]; b++) {
+                    roomCounts[b]++;
+                }
+            }
+
+            BitSet anyRent = matchLocked(new PropertySearchFilter(filter.type(), null, filter.minRooms(), filter.hasGarage()));
+            anyRent.and(restriction);
+            long[] rentCounts = new long[rentBands.length];
+            for (int slot = anyRent.nextSetBit(0); slot >= 0; slot = anyRent.nextSetBit(slot + 1)) {
+                for (int b = rentBands.length - 1; b >= 0 && rentBySlot[slot] <= rentBands[b]; b--) {
+                    rentCounts[b]++;
+                }
+            }
+
+            BitSet anyGarage = matchLocked(new PropertySearchFilter(filter.type(), filter.maxRent(), filter.minRooms(), null));
+            anyGarage.and(restriction);
+
+            List<FacetCountDto> rooms = new ArrayList<>();
+            for (int b = 0; b < roomBuckets.length; b++) {
+                rooms.add(new FacetCountDto(Integer.toString(roomBuckets[b]), roomCounts[b]));
+            }
+            List<FacetCountDto> rents = new ArrayList<>();
+            for (int b = 0; b < rentBands.length; b++) {
+                rents.add(new FacetCountDto(formatRent(rentBands[b]), rentCounts[b]));
+            }
+            return new PropertyFacetsDto(all.cardinality(), types, rooms, rents,
+                    intersectionCount(anyGarage, withGarage), intersectionCount(all, furnished));
+        });
+    }
+
+    // Executa a consulta com o lock de leitura; as visões ordenadas estão sempre em dia
+    private <T> T read(Supplier<T> query) {
+        lock.readLock().lock();
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Internos (chamados com o lock adquirido) ---
+
+    private BitSet matchLocked(PropertySearchFilter filter) {
+        BitSet result = (BitSet) live.clone();
+        if (filter.type() != null) {
+            result.and(byType.get(filter.type()));
+        }
+        if (filter.requiresGarage()) {
+            result.and(withGarage);
+        }
+        if (filter.maxRent() != null) {
+            // Prefixo do array ordenado por aluguel com valor <= maxRent
+            int end = upperBound(sortedRent, sortedCount, filter.maxRent());
+            result.and(slotsToBitSet(slotsByRent, 0, end));
+        }
+        if (filter.minRooms() != null) {
+            // Sufixo do array ordenado por quartos com valor >= minRooms
+            int start = lowerBound(sortedRooms, sortedCount, filter.minRooms());
+            result.and(slotsToBitSet(slotsByRooms, start, sortedCount));
+        }
+        return result;
+    }
+
+    private void collect(int slot, BitSet matches, Predicate<UUID> restrictTo, List<UUID> result) {
+        if (matches.get(slot) && restrictTo.test(idBySlot[slot])) {
+            result.add(idBySlot[slot]);
+        }
+    }
+
+    // Grava os dados do imóvel num slot livre; as visões ordenadas ficam por conta de quem chama
+    private int putSlot(PropertySnapshot snapshot) {
+        int slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.nextSetBit(0);
+        freeSlots.clear(slot);
+        ensureCapacity(slot + 1);
+
+        idBySlot[slot] = snapshot.id();
+        rentBySlot[slot] = snapshot.rentValue();
+        roomsBySlot[slot] = snapshot.rooms();
+        createdBySlot[slot] = toNanos(snapshot.createdAt());
+        slotById.put(snapshot.id(), slot);
+
+        live.set(slot);
+        if (snapshot.type() != null) byType.get(snapshot.type()).set(slot);
+        if (snapshot.hasGarage()) withGarage.set(slot);
+        if (snapshot.furnished()) furnished.set(slot);
+        return slot;
+    }
+
+    private void removeSlot(UUID id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        // Sai das visões ordenadas antes de o id do slot ser apagado (ele desempata a posição)
+        removeSorted(slot);
+        live.clear(slot);
+        byType.values().forEach(bits -> bits.clear(slot));
+        withGarage.clear(slot);
+        furnished.clear(slot);
+        idBySlot[slot] = null;
+        freeSlots.set(slot);
+    }
+
+    // Insere o slot na posição certa de cada visão ordenada
+    private void insertSorted(int slot) {
+        ensureSortedCapacity(sortedCount + 1);
+        int rentAt = rentBound(rentBySlot[slot], idBySlot[slot], false);
+        System.arraycopy(slotsByRent, rentAt, slotsByRent, rentAt + 1, sortedCount - rentAt);
+        System.arraycopy(sortedRent, rentAt, sortedRent, rentAt + 1, sortedCount - rentAt);
+        slotsByRent[rentAt] = slot;
+        sortedRent[rentAt] = rentBySlot[slot];
+
+        int roomsAt = roomsBound(roomsBySlot[slot], slot);
+        System.arraycopy(slotsByRooms, roomsAt, slotsByRooms, roomsAt + 1, sortedCount - roomsAt);
+        System.arraycopy(sortedRooms, roomsAt, sortedRooms, roomsAt + 1, sortedCount - roomsAt);
+        slotsByRooms[roomsAt] = slot;
+        sortedRooms[roomsAt] = roomsBySlot[slot];
+
+        int newestAt = newestBound(createdBySlot[slot], idBySlot[slot]);
+        System.arraycopy(slotsByNewest, newestAt, slotsByNewest, newestAt + 1, sortedCount - newestAt);
+        System.arraycopy(sortedCreated, newestAt, sortedCreated, newestAt + 1, sortedCount - newestAt);
+        slotsByNewest[newestAt] = slot;
+        sortedCreated[newestAt] = createdBySlot[slot];
+
+        sortedCount++;
+    }
+
+    private void removeSorted(int slot) {
+        int rentAt = rentBound(rentBySlot[slot], idBySlot[slot], false);
+        int roomsAt = roomsBound(roomsBySlot[slot], slot);
+        int newestAt = newestBound(createdBySlot[slot], idBySlot[slot]);
+        int tail = sortedCount - 1;
+        System.arraycopy(slotsByRent, rentAt + 1, slotsByRent, rentAt, tail - rentAt);
+        System.arraycopy(sortedRent, rentAt + 1, sortedRent, rentAt, tail - rentAt);
+        System.arraycopy(slotsByRooms, roomsAt + 1, slotsByRooms, roomsAt, tail - roomsAt);
+        System.arraycopy(sortedRooms, roomsAt + 1, sortedRooms, roomsAt, tail - roomsAt);
+        System.arraycopy(slotsByNewest, newestAt + 1, slotsByNewest, newestAt, tail - newestAt);
+        System.arraycopy(sortedCreated, newestAt + 1, sortedCreated, newestAt, tail - newestAt);
+        sortedCount = tail;
+    }
+
+    // Ordena tudo de uma vez; usado só na reconstrução completa
+    private void sortAll() {
+        int[] slots = live.stream().toArray();
+        sortedCount = slots.length;
+        ensureSortedCapacity(sortedCount);
+        Integer[] boxed = IntStream.of(slots).boxed().toArray(Integer[]::new);
+
+        Arrays.sort(boxed, Comparator.<Integer>comparingDouble(s -> rentBySlot[s])
+                .thenComparing(s -> idBySlot[s], ID_ORDER));
+        for (int i = 0; i < sortedCount; i++) {
+            slotsByRent[i] = boxed[i];
+            sortedRent[i] = rentBySlot[boxed[i]];
+        }
+
+        Arrays.sort(boxed, Comparator.<Integer>comparingInt(s -> roomsBySlot[s]).thenComparingInt(s -> s));
+        for (int i = 0; i < sortedCount; i++) {
+            slotsByRooms[i] = boxed[i];
+            sortedRooms[i] = roomsBySlot[boxed[i]];
+        }
+
+        Arrays.sort(boxed, Comparator.<Integer>comparingLong(s -> createdBySlot[s])
+                .thenComparing(s -> idBySlot[s], ID_ORDER));
+        for (int i = 0; i < sortedCount; i++) {
+            slotsByNewest[i] = boxed[i];
+            sortedCreated[i] = createdBySlot[boxed[i]];
+        }
+    }
+
+    // Primeira posição com (aluguel, id) >= a chave, ou > a chave quando "strictlyAfter"
+    private int rentBound(double rent, UUID id, boolean strictlyAfter) {
+        int low = 0, high = sortedCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Double.compare(sortedRent[mid], rent);
+            if (cmp == 0) cmp = ID_ORDER.compare(idBySlot[slotsByRent[mid]], id);
+            if (cmp < 0 || (strictlyAfter && cmp == 0)) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    // Primeira posição com (quartos, slot) >= a chave
+    private int roomsBound(int rooms, int slot) {
+        int low = 0, high = sortedCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Integer.compare(sortedRooms[mid], rooms);
+            if (cmp == 0) cmp = Integer.compare(slotsByRooms[mid], slot);
+            if (cmp < 0) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    // Primeira posição com (createdAt, id) >= a chave
+    private int newestBound(long created, UUID id) {
+        int low = 0, high = sortedCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Long.compare(sortedCreated[mid], created);
+            if (cmp == 0) cmp = ID_ORDER.compare(idBySlot[slotsByNewest[mid]], id);
+            if (cmp < 0) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    private void ensureSortedCapacity(int capacity) {
+        if (capacity <= slotsByRent.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, slotsByRent.length * 2);
+        slotsByRent = Arrays.copyOf(slotsByRent, newLength);
+        sortedRent = Arrays.copyOf(sortedRent, newLength);
+        slotsByRooms = Arrays.copyOf(slotsByRooms, newLength);
+        sortedRooms = Arrays.copyOf(sortedRooms, newLength);
+        slotsByNewest = Arrays.copyOf(slotsByNewest, newLength);
+        sortedCreated = Arrays.copyOf(sortedCreated, newLength);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= idBySlot.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, idBySlot.length * 2);
+        idBySlot = Arrays.copyOf(idBySlot, newLength);
+        rentBySlot = Arrays.copyOf(rentBySlot, newLength);
+        roomsBySlot = Arrays.copyOf(roomsBySlot, newLength);
+        createdBySlot = Arrays.copyOf(createdBySlot, newLength);
+    }
+
+    private BitSet slotsOf(Collection<UUID> ids) {
+        BitSet bits = new BitSet();
+        for (UUID id : ids) {
+            Integer slot = slotById.get(id);
+            if (slot != null) {
+                bits.set(slot);
+            }
+        }
+        return bits;
+    }
+
+    private static long intersectionCount(BitSet a, BitSet b) {
+        BitSet both = (BitSet) a.clone();
+        both.and(b);
+        return both.cardinality();
+    }
+
+    // 1500.0 -> "1500", para que o valor possa ser reenviado como está no parâmetro maxRent
+    private static String formatRent(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static BitSet slotsToBitSet(int[] slots, int from, int to) {
+        BitSet bits = new BitSet();
+        for (int i = from; i < to; i++) {
+            bits.set(slots[i]);
+        }
+        return bits;
+    }
+
+    // Primeiro índice (dentre os "length" primeiros) cujo valor é > key
+    private static int upperBound(double[] values, int length, double key) {
+        int low = 0, high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= key) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    // Primeiro índice (dentre os "length" primeiros) cujo valor é >= key
+    private static int lowerBound(int[] values, int length, int key) {
+        int low = 0, high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    private static long toNanos(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return Long.MIN_VALUE;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+}
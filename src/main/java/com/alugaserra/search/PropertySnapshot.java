@@ -0,0 +1,63 @@
+package com.alugaserra.search;
+
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.model.Property;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Cópia imutável dos campos de um imóvel que interessam aos índices de busca em memória.
+ * Como a entidade é alterada no próprio lugar durante uma atualização, a cópia permite
+ * comparar o estado anterior com o novo.
+ */
+public record PropertySnapshot(
+        UUID id,
+        PropertyType type,
+        PropertyStatus status,
+        double rentValue,
+        int rooms,
+        boolean hasGarage,
+        boolean furnished,
+        LocalDateTime createdAt,
+        String title,
+        String description,
+        String approximateLocation,
+        Double latitude,
+        Double longitude
+) {
+    // Imóvel sem coordenadas
+    public PropertySnapshot(UUID id, PropertyType type, PropertyStatus status, double rentValue, int rooms,
+                            boolean hasGarage, boolean furnished, LocalDateTime createdAt,
+                            String title, String description, String approximateLocation) {
+        this(id, type, status, rentValue, rooms, hasGarage, furnished, createdAt, title, description, approximateLocation,
+                null, null);
+    }
+
+    public static PropertySnapshot of(Property property) {
+        return new PropertySnapshot(
+                property.getId(),
+                property.getType(),
+                property.getStatus(),
+                property.getRentValue(),
+                property.getRooms(),
+                property.isHasGarage(),
+                property.isFurnished(),
+                property.getCreatedAt(),
+                property.getTitle(),
+                property.getDescription(),
+                property.getApproximateLocation(),
+                property.getLatitude(),
+                property.getLongitude()
+        );
+    }
+
+    public boolean isActive() {
+        return status == PropertyStatus.ACTIVE;
+    }
+
+    public boolean hasCoordinates() {
+        return latitude != null && longitude != null;
+    }
+}
@@ -0,0 +1,430 @@
+package com.alugaserra.search;
+
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.event.PropertyChangedEvent;
+import com.alugaserra.repository.PropertyRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Índice invertido incremental para a busca textual sobre título, descrição e localização
+ * dos imóveis ATIVOS, com ranqueamento BM25 (variante BM25F, com peso por campo).
+ *
+ * O índice é alimentado pelos eventos {@link PropertyChangedEvent} (e, para as escritas de outros
+ * nós, pelo {@link SearchIndexCatchUp}) e gravado periodicamente em disco
+ * (properties.search.text-index.path). Ao reiniciar, o arquivo é carregado e apenas os
+ * imóveis alterados desde a gravação são reindexados, sem reprocessar o catálogo inteiro.
+ */
+@Component
+public class PropertyTextIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PropertyTextIndex.class);
+
+    // Campos indexados e seus pesos: um termo no título vale mais que na descrição.
+    private static final int TITLE = 0, DESCRIPTION = 1, LOCATION = 2, FIELDS = 3;
+    private static final double[] FIELD_WEIGHTS = {2.0, 1.0, 1.5};
+
+    // Parâmetros clássicos do BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final int FILE_MAGIC = 0x41535449; // "ASTI"
+    // Suba a versão sempre que o PortugueseAnalyzer mudar: os termos gravados deixam de bater com as consultas
+    private static final int FILE_VERSION = 2;
+
+    // Margem de segurança ao reindexar depois de um restart (relógios, transações em andamento)
+    private static final long CATCH_UP_MARGIN_SECONDS = 300;
+
+    @Autowired
+    private PropertyRepository propertyRepository;
+
+    // Caminho do arquivo do índice. Vazio = índice apenas em memória.
+    @Value("${properties.search.text-index.path:data/property-text-index.bin}")
+    private String indexPath;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // termo -> (imóvel -> frequência do termo em cada campo)
+    private final Map<String, Map<UUID, int[]>> postings = new HashMap<>();
+    // imóvel -> documento indexado (necessário para removê-lo das postings)
+    private final Map<UUID, IndexedDocument> documents = new HashMap<>();
+    private final long[] totalFieldLengths = new long[FIELDS];
+
+    private volatile boolean ready = false;
+    private volatile boolean dirty = false;
+
+    private record IndexedDocument(int[] fieldLengths, Map<String, int[]> termFrequencies) {
+    }
+
+    // --- Inicialização e persistência ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        long start = System.nanoTime();
+        Path path = resolvePath();
+        LocalDateTime snapshotTime = null;
+
+        if (path != null && Files.exists(path)) {
+            try {
+                snapshotTime = load(path);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Não foi possível carregar o índice textual de {}. Ele será reconstruído.", path, e);
+                clear();
+            }
+        }
+
+        if (snapshotTime == null) {
+            rebuild(propertyRepository.findSnapshotsByStatus(PropertyStatus.ACTIVE));
+        } else {
+            catchUp(snapshotTime.minusSeconds(CATCH_UP_MARGIN_SECONDS));
+        }
+        ready = true;
+        dirty = true;
+        flushIfDirty();
+        log.info("Índice textual de imóveis pronto com {} documentos em {} ms ({})",
+                size(), (System.nanoTime() - start) / 1_000_000, snapshotTime == null ? "reconstruído" : "carregado do disco");
+    }
+
+    /**
+     * Reindexa os imóveis alterados depois do instante informado e remove os que deixaram de estar ativos.
+     */
+    private void catchUp(LocalDateTime since) {
+        for (PropertySnapshot snapshot : propertyRepository.findSnapshotsUpdatedSince(since)) {
+            index(snapshot);
+        }
+        Set<UUID> activeIds = new HashSet<>(propertyRepository.findIdsByStatus(PropertyStatus.ACTIVE));
+        lock.writeLock().lock();
+        try {
+            for (UUID id : Set.copyOf(documents.keySet())) {
+                if (!activeIds.contains(id)) {
+                    removeLocked(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${properties.search.text-index.flush-interval-ms:60000}")
+    public void flushIfDirty() {
+        Path path = resolvePath();
+        if (path == null || !ready || !dirty) {
+            return;
+        }
+        try {
+            save(path);
+        } catch (IOException e) {
+            log.error("Falha ao gravar o índice textual em {}", path, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushIfDirty();
+    }
+
+    // --- Manutenção ---
+
+    public void rebuild(Collection<PropertySnapshot> snapshots) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (PropertySnapshot snapshot : snapshots) {
+                if (snapshot.isActive()) {
+                    addLocked(snapshot.id(), analyzeFields(snapshot));
+                }
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onPropertyChanged(PropertyChangedEvent event) {
+        if (event.after() != null) {
+            index(event.after());
+        } else {
+            remove(event.before().id());
+        }
+    }
+
+    /**
+     * Indexa (ou reindexa) um imóvel. Imóveis que não estão ativos são removidos do índice.
+     */
+    public void index(PropertySnapshot snapshot) {
+        // A análise do texto acontece fora do lock, que fica reservado para a troca das postings.
+        List<List<String>> fields = snapshot.isActive() ? analyzeFields(snapshot) : null;
+        lock.writeLock().lock();
+        try {
+            removeLocked(snapshot.id());
+            if (fields != null) {
+                addLocked(snapshot.id(), fields);
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            if (removeLocked(id)) {
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // --- Consultas ---
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indica se a consulta tem ao menos um termo pesquisável depois da análise
+     * (uma consulta só com palavras vazias, como "de com", não tem).
+     */
+    public static boolean hasSearchableTerms(String query) {
+        return query != null && !PortugueseAnalyzer.analyze(query).isEmpty();
+    }
+
+    /**
+     * Calcula a pontuação BM25 de cada imóvel que contém ao menos um dos termos da consulta.
+     * @return Mapa de id do imóvel para pontuação (quanto maior, mais relevante).
+     */
+    public Map<UUID, Double> search(String query) {
+        Set<String> terms = new LinkedHashSet<>(PortugueseAnalyzer.analyze(query));
+        Map<UUID, Double> scores = new HashMap<>();
+        if (terms.isEmpty()) {
+            return scores;
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return scores;
+            }
+            double[] averageLengths = new double[FIELDS];
+            for (int f = 0; f < FIELDS; f++) {
+                averageLengths[f] = Math.max(1.0, (double) totalFieldLengths[f] / documentCount);
+            }
+
+            for (String term : terms) {
+                Map<UUID, int[]> termPostings = postings.get(term);
+                if (termPostings == null) {
+                    continue;
+                }
+                int df = termPostings.size();
+                double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+
+                for (Map.Entry<UUID, int[]> posting : termPostings.entrySet()) {
+                    int[] lengths = documents.get(posting.getKey()).fieldLengths();
+                    int[] tf = posting.getValue();
+
+                    // BM25F: frequência ponderada e normalizada pelo tamanho de cada campo
+                    double weightedTf = 0;
+                    for (int f = 0; f < FIELDS; f++) {
+                        if (tf[f] > 0) {
+                            weightedTf += FIELD_WEIGHTS[f] * tf[f] / (1 - B + B * lengths[f] / averageLengths[f]);
+                        }
+                    }
+                    double termScore = idf * weightedTf / (K1 + weightedTf);
+                    scores.merge(posting.getKey(), termScore, Double::sum);
+                }
+            }
+            return scores;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Internos ---
+
+    private static List<List<String>> analyzeFields(PropertySnapshot snapshot) {
+        return List.of(
+                PortugueseAnalyzer.analyze(snapshot.title()),
+                PortugueseAnalyzer.analyze(snapshot.description()),
+                PortugueseAnalyzer.analyze(snapshot.approximateLocation()));
+    }
+
+    private void addLocked(UUID id, List<List<String>> fields) {
+        int[] lengths = new int[FIELDS];
+        Map<String, int[]> frequencies = new HashMap<>();
+        for (int f = 0; f < FIELDS; f++) {
+            List<String> terms = fields.get(f);
+            lengths[f] = terms.size();
+            for (String term : terms) {
+                frequencies.computeIfAbsent(term, t -> new int[FIELDS])[f]++;
+            }
+        }
+        addLocked(id, new IndexedDocument(lengths, frequencies));
+    }
+
+    private void addLocked(UUID id, IndexedDocument document) {
+        documents.put(id, document);
+        for (int f = 0; f < FIELDS; f++) {
+            totalFieldLengths[f] += document.fieldLengths()[f];
+        }
+        document.termFrequencies().forEach((term, tf) ->
+                postings.computeIfAbsent(term, t -> new HashMap<>()).put(id, tf));
+    }
+
+    private boolean removeLocked(UUID id) {
+        IndexedDocument document = documents.remove(id);
+        if (document == null) {
+            return false;
+        }
+        for (int f = 0; f < FIELDS; f++) {
+            totalFieldLengths[f] -= document.fieldLengths()[f];
+        }
+        for (String term : document.termFrequencies().keySet()) {
+            Map<UUID, int[]> termPostings = postings.get(term);
+            if (termPostings != null) {
+                termPostings.remove(id);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void clear() {
+        postings.clear();
+        documents.clear();
+        for (int f = 0; f < FIELDS; f++) {
+            totalFieldLengths[f] = 0;
+        }
+    }
+
+    private Path resolvePath() {
+        return indexPath == null || indexPath.isBlank() ? null : Path.of(indexPath);
+    }
+
+    /**
+     * Grava o índice (apenas o índice "direto" por documento; as postings são refeitas na carga)
+     * num arquivo temporário e o move atomicamente para o destino.
+     */
+    private void save(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, "text-index", ".tmp");
+
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            dirty = false;
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(Instant.now().toEpochMilli());
+            out.writeInt(documents.size());
+            for (Map.Entry<UUID, IndexedDocument> entry : documents.entrySet()) {
+                out.writeLong(entry.getKey().getMostSignificantBits());
+                out.writeLong(entry.getKey().getLeastSignificantBits());
+                IndexedDocument document = entry.getValue();
+                for (int f = 0; f < FIELDS; f++) {
+                    out.writeInt(document.fieldLengths()[f]);
+                }
+                out.writeInt(document.termFrequencies().size());
+                for (Map.Entry<String, int[]> term : document.termFrequencies().entrySet()) {
+                    out.writeUTF(term.getKey());
+                    for (int f = 0; f < FIELDS; f++) {
+                        out.writeInt(term.getValue()[f]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            dirty = true;
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Carrega o índice gravado em disco.
+     * @return O instante em que o arquivo foi gravado.
+     */
+    private LocalDateTime load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(path))))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("Formato de arquivo de índice desconhecido");
+            }
+            LocalDateTime savedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()), ZoneOffset.systemDefault());
+            int documentCount = in.readInt();
+
+            lock.writeLock().lock();
+            try {
+                clear();
+                for (int d = 0; d < documentCount; d++) {
+                    UUID id = new UUID(in.readLong(), in.readLong());
+                    int[] lengths = new int[FIELDS];
+                    for (int f = 0; f < FIELDS; f++) {
+                        lengths[f] = in.readInt();
+                    }
+                    int termCount = in.readInt();
+                    Map<String, int[]> frequencies = new HashMap<>(termCount * 2);
+                    for (int t = 0; t < termCount; t++) {
+                        String term = in.readUTF();
+                        int[] tf = new int[FIELDS];
+                        for (int f = 0; f < FIELDS; f++) {
+                            tf[f] = in.readInt();
+                        }
+                        frequencies.put(term, tf);
+                    }
+                    addLocked(id, new IndexedDocument(lengths, frequencies));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return savedAt;
+        }
+    }
+}
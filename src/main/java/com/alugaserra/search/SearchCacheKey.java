@@ -0,0 +1,48 @@
+package com.alugaserra.search;
+
+import com.alugaserra.dto.PropertySearchFilter;
+import com.alugaserra.enums.PropertySort;
+import com.alugaserra.enums.PropertyType;
+
+/**
+ * Chave normalizada de uma página da busca estruturada de imóveis.
+ * Filtros equivalentes geram a mesma chave (ex: hasGarage=false e hasGarage ausente,
+ * ou minRooms=0 e minRooms ausente), para que compartilhem a mesma entrada no cache.
+ */
+public record SearchCacheKey(
+        PropertyType type,
+        Double maxRent,
+        Integer minRooms,
+        boolean requiresGarage,
+        PropertySort sort,
+        String cursor, // Nulo na primeira página
+        int pageSize
+) {
+    public static SearchCacheKey of(PropertySearchFilter filter, PropertySort sort, String cursor, int pageSize) {
+        return new SearchCacheKey(
+                filter.type(),
+                filter.maxRent(),
+                filter.minRooms() != null && filter.minRooms() > 0 ? filter.minRooms() : null,
+                filter.requiresGarage(),
+                sort,
+                cursor != null && !cursor.isBlank() ? cursor : null,
+                pageSize);
+    }
+
+    /**
+     * Indica se o imóvel, nesse estado, pode aparecer em alguma página desta busca.
+     */
+    public boolean couldContain(PropertySnapshot property) {
+        return property != null
+                && property.isActive()
+                && (type == null || property.type() == type)
+                && (maxRent == null || property.rentValue() <= maxRent)
+                && (minRooms == null || property.rooms() >= minRooms)
+                && (!requiresGarage || property.hasGarage());
+    }
+
+    // Tamanho aproximado da chave em memória, usado na contabilidade do cache
+    int estimatedBytes() {
+        return 96 + (cursor != null ? 40 + 2 * cursor.length() : 0);
+    }
+}
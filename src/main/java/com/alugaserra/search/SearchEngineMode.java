@@ -0,0 +1,11 @@
+package com.alugaserra.search;
+
+/**
+ * Define qual caminho responde à busca estruturada de imóveis
+ * (propriedade "properties.search.engine").
+ */
+public enum SearchEngineMode {
+    JPA,     // Consulta o banco com as especificações JPA (padrão)
+    INDEX,   // Resolve os filtros no índice em memória e busca no banco apenas a página
+    COMPARE  // Executa os dois caminhos, registra divergências no log e responde com o JPA
+}
@@ -0,0 +1,82 @@
+package com.alugaserra.search;
+
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.repository.PropertyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Leva aos índices em memória ({@link PropertyFilterIndex}, {@link PropertyTextIndex} e
+ * {@link GeoGridIndex}) as escritas feitas em outros nós, que não passam pelos eventos deste.
+ * É chamado pelo {@link CatalogVersion} sempre que o resumo do catálogo no banco muda.
+ *
+ * Os imóveis alterados desde a última alteração já vista (menos uma margem, para transações que
+ * gravaram o instante antes de outras mas fizeram commit depois, e para relógios de nós
+ * diferentes) são relidos e reindexados. Uma remoção não deixa linha para reler: se depois disso
+ * a quantidade de imóveis ativos no banco não bate com a do índice, os três são reconstruídos.
+ */
+@Component
+public class SearchIndexCatchUp {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexCatchUp.class);
+
+    @Autowired
+    private PropertyRepository propertyRepository;
+
+    @Autowired
+    private PropertyFilterIndex propertyFilterIndex;
+
+    @Autowired
+    private PropertyTextIndex propertyTextIndex;
+
+    @Autowired
+    private GeoGridIndex geoGridIndex;
+
+    @Value("${properties.search.catch-up-margin:60s}")
+    private Duration margin = Duration.ofSeconds(60);
+
+    /**
+     * @param lastSeenUpdate A última alteração que o resumo anterior já mostrava (nula com o catálogo vazio).
+     */
+    public void catchUp(LocalDateTime lastSeenUpdate) {
+        // Na subida, cada índice faz a própria carga completa
+        if (!propertyFilterIndex.isReady() || !propertyTextIndex.isReady() || !geoGridIndex.isReady()) {
+            return;
+        }
+        if (lastSeenUpdate == null) {
+            rebuild();
+            return;
+        }
+        List<PropertySnapshot> changed = propertyRepository.findSnapshotsUpdatedSince(lastSeenUpdate.minus(margin));
+        for (PropertySnapshot snapshot : changed) {
+            if (snapshot.isActive()) {
+                propertyFilterIndex.upsert(snapshot);
+            } else {
+                propertyFilterIndex.remove(snapshot.id());
+            }
+            propertyTextIndex.index(snapshot);
+            geoGridIndex.index(snapshot);
+        }
+        long active = propertyRepository.countByStatus(PropertyStatus.ACTIVE);
+        if (propertyFilterIndex.size() != active || propertyTextIndex.size() != active) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        List<PropertySnapshot> active = propertyRepository.findSnapshotsByStatus(PropertyStatus.ACTIVE);
+        propertyFilterIndex.rebuild(active);
+        propertyTextIndex.rebuild(active);
+        geoGridIndex.rebuild(active);
+        log.info("Índices de busca reconstruídos com {} imóveis ativos em {} ms para alcançar outros nós",
+                active.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,205 @@
+package com.alugaserra.search;
+
+import com.alugaserra.event.PropertyChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Cache LRU, limitado em bytes, das páginas já serializadas (JSON) da busca pública de imóveis.
+ *
+ * A invalidação é dirigida pelas escritas: quando um imóvel muda, saem do cache apenas as buscas
+ * cujos filtros aceitam o estado anterior ou o novo do imóvel. As demais continuam válidas,
+ * pois o imóvel não aparece (nem passa a aparecer) nelas. O TTL é só uma rede de segurança para
+ * mudanças que não passam por eventos (ex: nome ou telefone do dono).
+ */
+@Component
+public class SearchResultCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${properties.search.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${properties.search.cache.max-size:16MB}")
+    private DataSize maxSize;
+
+    @Value("${properties.search.cache.ttl:60s}")
+    private Duration ttl;
+
+    Clock clock = Clock.systemUTC();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // accessOrder = true: a iteração começa pela entrada usada há mais tempo
+    private final LinkedHashMap<SearchCacheKey, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes = 0;
+
+    // Incrementado a cada invalidação; uma página calculada antes dela não é guardada.
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictedBySize;
+    private Counter evictedByTtl;
+    private Counter evictedByWrite;
+
+    private record Entry(byte[] value, long expiresAtMillis, int weight) {
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        hits = Counter.builder("properties.search.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("properties.search.cache.requests").tag("result", "miss").register(meterRegistry);
+        evictedBySize = evictionCounter("size");
+        evictedByTtl = evictionCounter("expired");
+        evictedByWrite = evictionCounter("invalidated");
+        Gauge.builder("properties.search.cache.size", this, SearchResultCache::sizeInBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("properties.search.cache.entries", this, SearchResultCache::entryCount)
+                .register(meterRegistry);
+    }
+
+    private Counter evictionCounter(String cause) {
+        return Counter.builder("properties.search.cache.evictions").tag("cause", cause).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Devolve a página guardada para a chave ou, se não houver, calcula-a com o "loader" e a guarda.
+     */
+    public byte[] getOrCompute(SearchCacheKey key, Supplier<byte[]> loader) {
+        byte[] cached = get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        long invalidationsBefore = invalidations.get();
+        byte[] value = loader.get();
+        put(key, value, invalidationsBefore);
+        return value;
+    }
+
+    private byte[] get(SearchCacheKey key) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtMillis() <= clock.millis()) {
+                removeLocked(key);
+                evictedByTtl.increment();
+                return null;
+            }
+            return entry.value();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(SearchCacheKey key, byte[] value, long invalidationsBefore) {
+        int weight = value.length + key.estimatedBytes();
+        long capacity = maxSize.toBytes();
+        if (weight > capacity) {
+            return;
+        }
+        lock.lock();
+        try {
+            // Um imóvel mudou enquanto a página era calculada: ela pode já estar desatualizada.
+            if (invalidations.get() != invalidationsBefore) {
+                return;
+            }
+            removeLocked(key);
+            entries.put(key, new Entry(value, clock.millis() + ttl.toMillis(), weight));
+            currentBytes += weight;
+
+            Iterator<Map.Entry<SearchCacheKey, Entry>> eldest = entries.entrySet().iterator();
+            while (currentBytes > capacity && eldest.hasNext()) {
+                currentBytes -= eldest.next().getValue().weight();
+                eldest.remove();
+                evictedBySize.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener
+    public void onPropertyChanged(PropertyChangedEvent event) {
+        lock.lock();
+        try {
+            invalidations.incrementAndGet();
+            Iterator<Map.Entry<SearchCacheKey, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<SearchCacheKey, Entry> entry = it.next();
+                SearchCacheKey key = entry.getKey();
+                if (key.couldContain(event.before()) || key.couldContain(event.after())) {
+                    currentBytes -= entry.getValue().weight();
+                    it.remove();
+                    evictedByWrite.increment();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            invalidations.incrementAndGet();
+            evictedByWrite.increment(entries.size());
+            entries.clear();
+            currentBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeLocked(SearchCacheKey key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.weight();
+        }
+    }
+
+    public long sizeInBytes() {
+        lock.lock();
+        try {
+            return currentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int entryCount() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.alugaserra.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métricas da autenticação por token, etapa por etapa (security.auth.stage) e falhas por motivo
+ * (security.auth.failures). Ficam no endpoint /actuator/metrics, com percentis e histograma.
+ *
+ * Todos os medidores são registrados aqui, uma vez só: no caminho de sucesso, medir é ler
+ * System.nanoTime() e somar no Timer já pronto, sem montar tags nem objetos por requisição.
+ */
+@Component
+public class AuthMetrics {
+
+    public enum Stage {
+        RECOVER,   // Leitura do token do cabeçalho Authorization
+        VERIFY,    // verifyToken inteiro (cache de tokens já verificados + HMAC)
+        HMAC,      // Só a verificação criptográfica e o parse, quando o token não está no cache
+        PRINCIPAL  // Montagem do usuário autenticado (revogações, versão, cache de usuários)
+    }
+
+    public enum Failure {
+        MALFORMED,       // Token que não é um JWT
+        EXPIRED,
+        BAD_SIGNATURE,
+        INVALID_CLAIMS,  // Emissor errado, claims com formato inválido etc.
+        REVOKED_SESSION, // Sessão encerrada pelo logout
+        REVOKED_VERSION, // Tokens revogados pela troca de papel
+        UNKNOWN_USER
+    }
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Failure, Counter> failureCounters = new EnumMap<>(Failure.class);
+    private final Counter tokenCacheHits;
+    private final Counter tokenCacheMisses;
+
+    public AuthMetrics(MeterRegistry meterRegistry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("security.auth.stage")
+                    .tag("stage", name(stage))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        for (Failure failure : Failure.values()) {
+            failureCounters.put(failure, Counter.builder("security.auth.failures")
+                    .tag("reason", name(failure))
+                    .register(meterRegistry));
+        }
+        tokenCacheHits = Counter.builder("security.auth.token-cache").tag("result", "hit").register(meterRegistry);
+        tokenCacheMisses = Counter.builder("security.auth.token-cache").tag("result", "miss").register(meterRegistry);
+    }
+
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    /**
+     * Registra a duração de uma etapa que começou em {@code startNanos} (valor de System.nanoTime()).
+     */
+    public void recordStage(Stage stage, long startNanos) {
+        stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFailure(Failure failure) {
+        failureCounters.get(failure).increment();
+    }
+
+    public void recordTokenCache(boolean hit) {
+        (hit ? tokenCacheHits : tokenCacheMisses).increment();
+    }
+}
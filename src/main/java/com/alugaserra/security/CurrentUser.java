@@ -0,0 +1,21 @@
+package com.alugaserra.security;
+
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injeta a entidade {@link com.alugaserra.model.User} do usuário autenticado num parâmetro de controller.
+ * Com o {@link UserPrincipal} (modo sem estado), a entidade é carregada do banco só neste momento.
+ * Quem precisa apenas do id deve preferir {@code @AuthenticationPrincipal(expression = "id") UUID}, que não consulta o banco.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@AuthenticationPrincipal(expression = "#this instanceof T(com.alugaserra.security.UserPrincipal) ? user : #this")
+public @interface CurrentUser {
+}
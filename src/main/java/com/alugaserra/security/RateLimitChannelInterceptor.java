@@ -0,0 +1,41 @@
+package com.alugaserra.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aplica o {@link RateLimiter} às mensagens STOMP enviadas para /app/chat.sendMessage.
+ * Mensagens acima do limite são descartadas (o cliente segue conectado).
+ */
+@Component
+public class RateLimitChannelInterceptor implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitChannelInterceptor.class);
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.SEND
+                || !RateLimitedRoute.CHAT_SEND.getPath().equals(accessor.getDestination())) {
+            return message;
+        }
+        // Sem usuário autenticado na sessão STOMP, o limite é por sessão
+        String client = accessor.getUser() != null ? accessor.getUser().getName() : accessor.getSessionId();
+        if (rateLimiter.tryAcquire(RateLimitedRoute.CHAT_SEND, client) > 0) {
+            log.debug("Mensagem de chat descartada pelo limite de envio: {}", client);
+            return null;
+        }
+        return message;
+    }
+}
@@ -0,0 +1,56 @@
+package com.alugaserra.security;
+
+/**
+ * Rotas com limite de requisições. O limite padrão ("capacidade/período") pode ser trocado com a
+ * propriedade security.rate-limit.routes.&lt;nome&gt;, ex: security.rate-limit.routes.login=20/1m.
+ */
+public enum RateLimitedRoute {
+    // Antes da autenticação: o limite é por IP
+    LOGIN("login", "POST", "/api/auth/login", false, "10/1m"),
+    REGISTER("register", "POST", "/api/auth/register", false, "5/10m"),
+    // Autenticadas: o limite é por usuário (ou por IP/sessão, se não houver usuário)
+    UPLOAD_URL("upload-url", "POST", "/api/storage/upload-url", true, "30/1m"),
+    CHAT_SEND("chat-send", null, "/app/chat.sendMessage", true, "30/10s");
+
+    private final String routeName;
+    private final String method;
+    private final String path;
+    private final boolean perUser;
+    private final String defaultLimit;
+
+    RateLimitedRoute(String routeName, String method, String path, boolean perUser, String defaultLimit) {
+        this.routeName = routeName;
+        this.method = method;
+        this.path = path;
+        this.perUser = perUser;
+        this.defaultLimit = defaultLimit;
+    }
+
+    /**
+     * Encontra a rota HTTP limitada correspondente à requisição, ou nulo se ela não tiver limite.
+     */
+    public static RateLimitedRoute ofHttp(String method, String path) {
+        for (RateLimitedRoute route : values()) {
+            if (route.method != null && route.method.equals(method) && route.path.equals(path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    public String getRouteName() {
+        return routeName;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isPerUser() {
+        return perUser;
+    }
+
+    public String getDefaultLimit() {
+        return defaultLimit;
+    }
+}
@@ -0,0 +1,154 @@
+package com.alugaserra.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Limitador de requisições em memória, com um balde de fichas (token bucket) por rota e cliente.
+ *
+ * Cada balde é um único AtomicLong com o "instante teórico de chegada" do GCRA: consumir uma ficha
+ * é um compareAndSet, sem lock nem thread de recarga. Um balde cujo instante já passou está cheio,
+ * igual a um balde novo, então pode ser descartado sem mudar o resultado: é o que a limpeza de
+ * baldes ociosos faz.
+ *
+ * O número de baldes é limitado (max-buckets). Com o mapa cheio e nenhum balde cheio para descartar
+ * (ex: muitos IPs diferentes em rajada), os clientes novos dividem um balde reserva por rota: ficam
+ * mais restritos enquanto durar a rajada, mas a memória não cresce.
+ */
+@Component
+public class RateLimiter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${security.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    // Baldes sem uso por este tempo são descartados
+    @Value("${security.rate-limit.idle-timeout:10m}")
+    private Duration idleTimeout;
+
+    // Limite de baldes: ao chegar nele, os baldes cheios são descartados na hora e, se não houver nenhum,
+    // os clientes novos usam o balde reserva da rota. Só passa dele pelas threads que criam balde ao mesmo tempo
+    @Value("${security.rate-limit.max-buckets:100000}")
+    private int maxBuckets;
+
+    LongSupplier ticker = System::nanoTime;
+
+    private final Map<BucketKey, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final Map<RateLimitedRoute, RouteLimit> limits = new EnumMap<>(RateLimitedRoute.class);
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private record BucketKey(RateLimitedRoute route, String client) {
+    }
+
+    // intervalNanos: tempo para repor uma ficha; burstNanos: capacidade do balde, em tempo
+    // overflow: balde reserva, dividido pelos clientes novos quando o mapa de baldes está cheio
+    private record RouteLimit(long intervalNanos, long burstNanos, AtomicLong overflow,
+                              Counter allowed, Counter rejected, Counter overflowed) {
+    }
+
+    @PostConstruct
+    public void init() {
+        for (RateLimitedRoute route : RateLimitedRoute.values()) {
+            String spec = environment.getProperty("security.rate-limit.routes." + route.getRouteName(), route.getDefaultLimit());
+            String[] parts = spec.split("/");
+            if (parts.length != 2) {
+                throw new IllegalStateException("Limite inválido para a rota '" + route.getRouteName() + "': " + spec);
+            }
+            long capacity = Long.parseLong(parts[0].trim());
+            long interval = DurationStyle.detectAndParse(parts[1].trim()).toNanos() / capacity;
+            // Long.MIN_VALUE: o balde reserva começa cheio, qualquer que seja o relógio
+            limits.put(route, new RouteLimit(interval, interval * capacity, new AtomicLong(Long.MIN_VALUE),
+                    requestCounter(route, "allowed"), requestCounter(route, "rejected"),
+                    Counter.builder("security.rate-limit.overflow").tag("route", route.getRouteName()).register(meterRegistry)));
+        }
+        Gauge.builder("security.rate-limit.buckets", buckets, Map::size).register(meterRegistry);
+    }
+
+    private Counter requestCounter(RateLimitedRoute route, String result) {
+        return Counter.builder("security.rate-limit.requests")
+                .tag("route", route.getRouteName())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tenta consumir uma ficha do balde do cliente na rota.
+     * @return 0 se a requisição pode seguir; senão, em quantos nanossegundos haverá uma ficha livre.
+     */
+    public long tryAcquire(RateLimitedRoute route, String client) {
+        if (!enabled) {
+            return 0;
+        }
+        RouteLimit limit = limits.get(route);
+        long now = ticker.getAsLong();
+        BucketKey key = new BucketKey(route, client);
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxBuckets) {
+                evictFull(now);
+            }
+            if (buckets.size() >= maxBuckets) {
+                limit.overflowed().increment();
+                bucket = limit.overflow();
+            } else {
+                bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+        }
+
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + limit.intervalNanos();
+            long excess = next - now - limit.burstNanos();
+            if (excess > 0) {
+                limit.rejected().increment();
+                return excess;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                limit.allowed().increment();
+                return 0;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.rate-limit.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = ticker.getAsLong() - idleTimeout.toNanos();
+        buckets.values().removeIf(arrival -> arrival.get() < cutoff);
+    }
+
+    // Só uma thread limpa por vez; as outras seguem sem esperar
+    private void evictFull(long now) {
+        if (sweeping.compareAndSet(false, true)) {
+            try {
+                buckets.values().removeIf(arrival -> arrival.get() <= now);
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+
+    public int bucketCount() {
+        return buckets.size();
+    }
+}
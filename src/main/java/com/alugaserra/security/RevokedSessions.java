@@ -0,0 +1,129 @@
+package com.alugaserra.security;
+
+import com.alugaserra.repository.RefreshTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessões de login encerradas cujos access tokens ainda podem estar dentro da validade.
+ *
+ * O {@link SecurityFilter} consulta esta lista a cada requisição autenticada. O caso comum (sessão
+ * não revogada) é resolvido pelo filtro de Bloom com alguns acessos a memória, sem lock; só um
+ * "talvez" consulta o conjunto exato. Carregada do banco na subida e compactada periodicamente,
+ * descartando as sessões encerradas há mais tempo que a validade de um access token.
+ *
+ * Um logout só chama {@link #revoke} no nó que o atendeu; os demais ficam sabendo pela releitura
+ * periódica ({@link #refresh}) das sessões encerradas no banco.
+ */
+@Component
+public class RevokedSessions {
+
+    private static final Logger log = LoggerFactory.getLogger(RevokedSessions.class);
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    // Validade do access token (ms): depois dela, uma sessão encerrada não tem mais tokens válidos
+    @Value("${jwt.expiration}")
+    private long accessTokenExpiration;
+
+    @Value("${security.revocation.expected-sessions:100000}")
+    private int expectedSessions;
+
+    @Value("${security.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    // Cada releitura volta este tanto antes da anterior: cobre commits atrasados e relógios um pouco diferentes entre os nós
+    @Value("${security.revocation.refresh-overlap:1m}")
+    private Duration refreshOverlap = Duration.ofMinutes(1);
+
+    Clock clock = Clock.systemDefaultZone();
+
+    private volatile LocalDateTime lastRefresh;
+
+    // Trocado inteiro na compactação; leituras concorrentes enxergam sempre um estado consistente
+    private volatile Revocations current;
+
+    private record Revocations(UuidBloomFilter bloom, Map<UUID, LocalDateTime> exact) {
+    }
+
+    @PostConstruct
+    public void load() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        Revocations loaded = emptyRevocations();
+        for (UUID sessionId : refreshTokenRepository.findSessionsRevokedSince(now.minusNanos(accessTokenExpiration * 1_000_000))) {
+            loaded.exact().put(sessionId, now);
+            loaded.bloom().put(sessionId);
+        }
+        current = loaded;
+        lastRefresh = now;
+        log.info("Revogação de sessões carregada com {} sessões encerradas", loaded.exact().size());
+    }
+
+    public boolean isRevoked(UUID sessionId) {
+        Revocations revocations = current;
+        return revocations.bloom().mightContain(sessionId) && revocations.exact().containsKey(sessionId);
+    }
+
+    public synchronized void revoke(UUID sessionId) {
+        current.exact().put(sessionId, LocalDateTime.now(clock));
+        current.bloom().put(sessionId);
+    }
+
+    /**
+     * Traz para a memória as sessões encerradas desde a última releitura, inclusive as encerradas em outros nós.
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.refresh-interval-ms:5000}")
+    public void refresh() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        List<UUID> sessionIds = refreshTokenRepository.findSessionsRevokedSince(lastRefresh.minus(refreshOverlap));
+        merge(sessionIds, now);
+        lastRefresh = now;
+    }
+
+    private synchronized void merge(List<UUID> sessionIds, LocalDateTime now) {
+        for (UUID sessionId : sessionIds) {
+            if (current.exact().putIfAbsent(sessionId, now) == null) {
+                current.bloom().put(sessionId);
+            }
+        }
+    }
+
+    /**
+     * Reconstrói o filtro só com as sessões que ainda podem ter access tokens válidos.
+     * Um filtro de Bloom não remove itens, então esta é a forma de ele não encher com o tempo.
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.compact-interval-ms:900000}")
+    public synchronized void compact() {
+        LocalDateTime cutoff = LocalDateTime.now(clock).minusNanos(accessTokenExpiration * 1_000_000);
+        Revocations compacted = emptyRevocations();
+        current.exact().forEach((sessionId, revokedAt) -> {
+            if (revokedAt.isAfter(cutoff)) {
+                compacted.exact().put(sessionId, revokedAt);
+                compacted.bloom().put(sessionId);
+            }
+        });
+        current = compacted;
+    }
+
+    public int size() {
+        return current.exact().size();
+    }
+
+    private Revocations emptyRevocations() {
+        return new Revocations(new UuidBloomFilter(expectedSessions, falsePositiveRate), new ConcurrentHashMap<>());
+    }
+}
@@ -1,7 +1,6 @@
 package com.alugaserra.security;
 
-import com.alugaserra.repository.UserRepository;
-import com.alugaserra.service.TokenService;
+import com.alugaserra.security.AuthMetrics.Stage;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,32 +14,32 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 
+/**
+ * Autentica as requisições pelo token JWT do cabeçalho Authorization.
+ * A validação do token e a montagem do usuário ficam no {@link TokenAuthenticator}.
+ */
 @Component
 public class SecurityFilter extends OncePerRequestFilter {
 
     @Autowired
-    private TokenService tokenService;
+    private TokenAuthenticator tokenAuthenticator;
 
     @Autowired
-    private UserRepository userRepository;
+    private AuthMetrics authMetrics;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        var token = this.recoverToken(request);
+        long start = System.nanoTime();
+        var token = TokenAuthenticator.bearerToken(request.getHeader("Authorization"));
         if (token != null) {
-            var email = tokenService.validateToken(token);
-            UserDetails user = userRepository.findByEmail(email)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            var authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+            authMetrics.recordStage(Stage.RECOVER, start);
+            // Token inválido, expirado ou revogado: a requisição segue como anônima
+            UserDetails user = tokenAuthenticator.authenticate(token);
+            if (user != null) {
+                var authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
         }
         filterChain.doFilter(request, response);
     }
-
-    private String recoverToken(HttpServletRequest request) {
-        var authHeader = request.getHeader("Authorization");
-        if (authHeader == null) return null;
-        return authHeader.replace("Bearer ", "");
-    }
-}
\ No newline at end of file
+}
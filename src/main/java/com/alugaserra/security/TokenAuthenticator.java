@@ -0,0 +1,96 @@
+package com.alugaserra.security;
+
+import com.alugaserra.model.User;
+import com.alugaserra.security.AuthMetrics.Failure;
+import com.alugaserra.security.AuthMetrics.Stage;
+import com.alugaserra.service.TokenService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+/**
+ * Resolve o usuário autenticado de um token JWT. Usado pelo {@link SecurityFilter} (HTTP) e pela
+ * autenticação do STOMP no CONNECT.
+ *
+ * No modo com estado (padrão), o {@link User} é carregado pelo email, via {@link UserCache}. No modo sem
+ * estado (security.jwt.stateless-principal=true), o usuário autenticado é um {@link UserPrincipal} montado
+ * direto das claims do token, sem consulta ao banco por requisição; em compensação, um papel alterado ou um
+ * usuário removido em outro nó só é percebido na próxima releitura do {@link TokenVersions} (alguns segundos).
+ * Em qualquer modo, a versão do token é conferida no {@link TokenVersions} e o token de uma sessão
+ * encerrada (logout) é recusado pelo {@link RevokedSessions}. Tokens antigos, sem as claims de id e papel,
+ * seguem pelo caminho com estado.
+ */
+@Component
+public class TokenAuthenticator {
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private TokenVersions tokenVersions;
+
+    @Autowired
+    private RevokedSessions revokedSessions;
+
+    @Autowired
+    private AuthMetrics authMetrics;
+
+    @Value("${security.jwt.stateless-principal:false}")
+    private boolean statelessPrincipal;
+
+    /**
+     * @return O usuário do token, ou nulo se o token for inválido, expirado ou revogado.
+     */
+    public UserDetails authenticate(String token) {
+        long start = System.nanoTime();
+        TokenClaims claims = tokenService.verifyToken(token);
+        authMetrics.recordStage(Stage.VERIFY, start);
+        if (claims == null) {
+            return null;
+        }
+        start = System.nanoTime();
+        UserDetails user = resolvePrincipal(claims);
+        authMetrics.recordStage(Stage.PRINCIPAL, start);
+        return user;
+    }
+
+    /**
+     * Extrai o token do cabeçalho Authorization. Sem o prefixo "Bearer ", o cabeçalho inteiro é tratado
+     * como o token (se não for um JWT, conta como "malformed").
+     */
+    public static String bearerToken(String authorizationHeader) {
+        if (authorizationHeader == null) return null;
+        return authorizationHeader.startsWith("Bearer ") ? authorizationHeader.substring(7) : authorizationHeader;
+    }
+
+    private UserDetails resolvePrincipal(TokenClaims claims) {
+        if (claims.sessionId() != null && revokedSessions.isRevoked(claims.sessionId())) {
+            authMetrics.recordFailure(Failure.REVOKED_SESSION);
+            return null;
+        }
+        if (statelessPrincipal && claims.isSelfContained()) {
+            if (!tokenVersions.isCurrent(claims.userId(), claims.tokenVersion())) {
+                authMetrics.recordFailure(Failure.REVOKED_VERSION);
+                return null;
+            }
+            return new UserPrincipal(claims, () -> userCache.findById(claims.userId())
+                    .orElseThrow(() -> new EntityNotFoundException("Usuário não encontrado com o ID: " + claims.userId())));
+        }
+        User user = userCache.findByEmail(claims.email()).orElse(null);
+        if (user == null) {
+            authMetrics.recordFailure(Failure.UNKNOWN_USER);
+            return null;
+        }
+        // O usuário do cache pode estar com a versão antiga se a revogação foi feita em outro nó
+        if (claims.tokenVersion() < user.getTokenVersion() || !tokenVersions.isCurrent(user.getId(), claims.tokenVersion())) {
+            authMetrics.recordFailure(Failure.REVOKED_VERSION);
+            return null;
+        }
+        return user;
+    }
+}
@@ -0,0 +1,28 @@
+package com.alugaserra.security;
+
+import com.alugaserra.enums.UserRole;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Dados de um token JWT já verificado (assinatura, emissor e validade).
+ * Tokens emitidos antes das claims de id/papel/versão trazem apenas o email, e só os access tokens
+ * emitidos no login (com refresh token) trazem o id da sessão.
+ * @param expiresAt A validade do token ("exp"); nula num token sem expiração.
+ */
+public record TokenClaims(
+        String email,
+        UUID userId,
+        UserRole role,
+        int tokenVersion,
+        UUID sessionId,
+        Instant expiresAt
+) {
+    /**
+     * Indica se o token traz tudo o que é preciso para montar o usuário autenticado sem ir ao banco.
+     */
+    public boolean isSelfContained() {
+        return userId != null && role != null;
+    }
+}
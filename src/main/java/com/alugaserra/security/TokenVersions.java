@@ -0,0 +1,107 @@
+package com.alugaserra.security;
+
+import com.alugaserra.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versão atual dos tokens de cada usuário, mantida em memória para o modo sem estado do {@link SecurityFilter}.
+ *
+ * Só guarda os usuários cujos tokens já foram revogados alguma vez (versão > 0); os demais estão na versão 0.
+ * É carregada do banco na subida, atualizada por {@link #revoke} quando o papel de um usuário muda neste nó
+ * e relida do banco a cada poucos segundos ({@link #refresh}), para que uma revogação feita em outro nó
+ * valha aqui também. A releitura também confere se os usuários vistos desde a última rodada ainda existem:
+ * os tokens de um usuário removido deixam de valer.
+ */
+@Component
+public class TokenVersions {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenVersions.class);
+
+    // Versão de um usuário removido: nenhum token alcança
+    private static final int DELETED = Integer.MAX_VALUE;
+    private static final int EXISTENCE_CHECK_CHUNK = 1000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    private final Map<UUID, Integer> versions = new ConcurrentHashMap<>();
+
+    // Usuários que apresentaram um token desde a última releitura
+    private final Set<UUID> seen = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void load() {
+        for (Object[] row : userRepository.findRevokedTokenVersions()) {
+            versions.merge((UUID) row[0], (Integer) row[1], Math::max);
+        }
+        log.info("Versões de token carregadas para {} usuários", versions.size());
+    }
+
+    /**
+     * Indica se um token com esta versão ainda vale para o usuário.
+     */
+    public boolean isCurrent(UUID userId, int tokenVersion) {
+        seen.add(userId);
+        return tokenVersion >= versions.getOrDefault(userId, 0);
+    }
+
+    /**
+     * Registra a nova versão dos tokens do usuário: os tokens emitidos com versões anteriores deixam de valer.
+     */
+    public void revoke(UUID userId, int newVersion) {
+        versions.merge(userId, newVersion, Math::max);
+    }
+
+    /**
+     * Relê as versões do banco e revoga os tokens dos usuários removidos. Uma versão nova vinda de outro nó
+     * também tira o usuário do {@link UserCache}, que pode estar com o papel antigo.
+     */
+    @Scheduled(fixedDelayString = "${security.token-versions.refresh-interval-ms:5000}")
+    public void refresh() {
+        int changed = 0;
+        for (Object[] row : userRepository.findRevokedTokenVersions()) {
+            UUID userId = (UUID) row[0];
+            int version = (Integer) row[1];
+            if (version > versions.getOrDefault(userId, 0)) {
+                versions.merge(userId, version, Math::max);
+                userCache.invalidate(userId, null);
+                changed++;
+            }
+        }
+
+        List<UUID> toCheck = new ArrayList<>(seen);
+        seen.removeAll(toCheck);
+        int deleted = 0;
+        for (int from = 0; from < toCheck.size(); from += EXISTENCE_CHECK_CHUNK) {
+            List<UUID> chunk = toCheck.subList(from, Math.min(toCheck.size(), from + EXISTENCE_CHECK_CHUNK));
+            Set<UUID> existing = new HashSet<>(userRepository.findExistingIds(chunk));
+            for (UUID userId : chunk) {
+                if (!existing.contains(userId) && !Objects.equals(versions.put(userId, DELETED), DELETED)) {
+                    userCache.invalidate(userId, null);
+                    deleted++;
+                }
+            }
+        }
+        if (changed > 0 || deleted > 0) {
+            log.info("Tokens revogados pela releitura: {} usuários com versão nova, {} removidos", changed, deleted);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.alugaserra.security;
+
+import com.alugaserra.model.User;
+import com.alugaserra.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache dos usuários autenticados, por id e por email, limitado em quantidade e com TTL.
+ *
+ * As leituras não usam lock (ConcurrentHashMap), para não enfileirar as requisições de usuários
+ * diferentes atrás de uma trava só. Quando o limite é passado, uma única thread por vez descarta
+ * entradas (primeiro as expiradas, depois quaisquer outras), enquanto as demais seguem sem esperar.
+ * A invalidação vem do {@link UserCacheInvalidator}, a cada alteração ou remoção de um usuário.
+ */
+@Component
+public class UserCache {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${security.user-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${security.user-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${security.user-cache.ttl:5m}")
+    private Duration ttl;
+
+    Clock clock = Clock.systemUTC();
+
+    private final Map<UUID, Entry> byId = new ConcurrentHashMap<>();
+    private final Map<String, Entry> byEmail = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    // Incrementado a cada invalidação; um usuário lido do banco antes dela não é guardado.
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictedBySize;
+    private Counter evictedByTtl;
+    private Counter evictedByWrite;
+
+    private record Entry(UserSnapshot user, long expiresAtMillis) {
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        hits = Counter.builder("security.user-cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("security.user-cache.requests").tag("result", "miss").register(meterRegistry);
+        evictedBySize = evictionCounter("size");
+        evictedByTtl = evictionCounter("expired");
+        evictedByWrite = evictionCounter("invalidated");
+        Gauge.builder("security.user-cache.entries", this, UserCache::entryCount)
+                .register(meterRegistry);
+    }
+
+    private Counter evictionCounter(String cause) {
+        return Counter.builder("security.user-cache.evictions").tag("cause", cause).register(meterRegistry);
+    }
+
+    public Optional<User> findById(UUID id) {
+        return find(byId.get(id), () -> userRepository.findById(id));
+    }
+
+    public Optional<User> findByEmail(String email) {
+        return find(byEmail.get(email), () -> userRepository.findByEmail(email));
+    }
+
+    private Optional<User> find(Entry entry, Supplier<Optional<User>> loader) {
+        if (entry != null) {
+            if (entry.expiresAtMillis() > clock.millis()) {
+                hits.increment();
+                return Optional.of(entry.user().toUser());
+            }
+            if (remove(entry)) {
+                evictedByTtl.increment();
+            }
+        }
+        misses.increment();
+
+        long invalidationsBefore = invalidations.get();
+        Optional<User> loaded = loader.get();
+        if (enabled) {
+            loaded.ifPresent(user -> put(UserSnapshot.of(user), invalidationsBefore));
+        }
+        return loaded;
+    }
+
+    private void put(UserSnapshot user, long invalidationsBefore) {
+        Entry entry = new Entry(user, clock.millis() + ttl.toMillis());
+        byId.put(user.id(), entry);
+        byEmail.put(user.email(), entry);
+        // Um usuário mudou enquanto este era lido: a cópia pode já estar desatualizada.
+        if (invalidations.get() != invalidationsBefore) {
+            remove(entry);
+            return;
+        }
+        if (byId.size() > maxEntries) {
+            evictOverflow();
+        }
+    }
+
+    private void evictOverflow() {
+        if (!evicting.compareAndSet(false, true)) {
+            return; // Outra thread já está liberando espaço
+        }
+        try {
+            long now = clock.millis();
+            Iterator<Entry> it = byId.values().iterator();
+            while (byId.size() > maxEntries && it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.expiresAtMillis() <= now && remove(entry)) {
+                    evictedByTtl.increment();
+                }
+            }
+            it = byId.values().iterator();
+            while (byId.size() > maxEntries && it.hasNext()) {
+                if (remove(it.next())) {
+                    evictedBySize.increment();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Descarta o usuário do cache, pelo id e pelo(s) email(s) conhecido(s).
+     */
+    public void invalidate(UUID id, String email) {
+        invalidations.incrementAndGet();
+        boolean removed = false;
+        if (id != null) {
+            Entry entry = byId.get(id);
+            removed = entry != null && remove(entry);
+        }
+        if (email != null) {
+            Entry entry = byEmail.get(email);
+            removed |= entry != null && remove(entry);
+        }
+        if (removed) {
+            evictedByWrite.increment();
+        }
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        evictedByWrite.increment(byId.size());
+        byId.clear();
+        byEmail.clear();
+    }
+
+    // Remove a entrada dos dois mapas, só se ainda for a mesma (outra thread pode já tê-la trocado)
+    private boolean remove(Entry entry) {
+        boolean removed = byId.remove(entry.user().id(), entry);
+        byEmail.remove(entry.user().email(), entry);
+        return removed;
+    }
+
+    public int entryCount() {
+        return byId.size();
+    }
+}
@@ -0,0 +1,41 @@
+package com.alugaserra.security;
+
+import com.alugaserra.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Listener JPA da entidade {@link User}: tira o usuário do {@link UserCache} sempre que ele é alterado
+ * ou removido, venha a mudança de onde vier (papel, senha, dados cadastrais...).
+ *
+ * A invalidação acontece no flush e de novo depois do commit, para que uma leitura concorrente
+ * feita entre os dois (que ainda enxerga os dados antigos) não fique no cache.
+ */
+@Component
+public class UserCacheInvalidator {
+
+    // ObjectProvider: em testes só de JPA (@DataJpaTest) o cache não existe
+    @Autowired
+    private ObjectProvider<UserCache> userCache;
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        userCache.ifAvailable(cache -> {
+            cache.invalidate(user.getId(), user.getEmail());
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        cache.invalidate(user.getId(), user.getEmail());
+                    }
+                });
+            }
+        });
+    }
+}
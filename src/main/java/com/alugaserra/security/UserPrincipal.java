@@ -0,0 +1,92 @@
+package com.alugaserra.security;
+
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Usuário autenticado montado direto das claims do token, sem consultar o banco.
+ * A entidade {@link User} completa só é carregada (uma vez por requisição) quando alguém chama {@link #getUser()}.
+ */
+public class UserPrincipal implements UserDetails {
+
+    private final UUID id;
+    private final String email;
+    private final UserRole role;
+    private final int tokenVersion;
+    private final Supplier<User> loader;
+    private User user;
+
+    public UserPrincipal(TokenClaims claims, Supplier<User> loader) {
+        this.id = claims.userId();
+        this.email = claims.email();
+        this.role = claims.role();
+        this.tokenVersion = claims.tokenVersion();
+        this.loader = loader;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public UserRole getRole() {
+        return role;
+    }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    /**
+     * Carrega a entidade do usuário na primeira chamada e reaproveita nas seguintes.
+     */
+    public User getUser() {
+        if (user == null) {
+            user = loader.get();
+        }
+        return user;
+    }
+
+    // Métodos da interface UserDetails
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    @Override
+    public String getPassword() {
+        return null; // A senha nunca vem no token
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package com.alugaserra.security;
+
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.User;
+
+import java.util.UUID;
+
+/**
+ * Cópia imutável dos dados de um usuário, guardada no {@link UserCache}.
+ * Cada leitura do cache devolve um {@link User} novo, então quem o altera não afeta as outras requisições.
+ */
+public record UserSnapshot(
+        UUID id,
+        String name,
+        String email,
+        String passwordHash,
+        String cpf,
+        String phone,
+        UserRole role,
+        boolean verified,
+        int tokenVersion
+) {
+    public static UserSnapshot of(User user) {
+        return new UserSnapshot(user.getId(), user.getName(), user.getEmail(), user.getPasswordHash(), user.getCpf(),
+                user.getPhone(), user.getRole(), user.isVerified(), user.getTokenVersion());
+    }
+
+    /**
+     * Monta uma entidade desanexada (detached) com estes dados.
+     */
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setName(name);
+        user.setEmail(email);
+        user.setPasswordHash(passwordHash);
+        user.setCpf(cpf);
+        user.setPhone(phone);
+        user.setRole(role);
+        user.setVerified(verified);
+        user.setTokenVersion(tokenVersion);
+        return user;
+    }
+}
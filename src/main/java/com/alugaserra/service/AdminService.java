@@ -2,17 +2,33 @@ package com.alugaserra.service;
 
 import com.alugaserra.dto.PropertyResponseDto;
 import com.alugaserra.dto.UserAdminViewDto;
+import com.alugaserra.enums.ExportFormat;
 import com.alugaserra.enums.UserRole;
+import com.alugaserra.event.PropertyChangedEvent;
+import com.alugaserra.model.Property;
 import com.alugaserra.model.User;
 import com.alugaserra.repository.PropertyRepository;
 import com.alugaserra.repository.UserRepository;
+import com.alugaserra.search.PropertySnapshot;
+import com.alugaserra.security.TokenVersions;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * Contém a lógica de negócio para operações realizadas por administradores.
@@ -20,20 +36,39 @@ import java.util.stream.Collectors;
 @Service
 public class AdminService {
 
+    private static final Logger log = LoggerFactory.getLogger(AdminService.class);
+
+    private static final String CSV_HEADER = "id,title,description,type,status,rentValue,rooms,bathrooms,hasGarage," +
+            "isFurnished,photoUrls,videoUrl,approximateLocation,latitude,longitude,ownerName,ownerPhone,createdAt\r\n";
+
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TokenVersions tokenVersions;
+
     // 1. INJETAR O REPOSITÓRIO DE IMÓVEIS
     @Autowired
     private PropertyRepository propertyRepository;
 
-    // 2. INJETAR O PROPERTYSERVICE PARA REUTILIZAR A LÓGICA DE CONVERSÃO DE DTO
+    // Notifica os índices de busca quando um imóvel é removido pela moderação
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Autowired
-    private PropertyService propertyService;
+    private ObjectMapper objectMapper;
+
+    // Linhas trazidas do banco por ida, e a cada quantos imóveis a exportação envia os dados e limpa a sessão
+    @Value("${properties.admin.export.fetch-size:500}")
+    private int exportFetchSize;
+
+    @Value("${properties.admin.export.batch-size:1000}")
+    private int exportBatchSize;
 
 
     /**
      * Atualiza o papel (role) de um usuário específico.
+     * Os tokens já emitidos para o usuário são revogados, já que trazem o papel antigo nas claims.
      * @param userId O ID do usuário a ser atualizado.
      * @param newRole O novo papel a ser atribuído.
      * @return O DTO do usuário atualizado.
@@ -44,8 +79,10 @@ public class AdminService {
                 .orElseThrow(() -> new RuntimeException("Usuário não encontrado com o ID: " + userId));
 
         user.setRole(newRole);
+        user.setTokenVersion(user.getTokenVersion() + 1);
 
         User updatedUser = userRepository.save(user);
+        tokenVersions.revoke(updatedUser.getId(), updatedUser.getTokenVersion());
 
         return new UserAdminViewDto(updatedUser);
     }
@@ -55,10 +92,72 @@ public class AdminService {
      * @return Uma lista de DTOs de imóveis.
      */
     public List<PropertyResponseDto> findAllProperties() {
-        return propertyRepository.findAll()
-                .stream()
-                .map(propertyService::convertToDto) // Reutiliza o método de conversão
-                .collect(Collectors.toList());
+        // Projeção direta para o DTO: dono e fotos vêm em lote, sem uma consulta por imóvel
+        return propertyRepository.findListings(null, Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")), 0);
+    }
+
+    /**
+     * Escreve o catálogo inteiro no formato pedido, à medida que as linhas são lidas do banco.
+     * Se o cliente desconectar, a leitura é interrompida e o cursor é fechado.
+     * @param format NDJSON (um objeto JSON por linha) ou CSV.
+     * @param out O corpo da resposta HTTP.
+     * @return Quantos imóveis foram escritos.
+     */
+    @Transactional(readOnly = true)
+    public long exportProperties(ExportFormat format, OutputStream out) {
+        long start = System.nanoTime();
+        long[] written = {0};
+        try {
+            if (format == ExportFormat.CSV) {
+                out.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+            }
+            propertyRepository.forEachListing(exportFetchSize, exportBatchSize, listing -> {
+                out.write(format == ExportFormat.CSV ? toCsvLine(listing) : toJsonLine(listing));
+                // Envia o que já foi lido de tempos em tempos (e descobre cedo se o cliente foi embora)
+                if (++written[0] % exportBatchSize == 0) {
+                    out.flush();
+                }
+            });
+            out.flush();
+            log.info("Exportação {} do catálogo concluída: {} imóveis em {} ms",
+                    format, written[0], (System.nanoTime() - start) / 1_000_000);
+        } catch (JsonProcessingException e) {
+            // Erro nosso, não do cliente: a resposta não pode terminar como se estivesse completa
+            log.error("Falha ao serializar um imóvel na exportação {} depois de {} imóveis", format, written[0], e);
+            throw new UncheckedIOException(e);
+        } catch (IOException e) {
+            // Só a escrita na resposta lança outras IOException: o cliente desconectou
+            log.info("Exportação {} interrompida pelo cliente depois de {} imóveis", format, written[0]);
+        }
+        return written[0];
+    }
+
+    private byte[] toJsonLine(PropertyResponseDto listing) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(listing);
+        byte[] line = Arrays.copyOf(json, json.length + 1);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    private static byte[] toCsvLine(PropertyResponseDto p) {
+        String line = String.join(",",
+                csv(p.id()), csv(p.title()), csv(p.description()), csv(p.type()), csv(p.status()),
+                csv(p.rentValue()), csv(p.rooms()), csv(p.bathrooms()), csv(p.hasGarage()), csv(p.isFurnished()),
+                csv(p.photoUrls() == null ? null : String.join(" ", p.photoUrls())), csv(p.videoUrl()),
+                csv(p.approximateLocation()), csv(p.latitude()), csv(p.longitude()), csv(p.owner().name()), csv(p.owner().phone()), csv(p.createdAt()));
+        return (line + "\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Escapa um campo CSV (RFC 4180): aspas em volta quando houver vírgula, aspas ou quebra de linha
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
     }
 
     /**
@@ -66,10 +165,10 @@ public class AdminService {
      * @param propertyId O ID do imóvel a ser deletado.
      */
     public void deleteProperty(UUID propertyId) {
-        if (!propertyRepository.existsById(propertyId)) {
-            throw new RuntimeException("Imóvel não encontrado com o ID: " + propertyId);
-        }
-        propertyRepository.deleteById(propertyId);
+        Property property = propertyRepository.findById(propertyId)
+                .orElseThrow(() -> new RuntimeException("Imóvel não encontrado com o ID: " + propertyId));
+        propertyRepository.delete(property);
+        eventPublisher.publishEvent(PropertyChangedEvent.deleted(PropertySnapshot.of(property)));
     }
 }
 
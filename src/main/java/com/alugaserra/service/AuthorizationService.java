@@ -1,14 +1,21 @@
 package com.alugaserra.service;
 
+import com.alugaserra.model.User;
 import com.alugaserra.repository.UserRepository;
+import com.alugaserra.security.UserCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
-public class AuthorizationService implements UserDetailsService {
+public class AuthorizationService implements UserDetailsService, UserDetailsPasswordService {
+
+    @Autowired
+    UserCache userCache;
 
     @Autowired
     UserRepository userRepository;
@@ -17,7 +24,21 @@ public class AuthorizationService implements UserDetailsService {
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         // CORREÇÃO: Buscamos o Optional e, se estiver vazio, lançamos a exceção.
         // Se o usuário existir, ele é retornado como UserDetails.
-        return userRepository.findByEmail(username)
+        // O UserCache evita ir ao banco a cada login do mesmo usuário; é invalidado quando o usuário muda.
+        return userCache.findByEmail(username)
                 .orElseThrow(() -> new UsernameNotFoundException("Usuário não encontrado com o email: " + username));
     }
-}
\ No newline at end of file
+
+    /**
+     * Chamado pelo Spring Security depois de um login bem-sucedido quando o hash gravado usa um custo
+     * de BCrypt menor que o atual: regrava a senha (já com o novo hash) sem o usuário perceber.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User entity = userRepository.findByEmail(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("Usuário não encontrado com o email: " + user.getUsername()));
+        entity.setPasswordHash(newPassword);
+        return userRepository.save(entity);
+    }
+}
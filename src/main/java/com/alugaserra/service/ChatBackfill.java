@@ -0,0 +1,225 @@
+package com.alugaserra.service;
+
+import com.alugaserra.model.Chat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Completa, na subida da aplicação, os dados de chat que só passaram a existir depois dos chats antigos.
+ *
+ *
+ * Chave da conversa (chats.conversation_key): os chats antigos não a tinham, e o primeiro "falar com o
+ * locador" criava uma conversa duplicada. Um chat de dois participantes recebe a chave canônica
+ * ({@link Chat#conversationKey}); se ela já for de outro chat (uma duplicata antiga), ou se o chat não for
+ * de dois participantes, recebe uma chave só dele ("chat:" + id). Sem chaves nulas, a coluna passa a
+ * NOT NULL, como a entidade declara (o ddl-auto "update" não altera colunas existentes).
+ *
+ * Estado da caixa de entrada (chat_participant_states): só é criado junto com o chat (ChatService), então
+ * os chats anteriores a ele não apareciam na caixa de entrada, o "marcar como lido" dava 403 e o
+ * ChatMessageWriter não tinha linha para atualizar. Cada participante sem estado recebe um, com a última
+ * mensagem do chat e como lido até ela (não há como saber o que foi lido antes).
+ *
+ * Roda antes de o servidor aceitar conexões, em blocos, e é idempotente: só preenche o que falta, então
+ * pode rodar em todas as subidas e em vários nós ao mesmo tempo.
+ */
+@Component
+public class ChatBackfill implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatBackfill.class);
+
+    // Os mais antigos primeiro: entre duplicatas, fica com a chave canônica o chat mais antigo
+    private static final String MISSING_KEYS_SQL =
+            "SELECT c.id, c.property_id FROM chats c WHERE c.conversation_key IS NULL ORDER BY c.created_at, c.id LIMIT ?";
+
+    private static final String PARTICIPANTS_SQL = "SELECT chat_id, user_id FROM chat_participants WHERE chat_id IN (%s)";
+
+    private static final String TAKEN_KEYS_SQL = "SELECT conversation_key FROM chats WHERE conversation_key IN (%s)";
+
+    private static final String UPDATE_KEY_SQL = "UPDATE chats SET conversation_key = ? WHERE id = ? AND conversation_key IS NULL";
+
+    private static final String KEY_NULLABLE_SQL =
+            "SELECT COUNT(*) FROM information_schema.columns WHERE LOWER(table_name) = 'chats' " +
+                    "AND LOWER(column_name) = 'conversation_key' AND is_nullable = 'YES'";
+
+    private static final String KEY_NOT_NULL_SQL = "ALTER TABLE chats ALTER COLUMN conversation_key SET NOT NULL";
+
+    // Participantes sem estado na caixa de entrada
+    private static final String MISSING_STATES_SQL =
+            "SELECT cp.chat_id, cp.user_id, c.created_at FROM chat_participants cp JOIN chats c ON c.id = cp.chat_id " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM chat_participant_states s WHERE s.chat_id = cp.chat_id AND s.user_id = cp.user_id) " +
+                    "LIMIT ?";
+
+    // Última mensagem de cada chat, pela mesma ordem do histórico (timestamp, id)
+    private static final String LATEST_MESSAGES_SQL =
+            "SELECT m.chat_id, m.id, m.content, m.sender_id, m.timestamp FROM chat_messages m WHERE m.chat_id IN (%s) " +
+                    "AND NOT EXISTS (SELECT 1 FROM chat_messages n WHERE n.chat_id = m.chat_id " +
+                    "AND (n.timestamp > m.timestamp OR (n.timestamp = m.timestamp AND n.id > m.id)))";
+
+    private static final String INSERT_STATE_SQL =
+            "INSERT INTO chat_participant_states (id, chat_id, user_id, last_message_id, last_message_preview, " +
+                    "last_sender_id, last_activity_at, unread_count, last_read_at) VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ChatMessageWriter chatMessageWriter;
+
+    @Value("${chat.backfill.batch-size:500}")
+    private int batchSize;
+
+    private record MissingKey(UUID chatId, UUID propertyId) {
+    }
+
+    private record MissingState(UUID chatId, UUID userId, Timestamp chatCreatedAt) {
+    }
+
+    private record LatestMessage(UUID id, String content, UUID senderId, Timestamp timestamp) {
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        backfillConversationKeys();
+        backfillParticipantStates();
+    }
+
+    /**
+     * Preenche a chave dos chats antigos e, quando não sobra nenhuma nula, torna a coluna NOT NULL.
+     * @return Quantas chaves foram preenchidas.
+     */
+    public int backfillConversationKeys() {
+        int filled = 0;
+        while (true) {
+            List<MissingKey> missing = jdbcTemplate.query(MISSING_KEYS_SQL, (rs, rowNum) -> new MissingKey(
+                    rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)), batchSize);
+            if (missing.isEmpty()) {
+                break;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> updateKeys(missing));
+            } catch (DataAccessException e) {
+                log.warn("Preenchimento das chaves das conversas interrompido depois de {} chats", filled, e);
+                return filled;
+            }
+            filled += missing.size();
+        }
+        if (filled > 0) {
+            log.info("Chave da conversa preenchida em {} chats antigos", filled);
+        }
+        if (jdbcTemplate.queryForObject(KEY_NULLABLE_SQL, Long.class) > 0) {
+            jdbcTemplate.execute(KEY_NOT_NULL_SQL);
+            log.info("Coluna chats.conversation_key alterada para NOT NULL");
+        }
+        return filled;
+    }
+
+    private void updateKeys(List<MissingKey> missing) {
+        List<UUID> chatIds = missing.stream().map(MissingKey::chatId).toList();
+        Map<UUID, List<UUID>> participantsByChat = new HashMap<>();
+        jdbcTemplate.query(PARTICIPANTS_SQL.formatted(placeholders(chatIds.size())), rs -> {
+            participantsByChat.computeIfAbsent(rs.getObject(1, UUID.class), id -> new ArrayList<>()).add(rs.getObject(2, UUID.class));
+        }, chatIds.toArray());
+
+        Map<UUID, String> canonical = new HashMap<>();
+        for (MissingKey chat : missing) {
+            List<UUID> participants = participantsByChat.getOrDefault(chat.chatId(), List.of());
+            if (participants.size() == 2) {
+                canonical.put(chat.chatId(), Chat.conversationKey(chat.propertyId(), participants.get(0), participants.get(1)));
+            }
+        }
+        Set<String> taken = new HashSet<>();
+        if (!canonical.isEmpty()) {
+            List<String> keys = List.copyOf(new HashSet<>(canonical.values()));
+            taken.addAll(jdbcTemplate.queryForList(TAKEN_KEYS_SQL.formatted(placeholders(keys.size())), String.class, keys.toArray()));
+        }
+
+        List<Object[]> updates = new ArrayList<>(missing.size());
+        for (MissingKey chat : missing) {
+            String key = canonical.get(chat.chatId());
+            // Chave já usada: outra conversa do mesmo par sobre o mesmo imóvel (mais antiga ou já com chave)
+            if (key == null || !taken.add(key)) {
+                key = Chat.uniqueConversationKey(chat.chatId());
+            }
+            updates.add(new Object[]{key, chat.chatId()});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_KEY_SQL, updates);
+    }
+
+    /**
+     * Cria o estado da caixa de entrada que falta aos participantes dos chats antigos.
+     * @return Quantos estados foram criados.
+     */
+    public int backfillParticipantStates() {
+        int created = 0;
+        while (true) {
+            List<MissingState> missing = jdbcTemplate.query(MISSING_STATES_SQL, (rs, rowNum) -> new MissingState(
+                    rs.getObject(1, UUID.class), rs.getObject(2, UUID.class), rs.getTimestamp(3)), batchSize);
+            if (missing.isEmpty()) {
+                break;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> insertStates(missing));
+            } catch (DataAccessException e) {
+                // Ex: outro nó preenchendo ao mesmo tempo. O que faltar fica para a próxima subida
+                log.warn("Preenchimento do estado da caixa de entrada interrompido depois de {} estados", created, e);
+                return created;
+            }
+            created += missing.size();
+        }
+        if (created > 0) {
+            log.info("Estado da caixa de entrada criado para {} participantes de chats antigos", created);
+        }
+        return created;
+    }
+
+    private void insertStates(List<MissingState> missing) {
+        Map<UUID, LatestMessage> latestByChat = latestMessages(missing.stream().map(MissingState::chatId).toList());
+        jdbcTemplate.batchUpdate(INSERT_STATE_SQL, missing, missing.size(), (statement, state) -> {
+            LatestMessage latest = latestByChat.get(state.chatId());
+            statement.setObject(1, UUID.randomUUID());
+            statement.setObject(2, state.chatId());
+            statement.setObject(3, state.userId());
+            statement.setObject(4, latest != null ? latest.id() : null);
+            statement.setString(5, latest != null ? chatMessageWriter.preview(latest.content()) : null);
+            statement.setObject(6, latest != null ? latest.senderId() : null);
+            // Sem mensagens, a atividade é a criação do chat, como num chat novo
+            statement.setTimestamp(7, latest != null ? latest.timestamp() : state.chatCreatedAt());
+            statement.setTimestamp(8, latest != null ? latest.timestamp() : null);
+        });
+    }
+
+    private Map<UUID, LatestMessage> latestMessages(List<UUID> chatIds) {
+        List<UUID> distinct = new ArrayList<>(new LinkedHashSet<>(chatIds));
+        Map<UUID, LatestMessage> latestByChat = new HashMap<>();
+        jdbcTemplate.query(LATEST_MESSAGES_SQL.formatted(placeholders(distinct.size())), rs -> {
+            latestByChat.put(rs.getObject(1, UUID.class), new LatestMessage(rs.getObject(2, UUID.class),
+                    rs.getString(3), rs.getObject(4, UUID.class), rs.getTimestamp(5)));
+        }, distinct.toArray());
+        return latestByChat;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,430 @@
+package com.alugaserra.service;
+
+import com.alugaserra.dto.ChatMessageViewDto;
+import com.alugaserra.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Gravação assíncrona (write-behind) das mensagens de chat.
+ *
+ * O id e o timestamp da mensagem são definidos aqui, junto com a entrada numa fila limitada, e a
+ * mensagem é entregue ao destinatário na hora. Timestamp e posição na fila saem sob a mesma trava,
+ * então a ordem de gravação é a ordem do cursor do histórico (timestamp, id). Uma thread esvazia a fila em lotes JDBC, quando o lote enche
+ * (flush-size) ou o intervalo vence (flush-interval). Falhas transitórias do banco são repetidas com
+ * espera crescente, segurando a fila (quando ela enche, o envio é recusado com 503, em vez de perder
+ * mensagens); um lote recusado por constraint é regravado linha a linha e só a mensagem inválida é
+ * descartada. Ao desligar a aplicação, a fila é gravada antes do fechamento do pool de conexões.
+ *
+ * Enquanto estão na fila, as mensagens ainda não aparecem no histórico (GET /api/chats/{id}/messages).
+ */
+@Component
+public class ChatMessageWriter implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatMessageWriter.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_messages (id, chat_id, sender_id, content, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    // Estado da caixa de entrada (ChatParticipantState), atualizado na mesma transação das mensagens.
+    // Não lidas: uma a mais para cada outro participante que não leu o chat depois do envio
+    private static final String UNREAD_SQL =
+            "UPDATE chat_participant_states SET unread_count = unread_count + 1 " +
+                    "WHERE chat_id = ? AND user_id <> ? AND (last_read_at IS NULL OR last_read_at < ?)";
+
+    // Última mensagem: só avança (um lote repetido ou atrasado não volta a caixa de entrada para trás)
+    private static final String LAST_MESSAGE_SQL =
+            "UPDATE chat_participant_states SET last_message_id = ?, last_message_preview = ?, last_sender_id = ?, " +
+                    "last_activity_at = ? WHERE chat_id = ? AND last_activity_at <= ?";
+
+    // Espera máxima de cada poll, para a thread perceber o stop() sem ser interrompida no meio do JDBC
+    private static final long POLL_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${chat.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${chat.write-behind.flush-size:200}")
+    private int flushSize;
+
+    @Value("${chat.write-behind.flush-interval:200ms}")
+    private Duration flushInterval;
+
+    // Quanto o envio espera por espaço na fila antes de ser recusado
+    @Value("${chat.write-behind.enqueue-timeout:1s}")
+    private Duration enqueueTimeout;
+
+    @Value("${chat.write-behind.retry-backoff:500ms}")
+    private Duration retryBackoff;
+
+    @Value("${chat.write-behind.max-retry-backoff:30s}")
+    private Duration maxRetryBackoff;
+
+    // Tamanho máximo do trecho da última mensagem mostrado na caixa de entrada
+    @Value("${chat.inbox.preview-length:120}")
+    private int previewLength;
+
+    // Tempo máximo para gravar a fila ao desligar; o que sobrar é registrado no log como perdido
+    @Value("${chat.write-behind.shutdown-timeout:30s}")
+    private Duration shutdownTimeout;
+
+    private BlockingQueue<Pending> queue;
+    // Vagas livres na fila: o envio espera por uma vaga antes da trava, que então só é segurada por um offer que não bloqueia
+    private Semaphore slots;
+    // Timestamp e entrada na fila juntos: sem ela, duas mensagens podiam entrar na fila fora da ordem dos timestamps
+    private final ReentrantLock stamping = new ReentrantLock();
+    private LocalDateTime lastTimestamp = LocalDateTime.MIN;
+    private volatile boolean running;
+    private volatile long stopDeadlineNanos;
+    private volatile long inFlightSinceNanos;
+    private Thread writer;
+
+    private Counter written;
+    private Counter dropped;
+    private Counter rejected;
+    private Counter retries;
+    private Timer flushTimer;
+    private Timer persistLag;
+    private DistributionSummary batchSizes;
+
+    private static final Comparator<ChatMessageViewDto> LATEST_FIRST =
+            Comparator.comparing(ChatMessageViewDto::timestamp).thenComparing(ChatMessageViewDto::id).reversed();
+
+    private record Pending(ChatMessageViewDto message, long enqueuedAtNanos) {
+    }
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        slots = new Semaphore(queueCapacity);
+        written = Counter.builder("chat.write-behind.messages").tag("result", "written").register(meterRegistry);
+        dropped = Counter.builder("chat.write-behind.messages").tag("result", "dropped").register(meterRegistry);
+        rejected = Counter.builder("chat.write-behind.messages").tag("result", "rejected").register(meterRegistry);
+        retries = Counter.builder("chat.write-behind.retries").register(meterRegistry);
+        flushTimer = Timer.builder("chat.write-behind.flush").register(meterRegistry);
+        persistLag = Timer.builder("chat.write-behind.persist-lag")
+                .description("Tempo entre o envio da mensagem e a gravação no banco")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("chat.write-behind.batch-size").register(meterRegistry);
+        Gauge.builder("chat.write-behind.queue", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("chat.write-behind.lag", this, ChatMessageWriter::lagSeconds)
+                .description("Idade, em segundos, da mensagem mais antiga ainda não gravada")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cria a mensagem (id e timestamp) e a coloca na fila de gravação. Os timestamps deste nó são
+     * estritamente crescentes, na precisão do banco (microssegundos), para o cursor do histórico bater
+     * com a ordem em que as mensagens foram entregues.
+     * @return A mensagem criada, pronta para ser entregue.
+     * @throws ServiceOverloadedException se a fila continuar cheia depois de enqueue-timeout.
+     */
+    public ChatMessageViewDto enqueue(UUID chatId, UUID senderId, String content) {
+        checkRunning();
+        acquireSlot();
+        stamping.lock();
+        try {
+            LocalDateTime timestamp = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            if (!timestamp.isAfter(lastTimestamp)) {
+                timestamp = lastTimestamp.plus(1, ChronoUnit.MICROS);
+            }
+            ChatMessageViewDto message = new ChatMessageViewDto(UUID.randomUUID(), chatId, senderId, content, timestamp);
+            offer(message);
+            lastTimestamp = timestamp;
+            return message;
+        } finally {
+            stamping.unlock();
+        }
+    }
+
+    // Mensagem já montada (ex: testes); a ordem na fila fica por conta de quem chama
+    void enqueue(ChatMessageViewDto message) {
+        checkRunning();
+        acquireSlot();
+        offer(message);
+    }
+
+    private void checkRunning() {
+        if (!running) {
+            throw new IllegalStateException("O gravador de mensagens não está em execução.");
+        }
+    }
+
+    // Espera uma vaga na fila por até enqueue-timeout
+    private void acquireSlot() {
+        try {
+            if (!slots.tryAcquire(enqueueTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw overloaded();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompido enquanto esperava espaço na fila de mensagens.", e);
+        }
+    }
+
+    // Com a vaga já reservada, a fila tem espaço: o offer não espera
+    private void offer(ChatMessageViewDto message) {
+        if (!queue.offer(new Pending(message, System.nanoTime()))) {
+            slots.release();
+            throw overloaded();
+        }
+    }
+
+    private ServiceOverloadedException overloaded() {
+        rejected.increment();
+        return new ServiceOverloadedException("Muitas mensagens sendo enviadas. Tente novamente em instantes.", retryBackoff);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "chat-message-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        stopDeadlineNanos = System.nanoTime() + shutdownTimeout.toNanos();
+        running = false;
+        try {
+            writer.join(shutdownTimeout.toMillis() + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            log.error("{} mensagens de chat não foram gravadas antes do desligamento", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Fase baixa: para depois dos handlers de WebSocket (que param antes e deixam de enfileirar)
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    int pendingCount() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(flushSize);
+        while (running || !queue.isEmpty()) {
+            fillBatch(batch);
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Espera a primeira mensagem e junta as seguintes até encher o lote ou vencer o intervalo
+    private void fillBatch(List<Pending> batch) {
+        Pending first = poll(POLL_SLICE_NANOS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushInterval.toNanos();
+        while (batch.size() < flushSize) {
+            slots.release(queue.drainTo(batch, flushSize - batch.size()));
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= flushSize || remaining <= 0 || !running) {
+                return;
+            }
+            Pending next = poll(Math.min(remaining, POLL_SLICE_NANOS));
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    private Pending poll(long timeoutNanos) {
+        try {
+            Pending pending = queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+            if (pending != null) {
+                slots.release();
+            }
+            return pending;
+        } catch (InterruptedException e) {
+            // Não é esperado (o stop() não interrompe a thread); segue até esvaziar a fila
+            return null;
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        inFlightSinceNanos = batch.get(0).enqueuedAtNanos();
+        try {
+            if (insertRetrying(batch) != null) {
+                // Ex: o chat foi apagado com mensagens na fila. Grava as outras e descarta só as inválidas
+                writeOneByOne(batch);
+            }
+        } finally {
+            inFlightSinceNanos = 0;
+        }
+    }
+
+    // Também repete as falhas transitórias, sem sair do lote em andamento (a idade do lag continua a dele)
+    private void writeOneByOne(List<Pending> batch) {
+        for (Pending pending : batch) {
+            DataIntegrityViolationException refused = insertRetrying(List.of(pending));
+            if (refused != null) {
+                dropped.increment();
+                log.error("Mensagem de chat {} descartada: recusada pelo banco", pending.message().id(), refused);
+            }
+        }
+    }
+
+    /**
+     * Grava as mensagens, repetindo as falhas transitórias do banco com espera crescente.
+     * @return A recusa do banco por constraint, ou nulo se as mensagens foram gravadas (ou descartadas
+     *         no desligamento, depois de shutdown-timeout).
+     */
+    private DataIntegrityViolationException insertRetrying(List<Pending> batch) {
+        long backoff = retryBackoff.toMillis();
+        while (true) {
+            try {
+                long start = System.nanoTime();
+                insert(batch);
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchSizes.record(batch.size());
+                recordWritten(batch);
+                return null;
+            } catch (DataIntegrityViolationException e) {
+                return e;
+            } catch (DataAccessException e) {
+                if (!running && System.nanoTime() > stopDeadlineNanos) {
+                    dropped.increment(batch.size());
+                    log.error("Desligando: {} mensagens de chat descartadas depois de falhas ao gravar", batch.size(), e);
+                    return null;
+                }
+                retries.increment();
+                log.warn("Falha ao gravar {} mensagens de chat; nova tentativa em {} ms", batch.size(), backoff, e);
+                sleep(backoff);
+                backoff = Math.min(backoff * 2, maxRetryBackoff.toMillis());
+            }
+        }
+    }
+
+    // Numa transação: um lote recusado não deixa metade das linhas gravadas (nem o estado da caixa de entrada)
+    private void insert(List<Pending> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (statement, pending) -> {
+                ChatMessageViewDto message = pending.message();
+                statement.setObject(1, message.id());
+                statement.setObject(2, message.chatId());
+                statement.setObject(3, message.senderId());
+                statement.setString(4, message.content());
+                statement.setTimestamp(5, Timestamp.valueOf(message.timestamp()));
+            });
+            updateInboxState(batch);
+        });
+    }
+
+    private void updateInboxState(List<Pending> batch) {
+        jdbcTemplate.batchUpdate(UNREAD_SQL, batch, batch.size(), (statement, pending) -> {
+            ChatMessageViewDto message = pending.message();
+            statement.setObject(1, message.chatId());
+            statement.setObject(2, message.senderId());
+            statement.setTimestamp(3, Timestamp.valueOf(message.timestamp()));
+        });
+        // Só a mensagem mais recente de cada chat do lote
+        Map<UUID, ChatMessageViewDto> latestByChat = new HashMap<>();
+        for (Pending pending : batch) {
+            latestByChat.merge(pending.message().chatId(), pending.message(),
+                    (current, candidate) -> LATEST_FIRST.compare(candidate, current) < 0 ? candidate : current);
+        }
+        List<ChatMessageViewDto> latest = new ArrayList<>(latestByChat.values());
+        jdbcTemplate.batchUpdate(LAST_MESSAGE_SQL, latest, latest.size(), (statement, message) -> {
+            Timestamp timestamp = Timestamp.valueOf(message.timestamp());
+            statement.setObject(1, message.id());
+            statement.setString(2, preview(message.content()));
+            statement.setObject(3, message.senderId());
+            statement.setTimestamp(4, timestamp);
+            statement.setObject(5, message.chatId());
+            statement.setTimestamp(6, timestamp);
+        });
+    }
+
+    // Também usado pelo ChatBackfill, para o estado dos chats antigos sair igual ao dos novos
+    String preview(String content) {
+        if (content == null || content.length() <= previewLength) {
+            return content;
+        }
+        // Não corta um par substituto (ex: emoji) ao meio
+        int end = Character.isHighSurrogate(content.charAt(previewLength - 1)) ? previewLength - 1 : previewLength;
+        return content.substring(0, end) + "…";
+    }
+
+    private void recordWritten(List<Pending> batch) {
+        long now = System.nanoTime();
+        written.increment(batch.size());
+        for (Pending pending : batch) {
+            persistLag.record(now - pending.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private double lagSeconds() {
+        long oldest = inFlightSinceNanos;
+        if (oldest == 0) {
+            Pending head = queue.peek();
+            if (head == null) {
+                return 0;
+            }
+            oldest = head.enqueuedAtNanos();
+        }
+        return (System.nanoTime() - oldest) / 1e9;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
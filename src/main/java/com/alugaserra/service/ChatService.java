@@ -1,21 +1,45 @@
 package com.alugaserra.service;
 
+import com.alugaserra.dto.ChatInboxItemDto;
+import com.alugaserra.dto.ChatInboxPageDto;
+import com.alugaserra.dto.ChatMessagePageDto;
+import com.alugaserra.dto.ChatMessageViewDto;
+import com.alugaserra.dto.ChatParticipantDto;
+import com.alugaserra.dto.ChatSummaryDto;
+import com.alugaserra.event.ChatCreatedEvent;
+import com.alugaserra.exception.InvalidRequestException;
 import com.alugaserra.model.Chat;
-import com.alugaserra.model.ChatMessage;
-import com.alugaserra.model.Property;
+import com.alugaserra.model.ChatParticipantState;
 import com.alugaserra.model.User;
 import com.alugaserra.repository.ChatMessageRepository;
+import com.alugaserra.repository.ChatParticipantStateRepository;
 import com.alugaserra.repository.ChatRepository;
 import com.alugaserra.repository.PropertyRepository;
 import com.alugaserra.repository.UserRepository;
+import com.alugaserra.repository.specification.ChatMessageCursor;
+import com.alugaserra.websocket.ChatContext;
+import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Arrays;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ChatService {
@@ -24,38 +48,272 @@ public class ChatService {
     @Autowired private ChatMessageRepository chatMessageRepository;
     @Autowired private UserRepository userRepository;
     @Autowired private PropertyRepository propertyRepository;
+    @Autowired private ChatParticipantStateRepository chatParticipantStateRepository;
+    @Autowired private ChatMessageWriter chatMessageWriter;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private ApplicationEventPublisher eventPublisher;
 
-    @Transactional
-    public Chat findOrCreateChat(UUID propertyId, UUID initiatorId) {
-        Property property = propertyRepository.findById(propertyId).orElseThrow(() -> new RuntimeException("Imóvel não encontrado"));
-        User initiator = userRepository.findById(initiatorId).orElseThrow(() -> new RuntimeException("Usuário iniciador não encontrado"));
-        User owner = property.getOwner();
+    // Criações de chat em andamento neste nó, por chave da conversa
+    private final Map<String, CompletableFuture<UUID>> pendingCreations = new ConcurrentHashMap<>();
+
+    @Value("${chat.messages.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${chat.messages.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${chat.inbox.default-page-size:20}")
+    private int inboxDefaultPageSize;
 
-        // Procura por um chat existente entre o iniciador e o dono do imóvel.
-        return chatRepository.findChatByParticipantsAndProperty(initiator.getId(), owner.getId(), property.getId())
-                .orElseGet(() -> {
-                    // Se não existir, cria um novo chat.
-                    Chat newChat = new Chat();
-                    newChat.setProperty(property);
-                    newChat.setParticipants(Arrays.asList(initiator, owner));
-                    return chatRepository.save(newChat);
-                });
+    @Value("${chat.inbox.max-page-size:100}")
+    private int inboxMaxPageSize;
+
+    /**
+     * Encontra a conversa entre o usuário e o dono do imóvel, criando-a se ainda não existir.
+     * A busca é uma consulta no índice único da chave da conversa (imóvel + par de participantes).
+     * Chamadas simultâneas para a mesma chave neste nó esperam a mesma criação; entre nós, quem perde
+     * a corrida recebe a violação do índice único e relê o chat criado pelo outro.
+     * @return O ID do chat.
+     */
+    public UUID findOrCreateChat(UUID propertyId, UUID initiatorId) {
+        UUID ownerId = propertyRepository.findOwnerIdById(propertyId)
+                .orElseThrow(() -> new EntityNotFoundException("Imóvel não encontrado com o ID: " + propertyId));
+        if (ownerId.equals(initiatorId)) {
+            throw new InvalidRequestException("Não é possível iniciar uma conversa sobre o próprio imóvel.");
+        }
+        String key = Chat.conversationKey(propertyId, initiatorId, ownerId);
+        Optional<UUID> existing = chatRepository.findIdByConversationKey(key);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        CompletableFuture<UUID> creation = new CompletableFuture<>();
+        CompletableFuture<UUID> inFlight = pendingCreations.putIfAbsent(key, creation);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            // Outra chamada pode ter criado e saído do mapa entre a primeira busca e o putIfAbsent
+            UUID chatId = chatRepository.findIdByConversationKey(key)
+                    .orElseGet(() -> createChat(key, propertyId, initiatorId, ownerId));
+            creation.complete(chatId);
+            return chatId;
+        } catch (RuntimeException e) {
+            creation.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingCreations.remove(key, creation);
+        }
     }
 
-    public List<Chat> getUserChats(UUID userId) {
-        User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("Usuário não encontrado"));
-        return chatRepository.findByParticipantsContains(user);
+    // Insere o chat, os participantes e o estado da caixa de entrada de cada um, sem carregar as entidades
+    private UUID createChat(String key, UUID propertyId, UUID initiatorId, UUID ownerId) {
+        UUID chatId;
+        try {
+            chatId = transactionTemplate.execute(status -> {
+                Chat chat = new Chat();
+                chat.setConversationKey(key);
+                chat.setProperty(propertyRepository.getReferenceById(propertyId));
+                chat.setParticipants(new ArrayList<>(List.of(
+                        userRepository.getReferenceById(initiatorId), userRepository.getReferenceById(ownerId))));
+                chatRepository.saveAndFlush(chat);
+                // A conversa já entra na caixa de entrada dos dois, sem mensagens
+                LocalDateTime now = LocalDateTime.now();
+                for (User participant : chat.getParticipants()) {
+                    ChatParticipantState state = new ChatParticipantState();
+                    state.setChat(chat);
+                    state.setUser(participant);
+                    state.setLastActivityAt(now);
+                    chatParticipantStateRepository.save(state);
+                }
+                return chat.getId();
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Outro nó criou a mesma conversa ao mesmo tempo
+            return chatRepository.findIdByConversationKey(key).orElseThrow(() -> e);
+        }
+        // Depois do commit: as sessões WebSocket dos participantes recarregam os seus chats
+        eventPublisher.publishEvent(new ChatCreatedEvent(chatId, propertyId, List.of(initiatorId, ownerId)));
+        return chatId;
     }
 
-    public List<ChatMessage> getChatMessages(UUID chatId, UUID userId) {
-        Chat chat = chatRepository.findById(chatId).orElseThrow(() -> new RuntimeException("Chat não encontrado"));
+    private static UUID await(CompletableFuture<UUID> creation) {
+        try {
+            return creation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 
+    /**
+     * Registra uma mensagem enviada pelo WebSocket. O chat vem do cache da sessão STOMP
+     * ({@link com.alugaserra.websocket.ChatSessionRegistry}), então não há consulta ao banco. O id, o
+     * timestamp e a gravação ficam com o {@link ChatMessageWriter}, em memória: a mensagem pode ser
+     * entregue ao destinatário sem esperar o INSERT.
+     * @param senderId O usuário autenticado da sessão.
+     * @return A mensagem, pronta para ser entregue.
+     */
+    public ChatMessageViewDto sendMessage(ChatContext chat, UUID senderId, String content) {
+        if (!chat.hasParticipant(senderId)) {
+            throw new AccessDeniedException("O remetente não participa deste chat.");
+        }
+        // Id e timestamp saem junto com a entrada na fila de gravação, na mesma ordem
+        return chatMessageWriter.enqueue(chat.chatId(), senderId, content);
+    }
+
+    /**
+     * Inicia (ou reaproveita) a conversa sobre o imóvel e devolve o seu resumo.
+     */
+    public ChatSummaryDto startChat(UUID propertyId, UUID initiatorId) {
+        UUID chatId = findOrCreateChat(propertyId, initiatorId);
+        Object[] row = chatRepository.findSummaryRow(chatId).get(0);
+        return summaryOf(row, participantsOf(List.of(chatId)));
+    }
+
+    /**
+     * Lista os chats do usuário, do mais novo para o mais antigo. São sempre duas consultas
+     * (os chats e os participantes de todos eles), qualquer que seja o número de conversas.
+     */
+    @Transactional(readOnly = true)
+    public List<ChatSummaryDto> getUserChats(UUID userId) {
+        List<Object[]> chatRows = chatRepository.findSummaryRowsByParticipant(userId);
+        if (chatRows.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, List<ChatParticipantDto>> participantsByChat = participantsOf(chatRows.stream().map(row -> (UUID) row[0]).toList());
+        List<ChatSummaryDto> summaries = new ArrayList<>(chatRows.size());
+        for (Object[] row : chatRows) {
+            summaries.add(summaryOf(row, participantsByChat));
+        }
+        return summaries;
+    }
+
+    // Linha [id do chat, id do imóvel, título do imóvel, criação] + participantes já buscados
+    private static ChatSummaryDto summaryOf(Object[] row, Map<UUID, List<ChatParticipantDto>> participantsByChat) {
+        UUID chatId = (UUID) row[0];
+        return new ChatSummaryDto(chatId, (UUID) row[1], (String) row[2],
+                participantsByChat.getOrDefault(chatId, List.of()), (LocalDateTime) row[3]);
+    }
+
+    /**
+     * Caixa de entrada do usuário: as conversas da mais recente para a mais antiga, com a última mensagem
+     * e as não lidas. Lê só o estado desnormalizado (ChatParticipantState) e os participantes da página;
+     * mensagens ainda na fila de gravação aparecem assim que o lote é gravado.
+     * @param before O "nextCursor" da página anterior, ou nulo para a primeira página.
+     */
+    @Transactional(readOnly = true)
+    public ChatInboxPageDto getInbox(UUID userId, String before, Integer size) {
+        int pageSize = resolvePageSize(size, inboxDefaultPageSize, inboxMaxPageSize);
+        Limit limit = Limit.of(pageSize + 1);
+        List<ChatInboxItemDto> rows;
+        if (hasText(before)) {
+            ChatMessageCursor cursor = ChatMessageCursor.decode(before);
+            rows = chatParticipantStateRepository.findInboxBefore(userId, cursor.timestamp(), cursor.id(), limit);
+        } else {
+            rows = chatParticipantStateRepository.findInbox(userId, limit);
+        }
+        boolean hasNext = rows.size() > pageSize;
+        List<ChatInboxItemDto> page = hasNext ? rows.subList(0, pageSize) : rows;
+        if (page.isEmpty()) {
+            return new ChatInboxPageDto(List.of(), null);
+        }
+
+        Map<UUID, List<ChatParticipantDto>> participantsByChat = participantsOf(page.stream().map(ChatInboxItemDto::chatId).toList());
+        List<ChatInboxItemDto> items = page.stream()
+                .map(item -> item.withParticipants(participantsByChat.getOrDefault(item.chatId(), List.of())))
+                .toList();
+        ChatInboxItemDto last = page.get(page.size() - 1);
+        String nextCursor = hasNext ? new ChatMessageCursor(last.lastActivityAt(), last.chatId()).encode() : null;
+        return new ChatInboxPageDto(items, nextCursor);
+    }
+
+    /**
+     * Zera as não lidas do usuário no chat.
+     */
+    @Transactional
+    public void markAsRead(UUID chatId, UUID userId) {
+        if (chatParticipantStateRepository.markRead(chatId, userId, LocalDateTime.now()) == 0) {
+            if (!chatRepository.existsById(chatId)) {
+                throw new EntityNotFoundException("Chat não encontrado");
+            }
+            throw new AccessDeniedException("Usuário não tem permissão para aceder a este chat.");
+        }
+    }
+
+    /**
+     * Retorna uma página do histórico do chat, paginada por (timestamp, id).
+     * Sem cursor, traz as mensagens mais recentes; com "before", as anteriores ao cursor;
+     * com "since", as posteriores (para o cliente que reconecta buscar só o que perdeu).
+     * @param size O tamanho da página, limitado a chat.messages.max-page-size.
+     */
+    public ChatMessagePageDto getChatMessages(UUID chatId, UUID userId, String before, String since, Integer size) {
         // Validação de segurança: o usuário que pede as mensagens faz parte da conversa?
-        boolean isParticipant = chat.getParticipants().stream().anyMatch(p -> p.getId().equals(userId));
-        if (!isParticipant) {
+        if (!chatRepository.existsByIdAndParticipants_Id(chatId, userId)) {
+            if (!chatRepository.existsById(chatId)) {
+                throw new EntityNotFoundException("Chat não encontrado");
+            }
             throw new AccessDeniedException("Usuário não tem permissão para aceder a este chat.");
         }
+        if (hasText(before) && hasText(since)) {
+            throw new InvalidRequestException("Informe apenas um dos parâmetros 'before' ou 'since'.");
+        }
+        int pageSize = resolvePageSize(size, defaultPageSize, maxPageSize);
+        // Buscamos uma mensagem a mais para saber se existe uma próxima página sem precisar de COUNT.
+        Limit limit = Limit.of(pageSize + 1);
+
+        if (hasText(since)) {
+            ChatMessageCursor after = ChatMessageCursor.decode(since);
+            List<ChatMessageViewDto> rows = chatMessageRepository.findAfter(chatId, after.timestamp(), after.id(), limit);
+            boolean hasNext = rows.size() > pageSize;
+            List<ChatMessageViewDto> page = hasNext ? rows.subList(0, pageSize) : rows;
+            String syncCursor = page.isEmpty() ? since : cursorOf(page.get(page.size() - 1));
+            return new ChatMessagePageDto(new ArrayList<>(page), hasNext ? syncCursor : null, syncCursor);
+        }
 
-        return chatMessageRepository.findByChatIdOrderByTimestampAsc(chatId);
+        List<ChatMessageViewDto> rows;
+        if (hasText(before)) {
+            ChatMessageCursor cursor = ChatMessageCursor.decode(before);
+            rows = chatMessageRepository.findBefore(chatId, cursor.timestamp(), cursor.id(), limit);
+        } else {
+            rows = chatMessageRepository.findLatest(chatId, limit);
+        }
+        boolean hasNext = rows.size() > pageSize;
+        List<ChatMessageViewDto> page = new ArrayList<>(hasNext ? rows.subList(0, pageSize) : rows);
+        // Veio da mais nova para a mais antiga; a página é entregue em ordem cronológica
+        Collections.reverse(page);
+        String nextCursor = hasNext ? cursorOf(page.get(0)) : null;
+        String syncCursor = page.isEmpty() ? null : cursorOf(page.get(page.size() - 1));
+        return new ChatMessagePageDto(page, nextCursor, syncCursor);
+    }
+
+    // Participantes de vários chats numa consulta só
+    private Map<UUID, List<ChatParticipantDto>> participantsOf(List<UUID> chatIds) {
+        Map<UUID, List<ChatParticipantDto>> participantsByChat = new HashMap<>();
+        for (Object[] row : chatRepository.findParticipantRows(chatIds)) {
+            participantsByChat.computeIfAbsent((UUID) row[0], id -> new ArrayList<>())
+                    .add(new ChatParticipantDto((UUID) row[1], (String) row[2]));
+        }
+        return participantsByChat;
+    }
+
+    private static String cursorOf(ChatMessageViewDto message) {
+        return new ChatMessageCursor(message.timestamp(), message.id()).encode();
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static int resolvePageSize(Integer size, int defaultPageSize, int maxPageSize) {
+        if (size == null) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        if (size < 1) {
+            throw new InvalidRequestException("O tamanho da página deve ser maior que zero.");
+        }
+        return Math.min(size, maxPageSize);
     }
 }
@@ -0,0 +1,56 @@
+package com.alugaserra.service;
+
+import com.alugaserra.model.Plan;
+import com.alugaserra.repository.PlanRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cópia em memória da tabela de planos, que quase nunca muda.
+ *
+ * É carregada na primeira consulta (os planos padrão são criados pelo DataInitializer, depois da
+ * subida do contexto) e substituída inteira em {@link #reload()}. Os planos devolvidos estão fora
+ * da sessão do JPA: servem para referência (ex: a FK da assinatura), não para edição.
+ */
+@Component
+public class PlanCatalog {
+
+    @Autowired
+    private PlanRepository planRepository;
+
+    @Value("${plans.default-name:Bronze}")
+    private String defaultPlanName;
+
+    private volatile Map<String, Plan> plansByName = Map.of();
+
+    /**
+     * O plano dado a todo usuário novo.
+     */
+    public Plan defaultPlan() {
+        return findByName(defaultPlanName);
+    }
+
+    public Plan findByName(String name) {
+        Plan plan = plansByName.get(name);
+        if (plan == null) {
+            // Plano criado depois da última carga (ou primeira consulta): recarrega uma vez
+            plan = reload().get(name);
+        }
+        if (plan == null) {
+            throw new IllegalStateException("Erro crítico: Plano " + name + " não encontrado no banco de dados!");
+        }
+        return plan;
+    }
+
+    public Map<String, Plan> reload() {
+        Map<String, Plan> plans = planRepository.findAll().stream()
+                .collect(Collectors.toUnmodifiableMap(Plan::getName, Function.identity()));
+        plansByName = plans;
+        return plans;
+    }
+}
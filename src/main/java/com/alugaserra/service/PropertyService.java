@@ -1,27 +1,55 @@
 package com.alugaserra.service;
 
+import com.alugaserra.dto.GeoArea;
 import com.alugaserra.dto.OwnerSummaryDto;
 import com.alugaserra.dto.PropertyCreateDto;
+import com.alugaserra.dto.PropertyFacetsDto;
+import com.alugaserra.dto.PropertyPageDto;
 import com.alugaserra.dto.PropertyResponseDto;
+import com.alugaserra.dto.PropertySearchFilter;
 import com.alugaserra.dto.PropertyUpdateDto;
+import com.alugaserra.enums.PropertySort;
 import com.alugaserra.enums.PropertyStatus;
-import com.alugaserra.enums.PropertyType;
+import com.alugaserra.event.PropertyChangedEvent;
+import com.alugaserra.exception.InvalidRequestException;
+import com.alugaserra.exception.ServiceOverloadedException;
 import com.alugaserra.model.Property;
 import com.alugaserra.model.Subscription;
 import com.alugaserra.model.User;
 import com.alugaserra.repository.PropertyRepository;
 import com.alugaserra.repository.SubscriptionRepository;
+import com.alugaserra.repository.specification.PropertyCursor;
 import com.alugaserra.repository.specification.PropertySpecification;
+import com.alugaserra.search.GeoGridIndex;
+import com.alugaserra.search.PropertyFilterIndex;
+import com.alugaserra.search.PropertySnapshot;
+import com.alugaserra.search.PropertyTextIndex;
+import com.alugaserra.search.SearchCacheKey;
+import com.alugaserra.search.SearchResultCache;
+import com.alugaserra.search.SearchEngineMode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 /**
  * Contém a lógica de negócio para operações relacionadas a imóveis.
@@ -29,44 +57,275 @@ import java.util.stream.Collectors;
 @Service
 public class PropertyService {
 
+    private static final Logger log = LoggerFactory.getLogger(PropertyService.class);
+
     @Autowired
     private PropertyRepository propertyRepository;
 
     @Autowired
     private SubscriptionRepository subscriptionRepository;
 
+    @Autowired
+    private PropertyFilterIndex propertyFilterIndex;
+
+    @Autowired
+    private PropertyTextIndex propertyTextIndex;
+
+    @Autowired
+    private GeoGridIndex geoGridIndex;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Caminho usado pela busca estruturada: jpa, index ou compare (ver SearchEngineMode)
+    @Value("${properties.search.engine:jpa}")
+    private SearchEngineMode searchEngineMode;
+
+    // Tamanho de página usado quando o cliente não informa "size", e o limite máximo aceito.
+    @Value("${properties.search.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${properties.search.max-page-size:100}")
+    private int maxPageSize;
+
+    // Retry-After sugerido enquanto os índices em memória fazem a carga inicial
+    @Value("${properties.search.warmup-retry-after:5s}")
+    private Duration warmupRetryAfter = Duration.ofSeconds(5);
+
+    private static final int MAX_QUERY_LENGTH = 200;
+
     // --- Métodos de Busca ---
 
-    public List<PropertyResponseDto> findAllActiveProperties() {
-        return searchProperties(null, null, null, null);
+    public PropertyPageDto findAllActiveProperties() {
+        return searchProperties(PropertySearchFilter.empty(), PropertySort.NEWEST, null, null);
     }
 
-    public List<PropertyResponseDto> searchProperties(PropertyType type, Double maxRent, Integer minRooms, Boolean hasGarage) {
-        Specification<Property> spec = Specification.where(PropertySpecification.isActive());
+    /**
+     * Busca imóveis ativos com paginação por chave (keyset).
+     * @param filter Os filtros opcionais da busca, incluindo o texto livre "q" e a área do mapa.
+     * @param sort A ordenação desejada (padrão: relevância quando há "q", distância quando há um raio,
+     *             senão mais recentes).
+     * @param cursor O cursor opaco devolvido pela página anterior, ou nulo para a primeira página.
+     * @param size O tamanho da página, limitado a properties.search.max-page-size.
+     * @return A página de imóveis e o cursor da próxima página.
+     */
+    public PropertyPageDto searchProperties(PropertySearchFilter filter, PropertySort sort, String cursor, Integer size) {
+        validateQuery(filter);
+        // Uma consulta só com palavras vazias ("de", "com"...) é tratada como busca sem texto.
+        boolean textSearch = filter.hasText() && PropertyTextIndex.hasSearchableTerms(filter.q());
+        GeoArea area = filter.area();
+        PropertySort effectiveSort = sort != null ? sort : defaultSort(textSearch, area);
+        if (effectiveSort == PropertySort.RELEVANCE && !textSearch) {
+            throw new InvalidRequestException("A ordenação por relevância exige o parâmetro 'q'.");
+        }
+        if (effectiveSort == PropertySort.DISTANCE && (area == null || !area.hasCenter())) {
+            throw new InvalidRequestException("A ordenação por distância exige os parâmetros 'lat' e 'lng'.");
+        }
+        int pageSize = resolvePageSize(size);
+        PropertyCursor after = cursor != null && !cursor.isBlank() ? PropertyCursor.decode(cursor, effectiveSort) : null;
 
-        if (type != null) {
-            spec = spec.and(PropertySpecification.hasType(type));
+        // Buscamos um item a mais para saber se existe uma próxima página sem precisar de COUNT.
+        int limit = pageSize + 1;
+        Map<UUID, Double> scores = textSearch ? scoreText(filter.q()) : null;
+        Map<UUID, Double> distances = area != null ? locate(area) : null;
+        List<PropertyResponseDto> rows = scores != null || distances != null
+                ? searchInMemory(filter, effectiveSort, after, limit, scores, distances)
+                : switch (resolveEngineMode()) {
+                    case JPA -> searchWithJpa(filter, effectiveSort, after, limit);
+                    case INDEX -> searchWithIndex(filter, effectiveSort, after, limit);
+                    case COMPARE -> searchAndCompare(filter, effectiveSort, after, limit);
+                };
+
+        boolean hasNext = rows.size() > pageSize;
+        List<PropertyResponseDto> page = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasNext ? cursorAfter(page.get(page.size() - 1), effectiveSort, scores, distances).encode() : null;
+        return new PropertyPageDto(new ArrayList<>(page), nextCursor);
+    }
+
+    /**
+     * Conta as facetas da busca (tipo, quartos, faixas de aluguel, garagem e mobília) respeitando
+     * os demais filtros selecionados, inclusive o texto "q" e a área do mapa.
+     */
+    public PropertyFacetsDto getFacets(PropertySearchFilter filter) {
+        validateQuery(filter);
+        if (!propertyFilterIndex.isReady()) {
+            throw new ServiceOverloadedException(
+                    "As facetas da busca ainda estão sendo preparadas. Tente novamente em instantes.", warmupRetryAfter);
         }
-        if (maxRent != null) {
-            spec = spec.and(PropertySpecification.maxRent(maxRent));
+        boolean textSearch = filter.hasText() && PropertyTextIndex.hasSearchableTerms(filter.q());
+        Map<UUID, Double> scores = textSearch ? scoreText(filter.q()) : null;
+        Map<UUID, Double> distances = filter.area() != null ? locate(filter.area()) : null;
+        return propertyFilterIndex.facets(filter, scores != null || distances != null ? candidates(scores, distances) : null);
+    }
+
+    /**
+     * Igual a {@link #searchProperties}, mas devolve a página já serializada em JSON.
+     * As buscas estruturadas (sem "q" nem área do mapa) passam pelo {@link SearchResultCache}.
+     */
+    public byte[] searchPropertiesAsJson(PropertySearchFilter filter, PropertySort sort, String cursor, Integer size) {
+        if (filter.hasText() || filter.area() != null || !searchResultCache.isEnabled()) {
+            return toJson(searchProperties(filter, sort, cursor, size));
         }
-        if (minRooms != null) {
-            spec = spec.and(PropertySpecification.minRooms(minRooms));
+        PropertySort effectiveSort = sort != null ? sort : PropertySort.NEWEST;
+        SearchCacheKey key = SearchCacheKey.of(filter, effectiveSort, cursor, resolvePageSize(size));
+        return searchResultCache.getOrCompute(key, () -> toJson(searchProperties(filter, effectiveSort, cursor, size)));
+    }
+
+    private void validateQuery(PropertySearchFilter filter) {
+        if (filter.hasText() && filter.q().length() > MAX_QUERY_LENGTH) {
+            throw new InvalidRequestException("O texto da busca deve ter no máximo " + MAX_QUERY_LENGTH + " caracteres.");
         }
-        if (hasGarage != null && hasGarage) {
-            spec = spec.and(PropertySpecification.hasGarage());
+    }
+
+    private static PropertySort defaultSort(boolean textSearch, GeoArea area) {
+        if (textSearch) {
+            return PropertySort.RELEVANCE;
+        }
+        return area != null && area.isCircle() ? PropertySort.DISTANCE : PropertySort.NEWEST;
+    }
+
+    private byte[] toJson(PropertyPageDto page) {
+        try {
+            return objectMapper.writeValueAsBytes(page);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Falha ao serializar a página de imóveis.", e);
+        }
+    }
+
+    private List<PropertyResponseDto> searchWithJpa(PropertySearchFilter filter, PropertySort sort, PropertyCursor after, int limit) {
+        Specification<Property> spec = buildSpecification(filter);
+        if (after != null) {
+            spec = spec.and(PropertySpecification.after(after));
+        }
+        return propertyRepository.findListings(spec, PropertySpecification.sortFor(sort), limit);
+    }
+
+    private List<PropertyResponseDto> searchWithIndex(PropertySearchFilter filter, PropertySort sort, PropertyCursor after, int limit) {
+        List<UUID> ids = propertyFilterIndex.search(filter, sort, after, limit);
+        return propertyRepository.findListingsByIds(ids);
+    }
+
+    private List<PropertyResponseDto> searchAndCompare(PropertySearchFilter filter, PropertySort sort, PropertyCursor after, int limit) {
+        List<PropertyResponseDto> fromJpa = searchWithJpa(filter, sort, after, limit);
+        List<UUID> fromIndex = propertyFilterIndex.search(filter, sort, after, limit);
+        List<UUID> expected = fromJpa.stream().map(PropertyResponseDto::id).toList();
+        if (!expected.equals(fromIndex)) {
+            log.warn("Divergência entre o índice em memória e o JPA para filtro={} sort={}: jpa={} index={}",
+                    filter, sort, expected, fromIndex);
+        }
+        return fromJpa;
+    }
+
+    private Map<UUID, Double> scoreText(String q) {
+        // A busca textual depende dos dois índices em memória, que são carregados na subida da aplicação.
+        if (!propertyTextIndex.isReady() || !propertyFilterIndex.isReady()) {
+            throw new ServiceOverloadedException(
+                    "A busca textual ainda está sendo preparada. Tente novamente em instantes.", warmupRetryAfter);
         }
+        return propertyTextIndex.search(q);
+    }
 
-        return propertyRepository.findAll(spec)
-                .stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    private Map<UUID, Double> locate(GeoArea area) {
+        if (!geoGridIndex.isReady() || !propertyFilterIndex.isReady()) {
+            throw new ServiceOverloadedException(
+                    "A busca por localização ainda está sendo preparada. Tente novamente em instantes.", warmupRetryAfter);
+        }
+        return geoGridIndex.search(area);
     }
 
+    // Ids presentes em todos os conjuntos de candidatos informados (os nulos são ignorados)
+    private static Set<UUID> candidates(Map<UUID, Double> scores, Map<UUID, Double> distances) {
+        if (scores == null) return distances.keySet();
+        if (distances == null) return scores.keySet();
+        Map<UUID, Double> smaller = scores.size() <= distances.size() ? scores : distances;
+        Map<UUID, Double> larger = smaller == scores ? distances : scores;
+        Set<UUID> both = new HashSet<>();
+        for (UUID id : smaller.keySet()) {
+            if (larger.containsKey(id)) {
+                both.add(id);
+            }
+        }
+        return both;
+    }
+
+    /**
+     * Busca textual e/ou geográfica: os candidatos vêm dos índices textual e espacial, e os filtros
+     * estruturados são aplicados pelo índice de filtros em memória. Nas ordenações por relevância
+     * e por distância, o desempate é pelo id, como nas demais ordenações.
+     */
+    private List<PropertyResponseDto> searchInMemory(PropertySearchFilter filter, PropertySort sort, PropertyCursor after,
+                                                     int limit, Map<UUID, Double> scores, Map<UUID, Double> distances) {
+        Set<UUID> candidates = candidates(scores, distances);
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        if (sort != PropertySort.RELEVANCE && sort != PropertySort.DISTANCE) {
+            return propertyRepository.findListingsByIds(propertyFilterIndex.search(filter, sort, after, limit, candidates::contains));
+        }
+
+        // Relevância: maior pontuação primeiro. Distância: menor distância primeiro.
+        boolean descending = sort == PropertySort.RELEVANCE;
+        Map<UUID, Double> rank = descending ? scores : distances;
+        Comparator<UUID> byRank = Comparator.comparingDouble(rank::get);
+        Comparator<UUID> order = (descending ? byRank.reversed() : byRank).thenComparing(PropertyFilterIndex.ID_ORDER);
+
+        List<UUID> ids = propertyFilterIndex.retainMatching(filter, candidates).stream()
+                .filter(id -> after == null || isAfterRanked(rank.get(id), id, after, descending))
+                .sorted(order)
+                .limit(limit)
+                .toList();
+        return propertyRepository.findListingsByIds(ids);
+    }
+
+    private static boolean isAfterRanked(double value, UUID id, PropertyCursor after, boolean descending) {
+        int byValue = descending ? Double.compare(after.sortValue(), value) : Double.compare(value, after.sortValue());
+        return byValue > 0 || (byValue == 0 && PropertyFilterIndex.ID_ORDER.compare(id, after.id()) > 0);
+    }
+
+    private static PropertyCursor cursorAfter(PropertyResponseDto last, PropertySort sort,
+                                              Map<UUID, Double> scores, Map<UUID, Double> distances) {
+        return switch (sort) {
+            case RELEVANCE -> new PropertyCursor(sort, null, scores.get(last.id()), last.id());
+            case DISTANCE -> new PropertyCursor(sort, null, distances.get(last.id()), last.id());
+            default -> PropertyCursor.after(last, sort);
+        };
+    }
+
+    private SearchEngineMode resolveEngineMode() {
+        if (searchEngineMode == null || searchEngineMode == SearchEngineMode.JPA) {
+            return SearchEngineMode.JPA;
+        }
+        // Enquanto o índice não terminou a carga inicial, o banco continua respondendo.
+        return propertyFilterIndex.isReady() ? searchEngineMode : SearchEngineMode.JPA;
+    }
+
+
     public PropertyResponseDto findPropertyById(UUID id) {
-        Property property = propertyRepository.findById(id)
+        return propertyRepository.findListingsByIds(List.of(id)).stream()
+                .findFirst()
                 .orElseThrow(() -> new EntityNotFoundException("Imóvel não encontrado com o ID: " + id));
-        return convertToDto(property);
+    }
+
+    /**
+     * Versão do detalhe de um imóvel, para o ETag: muda quando o imóvel ou os dados do dono mudam.
+     */
+    public String findPropertyVersion(UUID id) {
+        List<Object[]> rows = propertyRepository.findVersionsById(id);
+        if (rows.isEmpty()) {
+            throw new EntityNotFoundException("Imóvel não encontrado com o ID: " + id);
+        }
+        Object[] row = rows.get(0);
+        LocalDateTime ownerUpdatedAt = (LocalDateTime) row[1];
+        // Em microssegundos, a precisão com que o banco guarda o instante
+        long ownerStamp = ownerUpdatedAt == null ? 0
+                : ownerUpdatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + ownerUpdatedAt.getNano() / 1_000;
+        return row[0] + "-" + ownerStamp;
     }
 
     // --- Métodos de Escrita ---
@@ -99,20 +358,25 @@ public class PropertyService {
         newProperty.setPhotoUrls(dto.getPhotoUrls());
         newProperty.setVideoUrl(dto.getVideoUrl());
         newProperty.setApproximateLocation(dto.getApproximateLocation());
+        newProperty.setLatitude(dto.getLatitude());
+        newProperty.setLongitude(dto.getLongitude());
 
         Property savedProperty = propertyRepository.save(newProperty);
+        eventPublisher.publishEvent(PropertyChangedEvent.created(PropertySnapshot.of(savedProperty)));
 
         return convertToDto(savedProperty);
     }
 
-    public PropertyResponseDto updateProperty(UUID id, PropertyUpdateDto dto, User currentUser) {
+    public PropertyResponseDto updateProperty(UUID id, PropertyUpdateDto dto, UUID currentUserId) {
         Property property = propertyRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Imóvel não encontrado com o ID: " + id));
 
-        if (!property.getOwner().getId().equals(currentUser.getId())) {
+        if (!property.getOwner().getId().equals(currentUserId)) {
             throw new AccessDeniedException("Usuário não tem permissão para alterar este imóvel.");
         }
 
+        PropertySnapshot before = PropertySnapshot.of(property);
+
         property.setTitle(dto.title());
         property.setDescription(dto.description());
         property.setType(dto.type());
@@ -125,22 +389,54 @@ public class PropertyService {
         property.setPhotoUrls(dto.photoUrls());
         property.setVideoUrl(dto.videoUrl());
         property.setApproximateLocation(dto.approximateLocation());
+        property.setLatitude(dto.latitude());
+        property.setLongitude(dto.longitude());
 
         Property updatedProperty = propertyRepository.save(property);
+        eventPublisher.publishEvent(PropertyChangedEvent.updated(before, PropertySnapshot.of(updatedProperty)));
         return convertToDto(updatedProperty);
     }
 
-    public void deleteProperty(UUID id, User currentUser) {
+    public void deleteProperty(UUID id, UUID currentUserId) {
         Property property = propertyRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Imóvel não encontrado com o ID: " + id));
 
-        if (!property.getOwner().getId().equals(currentUser.getId())) {
+        if (!property.getOwner().getId().equals(currentUserId)) {
             throw new AccessDeniedException("Usuário não tem permissão para deletar este imóvel.");
         }
 
         propertyRepository.delete(property);
+        eventPublisher.publishEvent(PropertyChangedEvent.deleted(PropertySnapshot.of(property)));
+    }
+
+
+    private Specification<Property> buildSpecification(PropertySearchFilter filter) {
+        Specification<Property> spec = Specification.where(PropertySpecification.isActive());
+
+        if (filter.type() != null) {
+            spec = spec.and(PropertySpecification.hasType(filter.type()));
+        }
+        if (filter.maxRent() != null) {
+            spec = spec.and(PropertySpecification.maxRent(filter.maxRent()));
+        }
+        if (filter.minRooms() != null) {
+            spec = spec.and(PropertySpecification.minRooms(filter.minRooms()));
+        }
+        if (filter.requiresGarage()) {
+            spec = spec.and(PropertySpecification.hasGarage());
+        }
+        return spec;
     }
 
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        if (size < 1) {
+            throw new InvalidRequestException("O tamanho da página deve ser maior que zero.");
+        }
+        return Math.min(size, maxPageSize);
+    }
 
     public PropertyResponseDto convertToDto(Property property) {
         if (property.getOwner() == null) {
@@ -169,6 +465,8 @@ public class PropertyService {
                 property.getPhotoUrls(),
                 property.getVideoUrl(),
                 property.getApproximateLocation(),
+                property.getLatitude(),
+                property.getLongitude(),
                 ownerDto,
                 property.getCreatedAt()
         );
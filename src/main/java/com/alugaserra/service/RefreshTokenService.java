@@ -0,0 +1,137 @@
+package com.alugaserra.service;
+
+import com.alugaserra.dto.LoginResponseDto;
+import com.alugaserra.model.RefreshToken;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.RefreshTokenRepository;
+import com.alugaserra.security.RevokedSessions;
+import com.alugaserra.security.UserCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Sessões de login com access token curto e refresh token rotativo.
+ *
+ * O refresh token é um valor aleatório de 256 bits: por ter entropia alta, basta guardar o seu SHA-256,
+ * sem BCrypt, e renovar a sessão não custa nenhum hash de senha. Cada refresh troca o token por um
+ * novo; se um token já trocado aparecer de novo, alguém o copiou, e a sessão inteira é encerrada.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private RevokedSessions revokedSessions;
+
+    @Value("${jwt.refresh-expiration:30d}")
+    private Duration refreshExpiration;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Abre uma nova sessão para o usuário que acabou de se autenticar com a senha.
+     */
+    @Transactional
+    public LoginResponseDto startSession(User user) {
+        return issue(user, UUID.randomUUID());
+    }
+
+    /**
+     * Troca um refresh token válido por um novo par de tokens da mesma sessão.
+     * O noRollbackFor garante que o encerramento da sessão por reuso seja gravado apesar da exceção.
+     */
+    @Transactional(noRollbackFor = AuthenticationException.class)
+    public LoginResponseDto refresh(String refreshToken) {
+        RefreshToken current = refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .orElseThrow(() -> new BadCredentialsException("Refresh token inválido."));
+        LocalDateTime now = LocalDateTime.now();
+        if (current.getRevokedAt() != null || !current.getExpiresAt().isAfter(now)) {
+            throw new BadCredentialsException("Sessão encerrada ou expirada. Faça login novamente.");
+        }
+        if (refreshTokenRepository.markUsed(current.getId(), now) == 0) {
+            log.warn("Refresh token reutilizado na sessão {}; a sessão foi encerrada", current.getSessionId());
+            revokeSession(current.getSessionId(), now);
+            throw new BadCredentialsException("Refresh token já utilizado. Por segurança, a sessão foi encerrada.");
+        }
+
+        // getId() no proxy LAZY não vai ao banco; o usuário vem do cache, com papel e versão atuais
+        User user = userCache.findById(current.getUser().getId())
+                .orElseThrow(() -> new BadCredentialsException("Usuário não encontrado."));
+        return issue(user, current.getSessionId());
+    }
+
+    /**
+     * Encerra a sessão do refresh token: ele e os access tokens da sessão deixam de valer.
+     */
+    @Transactional
+    public void logout(String refreshToken) {
+        refreshTokenRepository.findByTokenHash(hash(refreshToken))
+                .ifPresent(token -> revokeSession(token.getSessionId(), LocalDateTime.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-cleanup-interval-ms:3600000}")
+    @Transactional
+    public void deleteExpiredTokens() {
+        int deleted = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("{} refresh tokens expirados removidos", deleted);
+        }
+    }
+
+    private LoginResponseDto issue(User user, UUID sessionId) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String value = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setUser(user);
+        refreshToken.setTokenHash(hash(value));
+        refreshToken.setSessionId(sessionId);
+        refreshToken.setExpiresAt(LocalDateTime.now().plus(refreshExpiration));
+        refreshTokenRepository.save(refreshToken);
+
+        String accessToken = tokenService.generateAccessToken(user, sessionId);
+        return new LoginResponseDto(accessToken, value, tokenService.getExpirationSeconds());
+    }
+
+    private void revokeSession(UUID sessionId, LocalDateTime now) {
+        refreshTokenRepository.revokeSession(sessionId, now);
+        revokedSessions.revoke(sessionId);
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.alugaserra.service;
+
+import com.alugaserra.dto.RegisterRequestDto;
+import com.alugaserra.exception.InvalidRequestException;
+import com.alugaserra.model.Subscription;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.SubscriptionRepository;
+import com.alugaserra.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+/**
+ * Cadastro de usuários com a assinatura do plano padrão.
+ *
+ * Não há consulta prévia do e-mail: quem garante que ele é único é a constraint da tabela,
+ * o que também resolve dois cadastros simultâneos com o mesmo e-mail. O hash da senha (a parte cara)
+ * é feito antes de abrir a transação, que fica só com os dois INSERTs, enviados juntos no flush.
+ */
+@Service
+public class RegistrationService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private PlanCatalog planCatalog;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Cadastra o usuário e a sua assinatura numa única transação.
+     * @throws InvalidRequestException se o e-mail ou o CPF já estiverem cadastrados.
+     */
+    public User register(RegisterRequestDto data) {
+        User newUser = newUser(data, passwordEncoder.encode(data.password()));
+
+        try {
+            return transactionTemplate.execute(status -> {
+                userRepository.save(newUser);
+                subscriptionRepository.save(newSubscription(newUser));
+                // Força os INSERTs aqui, para a violação da constraint virar a exceção traduzida abaixo
+                subscriptionRepository.flush();
+                return newUser;
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw new InvalidRequestException("E-mail ou CPF já cadastrado.");
+        }
+    }
+
+    // Também usados pela importação em lote (UserImportService)
+    static User newUser(RegisterRequestDto data, String encryptedPassword) {
+        User newUser = new User();
+        newUser.setName(data.name());
+        newUser.setEmail(data.email());
+        newUser.setPasswordHash(encryptedPassword);
+        newUser.setCpf(data.cpf());
+        newUser.setPhone(data.phone());
+        newUser.setRole(data.role());
+        return newUser;
+    }
+
+    Subscription newSubscription(User user) {
+        Subscription subscription = new Subscription();
+        subscription.setUser(user);
+        subscription.setPlan(planCatalog.defaultPlan());
+        subscription.setStartDate(LocalDate.now());
+        subscription.setEndDate(LocalDate.now().plusMonths(1)); // Define uma validade inicial de 1 mês
+        subscription.setStatus("ACTIVE");
+        return subscription;
+    }
+}
@@ -1,18 +1,51 @@
 package com.alugaserra.service;
 
+import com.alugaserra.enums.UserRole;
 import com.alugaserra.model.User;
+import com.alugaserra.security.AuthMetrics;
+import com.alugaserra.security.AuthMetrics.Failure;
+import com.alugaserra.security.AuthMetrics.Stage;
+import com.alugaserra.security.TokenClaims;
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTCreationException;
+import com.auth0.jwt.exceptions.JWTDecodeException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwt.interfaces.JWTVerifier;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class TokenService {
 
+    // Claims próprias do token, que permitem autenticar sem consultar o banco
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_TOKEN_VERSION = "ver";
+    public static final String CLAIM_SESSION_ID = "sid";
+
+    @Autowired
+    private AuthMetrics authMetrics;
+
     // Injeta os valores do application.properties
     @Value("${jwt.secret}")
     private String secret;
@@ -20,17 +53,60 @@ public class TokenService {
     @Value("${jwt.expiration}")
     private long expiration;
 
+    // Limite de tokens verificados em cache (cada entrada ocupa poucas centenas de bytes)
+    @Value("${jwt.verified-cache.max-entries:10000}")
+    private int verifiedCacheMaxEntries = 10000;
+
+    // Construídos uma vez só: são imutáveis e seguros para uso concorrente
+    private Algorithm algorithm;
+    private JWTVerifier verifier;
+
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+    private final AtomicLong verifiedSequence = new AtomicLong();
+    private final AtomicBoolean evictingVerified = new AtomicBoolean();
+
+    // "sequence" desempata tokens com o mesmo "exp" (que tem precisão de segundos) pela ordem de chegada
+    private record VerifiedToken(TokenClaims claims, long expiresAtMillis, long sequence) {
+    }
+
+    private static final Comparator<VerifiedToken> OLDEST_FIRST =
+            Comparator.comparingLong(VerifiedToken::expiresAtMillis).thenComparingLong(VerifiedToken::sequence);
+
+    @PostConstruct
+    public void init() {
+        algorithm = Algorithm.HMAC256(secret);
+        verifier = JWT.require(algorithm)
+                .withIssuer("alugaserra-api")
+                .build();
+    }
+
     /**
-     * Gera um token JWT para o usuário autenticado.
+     * Gera um token JWT para o usuário autenticado, com o id, o papel e a versão dos tokens do usuário.
      */
     public String generateToken(User user) {
+        return generateAccessToken(user, null);
+    }
+
+    /**
+     * Gera o access token de uma sessão de login, que pode ser encerrada antes da expiração do token.
+     */
+    public String generateAccessToken(User user, UUID sessionId) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(secret);
-            return JWT.create()
+            JWTCreator.Builder builder = JWT.create()
                     .withIssuer("alugaserra-api")
                     .withSubject(user.getEmail())
-                    .withExpiresAt(getExpirationDate())
-                    .sign(algorithm);
+                    .withClaim(CLAIM_TOKEN_VERSION, user.getTokenVersion())
+                    .withExpiresAt(getExpirationDate());
+            if (user.getId() != null) {
+                builder.withClaim(CLAIM_USER_ID, user.getId().toString());
+            }
+            if (user.getRole() != null) {
+                builder.withClaim(CLAIM_ROLE, user.getRole().name());
+            }
+            if (sessionId != null) {
+                builder.withClaim(CLAIM_SESSION_ID, sessionId.toString());
+            }
+            return builder.sign(algorithm);
         } catch (JWTCreationException exception) {
             throw new RuntimeException("Erro ao gerar token JWT", exception);
         }
@@ -40,19 +116,129 @@ public class TokenService {
      * Valida um token JWT e retorna o email do usuário (subject).
      */
     public String validateToken(String token) {
+        TokenClaims claims = verifyToken(token);
+        return claims != null ? claims.email() : ""; // Retorna vazio se o token for inválido
+    }
+
+    /**
+     * Valida um token JWT e retorna as suas claims.
+     * Um token já verificado é servido do cache até expirar, sem refazer o HMAC nem o parse do JSON.
+     * @return As claims do token, ou nulo se o token for inválido ou estiver expirado.
+     */
+    public TokenClaims verifyToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String key = digest(token);
+        VerifiedToken cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (cached.expiresAtMillis() > System.currentTimeMillis()) {
+                authMetrics.recordTokenCache(true);
+                return cached.claims();
+            }
+            verifiedTokens.remove(key, cached);
+        }
+        authMetrics.recordTokenCache(false);
+        long start = System.nanoTime();
         try {
-            Algorithm algorithm = Algorithm.HMAC256(secret);
-            return JWT.require(algorithm)
-                    .withIssuer("alugaserra-api")
-                    .build()
-                    .verify(token)
-                    .getSubject();
-        } catch (JWTVerificationException exception) {
-            return ""; // Retorna vazio se o token for inválido
+            DecodedJWT jwt = verifier.verify(token);
+            TokenClaims claims = toClaims(jwt);
+            authMetrics.recordStage(Stage.HMAC, start);
+            // Só tokens válidos entram no cache; tokens sem "exp" não são guardados
+            if (jwt.getExpiresAtAsInstant() != null) {
+                cacheVerified(key, new VerifiedToken(claims, jwt.getExpiresAtAsInstant().toEpochMilli(),
+                        verifiedSequence.incrementAndGet()));
+            }
+            return claims;
+        } catch (JWTVerificationException | IllegalArgumentException exception) {
+            authMetrics.recordFailure(failureOf(exception));
+            return null;
+        }
+    }
+
+    private static Failure failureOf(RuntimeException exception) {
+        if (exception instanceof TokenExpiredException) {
+            return Failure.EXPIRED;
         }
+        if (exception instanceof SignatureVerificationException) {
+            return Failure.BAD_SIGNATURE;
+        }
+        if (exception instanceof JWTDecodeException) {
+            return Failure.MALFORMED;
+        }
+        // Emissor errado, ou uid/sid/role com valor inválido (IllegalArgumentException em toClaims)
+        return Failure.INVALID_CLAIMS;
+    }
+
+    private void cacheVerified(String key, VerifiedToken verified) {
+        verifiedTokens.put(key, verified);
+        if (verifiedTokens.size() > verifiedCacheMaxEntries) {
+            evictOldestVerified();
+        }
+    }
+
+    /**
+     * Descarta os tokens expirados e, se ainda passar do limite, os que expiram primeiro (os mais antigos),
+     * até sobrar uma folga de 10%: a varredura acontece uma vez a cada muitas inserções, e não em toda
+     * requisição com o cache cheio. Uma thread por vez; as demais seguem sem esperar.
+     */
+    private void evictOldestVerified() {
+        if (!evictingVerified.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            verifiedTokens.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+            int excess = verifiedTokens.size() - (verifiedCacheMaxEntries - verifiedCacheMaxEntries / 10);
+            if (excess > 0) {
+                verifiedTokens.entrySet().stream()
+                        .sorted(Map.Entry.comparingByValue(OLDEST_FIRST))
+                        .limit(excess)
+                        .toList()
+                        .forEach(entry -> verifiedTokens.remove(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            evictingVerified.set(false);
+        }
+    }
+
+    // SHA-256 do token: o cache não guarda o token em si, que é uma credencial
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    int verifiedCacheSize() {
+        return verifiedTokens.size();
+    }
+
+    private static TokenClaims toClaims(DecodedJWT jwt) {
+        Claim userId = jwt.getClaim(CLAIM_USER_ID);
+        Claim role = jwt.getClaim(CLAIM_ROLE);
+        Claim version = jwt.getClaim(CLAIM_TOKEN_VERSION);
+        Claim sessionId = jwt.getClaim(CLAIM_SESSION_ID);
+        return new TokenClaims(
+                jwt.getSubject(),
+                userId.isMissing() || userId.isNull() ? null : UUID.fromString(userId.asString()),
+                role.isMissing() || role.isNull() ? null : UserRole.valueOf(role.asString()),
+                version.isMissing() || version.isNull() ? 0 : version.asInt(),
+                sessionId.isMissing() || sessionId.isNull() ? null : UUID.fromString(sessionId.asString()),
+                jwt.getExpiresAtAsInstant()
+        );
+    }
+
+    /**
+     * Validade do access token, em segundos.
+     */
+    public long getExpirationSeconds() {
+        return expiration / 1000;
     }
 
     private Instant getExpirationDate() {
         return Instant.now().plusMillis(expiration);
     }
-}
\ No newline at end of file
+}
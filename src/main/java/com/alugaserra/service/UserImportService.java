@@ -0,0 +1,445 @@
+package com.alugaserra.service;
+
+import com.alugaserra.dto.RegisterRequestDto;
+import com.alugaserra.dto.UserImportErrorDto;
+import com.alugaserra.dto.UserImportReportDto;
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.exception.InvalidRequestException;
+import com.alugaserra.exception.ServiceOverloadedException;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.SubscriptionRepository;
+import com.alugaserra.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Importação de usuários (com a assinatura do plano padrão) a partir de um CSV.
+ *
+ * O arquivo é lido registro a registro e processado em blocos de "chunk-size" linhas: cada bloco tem
+ * as senhas calculadas em paralelo, num pool pequeno, e é gravado numa transação própria, com os
+ * INSERTs em lotes JDBC. Só um bloco fica em memória por vez, e um erro numa linha não desfaz as outras.
+ * Se o pool do BCrypt estiver cheio (logins em rajada), o hash da linha é tentado de novo algumas vezes;
+ * se ainda assim não sair, só aquela linha é recusada, e o relatório é devolvido do mesmo jeito.
+ * Um registro malformado no meio do arquivo (aspas não fechadas, campo grande demais) encerra a leitura,
+ * já que não dá para saber onde começa o próximo: os blocos anteriores continuam gravados e o relatório
+ * informa a linha em que a importação parou.
+ *
+ * Colunas obrigatórias do cabeçalho: name, email, password, cpf, phone. A coluna role é opcional
+ * (padrão LOCADOR); a ordem das colunas é livre.
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final List<String> REQUIRED_COLUMNS = List.of("name", "email", "password", "cpf", "phone");
+    private static final int MAX_FIELD_LENGTH = 10_000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Validator validator;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${users.import.chunk-size:500}")
+    private int chunkSize;
+
+    // Poucas threads: o BCrypt já divide o pool de hash com os logins
+    @Value("${users.import.hash-threads:2}")
+    private int hashThreads;
+
+    @Value("${users.import.max-errors:1000}")
+    private int maxErrors;
+
+    // Tentativas de hash por linha com o pool do BCrypt cheio, e a espera antes de cada nova tentativa (cresce a cada uma)
+    @Value("${users.import.hash-attempts:5}")
+    private int hashAttempts;
+
+    @Value("${users.import.hash-retry-backoff:250ms}")
+    private Duration hashRetryBackoff;
+
+    private ExecutorService hashExecutor;
+
+    private record Row(long line, RegisterRequestDto data) {
+    }
+
+    // Contadores e erros de uma importação
+    private final class Report {
+        long totalRows;
+        long imported;
+        long failed;
+        Long abortedAtLine;
+        final List<UserImportErrorDto> errors = new ArrayList<>();
+
+        void reject(long line, String email, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(new UserImportErrorDto(line, email, message));
+            }
+        }
+
+        UserImportReportDto toDto() {
+            return new UserImportReportDto(totalRows, imported, failed, List.copyOf(errors), abortedAtLine);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        hashExecutor = Executors.newFixedThreadPool(hashThreads, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hash-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashExecutor.shutdownNow();
+    }
+
+    /**
+     * Importa os usuários do CSV (UTF-8) lido do stream.
+     * @return O relatório com o total de linhas, quantas viraram usuários e o erro de cada linha recusada.
+     * @throws InvalidRequestException se o cabeçalho for inválido.
+     */
+    public UserImportReportDto importCsv(InputStream in) throws IOException {
+        long start = System.nanoTime();
+        CsvRecordReader csv = new CsvRecordReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        List<String> header = csv.next();
+        if (header == null) {
+            throw new InvalidRequestException("O arquivo está vazio.");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        List<String> missing = REQUIRED_COLUMNS.stream().filter(c -> !columns.containsKey(c)).toList();
+        if (!missing.isEmpty()) {
+            throw new InvalidRequestException("Colunas obrigatórias ausentes no cabeçalho: " + String.join(", ", missing));
+        }
+
+        Report report = new Report();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        List<String> record;
+        while ((record = nextRecord(csv, report)) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue; // Linha em branco
+            }
+            report.totalRows++;
+            Row row = parse(csv.recordLine(), record, columns, report);
+            if (row != null) {
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, report);
+                    chunk.clear();
+                }
+            }
+        }
+        // Também depois de um registro malformado: as linhas lidas antes dele são válidas
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, report);
+        }
+
+        if (report.abortedAtLine != null) {
+            log.warn("Importação de usuários interrompida no registro malformado da linha {}", report.abortedAtLine);
+        }
+        log.info("Importação de usuários concluída: {} linhas, {} importadas, {} recusadas em {} ms",
+                report.totalRows, report.imported, report.failed, (System.nanoTime() - start) / 1_000_000);
+        return report.toDto();
+    }
+
+    // O próximo registro, ou nulo no fim do arquivo ou num registro malformado (que vira o erro em que a leitura parou)
+    private static List<String> nextRecord(CsvRecordReader csv, Report report) throws IOException {
+        try {
+            return csv.next();
+        } catch (MalformedRecordException e) {
+            report.totalRows++;
+            report.reject(e.line, null, e.getMessage() + " A importação parou aqui.");
+            report.abortedAtLine = e.line;
+            return null;
+        }
+    }
+
+    private Row parse(long line, List<String> record, Map<String, Integer> columns, Report report) {
+        String email = field(record, columns, "email");
+        UserRole role = UserRole.LOCADOR;
+        String roleName = field(record, columns, "role");
+        if (roleName != null && !roleName.isBlank()) {
+            try {
+                role = UserRole.valueOf(roleName.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                report.reject(line, email, "Papel inválido: " + roleName);
+                return null;
+            }
+        }
+        RegisterRequestDto data = new RegisterRequestDto(field(record, columns, "name"), email,
+                field(record, columns, "password"), field(record, columns, "cpf"), field(record, columns, "phone"), role);
+
+        Set<ConstraintViolation<RegisterRequestDto>> violations = validator.validate(data);
+        if (!violations.isEmpty()) {
+            report.reject(line, email, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+            return null;
+        }
+        return new Row(line, data);
+    }
+
+    private static String field(List<String> record, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size()) {
+            return null;
+        }
+        return record.get(index).trim();
+    }
+
+    private void importChunk(List<Row> chunk, Report report) {
+        List<Row> accepted = withoutDuplicates(chunk, report);
+        if (accepted.isEmpty()) {
+            return;
+        }
+        List<String> hashed = hashAll(accepted);
+        List<Row> rows = new ArrayList<>(accepted.size());
+        List<String> hashes = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            Row row = accepted.get(i);
+            if (hashed.get(i) == null) {
+                report.reject(row.line(), row.data().email(), "Servidor ocupado ao calcular a senha; importe esta linha de novo.");
+            } else {
+                rows.add(row);
+                hashes.add(hashed.get(i));
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    save(rows.get(i).data(), hashes.get(i));
+                }
+                subscriptionRepository.flush();
+                // Libera as entidades do bloco: a memória não cresce com o tamanho do arquivo
+                entityManager.clear();
+            });
+            report.imported += rows.size();
+        } catch (DataIntegrityViolationException e) {
+            // Alguém cadastrou um destes e-mails/CPFs depois da checagem: grava uma linha por vez para achá-lo
+            log.warn("Bloco da importação recusado pela constraint; gravando as {} linhas uma a uma", rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                Row row = rows.get(i);
+                String hash = hashes.get(i);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        save(row.data(), hash);
+                        subscriptionRepository.flush();
+                        entityManager.clear();
+                    });
+                    report.imported++;
+                } catch (DataIntegrityViolationException rowError) {
+                    report.reject(row.line(), row.data().email(), "E-mail ou CPF já cadastrado.");
+                }
+            }
+        }
+    }
+
+    private void save(RegisterRequestDto data, String encryptedPassword) {
+        User user = RegistrationService.newUser(data, encryptedPassword);
+        userRepository.save(user);
+        subscriptionRepository.save(registrationService.newSubscription(user));
+    }
+
+    // Recusa as linhas com e-mail/CPF já cadastrado ou repetido no próprio bloco (duas consultas por bloco)
+    private List<Row> withoutDuplicates(List<Row> chunk, Report report) {
+        Set<String> emails = chunk.stream().map(r -> r.data().email()).collect(Collectors.toSet());
+        Set<String> cpfs = chunk.stream().map(r -> r.data().cpf()).collect(Collectors.toSet());
+        Set<String> existingEmails = new HashSet<>(userRepository.findExistingEmails(emails));
+        Set<String> existingCpfs = new HashSet<>(userRepository.findExistingCpfs(cpfs));
+
+        Set<String> seenEmails = new HashSet<>();
+        Set<String> seenCpfs = new HashSet<>();
+        List<Row> accepted = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            String email = row.data().email();
+            String cpf = row.data().cpf();
+            if (existingEmails.contains(email)) {
+                report.reject(row.line(), email, "E-mail já cadastrado.");
+            } else if (existingCpfs.contains(cpf)) {
+                report.reject(row.line(), email, "CPF já cadastrado.");
+            } else if (!seenEmails.add(email)) {
+                report.reject(row.line(), email, "E-mail repetido no arquivo.");
+            } else if (!seenCpfs.add(cpf)) {
+                report.reject(row.line(), email, "CPF repetido no arquivo.");
+            } else {
+                accepted.add(row);
+            }
+        }
+        return accepted;
+    }
+
+    // Um hash por linha, na mesma ordem; nulo para as linhas cujo hash não pôde ser calculado
+    private List<String> hashAll(List<Row> rows) {
+        List<CompletableFuture<String>> futures = rows.stream()
+                .map(row -> CompletableFuture.supplyAsync(() -> encode(row), hashExecutor))
+                .toList();
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    // Roda numa thread do pool da importação: esperar aqui não prende nenhuma requisição além da própria importação
+    private String encode(Row row) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return passwordEncoder.encode(row.data().password());
+            } catch (ServiceOverloadedException e) {
+                if (attempt >= hashAttempts) {
+                    log.warn("Pool de hash de senhas cheio; linha {} da importação recusada depois de {} tentativas", row.line(), attempt);
+                    return null;
+                }
+                try {
+                    Thread.sleep(hashRetryBackoff.multipliedBy(attempt).toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            } catch (RuntimeException e) {
+                log.error("Falha ao calcular o hash da senha da linha {} da importação", row.line(), e);
+                return null;
+            }
+        }
+    }
+
+    // Registro que não dá para ler. No cabeçalho, o arquivo inteiro é recusado (400)
+    private static final class MalformedRecordException extends InvalidRequestException {
+
+        private final long line;
+
+        MalformedRecordException(long line, String message) {
+            super(message + " no registro da linha " + line + ".");
+            this.line = line;
+        }
+    }
+
+    /**
+     * Leitor de CSV (RFC 4180) que devolve um registro por vez.
+     * Aceita campos entre aspas com vírgulas, aspas duplicadas e quebras de linha.
+     */
+    private static final class CsvRecordReader {
+
+        private final BufferedReader reader;
+        private long lineNumber;
+        private long recordLine;
+
+        CsvRecordReader(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        // Linha do arquivo em que começa o último registro lido
+        long recordLine() {
+            return recordLine;
+        }
+
+        List<String> next() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            lineNumber++;
+            recordLine = lineNumber;
+            if (lineNumber == 1 && line.startsWith("﻿")) {
+                line = line.substring(1); // BOM do Excel
+            }
+
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        fields.add(field.toString());
+                        return fields;
+                    }
+                    // Quebra de linha dentro de um campo entre aspas
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new MalformedRecordException(recordLine, "Aspas não fechadas");
+                    }
+                    lineNumber++;
+                    field.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+                if (field.length() > MAX_FIELD_LENGTH) {
+                    throw new MalformedRecordException(recordLine, "Campo grande demais");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.alugaserra.websocket;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * O que uma sessão STOMP precisa saber de um chat para enviar mensagens sem consultar o banco.
+ */
+public record ChatContext(
+        UUID chatId,
+        UUID propertyId,
+        List<UUID> participantIds
+) {
+
+    public boolean hasParticipant(UUID userId) {
+        return participantIds.contains(userId);
+    }
+
+    // Quem recebe a mensagem: todos os participantes, menos o remetente
+    public List<UUID> recipientsFor(UUID senderId) {
+        return participantIds.stream().filter(id -> !id.equals(senderId)).toList();
+    }
+}
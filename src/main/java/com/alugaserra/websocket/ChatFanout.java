@@ -0,0 +1,452 @@
+package com.alugaserra.websocket;
+
+import com.alugaserra.dto.ChatMessageViewDto;
+import com.alugaserra.websocket.RelayFrame.Delivery;
+import com.alugaserra.websocket.RelayFrame.Type;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Entrega das mensagens de chat aos destinatários, neste nó e nos outros.
+ *
+ * O broker STOMP é o simples, em memória: o {@code convertAndSendToUser} só alcança as sessões deste
+ * nó. Para os outros, cada nó anuncia pelo {@link ChatRelay} os usuários que entram e saem dele
+ * (presença), e todos mantêm o mapa usuário → nós. Uma mensagem só é encaminhada aos nós que têm o
+ * destinatário conectado, em lotes por nó: o lote sai quando enche (chat.relay.batch-size ou o
+ * limite de bytes do transporte) ou a cada chat.relay.flush-interval.
+ *
+ * Um nó novo pede a presença dos outros (HELLO); os nós mandam HEARTBEAT e são esquecidos depois de
+ * três intervalos em silêncio. Uma mensagem que chega depois de o destinatário sair é descartada:
+ * ao reconectar, o cliente busca o que perdeu no histórico (parâmetro "since").
+ *
+ * Limite dessa busca: o cursor "since" é o (timestamp, id) da mensagem, e o timestamp sai do relógio
+ * do nó que recebeu o envio (ChatMessageWriter). Os timestamps só são crescentes dentro de um mesmo
+ * nó. Num chat com remetentes em nós diferentes, se o relógio de um nó está atrasado em relação ao
+ * outro, uma mensagem enviada depois pode ficar com timestamp anterior ao cursor e não voltar no
+ * "since". O histórico completo ("before") continua com todas. A defasagem tolerada é a dos
+ * relógios: os nós precisam de NTP.
+ */
+@Component
+public class ChatFanout implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatFanout.class);
+
+    // Vira parte do nome do canal no PostgreSQL
+    private static final Pattern NODE_ID = Pattern.compile("[a-z0-9_]{1,40}");
+
+    // Folga para o envelope do lote (tipo, nó de origem, colchetes)
+    private static final int FRAME_OVERHEAD_BYTES = 128;
+
+    // Tamanho de um UUID em JSON, com aspas e vírgula
+    private static final int USER_ID_BYTES = 39;
+
+    // Entrega de exemplo para medir o envelope de uma mensagem (ids e timestamp com o tamanho máximo)
+    private static final UUID SAMPLE_ID = new UUID(0, 0);
+    private static final LocalDateTime SAMPLE_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 23, 59, 59, 999_999_000);
+
+    @Autowired
+    private ChatRelay relay;
+
+    @Autowired
+    private ChatSessionRegistry chatSessionRegistry;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private StompWireFormats stompWireFormats;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Vazio: um id aleatório a cada subida
+    @Value("${chat.relay.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${chat.relay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${chat.relay.flush-interval:10ms}")
+    private Duration flushInterval;
+
+    @Value("${chat.relay.heartbeat-interval:10s}")
+    private Duration heartbeatInterval;
+
+    private String nodeId;
+    private volatile boolean running;
+    private ScheduledExecutorService scheduler;
+    private volatile long lastHeartbeatNanos;
+
+    private final Map<String, RemoteNode> remoteNodes = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<String>> nodesByUser = new ConcurrentHashMap<>();
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+    // Última mudança de presença de cada usuário ainda não anunciada (true = online)
+    private final Map<UUID, Boolean> pendingPresence = new ConcurrentHashMap<>();
+
+    private Counter relayed;
+    private Counter deliveredFromRelay;
+    private Counter dropped;
+    private Counter oversized;
+    private DistributionSummary batchSizes;
+
+    private static final class RemoteNode {
+        private final Set<UUID> users = ConcurrentHashMap.newKeySet();
+        private volatile long lastSeenNanos = System.nanoTime();
+        // Já recebemos a lista completa de usuários do nó (snapshot)?
+        private volatile boolean synced;
+    }
+
+    private static final class Outbox {
+        private final Queue<Delivery> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+    }
+
+    /**
+     * Entrega a mensagem ao destinatário: direto, se ele está conectado neste nó, e pelo relay para
+     * os outros nós onde ele está conectado.
+     */
+    public void deliver(UUID recipientId, ChatMessageViewDto message) {
+        if (chatSessionRegistry.isOnline(recipientId)) {
+            deliverLocally(recipientId, message);
+        }
+        for (String node : nodesByUser.getOrDefault(recipientId, Set.of())) {
+            Outbox outbox = outboxes.computeIfAbsent(node, n -> new Outbox());
+            outbox.queue.add(new Delivery(recipientId, message));
+            if (outbox.size.incrementAndGet() == batchSize && running) {
+                scheduler.execute(() -> flush(node, outbox));
+            }
+        }
+    }
+
+    @EventListener
+    public void onUserPresence(UserPresenceEvent event) {
+        pendingPresence.put(event.userId(), event.online());
+    }
+
+    @Override
+    public void start() {
+        nodeId = configuredNodeId == null || configuredNodeId.isBlank()
+                ? UUID.randomUUID().toString().replace("-", "")
+                : configuredNodeId;
+        if (!NODE_ID.matcher(nodeId).matches()) {
+            throw new IllegalStateException("chat.relay.node-id deve ter até 40 letras minúsculas, dígitos ou '_': " + nodeId);
+        }
+        registerMetrics();
+        relay.subscribe(nodeId, new ChatRelay.Listener() {
+            @Override
+            public void onPayload(String payload) {
+                receive(payload);
+            }
+
+            @Override
+            public void onResubscribed() {
+                publish(null, RelayFrame.signal(Type.HELLO, nodeId));
+            }
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-relay-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        scheduler.scheduleWithFixedDelay(this::tick, flushInterval.toNanos(), flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+        publish(null, RelayFrame.signal(Type.HELLO, nodeId));
+        log.info("Fan-out do chat iniciado no nó {}", nodeId);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // O que ainda estava no lote segue antes da despedida
+        tick();
+        publish(null, RelayFrame.signal(Type.BYE, nodeId));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    Set<String> nodesHolding(UUID userId) {
+        return Set.copyOf(nodesByUser.getOrDefault(userId, Set.of()));
+    }
+
+    private void registerMetrics() {
+        if (relayed != null) {
+            return;
+        }
+        relayed = Counter.builder("chat.relay.messages").tag("result", "relayed").register(meterRegistry);
+        deliveredFromRelay = Counter.builder("chat.relay.messages").tag("result", "delivered").register(meterRegistry);
+        dropped = Counter.builder("chat.relay.messages").tag("result", "dropped").register(meterRegistry);
+        oversized = Counter.builder("chat.relay.messages").tag("result", "oversized").register(meterRegistry);
+        batchSizes = DistributionSummary.builder("chat.relay.batch-size").register(meterRegistry);
+        Gauge.builder("chat.relay.remote-nodes", remoteNodes, Map::size).register(meterRegistry);
+    }
+
+    private void tick() {
+        try {
+            outboxes.forEach(this::flush);
+            flushPresence();
+            long now = System.nanoTime();
+            if (now - lastHeartbeatNanos >= heartbeatInterval.toNanos()) {
+                lastHeartbeatNanos = now;
+                publish(null, RelayFrame.signal(Type.HEARTBEAT, nodeId));
+            }
+            expireSilentNodes(now);
+        } catch (RuntimeException e) {
+            log.error("Falha no envio dos lotes do relay de chat", e);
+        }
+    }
+
+    /**
+     * Se uma mensagem com este conteúdo cabe numa entrega do relay. O envio recusa as que não cabem
+     * (ChatController): o destinatário conectado em outro nó não a receberia na hora.
+     */
+    public boolean fitsRelay(String content) {
+        Delivery sample = new Delivery(SAMPLE_ID, new ChatMessageViewDto(SAMPLE_ID, SAMPLE_ID, SAMPLE_ID, content, SAMPLE_TIMESTAMP));
+        return encode(sample).length <= relay.maxPayloadBytes() - FRAME_OVERHEAD_BYTES;
+    }
+
+    // Esvazia a fila do nó em lotes que cabem no transporte
+    private void flush(String node, Outbox outbox) {
+        int limit = relay.maxPayloadBytes() - FRAME_OVERHEAD_BYTES;
+        List<byte[]> batch = new ArrayList<>();
+        int batchBytes = 0;
+        Delivery delivery;
+        while ((delivery = outbox.queue.poll()) != null) {
+            outbox.size.decrementAndGet();
+            byte[] encoded = encode(delivery);
+            if (encoded.length > limit) {
+                oversized.increment();
+                // Não esperado: o envio já recusa as mensagens que não cabem (fitsRelay)
+                log.warn("Mensagem {} grande demais para o relay; o destinatário a recebe pelo histórico", delivery.message().id());
+                continue;
+            }
+            if (batch.size() == batchSize || batchBytes + encoded.length + 1 > limit) {
+                sendMessages(node, batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(encoded);
+            batchBytes += encoded.length + 1;
+        }
+        if (!batch.isEmpty()) {
+            sendMessages(node, batch);
+        }
+    }
+
+    // Monta o lote com as entregas já serializadas, sem serializar cada uma de novo
+    private void sendMessages(String node, List<byte[]> batch) {
+        StringBuilder payload = new StringBuilder("{\"type\":\"MESSAGES\",\"from\":\"").append(nodeId).append("\",\"messages\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            payload.append(new String(batch.get(i), StandardCharsets.UTF_8));
+        }
+        payload.append("]}");
+        try {
+            relay.sendToNode(node, payload.toString());
+            relayed.increment(batch.size());
+            batchSizes.record(batch.size());
+        } catch (RuntimeException e) {
+            dropped.increment(batch.size());
+            log.error("Falha ao encaminhar {} mensagens de chat para o nó {}", batch.size(), node, e);
+        }
+    }
+
+    private void flushPresence() {
+        if (pendingPresence.isEmpty()) {
+            return;
+        }
+        List<UUID> online = new ArrayList<>();
+        List<UUID> offline = new ArrayList<>();
+        for (UUID userId : pendingPresence.keySet()) {
+            Boolean isOnline = pendingPresence.remove(userId);
+            if (isOnline != null) {
+                (isOnline ? online : offline).add(userId);
+            }
+        }
+        publishPresence(null, online, offline, false);
+    }
+
+    // Divide as listas para caber no transporte; só o primeiro pedaço de um snapshot substitui o anterior
+    private void publishPresence(String targetNode, List<UUID> online, List<UUID> offline, boolean snapshot) {
+        int perFrame = Math.max(1, (relay.maxPayloadBytes() - FRAME_OVERHEAD_BYTES) / USER_ID_BYTES);
+        int onlineIndex = 0;
+        int offlineIndex = 0;
+        boolean first = true;
+        do {
+            int onlineEnd = Math.min(online.size(), onlineIndex + perFrame);
+            int offlineEnd = Math.min(offline.size(), offlineIndex + perFrame - (onlineEnd - onlineIndex));
+            publish(targetNode, RelayFrame.presence(nodeId, online.subList(onlineIndex, onlineEnd),
+                    offline.subList(offlineIndex, offlineEnd), snapshot && first));
+            onlineIndex = onlineEnd;
+            offlineIndex = offlineEnd;
+            first = false;
+        } while (onlineIndex < online.size() || offlineIndex < offline.size());
+    }
+
+    private void receive(String payload) {
+        RelayFrame frame;
+        try {
+            frame = objectMapper.readValue(payload, RelayFrame.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Payload inválido recebido pelo relay de chat", e);
+            return;
+        }
+        if (nodeId.equals(frame.from())) {
+            return;
+        }
+        RemoteNode node = frame.type() == Type.BYE ? null : remoteNodes.computeIfAbsent(frame.from(), n -> new RemoteNode());
+        if (node != null) {
+            node.lastSeenNanos = System.nanoTime();
+        }
+        switch (frame.type()) {
+            case MESSAGES -> {
+                for (Delivery delivery : frame.messages()) {
+                    if (chatSessionRegistry.isOnline(delivery.recipientId())) {
+                        deliverLocally(delivery.recipientId(), delivery.message());
+                        deliveredFromRelay.increment();
+                    } else {
+                        dropped.increment();
+                    }
+                }
+            }
+            case PRESENCE -> applyPresence(frame.from(), node, frame);
+            // Responde só para quem pediu, com todos os usuários conectados aqui
+            case HELLO -> publishPresence(frame.from(), new ArrayList<>(chatSessionRegistry.onlineUsers()), List.of(), true);
+            // Um nó que ainda não conhecíamos (ex: perdemos o HELLO dele): pede a presença
+            case HEARTBEAT -> {
+                if (!node.synced) {
+                    publish(frame.from(), RelayFrame.signal(Type.HELLO, nodeId));
+                }
+            }
+            case BYE -> forget(frame.from());
+        }
+    }
+
+    private void applyPresence(String from, RemoteNode node, RelayFrame frame) {
+        if (frame.snapshot()) {
+            for (UUID userId : node.users) {
+                removeUserNode(userId, from);
+            }
+            node.users.clear();
+            node.synced = true;
+        }
+        if (frame.online() != null) {
+            for (UUID userId : frame.online()) {
+                node.users.add(userId);
+                nodesByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(from);
+            }
+        }
+        if (frame.offline() != null) {
+            for (UUID userId : frame.offline()) {
+                node.users.remove(userId);
+                removeUserNode(userId, from);
+            }
+        }
+    }
+
+    private void expireSilentNodes(long now) {
+        long maxSilence = heartbeatInterval.toNanos() * 3;
+        for (Map.Entry<String, RemoteNode> entry : remoteNodes.entrySet()) {
+            if (now - entry.getValue().lastSeenNanos > maxSilence) {
+                log.warn("Nó {} sem sinal há mais de {} s; esquecendo a presença dele", entry.getKey(), maxSilence / 1_000_000_000);
+                forget(entry.getKey());
+            }
+        }
+    }
+
+    private void forget(String node) {
+        RemoteNode removed = remoteNodes.remove(node);
+        if (removed != null) {
+            for (UUID userId : removed.users) {
+                removeUserNode(userId, node);
+            }
+        }
+        Outbox outbox = outboxes.remove(node);
+        if (outbox != null) {
+            dropped.increment(outbox.size.get());
+        }
+    }
+
+    private void removeUserNode(UUID userId, String node) {
+        nodesByUser.computeIfPresent(userId, (id, nodes) -> {
+            nodes.remove(node);
+            return nodes.isEmpty() ? null : nodes;
+        });
+    }
+
+    // Uma sessão por vez: cada uma recebe no formato que pediu no CONNECT
+    private void deliverLocally(UUID recipientId, ChatMessageViewDto message) {
+        String recipient = recipientId.toString();
+        for (String sessionId : chatSessionRegistry.sessionsOf(recipientId)) {
+            messagingTemplate.convertAndSendToUser(recipient, "/queue/messages",
+                    stompWireFormats.payloadFor(sessionId, message), stompWireFormats.headersFor(sessionId));
+        }
+    }
+
+    private void publish(String targetNode, RelayFrame frame) {
+        try {
+            String payload = objectMapper.writeValueAsString(frame);
+            if (targetNode == null) {
+                relay.broadcast(payload);
+            } else {
+                relay.sendToNode(targetNode, payload);
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.error("Falha ao publicar {} no relay de chat", frame.type(), e);
+        }
+    }
+
+    private byte[] encode(Delivery delivery) {
+        try {
+            return objectMapper.writeValueAsBytes(delivery);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Falha ao serializar a mensagem para o relay", e);
+        }
+    }
+}
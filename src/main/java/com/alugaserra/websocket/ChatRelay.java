@@ -0,0 +1,34 @@
+package com.alugaserra.websocket;
+
+/**
+ * Transporte entre os nós da aplicação para o {@link ChatFanout}: entrega lotes de mensagens a um nó
+ * específico e avisos de presença a todos. Os payloads são texto (JSON) montado pelo ChatFanout.
+ *
+ * Implementações: {@link InMemoryChatRelay} (um nó só, e testes) e {@link PostgresChatRelay}
+ * (LISTEN/NOTIFY), escolhidas por chat.relay.type.
+ */
+public interface ChatRelay {
+
+    /**
+     * Passa a receber o que for enviado para o nó e os broadcasts (inclusive os do próprio nó).
+     */
+    void subscribe(String nodeId, Listener listener);
+
+    void sendToNode(String nodeId, String payload);
+
+    void broadcast(String payload);
+
+    /**
+     * Maior payload aceito pelo transporte, em bytes (UTF-8).
+     */
+    int maxPayloadBytes();
+
+    interface Listener {
+
+        void onPayload(String payload);
+
+        // A inscrição caiu e foi refeita: o que chegou nesse meio tempo se perdeu
+        default void onResubscribed() {
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.alugaserra.websocket;
+
+import com.alugaserra.event.ChatCreatedEvent;
+import com.alugaserra.repository.ChatRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sessões STOMP autenticadas e, para cada uma, os chats de que o usuário participa.
+ *
+ * Os chats da sessão são carregados numa consulta só, no primeiro envio, e depois servem todos os
+ * envios sem ir ao banco: é deles que saem o remetente (o usuário da sessão) e os destinatários.
+ * Quando um chat do usuário é criado, o cache das sessões afetadas é descartado e recarregado no
+ * próximo envio. O evento é só deste nó: um chat criado em outro nó não está no cache, então um envio
+ * para um chat desconhecido recarrega os chats do banco uma vez antes de ser negado. Um imóvel com conversas não pode ser removido
+ * (a chave estrangeira de chats recusa), então a remoção de um imóvel não mexe nos chats em cache.
+ *
+ * Também é o registro usuário → sessões deste nó, usado pelo {@link ChatFanout} para saber quem
+ * está conectado aqui ({@link UserPresenceEvent}).
+ */
+@Component
+public class ChatSessionRegistry {
+
+    @Autowired
+    private ChatRepository chatRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, SessionChats> sessions = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+
+    private Counter loads;
+
+    private static final class SessionChats {
+        private final UUID userId;
+        // Nulo enquanto não foi carregado ou depois de invalidado
+        private volatile Map<UUID, ChatContext> chats;
+        // Incrementado a cada invalidação: um carregamento concorrente a ela não é guardado
+        private final AtomicInteger generation = new AtomicInteger();
+
+        private SessionChats(UUID userId) {
+            this.userId = userId;
+        }
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        loads = Counter.builder("chat.sessions.context-loads")
+                .description("Carregamentos dos chats de uma sessão STOMP (primeiro envio ou depois de uma invalidação)")
+                .register(meterRegistry);
+        Gauge.builder("chat.sessions.active", sessions, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Registra a sessão autenticada no CONNECT.
+     */
+    public void register(String sessionId, UUID userId) {
+        SessionChats previous = sessions.put(sessionId, new SessionChats(userId));
+        if (previous != null && !previous.userId.equals(userId)) {
+            removeFromUser(previous.userId, sessionId);
+        }
+        boolean[] first = {false};
+        sessionsByUser.compute(userId, (id, sessionIds) -> {
+            if (sessionIds == null) {
+                sessionIds = ConcurrentHashMap.newKeySet();
+                first[0] = true;
+            }
+            sessionIds.add(sessionId);
+            return sessionIds;
+        });
+        if (first[0]) {
+            eventPublisher.publishEvent(new UserPresenceEvent(userId, true));
+        }
+    }
+
+    /**
+     * O usuário tem alguma sessão STOMP neste nó?
+     */
+    public boolean isOnline(UUID userId) {
+        return sessionsByUser.containsKey(userId);
+    }
+
+    /**
+     * As sessões do usuário neste nó.
+     */
+    public Set<String> sessionsOf(UUID userId) {
+        Set<String> sessionIds = sessionsByUser.get(userId);
+        return sessionIds != null ? Set.copyOf(sessionIds) : Set.of();
+    }
+
+    /**
+     * Usuários com sessão neste nó.
+     */
+    public Set<UUID> onlineUsers() {
+        return Set.copyOf(sessionsByUser.keySet());
+    }
+
+    /**
+     * @return O usuário autenticado da sessão.
+     * @throws AccessDeniedException se a sessão não passou pelo CONNECT autenticado.
+     */
+    public UUID userOf(String sessionId) {
+        return session(sessionId).userId;
+    }
+
+    /**
+     * @return O chat, se o usuário da sessão participa dele.
+     * @throws AccessDeniedException se a sessão não está autenticada ou o usuário não participa do chat.
+     */
+    public ChatContext chatOf(String sessionId, UUID chatId) {
+        SessionChats session = session(sessionId);
+        Map<UUID, ChatContext> chats = session.chats;
+        boolean fresh = chats == null;
+        if (fresh) {
+            chats = reload(session);
+        }
+        ChatContext chat = chatId != null ? chats.get(chatId) : null;
+        if (chat == null && chatId != null && !fresh) {
+            // Pode ser um chat criado em outro nó depois do carregamento
+            chat = reload(session).get(chatId);
+        }
+        if (chat == null) {
+            throw new AccessDeniedException("O usuário não participa deste chat.");
+        }
+        return chat;
+    }
+
+    @EventListener
+    public void onChatCreated(ChatCreatedEvent event) {
+        for (UUID userId : event.participantIds()) {
+            for (String sessionId : sessionsByUser.getOrDefault(userId, Set.of())) {
+                invalidate(sessions.get(sessionId));
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionChats session = sessions.remove(event.getSessionId());
+        if (session != null) {
+            removeFromUser(session.userId, event.getSessionId());
+        }
+    }
+
+    int sessionCount() {
+        return sessions.size();
+    }
+
+    private SessionChats session(String sessionId) {
+        SessionChats session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session == null) {
+            throw new AccessDeniedException("Sessão STOMP não autenticada.");
+        }
+        return session;
+    }
+
+    // Só guarda o resultado se nenhuma invalidação aconteceu durante a consulta
+    private Map<UUID, ChatContext> reload(SessionChats session) {
+        int generation = session.generation.get();
+        Map<UUID, ChatContext> chats = load(session.userId);
+        if (generation == session.generation.get()) {
+            session.chats = chats;
+        }
+        return chats;
+    }
+
+    private Map<UUID, ChatContext> load(UUID userId) {
+        loads.increment();
+        Map<UUID, UUID> propertyByChat = new HashMap<>();
+        Map<UUID, List<UUID>> participantsByChat = new HashMap<>();
+        for (Object[] row : chatRepository.findContextRowsByParticipant(userId)) {
+            UUID chatId = (UUID) row[0];
+            propertyByChat.put(chatId, (UUID) row[1]);
+            participantsByChat.computeIfAbsent(chatId, id -> new ArrayList<>()).add((UUID) row[2]);
+        }
+        Map<UUID, ChatContext> chats = new HashMap<>();
+        participantsByChat.forEach((chatId, participants) ->
+                chats.put(chatId, new ChatContext(chatId, propertyByChat.get(chatId), List.copyOf(participants))));
+        return Map.copyOf(chats);
+    }
+
+    private static void invalidate(SessionChats session) {
+        if (session != null) {
+            session.generation.incrementAndGet();
+            session.chats = null;
+        }
+    }
+
+    private void removeFromUser(UUID userId, String sessionId) {
+        boolean[] last = {false};
+        sessionsByUser.computeIfPresent(userId, (id, sessionIds) -> {
+            sessionIds.remove(sessionId);
+            last[0] = sessionIds.isEmpty();
+            return last[0] ? null : sessionIds;
+        });
+        if (last[0]) {
+            eventPublisher.publishEvent(new UserPresenceEvent(userId, false));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.alugaserra.websocket;
+
+import java.security.Principal;
+import java.util.UUID;
+
+/**
+ * Usuário de uma sessão STOMP. O nome é o id do usuário: é por ele que o
+ * {@code convertAndSendToUser} encontra as sessões do destinatário.
+ */
+public record ChatUser(UUID id) implements Principal {
+
+    @Override
+    public String getName() {
+        return id.toString();
+    }
+}
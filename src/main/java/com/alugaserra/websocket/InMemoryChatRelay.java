@@ -0,0 +1,56 @@
+package com.alugaserra.websocket;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Relay em memória: os nós inscritos no mesmo {@link Hub} recebem os payloads na hora, na thread de
+ * quem envia. É o padrão (chat.relay.type=memory), com um hub só deste nó; os testes montam vários
+ * nós sobre um hub compartilhado.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.relay.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryChatRelay implements ChatRelay {
+
+    private final Hub hub;
+
+    public InMemoryChatRelay() {
+        this(new Hub());
+    }
+
+    public InMemoryChatRelay(Hub hub) {
+        this.hub = hub;
+    }
+
+    public static final class Hub {
+        private final Map<String, Listener> listeners = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void subscribe(String nodeId, Listener listener) {
+        hub.listeners.put(nodeId, listener);
+    }
+
+    @Override
+    public void sendToNode(String nodeId, String payload) {
+        Listener listener = hub.listeners.get(nodeId);
+        if (listener != null) {
+            listener.onPayload(payload);
+        }
+    }
+
+    @Override
+    public void broadcast(String payload) {
+        for (Listener listener : hub.listeners.values()) {
+            listener.onPayload(payload);
+        }
+    }
+
+    @Override
+    public int maxPayloadBytes() {
+        return Integer.MAX_VALUE;
+    }
+}
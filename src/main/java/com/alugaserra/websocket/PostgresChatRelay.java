@@ -0,0 +1,148 @@
+package com.alugaserra.websocket;
+
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Relay sobre o LISTEN/NOTIFY do PostgreSQL (chat.relay.type=postgres).
+ *
+ * Cada nó escuta o canal "chat_relay_&lt;nó&gt;" (lotes de mensagens para ele) e o canal comum
+ * "chat_relay_all" (presença), numa conexão do pool reservada para isso. O envio é um
+ * {@code pg_notify} fora de transação. Se a conexão cai, a escuta é refeita com espera e o
+ * {@link ChatFanout} é avisado para pedir de novo a presença dos outros nós.
+ *
+ * O PostgreSQL limita o payload do NOTIFY a 8000 bytes; o ChatFanout divide os lotes abaixo de
+ * chat.relay.postgres.max-payload-bytes.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.relay.type", havingValue = "postgres")
+public class PostgresChatRelay implements ChatRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresChatRelay.class);
+
+    static final String CHANNEL_PREFIX = "chat_relay_";
+    static final String BROADCAST_CHANNEL = CHANNEL_PREFIX + "all";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${chat.relay.postgres.max-payload-bytes:7500}")
+    private int maxPayloadBytes;
+
+    // Espera máxima por notificações em cada volta, para a thread perceber o close()
+    @Value("${chat.relay.postgres.poll-timeout:500ms}")
+    private Duration pollTimeout;
+
+    @Value("${chat.relay.postgres.reconnect-backoff:1s}")
+    private Duration reconnectBackoff;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    @Override
+    public synchronized void subscribe(String nodeId, Listener listener) {
+        if (running) {
+            throw new IllegalStateException("O relay do PostgreSQL já está inscrito.");
+        }
+        running = true;
+        listenerThread = new Thread(() -> listen(CHANNEL_PREFIX + nodeId, listener), "chat-relay-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void sendToNode(String nodeId, String payload) {
+        notify(CHANNEL_PREFIX + nodeId, payload);
+    }
+
+    @Override
+    public void broadcast(String payload) {
+        notify(BROADCAST_CHANNEL, payload);
+    }
+
+    @Override
+    public int maxPayloadBytes() {
+        return maxPayloadBytes;
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        if (listenerThread != null) {
+            try {
+                listenerThread.join(pollTimeout.toMillis() * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void notify(String channel, String payload) {
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel, payload);
+    }
+
+    private void listen(String nodeChannel, Listener listener) {
+        boolean resubscribing = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    // Os nomes dos canais são gerados pelo ChatFanout (letras minúsculas, dígitos e "_")
+                    statement.execute("LISTEN " + nodeChannel);
+                    statement.execute("LISTEN " + BROADCAST_CHANNEL);
+                }
+                if (resubscribing) {
+                    log.info("Escuta do relay de chat restabelecida no canal {}", nodeChannel);
+                    listener.onResubscribed();
+                }
+                resubscribing = true;
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollTimeout.toMillis());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(listener, notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (running) {
+                    log.warn("Falha na escuta do relay de chat; nova tentativa em {} ms", reconnectBackoff.toMillis(), e);
+                    sleep(reconnectBackoff.toMillis());
+                }
+            }
+        }
+    }
+
+    private static void dispatch(Listener listener, String payload) {
+        try {
+            listener.onPayload(payload);
+        } catch (RuntimeException e) {
+            log.error("Falha ao processar um payload do relay de chat", e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.alugaserra.websocket;
+
+import com.alugaserra.dto.ChatMessageViewDto;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * O que trafega no {@link ChatRelay}, em JSON.
+ * @param from O nó que enviou (um nó ignora os próprios broadcasts).
+ * @param snapshot Em PRESENCE: a lista "online" substitui tudo o que se sabia do nó.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+record RelayFrame(
+        Type type,
+        String from,
+        List<Delivery> messages,
+        List<UUID> online,
+        List<UUID> offline,
+        boolean snapshot
+) {
+
+    enum Type {
+        MESSAGES,  // Lote de mensagens para usuários conectados no nó de destino
+        PRESENCE,  // Usuários que entraram/saíram do nó de origem
+        HELLO,     // Nó novo (ou que perdeu a inscrição) pedindo a presença dos outros
+        HEARTBEAT, // O nó continua vivo
+        BYE        // O nó está desligando
+    }
+
+    record Delivery(UUID recipientId, ChatMessageViewDto message) {
+    }
+
+    static RelayFrame messages(String from, List<Delivery> messages) {
+        return new RelayFrame(Type.MESSAGES, from, messages, null, null, false);
+    }
+
+    static RelayFrame presence(String from, List<UUID> online, List<UUID> offline, boolean snapshot) {
+        return new RelayFrame(Type.PRESENCE, from, null, online, offline, snapshot);
+    }
+
+    static RelayFrame signal(Type type, String from) {
+        return new RelayFrame(type, from, null, null, null, false);
+    }
+}
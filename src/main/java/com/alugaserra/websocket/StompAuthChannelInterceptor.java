@@ -0,0 +1,142 @@
+package com.alugaserra.websocket;
+
+import com.alugaserra.dto.ApiErrorDto;
+import com.alugaserra.model.User;
+import com.alugaserra.security.RevokedSessions;
+import com.alugaserra.security.TokenAuthenticator;
+import com.alugaserra.security.TokenClaims;
+import com.alugaserra.security.TokenVersions;
+import com.alugaserra.security.UserPrincipal;
+import com.alugaserra.service.TokenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Autentica a sessão STOMP no CONNECT, pelo token JWT do cabeçalho "Authorization" do frame. O usuário
+ * da sessão passa a ser um {@link ChatUser} (o nome é o id), e a sessão é registrada no
+ * {@link ChatSessionRegistry}. Sem token válido, a conexão é recusada (frame ERROR).
+ *
+ * A sessão STOMP dura mais que o token: a validade ("exp"), a sessão de login e a versão do token ficam
+ * nos atributos da sessão, e cada SEND e SUBSCRIBE confere de novo se o token expirou, se a sessão de
+ * login foi encerrada (logout, {@link RevokedSessions}) ou se os tokens do usuário foram revogados (troca
+ * de papel, remoção, {@link TokenVersions}). Nesses casos o frame é descartado e o motivo vai, com status
+ * 401, para a fila "/user/queue/errors" só desta sessão: o cliente reconecta com um token novo.
+ */
+@Component
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(StompAuthChannelInterceptor.class);
+
+    // Atributo da sessão WebSocket com as credenciais do CONNECT
+    static final String CREDENTIALS = StompAuthChannelInterceptor.class.getName() + ".credentials";
+
+    @Autowired
+    private TokenAuthenticator tokenAuthenticator;
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private TokenVersions tokenVersions;
+
+    @Autowired
+    private RevokedSessions revokedSessions;
+
+    @Autowired
+    private ChatSessionRegistry chatSessionRegistry;
+
+    @Autowired
+    private StompWireFormats stompWireFormats;
+
+    // Lazy: o template depende dos canais que este interceptor configura
+    @Lazy
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    record Credentials(UUID userId, int tokenVersion, UUID loginSessionId, Instant expiresAt) {
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+        if (accessor.getCommand() == StompCommand.CONNECT) {
+            connect(accessor);
+        } else if (accessor.getCommand() == StompCommand.SEND || accessor.getCommand() == StompCommand.SUBSCRIBE) {
+            String problem = checkCredentials(accessor);
+            if (problem != null) {
+                reject(accessor, problem);
+                return null;
+            }
+        }
+        return message;
+    }
+
+    private void connect(StompHeaderAccessor accessor) {
+        String token = TokenAuthenticator.bearerToken(accessor.getFirstNativeHeader("Authorization"));
+        UserDetails user = token != null ? tokenAuthenticator.authenticate(token) : null;
+        // Já verificado pelo authenticate: as claims saem do cache do TokenService
+        TokenClaims claims = user != null ? tokenService.verifyToken(token) : null;
+        if (claims == null) {
+            throw new BadCredentialsException("Token ausente, inválido ou expirado.");
+        }
+        UUID userId = user instanceof UserPrincipal principal ? principal.getId() : ((User) user).getId();
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes != null) {
+            attributes.put(CREDENTIALS, new Credentials(userId, claims.tokenVersion(), claims.sessionId(), claims.expiresAt()));
+        }
+        accessor.setUser(new ChatUser(userId));
+        chatSessionRegistry.register(accessor.getSessionId(), userId);
+    }
+
+    // Sem credenciais (sessão que não passou pelo CONNECT), quem recusa é o ChatSessionRegistry
+    private String checkCredentials(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes == null || !(attributes.get(CREDENTIALS) instanceof Credentials credentials)) {
+            return null;
+        }
+        if (credentials.expiresAt() != null && !Instant.now().isBefore(credentials.expiresAt())) {
+            return "Token expirado: reconecte com um token novo.";
+        }
+        if (credentials.loginSessionId() != null && revokedSessions.isRevoked(credentials.loginSessionId())) {
+            return "Sessão encerrada: faça login novamente.";
+        }
+        if (!tokenVersions.isCurrent(credentials.userId(), credentials.tokenVersion())) {
+            return "Token revogado: faça login novamente.";
+        }
+        return null;
+    }
+
+    private void reject(StompHeaderAccessor accessor, String problem) {
+        String sessionId = accessor.getSessionId();
+        log.debug("Frame {} recusado na sessão STOMP {}: {}", accessor.getCommand(), sessionId, problem);
+        if (accessor.getUser() == null || sessionId == null) {
+            return;
+        }
+        HttpStatus status = HttpStatus.UNAUTHORIZED;
+        ApiErrorDto error = new ApiErrorDto(LocalDateTime.now(), status.value(), status.getReasonPhrase(), problem,
+                accessor.getDestination());
+        messagingTemplate.convertAndSendToUser(accessor.getUser().getName(), "/queue/errors",
+                stompWireFormats.payloadFor(sessionId, error), stompWireFormats.headersFor(sessionId));
+    }
+}
@@ -0,0 +1,148 @@
+package com.alugaserra.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Guarda o formato em que cada sessão STOMP quer receber as mensagens do chat.
+ * O cliente pede CBOR enviando "accept:application/cbor" no frame CONNECT; sem o cabeçalho,
+ * as mensagens seguem em JSON. A preferência é por sessão (o mesmo usuário pode ter uma aba em
+ * JSON e outra em CBOR) e é esquecida quando a sessão cai.
+ *
+ * CBOR é binário, e o SockJS ("/ws") só transporta texto: os bytes chegariam corrompidos. Por isso o
+ * CBOR só vale nas sessões do endpoint WebSocket puro ("/ws-native"), marcadas no handshake; lá as
+ * mensagens seguem como frames binários, com content-type "application/octet-stream" (o único com
+ * que o Spring envia um frame binário). Uma sessão SockJS que pede CBOR recebe JSON.
+ */
+@Component
+public class StompWireFormats implements ChannelInterceptor {
+
+    public static final MimeType CBOR = new MimeType("application", "cbor");
+
+    // Atributo da sessão WebSocket: o transporte aceita frames binários
+    public static final String BINARY_TRANSPORT = StompWireFormats.class.getName() + ".binary";
+
+    private static final ObjectMapper CBOR_MAPPER = CBORMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * O mapeador CBOR usado nas mensagens do chat (também na conversão das mensagens recebidas).
+     */
+    public static ObjectMapper cborMapper() {
+        return CBOR_MAPPER;
+    }
+
+    /**
+     * Marca as sessões do endpoint como capazes de receber frames binários.
+     */
+    public static HandshakeInterceptor binaryTransport() {
+        return new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                           WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                attributes.put(BINARY_TRANSPORT, Boolean.TRUE);
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Exception exception) {
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT || accessor.getSessionId() == null) {
+            return message;
+        }
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        boolean binary = attributes != null && Boolean.TRUE.equals(attributes.get(BINARY_TRANSPORT));
+        if (binary && prefersCbor(accessor.getFirstNativeHeader("accept"))) {
+            cborSessions.add(accessor.getSessionId());
+        } else {
+            cborSessions.remove(accessor.getSessionId());
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        cborSessions.remove(event.getSessionId());
+    }
+
+    // Vale o primeiro tipo da lista; um cabeçalho inválido não derruba a conexão, só mantém o JSON
+    static boolean prefersCbor(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        try {
+            List<MimeType> types = MimeTypeUtils.parseMimeTypes(accept);
+            return !types.isEmpty() && CBOR.equalsTypeAndSubtype(types.get(0));
+        } catch (InvalidMimeTypeException e) {
+            return false;
+        }
+    }
+
+    boolean isCbor(String sessionId) {
+        return cborSessions.contains(sessionId);
+    }
+
+    /**
+     * O corpo a enviar para a sessão: os bytes CBOR, se ela pediu, senão o próprio objeto (JSON padrão).
+     */
+    public Object payloadFor(String sessionId, Object payload) {
+        if (!cborSessions.contains(sessionId)) {
+            return payload;
+        }
+        try {
+            return CBOR_MAPPER.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Falha ao serializar a mensagem em CBOR", e);
+        }
+    }
+
+    /**
+     * Cabeçalhos de envio para a sessão: endereçam só ela e, se ela pediu CBOR, marcam o corpo como binário.
+     */
+    public MessageHeaders headersFor(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        if (cborSessions.contains(sessionId)) {
+            accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        }
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+}
@@ -0,0 +1,10 @@
+package com.alugaserra.websocket;
+
+import java.util.UUID;
+
+/**
+ * Publicado pelo {@link ChatSessionRegistry} quando um usuário abre a primeira sessão STOMP neste nó
+ * (online) ou fecha a última (offline).
+ */
+public record UserPresenceEvent(UUID userId, boolean online) {
+}
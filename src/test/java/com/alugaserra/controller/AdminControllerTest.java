@@ -1,8 +1,17 @@
 package com.alugaserra.controller;
 
+import com.alugaserra.enums.ExportFormat;
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.enums.PropertyType;
 import com.alugaserra.enums.UserRole;
+import com.alugaserra.exception.ServiceOverloadedException;
+import com.alugaserra.model.Property;
 import com.alugaserra.model.User;
+import com.alugaserra.repository.PropertyRepository;
+import com.alugaserra.repository.SubscriptionRepository;
 import com.alugaserra.repository.UserRepository;
+import com.alugaserra.service.AdminService;
+import com.alugaserra.service.UserImportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,12 +21,25 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -37,6 +59,18 @@ class AdminControllerTest {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private PropertyRepository propertyRepository;
+
+    @Autowired
+    private AdminService adminService;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
     // --- USUÁRIOS DE TESTE ---
     private User adminUser;
     private User locadorUser;
@@ -56,6 +90,17 @@ class AdminControllerTest {
         locadorUser.setPasswordHash(passwordEncoder.encode("password"));
         locadorUser.setRole(UserRole.LOCADOR);
         userRepository.save(locadorUser);
+
+        // Alguns imóveis com fotos, para a exportação do catálogo
+        for (int i = 0; i < 5; i++) {
+            Property property = new Property();
+            property.setOwner(locadorUser);
+            property.setTitle("Imóvel, \"número\" " + i);
+            property.setType(PropertyType.CASA);
+            property.setStatus(i % 2 == 0 ? PropertyStatus.ACTIVE : PropertyStatus.PAUSED);
+            property.setPhotoUrls(List.of("a" + i + ".jpg", "b" + i + ".jpg"));
+            propertyRepository.save(property);
+        }
     }
 
     @Test
@@ -92,4 +137,201 @@ class AdminControllerTest {
                         .param("newRole", "ADMIN"))
                 .andExpect(status().isForbidden());
     }
+
+    @Test
+    @DisplayName("Deve exportar o catálogo inteiro em NDJSON, um imóvel por linha, com as fotos agrupadas")
+    void exportProperties_ShouldStreamNdjson() throws Exception {
+        String body = mockMvc.perform(get("/api/admin/properties/export")
+                        .with(user(adminUser)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", startsWith("application/x-ndjson")))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        // Todo o catálogo (inclusive o que o DataInitializer cadastra), com as 2 fotos de cada imóvel de teste
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize((int) propertyRepository.count());
+        assertThat(lines).allSatisfy(line -> assertThat(line).startsWith("{"));
+        assertThat(lines).filteredOn(line -> line.contains("número")).hasSize(5)
+                .allSatisfy(line -> assertThat(line).contains(".jpg\",\"b"));
+    }
+
+    @Test
+    @DisplayName("Deve exportar o catálogo em CSV, escapando vírgulas e aspas")
+    void exportProperties_ShouldStreamCsv() throws Exception {
+        String body = mockMvc.perform(get("/api/admin/properties/export")
+                        .with(user(adminUser))
+                        .param("format", "CSV"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", containsString("imoveis.csv")))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = body.split("\r\n");
+        assertThat(lines).hasSize((int) propertyRepository.count() + 1);
+        assertThat(lines[0]).startsWith("id,title,");
+        assertThat(body).contains("\"Imóvel, \"\"número\"\" 0\"");
+    }
+
+    @Test
+    @DisplayName("Deve PROIBIR que um LOCADOR exporte o catálogo")
+    void exportProperties_ShouldFail_WhenUserIsNotAdmin() throws Exception {
+        mockMvc.perform(get("/api/admin/properties/export")
+                        .with(user(locadorUser)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DisplayName("Deve interromper a exportação sem erro quando o cliente desconecta")
+    void exportProperties_ShouldStopCleanly_WhenClientDisconnects() {
+        OutputStream disconnected = new OutputStream() {
+            private int lines = 0;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (++lines > 2) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+
+        long written = adminService.exportProperties(ExportFormat.NDJSON, disconnected);
+
+        assertThat(written).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve importar os usuários válidos do CSV e relatar o erro de cada linha recusada")
+    void importUsers_ShouldImportValidRowsAndReportErrors() throws Exception {
+        String csv = """
+                email,name,password,cpf,phone
+                ana.import@email.com,Ana Importada,senha123,12345678909,31911110000
+                email-invalido,Sem Email,senha123,98765432100,31911110001
+                locador.target@email.com,Já Existe,senha123,98765432100,31911110002
+                bruno.import@email.com,"Silva, Bruno",senha123,11144477735,31911110003
+                ana.import@email.com,Ana Repetida,senha123,98765432100,31911110004
+                """;
+        // Blocos de 2 linhas, para o arquivo passar por mais de uma transação
+        ReflectionTestUtils.setField(userImportService, "chunkSize", 2);
+        try {
+            mockMvc.perform(post("/api/admin/users/import")
+                            .with(user(adminUser))
+                            .contentType("text/csv")
+                            .content(csv.getBytes(StandardCharsets.UTF_8)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalRows").value(5))
+                    .andExpect(jsonPath("$.imported").value(2))
+                    .andExpect(jsonPath("$.failed").value(3))
+                    .andExpect(jsonPath("$.errors[*].line").value(containsInAnyOrder(3, 4, 6)))
+                    .andExpect(jsonPath("$.errors[?(@.line == 6)].message").value("E-mail já cadastrado."));
+        } finally {
+            ReflectionTestUtils.setField(userImportService, "chunkSize", 500);
+        }
+
+        User bruno = userRepository.findByEmail("bruno.import@email.com").orElseThrow();
+        assertThat(bruno.getName()).isEqualTo("Silva, Bruno");
+        assertThat(bruno.getRole()).isEqualTo(UserRole.LOCADOR);
+        assertThat(passwordEncoder.matches("senha123", bruno.getPasswordHash())).isTrue();
+        assertThat(subscriptionRepository.findByUser_Id(bruno.getId())).get()
+                .extracting(s -> s.getPlan().getName()).isEqualTo("Bronze");
+    }
+
+    @Test
+    @DisplayName("Deve recusar só as linhas cujo hash não saiu com o pool do BCrypt cheio, e ainda devolver o relatório")
+    void importUsers_ShouldReportRows_WhenHashPoolIsOverloaded() throws Exception {
+        String csv = """
+                email,name,password,cpf,phone
+                ana.import@email.com,Ana Importada,senha123,12345678909,31911110000
+                bruno.import@email.com,Bruno Importado,sobrecarga,11144477735,31911110003
+                """;
+        // A senha "sobrecarga" sempre encontra o pool cheio; as outras passam direto
+        PasswordEncoder overloaded = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence raw) {
+                if ("sobrecarga".contentEquals(raw)) {
+                    throw new ServiceOverloadedException("Pool cheio", Duration.ofSeconds(1));
+                }
+                return passwordEncoder.encode(raw);
+            }
+
+            @Override
+            public boolean matches(CharSequence raw, String encoded) {
+                return passwordEncoder.matches(raw, encoded);
+            }
+        };
+        ReflectionTestUtils.setField(userImportService, "passwordEncoder", overloaded);
+        ReflectionTestUtils.setField(userImportService, "hashRetryBackoff", Duration.ofMillis(1));
+        try {
+            mockMvc.perform(post("/api/admin/users/import")
+                            .with(user(adminUser))
+                            .contentType("text/csv")
+                            .content(csv.getBytes(StandardCharsets.UTF_8)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.imported").value(1))
+                    .andExpect(jsonPath("$.failed").value(1))
+                    .andExpect(jsonPath("$.errors[0].line").value(3))
+                    .andExpect(jsonPath("$.errors[0].message").value(containsString("importe esta linha de novo")));
+        } finally {
+            ReflectionTestUtils.setField(userImportService, "passwordEncoder", passwordEncoder);
+            ReflectionTestUtils.setField(userImportService, "hashRetryBackoff", Duration.ofMillis(250));
+        }
+
+        assertThat(userRepository.findByEmail("ana.import@email.com")).isPresent();
+        assertThat(userRepository.findByEmail("bruno.import@email.com")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve parar no registro malformado e devolver o relatório parcial, com as linhas anteriores importadas")
+    void importUsers_ShouldReturnPartialReport_WhenRecordIsMalformed() throws Exception {
+        String csv = """
+                email,name,password,cpf,phone
+                ana.import@email.com,Ana Importada,senha123,12345678909,31911110000
+                bruno.import@email.com,Bruno Importado,senha123,11144477735,31911110003
+                carla.import@email.com,"Carla sem fechar as aspas,senha123,52998224725,31911110004
+                daniel.import@email.com,Daniel Importado,senha123,39053344705,31911110005
+                """;
+        // Blocos de 1 linha: os anteriores já foram gravados quando o registro malformado aparece
+        ReflectionTestUtils.setField(userImportService, "chunkSize", 1);
+        try {
+            mockMvc.perform(post("/api/admin/users/import")
+                            .with(user(adminUser))
+                            .contentType("text/csv")
+                            .content(csv.getBytes(StandardCharsets.UTF_8)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.totalRows").value(3))
+                    .andExpect(jsonPath("$.imported").value(2))
+                    .andExpect(jsonPath("$.failed").value(1))
+                    .andExpect(jsonPath("$.abortedAtLine").value(4))
+                    .andExpect(jsonPath("$.errors[0].line").value(4))
+                    .andExpect(jsonPath("$.errors[0].message").value(startsWith("Aspas não fechadas")));
+        } finally {
+            ReflectionTestUtils.setField(userImportService, "chunkSize", 500);
+        }
+
+        assertThat(userRepository.findByEmail("bruno.import@email.com")).isPresent();
+        assertThat(userRepository.findByEmail("daniel.import@email.com")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve recusar o CSV sem as colunas obrigatórias")
+    void importUsers_ShouldReturnBadRequest_WhenHeaderIsMissingColumns() throws Exception {
+        mockMvc.perform(post("/api/admin/users/import")
+                        .with(user(adminUser))
+                        .contentType("text/csv")
+                        .content("email,name\nana@email.com,Ana\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Deve PROIBIR que um LOCADOR importe usuários")
+    void importUsers_ShouldFail_WhenUserIsNotAdmin() throws Exception {
+        mockMvc.perform(post("/api/admin/users/import")
+                        .with(user(locadorUser))
+                        .contentType("text/csv")
+                        .content("email,name,password,cpf,phone\n"))
+                .andExpect(status().isForbidden());
+    }
 }
@@ -1,8 +1,17 @@
 package com.alugaserra.controller;
 
+import com.alugaserra.dto.LoginRequestDto;
+import com.alugaserra.dto.RefreshTokenRequestDto;
 import com.alugaserra.dto.RegisterRequestDto;
 import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.UserRepository;
+import com.alugaserra.security.TokenVersions;
+import com.alugaserra.security.UserCache;
+import com.alugaserra.service.AdminService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,11 +19,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -32,10 +47,31 @@ class AuthControllerTest {
     @Autowired
     private ObjectMapper objectMapper; // Utilitário para converter objetos Java para JSON
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdminService adminService;
+
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private TokenVersions tokenVersions;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
     private RegisterRequestDto locadorDto;
 
     @BeforeEach
     void setUp() {
+        // Cada teste desfaz a transação, mas o cache de usuários guardaria os usuários que já não existem
+        userCache.invalidateAll();
+
         // Prepara um DTO de utilizador para ser usado nos testes
         locadorDto = new RegisterRequestDto(
                 "Teste Locador",
@@ -91,5 +127,132 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.token").isString())
                 .andExpect(jsonPath("$.token").isNotEmpty());
     }
-}
 
+    @Test
+    @DisplayName("Deve regravar com o custo atual do BCrypt a senha gravada com um custo menor")
+    void login_ShouldUpgradePasswordHash_WhenCostFactorIsOutdated() throws Exception {
+        User user = new User();
+        user.setName("Usuário Antigo");
+        user.setEmail("antigo@email.com");
+        user.setPasswordHash(new BCryptPasswordEncoder(4).encode("senha123"));
+        user.setRole(UserRole.INQUILINO);
+        userRepository.save(user);
+
+        login("antigo@email.com", "senha123");
+
+        String upgraded = userRepository.findByEmail("antigo@email.com").orElseThrow().getPasswordHash();
+        assertThat(upgraded).startsWith("$2a$10$");
+        assertThat(new BCryptPasswordEncoder().matches("senha123", upgraded)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve renovar o par de tokens e encerrar a sessão quando um refresh token já usado reaparece")
+    void refresh_ShouldRotateTokens_AndRevokeSessionOnReuse() throws Exception {
+        register_ShouldReturnCreated_WhenUserIsNew();
+        String login = login("locador.teste@email.com", "senha123");
+        String firstRefresh = JsonPath.read(login, "$.refreshToken");
+
+        String renewed = mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RefreshTokenRequestDto(firstRefresh))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.expiresIn").isNumber())
+                .andReturn().getResponse().getContentAsString();
+        String accessToken = JsonPath.read(renewed, "$.token");
+        assertThat((String) JsonPath.read(renewed, "$.refreshToken")).isNotEqualTo(firstRefresh);
+        mockMvc.perform(get("/api/chats").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isOk());
+
+        // O refresh token antigo reaparece: a sessão inteira, inclusive o access token novo, é encerrada
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RefreshTokenRequestDto(firstRefresh))))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/chats").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RefreshTokenRequestDto(JsonPath.read(renewed, "$.refreshToken")))))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Deve recusar o access token da sessão depois do logout")
+    void logout_ShouldRevokeAccessToken() throws Exception {
+        register_ShouldReturnCreated_WhenUserIsNew();
+        String login = login("locador.teste@email.com", "senha123");
+        String accessToken = JsonPath.read(login, "$.token");
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RefreshTokenRequestDto(JsonPath.read(login, "$.refreshToken")))))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/chats").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DisplayName("Deve aceitar o token sem consultar o utilizador e recusá-lo (e tirá-lo do cache) depois que o papel muda")
+    void token_ShouldBeRevoked_WhenRoleChanges() throws Exception {
+        register_ShouldReturnCreated_WhenUserIsNew();
+        String token = JsonPath.read(login("locador.teste@email.com", "senha123"), "$.token");
+
+        mockMvc.perform(get("/api/chats").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        // O cadastro precisa da entidade completa, carregada só neste momento
+        mockMvc.perform(post("/api/properties").header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"title": "Casa", "description": "Casa com quintal", "type": "CASA", "rentValue": 1500,
+                                 "rooms": 2, "bathrooms": 1, "hasGarage": true, "isFurnished": false,
+                                 "approximateLocation": "Centro"}
+                                """))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.owner.name").value("Teste Locador"));
+
+        User user = userRepository.findByEmail("locador.teste@email.com").orElseThrow();
+        adminService.updateUserRole(user.getId(), UserRole.INQUILINO);
+        userRepository.flush(); // O listener da entidade tira do cache o usuário guardado no login
+        assertThat(userCache.findByEmail("locador.teste@email.com").orElseThrow().getRole()).isEqualTo(UserRole.INQUILINO);
+
+        mockMvc.perform(get("/api/chats").header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DisplayName("Deve recusar o token depois da releitura quando o papel muda ou o usuário é removido em outro nó")
+    void token_ShouldBeRevoked_WhenChangedOnAnotherNode() throws Exception {
+        register_ShouldReturnCreated_WhenUserIsNew();
+        String token = JsonPath.read(login("locador.teste@email.com", "senha123"), "$.token");
+        UUID userId = userRepository.findByEmail("locador.teste@email.com").orElseThrow().getId();
+        mockMvc.perform(get("/api/chats").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        // Escrita direta no banco: nem o cache nem as versões deste nó ficam sabendo, como numa escrita em outro nó
+        jdbcTemplate.update("UPDATE users SET token_version = token_version + 1 WHERE id = ?", userId);
+        entityManager.clear(); // O usuário do cadastro, ainda na sessão do teste, está com a versão antiga
+        tokenVersions.refresh();
+        mockMvc.perform(get("/api/chats").header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+
+        // Um token novo vale até o usuário ser removido
+        String newToken = JsonPath.read(login("locador.teste@email.com", "senha123"), "$.token");
+        mockMvc.perform(get("/api/chats").header("Authorization", "Bearer " + newToken))
+                .andExpect(status().isOk());
+        jdbcTemplate.update("DELETE FROM refresh_tokens WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM subscriptions WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+        tokenVersions.refresh();
+        mockMvc.perform(get("/api/chats").header("Authorization", "Bearer " + newToken))
+                .andExpect(status().isForbidden());
+    }
+
+    private String login(String email, String password) throws Exception {
+        return mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new LoginRequestDto(email, password))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+}
@@ -0,0 +1,219 @@
+package com.alugaserra.controller;
+
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.Chat;
+import com.alugaserra.model.ChatMessage;
+import com.alugaserra.model.Property;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.ChatMessageRepository;
+import com.alugaserra.repository.ChatRepository;
+import com.alugaserra.repository.PropertyRepository;
+import com.alugaserra.repository.UserRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+class ChatControllerTest {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PropertyRepository propertyRepository;
+    @Autowired private ChatRepository chatRepository;
+    @Autowired private ChatMessageRepository chatMessageRepository;
+
+    private User locador;
+    private User inquilino;
+    private User outroUsuario;
+    private Chat chat;
+
+    @BeforeEach
+    void setUp() {
+        locador = newUser("locador.chat@email.com", UserRole.LOCADOR);
+        inquilino = newUser("inquilino.chat@email.com", UserRole.INQUILINO);
+        outroUsuario = newUser("outro.chat@email.com", UserRole.INQUILINO);
+
+        Property property = new Property();
+        property.setOwner(locador);
+        property.setTitle("Casa para conversar");
+        property.setType(PropertyType.CASA);
+        propertyRepository.save(property);
+
+        chat = new Chat();
+        chat.setProperty(property);
+        chat.setParticipants(new ArrayList<>(List.of(inquilino, locador)));
+        chatRepository.save(chat);
+    }
+
+    @Test
+    @DisplayName("Deve paginar o histórico para trás, da página mais recente até a primeira mensagem")
+    void getChatMessages_ShouldPageBackwards() throws Exception {
+        List<String> expected = sendMessages(7);
+
+        List<String> received = new ArrayList<>();
+        String body = perform(messages().param("size", "3"));
+        assertThat(ids(body)).containsExactlyElementsOf(expected.subList(4, 7));
+        received.addAll(0, ids(body));
+
+        body = perform(messages().param("size", "3").param("before", (String) JsonPath.read(body, "$.nextCursor")));
+        assertThat(ids(body)).containsExactlyElementsOf(expected.subList(1, 4));
+        received.addAll(0, ids(body));
+
+        body = perform(messages().param("size", "3").param("before", (String) JsonPath.read(body, "$.nextCursor")));
+        received.addAll(0, ids(body));
+        assertThat((String) JsonPath.read(body, "$.nextCursor")).isNull();
+        assertThat(received).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @DisplayName("Deve devolver só as mensagens posteriores ao cursor de sincronização")
+    void getChatMessages_ShouldReturnOnlyNewMessages_WhenSinceIsGiven() throws Exception {
+        sendMessages(3);
+        String syncCursor = JsonPath.read(perform(messages()), "$.syncCursor");
+
+        List<String> all = sendMessages(2);
+        String body = perform(messages().param("since", syncCursor));
+
+        assertThat(ids(body)).containsExactlyElementsOf(all.subList(3, 5));
+        assertThat((String) JsonPath.read(body, "$.nextCursor")).isNull();
+        // Sem mensagens novas, o cursor de sincronização continua o mesmo
+        String latest = JsonPath.read(body, "$.syncCursor");
+        assertThat(ids(perform(messages().param("since", latest)))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve limitar o tamanho da página e recusar cursores inválidos")
+    void getChatMessages_ShouldCapPageSizeAndRejectBadCursor() throws Exception {
+        sendMessages(3);
+
+        mockMvc.perform(messages().param("size", "100000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages.length()").value(3));
+        mockMvc.perform(messages().param("before", "nao-e-um-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Deve PROIBIR que quem não participa do chat leia o histórico")
+    void getChatMessages_ShouldFail_WhenUserIsNotParticipant() throws Exception {
+        mockMvc.perform(get("/api/chats/" + chat.getId() + "/messages").with(user(outroUsuario)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DisplayName("Deve listar os chats e as mensagens só com ids e dados de exibição, sem o grafo das entidades")
+    void getUserChats_ShouldReturnLeanSummaries() throws Exception {
+        sendMessages(1);
+
+        mockMvc.perform(get("/api/chats").with(user(inquilino)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(chat.getId().toString()))
+                .andExpect(jsonPath("$[0].propertyTitle").value("Casa para conversar"))
+                .andExpect(jsonPath("$[0].participants.length()").value(2))
+                .andExpect(jsonPath("$[0].property").doesNotExist())
+                .andExpect(jsonPath("$[0].participants[0].password").doesNotExist());
+        mockMvc.perform(messages())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].senderId").value(inquilino.getId().toString()))
+                .andExpect(jsonPath("$.messages[0].sender").doesNotExist())
+                .andExpect(jsonPath("$.messages[0].chat").doesNotExist());
+        mockMvc.perform(get("/api/chats").with(user(outroUsuario)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("Deve listar a caixa de entrada da conversa mais recente para a mais antiga, paginada")
+    void getInbox_ShouldPageByRecentActivity() throws Exception {
+        Property outroImovel = new Property();
+        outroImovel.setOwner(locador);
+        outroImovel.setTitle("Apartamento para conversar");
+        outroImovel.setType(PropertyType.APARTAMENTO);
+        propertyRepository.save(outroImovel);
+
+        String primeiro = JsonPath.read(perform(post("/api/chats/start").param("propertyId", chat.getProperty().getId().toString())
+                .with(user(outroUsuario))), "$.id");
+        String segundo = JsonPath.read(perform(post("/api/chats/start").param("propertyId", outroImovel.getId().toString())
+                .with(user(outroUsuario))), "$.id");
+
+        String body = perform(get("/api/chats/inbox").param("size", "1").with(user(locador)));
+        assertThat((String) JsonPath.read(body, "$.items[0].chatId")).isEqualTo(segundo);
+        assertThat((Integer) JsonPath.read(body, "$.items[0].unreadCount")).isZero();
+        assertThat((String) JsonPath.read(body, "$.items[0].propertyTitle")).isEqualTo("Apartamento para conversar");
+
+        body = perform(get("/api/chats/inbox").param("size", "1")
+                .param("before", (String) JsonPath.read(body, "$.nextCursor")).with(user(locador)));
+        assertThat((String) JsonPath.read(body, "$.items[0].chatId")).isEqualTo(primeiro);
+        assertThat((String) JsonPath.read(body, "$.nextCursor")).isNull();
+
+        mockMvc.perform(post("/api/chats/" + primeiro + "/read").with(user(locador)))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(post("/api/chats/" + primeiro + "/read").with(user(inquilino)))
+                .andExpect(status().isForbidden());
+    }
+
+    private MockHttpServletRequestBuilder messages() {
+        return get("/api/chats/" + chat.getId() + "/messages").with(user(inquilino));
+    }
+
+    private String perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+    }
+
+    private static List<String> ids(String body) {
+        return JsonPath.read(body, "$.messages[*].id");
+    }
+
+    // Grava as mensagens e devolve os ids de todo o histórico, na ordem (timestamp, id) do banco
+    private List<String> sendMessages(int count) {
+        for (int i = 0; i < count; i++) {
+            ChatMessage message = new ChatMessage();
+            message.setChat(chat);
+            message.setSender(i % 2 == 0 ? inquilino : locador);
+            message.setContent("Mensagem " + i);
+            chatMessageRepository.save(message);
+        }
+        chatMessageRepository.flush();
+        List<String> ids = new ArrayList<>(chatMessageRepository.findLatest(chat.getId(), Limit.unlimited()).stream()
+                .map(m -> m.id().toString())
+                .toList());
+        Collections.reverse(ids);
+        return ids;
+    }
+
+    private User newUser(String email, UserRole role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPasswordHash("hash");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
@@ -14,7 +14,11 @@ import com.alugaserra.repository.PlanRepository;
 import com.alugaserra.repository.PropertyRepository;
 import com.alugaserra.repository.SubscriptionRepository;
 import com.alugaserra.repository.UserRepository;
+import com.alugaserra.search.CatalogVersion;
+import com.alugaserra.search.SearchIndexCatchUp;
+import com.alugaserra.search.SearchResultCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -26,16 +30,22 @@ import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -57,6 +67,9 @@ class PropertyControllerTest {
     @Autowired private PropertyRepository propertyRepository;
     @Autowired private PlanRepository planRepository;
     @Autowired private SubscriptionRepository subscriptionRepository;
+    @Autowired private SearchResultCache searchResultCache;
+    @Autowired private CatalogVersion catalogVersion;
+    @Autowired private SearchIndexCatchUp searchIndexCatchUp;
 
     private User locadorOwner;
     private User locadorNotOwner;
@@ -67,6 +80,8 @@ class PropertyControllerTest {
     void setupDatabase() {
         // Agora, este método é a única fonte de dados para os nossos testes,
         // garantindo um ambiente limpo e previsível.
+        // Os dados abaixo são gravados direto no repositório, sem eventos: o cache de buscas é limpo à mão.
+        searchResultCache.invalidateAll();
         propertyRepository.deleteAll();
         subscriptionRepository.deleteAll();
         userRepository.deleteAll();
@@ -137,7 +152,156 @@ class PropertyControllerTest {
     void searchProperties_ShouldReturnAllActiveProperties_WhenNoFilterIsApplied() throws Exception {
         mockMvc.perform(get("/api/properties"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(3))); // Agora a asserção estará correta
+                .andExpect(jsonPath("$.content", hasSize(3))) // Agora a asserção estará correta
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve paginar a busca por cursor, ordenada pelo menor preço, sem repetir imóveis")
+    void searchProperties_ShouldPaginateWithCursor_WhenSizeIsSmallerThanResult() throws Exception {
+        MvcResult firstPage = mockMvc.perform(get("/api/properties")
+                        .param("sort", "PRICE_ASC")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].title").value("Kitnet ideal para estudantes"))
+                .andExpect(jsonPath("$.content[1].title").value("Apartamento no Centro"))
+                .andExpect(jsonPath("$.nextCursor").isString())
+                .andReturn();
+
+        String nextCursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+        mockMvc.perform(get("/api/properties")
+                        .param("sort", "PRICE_ASC")
+                        .param("size", "2")
+                        .param("cursor", nextCursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].title").value("Casa Grande com Quintal"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Deve retornar 400 quando o cursor de paginação é inválido")
+    void searchProperties_ShouldReturnBadRequest_WhenCursorIsInvalid() throws Exception {
+        mockMvc.perform(get("/api/properties")
+                        .param("cursor", "cursor-invalido"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Deve retornar 400 quando a área do mapa é inválida ou a ordenação por distância não tem centro")
+    void searchProperties_ShouldReturnBadRequest_WhenGeoParamsAreInvalid() throws Exception {
+        mockMvc.perform(get("/api/properties").param("lat", "-22.51").param("lng", "-43.17").param("radiusKm", "500"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/properties").param("bbox", "-22.4,-43.2,-22.6"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/properties").param("bbox", "-22.6,-43.3,-22.4,-43.1").param("sort", "DISTANCE"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Deve responder 304 ao detalhe com ETag atual e 200 depois que o imóvel muda")
+    void getPropertyById_ShouldHonorIfNoneMatch() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/properties/" + propertyToTest.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", containsString("max-age")))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/properties/" + propertyToTest.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        PropertyUpdateDto updateDto = new PropertyUpdateDto(
+                "Título Atualizado", "Descrição válida", PropertyType.CASA, PropertyStatus.ACTIVE,
+                2600.0, 4, 3, true, true, Collections.emptyList(), "", "Nova Localização Válida", null, null
+        );
+        mockMvc.perform(put("/api/properties/" + propertyToTest.getId())
+                        .with(user(locadorOwner))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateDto)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/properties/" + propertyToTest.getId()).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Título Atualizado"));
+    }
+
+    @Test
+    @DisplayName("Deve responder 304 à busca enquanto o catálogo não muda")
+    void searchProperties_ShouldHonorIfNoneMatch_UntilCatalogChanges() throws Exception {
+        String etag = mockMvc.perform(get("/api/properties").param("type", "CASA"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/properties").param("type", "CASA").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(delete("/api/properties/" + propertyToTest.getId())
+                        .with(user(locadorOwner)))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/properties").param("type", "CASA").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("Deve responder 200 ao detalhe depois que o contato do dono muda")
+    void getPropertyById_ShouldChangeETag_WhenOwnerChanges() throws Exception {
+        String etag = mockMvc.perform(get("/api/properties/" + propertyToTest.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        User owner = userRepository.findById(locadorOwner.getId()).orElseThrow();
+        owner.setPhone("24999990000");
+        userRepository.saveAndFlush(owner);
+
+        mockMvc.perform(get("/api/properties/" + propertyToTest.getId()).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Deve mudar o ETag da busca quando o catálogo muda sem passar por este nó")
+    void searchProperties_ShouldChangeETag_WhenCatalogChangesElsewhere() throws Exception {
+        catalogVersion.pollDatabase();
+        String etag = mockMvc.perform(get("/api/properties").param("type", "CASA"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Gravação direta no repositório, sem evento: é o que este nó vê de uma escrita em outro nó
+        Property property = propertyRepository.findById(propertyToTest.getId()).orElseThrow();
+        property.setRentValue(property.getRentValue() + 100);
+        propertyRepository.saveAndFlush(property);
+        catalogVersion.pollDatabase();
+
+        // A página em cache também é descartada: o corpo novo sai com o ETag novo
+        mockMvc.perform(get("/api/properties").param("type", "CASA").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[?(@.id == '" + property.getId() + "')].rentValue")
+                        .value(property.getRentValue()));
+    }
+
+    @Test
+    @DisplayName("Deve gerar a mesma versão do catálogo em nós diferentes que leem o mesmo banco")
+    void catalogVersion_ShouldMatchAcrossNodes() {
+        CatalogVersion otherNode = new CatalogVersion();
+        ReflectionTestUtils.setField(otherNode, "propertyRepository", propertyRepository);
+        ReflectionTestUtils.setField(otherNode, "searchResultCache", searchResultCache);
+        ReflectionTestUtils.setField(otherNode, "searchIndexCatchUp", searchIndexCatchUp);
+
+        assertThat(otherNode.current()).isEqualTo(catalogVersion.current());
+    }
+
+    @Test
+    @DisplayName("Deve retornar as facetas da busca com uma contagem por tipo de imóvel")
+    void getFacets_ShouldReturnCountsPerFacet() throws Exception {
+        mockMvc.perform(get("/api/properties/facets").param("maxRent", "2000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").isNumber())
+                .andExpect(jsonPath("$.type", hasSize(PropertyType.values().length)))
+                .andExpect(jsonPath("$.maxRent[0].value").value("500"));
     }
 
     // ... O RESTANTE DOS SEUS TESTES CONTINUA AQUI ...
@@ -147,7 +311,7 @@ class PropertyControllerTest {
     void updateProperty_ShouldSucceed_WhenUserIsOwner() throws Exception {
         PropertyUpdateDto updateDto = new PropertyUpdateDto(
                 "Título Atualizado", "Descrição válida", PropertyType.CASA, PropertyStatus.PAUSED,
-                2600.0, 4, 3, true, true, Collections.emptyList(), "", "Nova Localização Válida"
+                2600.0, 4, 3, true, true, Collections.emptyList(), "", "Nova Localização Válida", null, null
         );
 
         mockMvc.perform(put("/api/properties/" + propertyToTest.getId())
@@ -163,7 +327,7 @@ class PropertyControllerTest {
     void updateProperty_ShouldFail_WhenUserIsNotOwner() throws Exception {
         PropertyUpdateDto updateDto = new PropertyUpdateDto(
                 "Título Malicioso", "Descrição Válida", PropertyType.CASA, PropertyStatus.ACTIVE,
-                1.0, 1, 1, false, false, Collections.emptyList(), "", "Local Válido"
+                1.0, 1, 1, false, false, Collections.emptyList(), "", "Local Válido", null, null
         );
 
         mockMvc.perform(put("/api/properties/" + propertyToTest.getId())
@@ -178,7 +342,7 @@ class PropertyControllerTest {
     void updateProperty_ShouldFail_WhenUserIsInquilino() throws Exception {
         PropertyUpdateDto updateDto = new PropertyUpdateDto(
                 "Título Malicioso", "Descrição Válida", PropertyType.CASA, PropertyStatus.ACTIVE,
-                1.0, 1, 1, false, false, Collections.emptyList(), "", "Local Válido"
+                1.0, 1, 1, false, false, Collections.emptyList(), "", "Local Válido", null, null
         );
 
         mockMvc.perform(put("/api/properties/" + propertyToTest.getId())
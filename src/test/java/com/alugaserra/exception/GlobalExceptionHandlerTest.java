@@ -16,7 +16,10 @@ import org.springframework.web.bind.annotation.RestController;
 
 import jakarta.persistence.EntityNotFoundException;
 
+import java.time.Duration;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -44,6 +47,21 @@ class GlobalExceptionHandlerTest {
             public ResponseEntity<Void> throwEntityNotFoundException() {
                 throw new EntityNotFoundException("Entidade de teste não encontrada.");
             }
+
+            @GetMapping("/test/invalid-request")
+            public ResponseEntity<Void> throwInvalidRequestException() {
+                throw new InvalidRequestException("Parâmetro de teste inválido.");
+            }
+
+            @GetMapping("/test/illegal-argument")
+            public ResponseEntity<Void> throwIllegalArgumentException() {
+                throw new IllegalArgumentException("Detalhe interno de teste.");
+            }
+
+            @GetMapping("/test/overloaded")
+            public ResponseEntity<Void> throwServiceOverloadedException() {
+                throw new ServiceOverloadedException("Serviço sobrecarregado de teste.", Duration.ofSeconds(3));
+            }
         }
     }
 
@@ -68,5 +86,34 @@ class GlobalExceptionHandlerTest {
                 .andExpect(jsonPath("$.error").value("Not Found"))
                 .andExpect(jsonPath("$.message").value("Entidade de teste não encontrada."));
     }
-}
 
+    @Test
+    @DisplayName("Deve capturar InvalidRequestException e retornar status 400 com a mensagem")
+    @WithMockUser
+    void handleInvalidRequestException_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/test/invalid-request"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value(400))
+                .andExpect(jsonPath("$.message").value("Parâmetro de teste inválido."));
+    }
+
+    @Test
+    @DisplayName("Não deve expor a mensagem de uma IllegalArgumentException interna")
+    @WithMockUser
+    void handleIllegalArgumentException_ShouldNotLeakMessage() throws Exception {
+        mockMvc.perform(get("/test/illegal-argument"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.message").value("Ocorreu um erro inesperado no servidor."));
+    }
+
+    @Test
+    @DisplayName("Deve capturar ServiceOverloadedException e retornar status 503 com Retry-After")
+    @WithMockUser
+    void handleServiceOverloadedException_ShouldReturnServiceUnavailable() throws Exception {
+        mockMvc.perform(get("/test/overloaded"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.status").value(503))
+                .andExpect(jsonPath("$.message").value("Serviço sobrecarregado de teste."));
+    }
+}
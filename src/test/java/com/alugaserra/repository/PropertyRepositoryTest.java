@@ -1,10 +1,15 @@
 package com.alugaserra.repository;
 
+import com.alugaserra.dto.PropertyResponseDto;
+import com.alugaserra.enums.PropertySort;
 import com.alugaserra.enums.PropertyStatus;
 import com.alugaserra.enums.PropertyType;
 import com.alugaserra.enums.UserRole;
 import com.alugaserra.model.Property;
 import com.alugaserra.model.User;
+import com.alugaserra.repository.specification.PropertySpecification;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,7 +20,9 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -81,6 +88,50 @@ class PropertyRepositoryTest {
         // --- Verificação (Assert) ---
         assertThat(count).isEqualTo(1);
     }
-}
-
 
+    @Test
+    @DisplayName("Deve montar a listagem com dono e fotos em no máximo duas consultas")
+    void findListings_ShouldUseAtMostTwoStatements() {
+        // Mais imóveis, com donos diferentes e várias fotos, para que um N+1 aparecesse na contagem
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            User otherOwner = new User();
+            otherOwner.setEmail("owner" + i + "@email.com");
+            otherOwner.setName("Dono " + i);
+            otherOwner.setPhone("3299999000" + i);
+            otherOwner.setPasswordHash("hash");
+            otherOwner.setRole(UserRole.LOCADOR);
+            entityManager.persist(otherOwner);
+
+            Property property = new Property();
+            property.setOwner(otherOwner);
+            property.setTitle("Imóvel " + i);
+            property.setType(PropertyType.CASA);
+            property.setPhotoUrls(List.of("foto-" + i + "-a.jpg", "foto-" + i + "-b.jpg"));
+            ids.add(entityManager.persist(property).getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<PropertyResponseDto> listings = propertyRepository.findListings(
+                PropertySpecification.isActive(), PropertySpecification.sortFor(PropertySort.NEWEST), 0);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(listings).hasSize(11);
+        PropertyResponseDto first = listings.stream().filter(p -> p.id().equals(ids.get(0))).findFirst().orElseThrow();
+        assertThat(first.owner().name()).isEqualTo("Dono 0");
+        assertThat(first.photoUrls()).containsExactlyInAnyOrder("foto-0-a.jpg", "foto-0-b.jpg");
+
+        statistics.clear();
+        List<PropertyResponseDto> byIds = propertyRepository.findListingsByIds(List.of(ids.get(3), ids.get(1)));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(byIds).extracting(PropertyResponseDto::id).containsExactly(ids.get(3), ids.get(1));
+        statistics.setStatisticsEnabled(false);
+    }
+}
@@ -0,0 +1,102 @@
+package com.alugaserra.search;
+
+import com.alugaserra.dto.GeoArea;
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.event.PropertyChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// Teste de unidade puro: compara o índice com uma varredura ingênua sobre pontos aleatórios.
+class GeoGridIndexTest {
+
+    private static final double CENTRO_LAT = -22.5112;
+    private static final double CENTRO_LNG = -43.1779;
+
+    private GeoGridIndex index;
+    private List<PropertySnapshot> snapshots;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        snapshots = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            snapshots.add(snapshot(CENTRO_LAT + (random.nextDouble() - 0.5) * 0.6,
+                    CENTRO_LNG + (random.nextDouble() - 0.5) * 0.6, PropertyStatus.ACTIVE));
+        }
+        snapshots.add(snapshot(null, null, PropertyStatus.ACTIVE));
+        snapshots.add(snapshot(CENTRO_LAT, CENTRO_LNG, PropertyStatus.PAUSED));
+
+        index = new GeoGridIndex();
+        index.rebuild(snapshots);
+    }
+
+    @Test
+    @DisplayName("Deve encontrar exatamente os imóveis dentro do raio, com a distância até o centro")
+    void search_ShouldMatchNaiveScan_ForCircle() {
+        GeoArea area = GeoArea.of(CENTRO_LAT, CENTRO_LNG, 7.5, null);
+
+        Map<UUID, Double> result = index.search(area);
+
+        Map<UUID, Double> expected = naive(area);
+        assertThat(result).containsOnlyKeys(expected.keySet());
+        expected.forEach((id, distance) -> assertThat(result.get(id)).isCloseTo(distance, within(1e-9)));
+        assertThat(result.values()).allMatch(distance -> distance <= 7.5);
+    }
+
+    @Test
+    @DisplayName("Deve encontrar exatamente os imóveis dentro do retângulo do mapa")
+    void search_ShouldMatchNaiveScan_ForBoundingBox() {
+        GeoArea area = GeoArea.of(null, null, null, "-22.55,-43.25,-22.45,-43.10");
+
+        assertThat(index.search(area)).containsOnlyKeys(naive(area).keySet());
+        assertThat(index.size()).isEqualTo(2000);
+    }
+
+    @Test
+    @DisplayName("Deve refletir mudança de coordenadas e pausa recebidas por evento")
+    void onPropertyChanged_ShouldMovePoints() {
+        GeoArea area = GeoArea.of(CENTRO_LAT, CENTRO_LNG, 0.5, null);
+        PropertySnapshot before = snapshots.get(0);
+        PropertySnapshot moved = copy(before, CENTRO_LAT + 0.001, CENTRO_LNG, PropertyStatus.ACTIVE);
+
+        index.onPropertyChanged(PropertyChangedEvent.updated(before, moved));
+        assertThat(index.search(area)).containsKey(before.id());
+
+        index.onPropertyChanged(PropertyChangedEvent.updated(moved, copy(moved, moved.latitude(), moved.longitude(), PropertyStatus.PAUSED)));
+        assertThat(index.search(area)).doesNotContainKey(before.id());
+        assertThat(index.size()).isEqualTo(1999);
+    }
+
+    private Map<UUID, Double> naive(GeoArea area) {
+        Map<UUID, Double> expected = new HashMap<>();
+        for (PropertySnapshot s : snapshots) {
+            if (s.isActive() && s.hasCoordinates() && area.contains(s.latitude(), s.longitude())) {
+                expected.put(s.id(), area.distanceFromCenterKm(s.latitude(), s.longitude()));
+            }
+        }
+        return expected;
+    }
+
+    private static PropertySnapshot snapshot(Double latitude, Double longitude, PropertyStatus status) {
+        return new PropertySnapshot(UUID.randomUUID(), PropertyType.CASA, status, 1000, 2, false, false,
+                LocalDateTime.now(), "Casa", null, null, latitude, longitude);
+    }
+
+    private static PropertySnapshot copy(PropertySnapshot p, Double latitude, Double longitude, PropertyStatus status) {
+        return new PropertySnapshot(p.id(), p.type(), status, p.rentValue(), p.rooms(), p.hasGarage(), p.furnished(),
+                p.createdAt(), p.title(), p.description(), p.approximateLocation(), latitude, longitude);
+    }
+}
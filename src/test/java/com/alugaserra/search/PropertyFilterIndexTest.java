@@ -0,0 +1,205 @@
+package com.alugaserra.search;
+
+import com.alugaserra.dto.FacetCountDto;
+import com.alugaserra.dto.PropertyFacetsDto;
+import com.alugaserra.dto.PropertySearchFilter;
+import com.alugaserra.enums.PropertySort;
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.event.PropertyChangedEvent;
+import com.alugaserra.repository.specification.PropertyCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Teste de unidade puro: o índice é alimentado diretamente com snapshots, sem banco de dados.
+class PropertyFilterIndexTest {
+
+    private PropertyFilterIndex index;
+    private List<PropertySnapshot> snapshots;
+
+    @BeforeEach
+    void setUp() {
+        // Gera um catálogo aleatório (com semente fixa) com preços e datas repetidos,
+        // para exercitar também o desempate pelo id.
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 12, 0);
+        snapshots = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            PropertyType type = PropertyType.values()[random.nextInt(PropertyType.values().length)];
+            PropertyStatus status = random.nextInt(10) == 0 ? PropertyStatus.PAUSED : PropertyStatus.ACTIVE;
+            snapshots.add(new PropertySnapshot(
+                    UUID.randomUUID(), type, status,
+                    500 + random.nextInt(20) * 100,
+                    1 + random.nextInt(5),
+                    random.nextBoolean(),
+                    random.nextBoolean(),
+                    base.plusHours(random.nextInt(100)),
+                    "Imóvel " + i, null, null));
+        }
+
+        index = new PropertyFilterIndex();
+        index.rebuild(snapshots);
+    }
+
+    @Test
+    @DisplayName("Deve devolver os mesmos ids, na mesma ordem, que uma filtragem ingênua")
+    void search_ShouldMatchNaiveFiltering_ForEverySortAndFilterCombination() {
+        List<PropertySearchFilter> filters = List.of(
+                PropertySearchFilter.empty(),
+                new PropertySearchFilter(PropertyType.CASA, null, null, null),
+                new PropertySearchFilter(null, 1200.0, null, null),
+                new PropertySearchFilter(null, null, 3, true),
+                new PropertySearchFilter(PropertyType.APARTAMENTO, 1500.0, 2, true));
+
+        for (PropertySearchFilter filter : filters) {
+            for (PropertySort sort : List.of(PropertySort.NEWEST, PropertySort.PRICE_ASC, PropertySort.PRICE_DESC)) {
+                assertThat(index.search(filter, sort, null, 1000))
+                        .as("filtro=%s sort=%s", filter, sort)
+                        .containsExactlyElementsOf(naiveSearch(filter, sort));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Deve percorrer todas as páginas pelo cursor sem repetir nem perder imóveis")
+    void search_ShouldPageThroughAllResults_WhenFollowingTheCursor() {
+        PropertySearchFilter filter = new PropertySearchFilter(null, 2000.0, null, null);
+        List<UUID> expected = naiveSearch(filter, PropertySort.PRICE_DESC);
+
+        List<UUID> collected = new ArrayList<>();
+        PropertyCursor cursor = null;
+        while (true) {
+            List<UUID> page = index.search(filter, PropertySort.PRICE_DESC, cursor, 7);
+            collected.addAll(page);
+            if (page.size() < 7) break;
+            PropertySnapshot last = find(page.get(page.size() - 1));
+            cursor = new PropertyCursor(PropertySort.PRICE_DESC, last.createdAt(), last.rentValue(), last.id());
+        }
+
+        assertThat(collected).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    @DisplayName("Deve manter a ordem e a paginação corretas depois de várias escritas")
+    void search_ShouldStayConsistent_AfterIncrementalWrites() {
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            int position = random.nextInt(snapshots.size());
+            PropertySnapshot current = snapshots.get(position);
+            if (random.nextInt(4) == 0) {
+                index.remove(current.id());
+                snapshots.remove(position);
+            } else {
+                PropertySnapshot changed = new PropertySnapshot(
+                        random.nextBoolean() ? current.id() : UUID.randomUUID(), current.type(), PropertyStatus.ACTIVE,
+                        500 + random.nextInt(20) * 100, 1 + random.nextInt(5), current.hasGarage(),
+                        current.furnished(), current.createdAt().plusHours(random.nextInt(3)),
+                        current.title(), null, null);
+                index.upsert(changed);
+                if (changed.id().equals(current.id())) {
+                    snapshots.set(position, changed);
+                } else {
+                    snapshots.add(changed);
+                }
+            }
+        }
+
+        PropertySearchFilter filter = new PropertySearchFilter(null, null, 2, null);
+        for (PropertySort sort : List.of(PropertySort.NEWEST, PropertySort.PRICE_ASC, PropertySort.PRICE_DESC)) {
+            List<UUID> collected = new ArrayList<>();
+            PropertyCursor cursor = null;
+            while (true) {
+                List<UUID> page = index.search(filter, sort, cursor, 11);
+                collected.addAll(page);
+                if (page.size() < 11) break;
+                PropertySnapshot last = find(page.get(page.size() - 1));
+                cursor = new PropertyCursor(sort, last.createdAt(), last.rentValue(), last.id());
+            }
+            assertThat(collected).as("sort=%s", sort).containsExactlyElementsOf(naiveSearch(filter, sort));
+        }
+    }
+
+    @Test
+    @DisplayName("Deve refletir criação, pausa e remoção de imóveis recebidas por evento")
+    void onPropertyChanged_ShouldKeepIndexCurrent() {
+        PropertySnapshot created = new PropertySnapshot(UUID.randomUUID(), PropertyType.QUARTO, PropertyStatus.ACTIVE,
+                1.0, 9, true, false, LocalDateTime.now(), "Quarto", null, null);
+        PropertySearchFilter filter = new PropertySearchFilter(PropertyType.QUARTO, 1.0, 9, true);
+
+        index.onPropertyChanged(PropertyChangedEvent.created(created));
+        assertThat(index.search(filter, PropertySort.NEWEST, null, 10)).containsExactly(created.id());
+
+        PropertySnapshot paused = new PropertySnapshot(created.id(), created.type(), PropertyStatus.PAUSED,
+                created.rentValue(), created.rooms(), created.hasGarage(), created.furnished(), created.createdAt(),
+                created.title(), created.description(), created.approximateLocation());
+        index.onPropertyChanged(PropertyChangedEvent.updated(created, paused));
+        assertThat(index.search(filter, PropertySort.NEWEST, null, 10)).isEmpty();
+
+        index.onPropertyChanged(PropertyChangedEvent.updated(paused, created));
+        index.onPropertyChanged(PropertyChangedEvent.deleted(created));
+        assertThat(index.search(filter, PropertySort.NEWEST, null, 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve contar cada faceta ignorando apenas o próprio filtro")
+    void facets_ShouldMatchNaiveDisjunctiveCounts() {
+        PropertySearchFilter filter = new PropertySearchFilter(PropertyType.CASA, 1500.0, 2, true);
+
+        PropertyFacetsDto facets = index.facets(filter, null);
+
+        assertThat(facets.total()).isEqualTo(naiveSearch(filter, PropertySort.NEWEST).size());
+        assertThat(count(facets.type(), "APARTAMENTO")).isEqualTo(naiveSearch(
+                new PropertySearchFilter(PropertyType.APARTAMENTO, 1500.0, 2, true), PropertySort.NEWEST).size());
+        assertThat(count(facets.minRooms(), "4")).isEqualTo(naiveSearch(
+                new PropertySearchFilter(PropertyType.CASA, 1500.0, 4, true), PropertySort.NEWEST).size());
+        assertThat(count(facets.maxRent(), "1000")).isEqualTo(naiveSearch(
+                new PropertySearchFilter(PropertyType.CASA, 1000.0, 2, true), PropertySort.NEWEST).size());
+        assertThat(facets.hasGarage()).isEqualTo(facets.total());
+        assertThat(facets.furnished()).isEqualTo(naiveSearch(filter, PropertySort.NEWEST).stream()
+                .filter(id -> find(id).furnished())
+                .count());
+
+        // Restringindo aos ids encontrados por uma busca textual
+        List<UUID> some = naiveSearch(PropertySearchFilter.empty(), PropertySort.NEWEST).subList(0, 50);
+        assertThat(index.facets(PropertySearchFilter.empty(), some).total()).isEqualTo(50);
+    }
+
+    private static long count(List<FacetCountDto> facet, String value) {
+        return facet.stream().filter(f -> f.value().equals(value)).findFirst().orElseThrow().count();
+    }
+
+    private List<UUID> naiveSearch(PropertySearchFilter filter, PropertySort sort) {
+        Comparator<PropertySnapshot> order = switch (sort) {
+            case NEWEST -> Comparator.comparing(PropertySnapshot::createdAt)
+                    .thenComparing(PropertySnapshot::id, PropertyFilterIndex.ID_ORDER).reversed();
+            case PRICE_ASC -> Comparator.comparingDouble(PropertySnapshot::rentValue)
+                    .thenComparing(PropertySnapshot::id, PropertyFilterIndex.ID_ORDER);
+            case PRICE_DESC -> Comparator.comparingDouble(PropertySnapshot::rentValue)
+                    .thenComparing(PropertySnapshot::id, PropertyFilterIndex.ID_ORDER).reversed();
+            case RELEVANCE, DISTANCE -> throw new IllegalArgumentException();
+        };
+        return snapshots.stream()
+                .filter(PropertySnapshot::isActive)
+                .filter(p -> filter.type() == null || p.type() == filter.type())
+                .filter(p -> filter.maxRent() == null || p.rentValue() <= filter.maxRent())
+                .filter(p -> filter.minRooms() == null || p.rooms() >= filter.minRooms())
+                .filter(p -> !filter.requiresGarage() || p.hasGarage())
+                .sorted(order)
+                .map(PropertySnapshot::id)
+                .toList();
+    }
+
+    private PropertySnapshot find(UUID id) {
+        return snapshots.stream().filter(p -> p.id().equals(id)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,126 @@
+package com.alugaserra.search;
+
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.event.PropertyChangedEvent;
+import com.alugaserra.repository.PropertyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Teste de unidade puro: o índice é alimentado com snapshots e o repositório é um mock.
+class PropertyTextIndexTest {
+
+    private PropertyTextIndex index;
+    private PropertySnapshot chale;
+    private PropertySnapshot apartamento;
+    private PropertySnapshot kitnet;
+
+    @BeforeEach
+    void setUp() {
+        chale = snapshot("Chalé aconchegante com lareira", "Vista para as montanhas e jardim amplo.", "Alto");
+        apartamento = snapshot("Apartamento no centro", "Perto de tudo, com varanda. Não tem lareira.", "Centro");
+        kitnet = snapshot("Kitnet mobiliada", "Ideal para estudantes.", "Várzea");
+
+        index = new PropertyTextIndex();
+        index.rebuild(List.of(chale, apartamento, kitnet));
+    }
+
+    @Test
+    @DisplayName("Deve ignorar acentos, maiúsculas, plural e palavras vazias")
+    void analyze_ShouldFoldAccentsAndStem() {
+        assertThat(PortugueseAnalyzer.analyze("Chalés com LAREIRAS")).isEqualTo(PortugueseAnalyzer.analyze("chale lareira"));
+        assertThat(PortugueseAnalyzer.analyze("quintais")).isEqualTo(PortugueseAnalyzer.analyze("quintal"));
+        assertThat(PortugueseAnalyzer.analyze("de com para")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Não deve confundir palavras terminadas em 'ão' com outras de mesmo radical")
+    void analyze_ShouldNotMergeUnrelatedWords_EndingInAo() {
+        assertThat(PortugueseAnalyzer.analyze("portão")).isNotEqualTo(PortugueseAnalyzer.analyze("porta"));
+        assertThat(PortugueseAnalyzer.analyze("salão")).isNotEqualTo(PortugueseAnalyzer.analyze("sala"));
+        assertThat(PortugueseAnalyzer.analyze("portões")).isEqualTo(PortugueseAnalyzer.analyze("portão"));
+        assertThat(PortugueseAnalyzer.analyze("apartamentão")).isEqualTo(PortugueseAnalyzer.analyze("apartamento"));
+    }
+
+    @Test
+    @DisplayName("Deve ranquear melhor o imóvel com o termo no título")
+    void search_ShouldRankTitleMatchesFirst() {
+        Map<UUID, Double> scores = index.search("lareiras");
+
+        assertThat(scores).containsOnlyKeys(chale.id(), apartamento.id());
+        assertThat(scores.get(chale.id())).isGreaterThan(scores.get(apartamento.id()));
+    }
+
+    @Test
+    @DisplayName("Deve encontrar pelo bairro, sem acento")
+    void search_ShouldMatchLocationWithoutAccents() {
+        assertThat(index.search("varzea")).containsOnlyKeys(kitnet.id());
+    }
+
+    @Test
+    @DisplayName("Deve refletir edição e pausa de imóveis recebidas por evento")
+    void onPropertyChanged_ShouldUpdateIndexIncrementally() {
+        PropertySnapshot edited = copy(kitnet, PropertyStatus.ACTIVE, "Kitnet com lareira");
+        index.onPropertyChanged(PropertyChangedEvent.updated(kitnet, edited));
+        assertThat(index.search("lareira")).containsKey(kitnet.id());
+        assertThat(index.search("mobiliada")).doesNotContainKey(kitnet.id());
+
+        PropertySnapshot paused = copy(edited, PropertyStatus.PAUSED, edited.title());
+        index.onPropertyChanged(PropertyChangedEvent.updated(edited, paused));
+        assertThat(index.search("lareira")).doesNotContainKey(kitnet.id());
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve recarregar o índice do disco e reindexar só o que mudou desde a gravação")
+    void initialize_ShouldLoadFromDiskAndCatchUp(@TempDir Path dir) {
+        Path file = dir.resolve("text-index.bin");
+        PropertyRepository repository = mock(PropertyRepository.class);
+        ReflectionTestUtils.setField(index, "propertyRepository", repository);
+        ReflectionTestUtils.setField(index, "indexPath", file.toString());
+        ReflectionTestUtils.setField(index, "ready", true);
+        index.flushIfDirty();
+
+        // Depois do restart: a kitnet foi removida e um novo imóvel foi criado.
+        PropertySnapshot novo = snapshot("Casa com piscina", "Quintal grande.", "Quitandinha");
+        when(repository.findSnapshotsUpdatedSince(any())).thenReturn(List.of(novo));
+        when(repository.findIdsByStatus(PropertyStatus.ACTIVE)).thenReturn(List.of(chale.id(), apartamento.id(), novo.id()));
+
+        PropertyTextIndex restarted = new PropertyTextIndex();
+        ReflectionTestUtils.setField(restarted, "propertyRepository", repository);
+        ReflectionTestUtils.setField(restarted, "indexPath", file.toString());
+        restarted.initialize();
+
+        verify(repository, never()).findSnapshotsByStatus(any());
+        assertThat(restarted.size()).isEqualTo(3);
+        assertThat(restarted.search("lareira")).isEqualTo(index.search("lareira"));
+        assertThat(restarted.search("piscina")).containsOnlyKeys(novo.id());
+        assertThat(restarted.search("kitnet")).isEmpty();
+    }
+
+    private static PropertySnapshot snapshot(String title, String description, String location) {
+        return new PropertySnapshot(UUID.randomUUID(), PropertyType.CASA, PropertyStatus.ACTIVE, 1000, 2, false, false,
+                LocalDateTime.now(), title, description, location);
+    }
+
+    private static PropertySnapshot copy(PropertySnapshot p, PropertyStatus status, String title) {
+        return new PropertySnapshot(p.id(), p.type(), status, p.rentValue(), p.rooms(), p.hasGarage(), p.furnished(),
+                p.createdAt(), title, p.description(), p.approximateLocation());
+    }
+}
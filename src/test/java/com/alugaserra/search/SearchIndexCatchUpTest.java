@@ -0,0 +1,111 @@
+package com.alugaserra.search;
+
+import com.alugaserra.dto.GeoArea;
+import com.alugaserra.dto.PropertySearchFilter;
+import com.alugaserra.enums.PropertySort;
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.repository.PropertyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Teste de unidade puro: os três índices de verdade e o repositório (o banco compartilhado pelos nós) como mock.
+class SearchIndexCatchUpTest {
+
+    private static final PropertySearchFilter ALL = PropertySearchFilter.empty();
+
+    private PropertyRepository repository;
+    private PropertyFilterIndex filterIndex;
+    private PropertyTextIndex textIndex;
+    private GeoGridIndex geoIndex;
+    private SearchIndexCatchUp catchUp;
+
+    private PropertySnapshot chale;
+    private PropertySnapshot kitnet;
+
+    @BeforeEach
+    void setUp() {
+        chale = snapshot("Chalé com lareira", PropertyStatus.ACTIVE);
+        kitnet = snapshot("Kitnet mobiliada", PropertyStatus.ACTIVE);
+
+        repository = mock(PropertyRepository.class);
+        filterIndex = new PropertyFilterIndex();
+        textIndex = new PropertyTextIndex();
+        geoIndex = new GeoGridIndex();
+        filterIndex.rebuild(List.of(chale, kitnet));
+        textIndex.rebuild(List.of(chale, kitnet));
+        ReflectionTestUtils.setField(textIndex, "ready", true);
+        geoIndex.rebuild(List.of(chale, kitnet));
+
+        catchUp = new SearchIndexCatchUp();
+        ReflectionTestUtils.setField(catchUp, "propertyRepository", repository);
+        ReflectionTestUtils.setField(catchUp, "propertyFilterIndex", filterIndex);
+        ReflectionTestUtils.setField(catchUp, "propertyTextIndex", textIndex);
+        ReflectionTestUtils.setField(catchUp, "geoGridIndex", geoIndex);
+    }
+
+    @Test
+    @DisplayName("Deve reindexar os imóveis criados e editados em outro nó, sem reconstruir os índices")
+    void catchUp_ShouldApplyRemoteCreatesAndEdits() {
+        PropertySnapshot novo = snapshot("Casa com piscina", PropertyStatus.ACTIVE);
+        PropertySnapshot kitnetAlugada = withStatus(kitnet, PropertyStatus.RENTED);
+        when(repository.findSnapshotsUpdatedSince(any())).thenReturn(List.of(novo, kitnetAlugada));
+        when(repository.countByStatus(PropertyStatus.ACTIVE)).thenReturn(2L);
+
+        catchUp.catchUp(LocalDateTime.now().minusMinutes(1));
+
+        assertThat(filterIndex.search(ALL, PropertySort.NEWEST, null, 10)).containsExactlyInAnyOrder(chale.id(), novo.id());
+        assertThat(textIndex.search("piscina")).containsOnlyKeys(novo.id());
+        assertThat(textIndex.search("kitnet")).isEmpty();
+        assertThat(geoIndex.search(GeoArea.of(-22.5, -43.2, 5.0, null))).containsOnlyKeys(chale.id(), novo.id());
+        verify(repository, never()).findSnapshotsByStatus(any());
+    }
+
+    @Test
+    @DisplayName("Deve reconstruir os índices quando um imóvel foi removido em outro nó (a remoção não deixa linha)")
+    void catchUp_ShouldRebuild_WhenRemoteDeleteLeavesNoRow() {
+        when(repository.findSnapshotsUpdatedSince(any())).thenReturn(List.of());
+        when(repository.countByStatus(PropertyStatus.ACTIVE)).thenReturn(1L);
+        when(repository.findSnapshotsByStatus(PropertyStatus.ACTIVE)).thenReturn(List.of(chale));
+
+        catchUp.catchUp(LocalDateTime.now().minusMinutes(1));
+
+        assertThat(filterIndex.size()).isEqualTo(1);
+        assertThat(textIndex.search("kitnet")).isEmpty();
+        assertThat(geoIndex.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve mexer nos índices enquanto eles ainda fazem a carga inicial")
+    void catchUp_ShouldSkip_WhileIndexesAreLoading() {
+        ReflectionTestUtils.setField(textIndex, "ready", false);
+
+        catchUp.catchUp(LocalDateTime.now().minusMinutes(1));
+
+        verify(repository, never()).findSnapshotsUpdatedSince(any());
+        assertThat(filterIndex.size()).isEqualTo(2);
+    }
+
+    private static PropertySnapshot snapshot(String title, PropertyStatus status) {
+        return new PropertySnapshot(UUID.randomUUID(), PropertyType.CASA, status, 1000, 2, false, false,
+                LocalDateTime.now(), title, null, null, -22.5, -43.2);
+    }
+
+    private static PropertySnapshot withStatus(PropertySnapshot p, PropertyStatus status) {
+        return new PropertySnapshot(p.id(), p.type(), status, p.rentValue(), p.rooms(), p.hasGarage(), p.furnished(),
+                p.createdAt(), p.title(), p.description(), p.approximateLocation(), p.latitude(), p.longitude());
+    }
+}
@@ -0,0 +1,150 @@
+package com.alugaserra.search;
+
+import com.alugaserra.dto.PropertySearchFilter;
+import com.alugaserra.enums.PropertySort;
+import com.alugaserra.enums.PropertyStatus;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.event.PropertyChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Teste de unidade puro: o cache é montado à mão, com um registro de métricas em memória.
+class SearchResultCacheTest {
+
+    private static final SearchCacheKey TODOS = key(PropertySearchFilter.empty());
+    private static final SearchCacheKey CASAS = key(new PropertySearchFilter(PropertyType.CASA, null, null, null));
+    private static final SearchCacheKey APARTAMENTOS = key(new PropertySearchFilter(PropertyType.APARTAMENTO, null, null, null));
+    private static final SearchCacheKey ATE_1000 = key(new PropertySearchFilter(null, 1000.0, null, null));
+
+    private SearchResultCache cache;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new SearchResultCache();
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", DataSize.ofKilobytes(64));
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofSeconds(60));
+        cache.registerMetrics();
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("Deve servir a segunda busca igual a partir do cache")
+    void getOrCompute_ShouldHitOnSecondCall() {
+        load(TODOS);
+        load(key(new PropertySearchFilter(null, null, 0, false)));
+
+        assertThat(loads).hasValue(1);
+        assertThat(counter("properties.search.cache.requests", "result", "hit")).isEqualTo(1);
+        assertThat(counter("properties.search.cache.requests", "result", "miss")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve invalidar apenas as buscas que poderiam conter o imóvel alterado")
+    void onPropertyChanged_ShouldEvictOnlyMatchingKeys() {
+        load(TODOS);
+        load(CASAS);
+        load(APARTAMENTOS);
+        load(ATE_1000);
+
+        // Uma casa de 1500 passa a custar 1800: não entra na faixa "até 1000" nem é apartamento.
+        PropertySnapshot before = casa(1500);
+        PropertySnapshot after = new PropertySnapshot(before.id(), before.type(), before.status(), 1800, before.rooms(),
+                before.hasGarage(), before.furnished(), before.createdAt(), before.title(), before.description(),
+                before.approximateLocation());
+        cache.onPropertyChanged(PropertyChangedEvent.updated(before, after));
+
+        assertThat(cache.entryCount()).isEqualTo(2);
+        loads.set(0);
+        load(APARTAMENTOS);
+        load(ATE_1000);
+        assertThat(loads).hasValue(0);
+        load(TODOS);
+        load(CASAS);
+        assertThat(loads).hasValue(2);
+        assertThat(counter("properties.search.cache.evictions", "cause", "invalidated")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve descartar as páginas menos usadas quando o limite de bytes é atingido")
+    void put_ShouldEvictLeastRecentlyUsed_WhenOverCapacity() {
+        ReflectionTestUtils.setField(cache, "maxSize", DataSize.ofBytes(3 * (1000 + TODOS.estimatedBytes())));
+        cache.getOrCompute(TODOS, () -> new byte[1000]);
+        cache.getOrCompute(CASAS, () -> new byte[1000]);
+        cache.getOrCompute(APARTAMENTOS, () -> new byte[1000]);
+        cache.getOrCompute(TODOS, () -> new byte[1000]); // TODOS passa a ser a mais recente
+        cache.getOrCompute(ATE_1000, () -> new byte[1000]);
+
+        assertThat(cache.entryCount()).isEqualTo(3);
+        assertThat(cache.sizeInBytes()).isLessThanOrEqualTo(3 * (1000 + TODOS.estimatedBytes()));
+        assertThat(counter("properties.search.cache.evictions", "cause", "size")).isEqualTo(1);
+        loads.set(0);
+        load(TODOS);
+        assertThat(loads).hasValue(0);
+        load(CASAS);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Deve recalcular a página depois do TTL")
+    void getOrCompute_ShouldReload_AfterTtl() {
+        Instant now = Instant.parse("2024-01-01T12:00:00Z");
+        cache.clock = Clock.fixed(now, ZoneOffset.UTC);
+        load(TODOS);
+
+        cache.clock = Clock.fixed(now.plusSeconds(61), ZoneOffset.UTC);
+        load(TODOS);
+
+        assertThat(loads).hasValue(2);
+        assertThat(counter("properties.search.cache.evictions", "cause", "expired")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve guardar uma página calculada enquanto um imóvel era alterado")
+    void getOrCompute_ShouldNotStore_WhenInvalidatedDuringLoad() {
+        cache.getOrCompute(TODOS, () -> {
+            cache.onPropertyChanged(PropertyChangedEvent.created(casa(900)));
+            return new byte[10];
+        });
+
+        assertThat(cache.entryCount()).isZero();
+    }
+
+    private void load(SearchCacheKey key) {
+        cache.getOrCompute(key, () -> {
+            loads.incrementAndGet();
+            return new byte[100];
+        });
+    }
+
+    private double counter(String name, String tag, String value) {
+        return meterRegistry.get(name).tag(tag, value).counter().count();
+    }
+
+    private static SearchCacheKey key(PropertySearchFilter filter) {
+        return SearchCacheKey.of(filter, PropertySort.NEWEST, null, 20);
+    }
+
+    private static PropertySnapshot casa(double rent) {
+        return new PropertySnapshot(UUID.randomUUID(), PropertyType.CASA, PropertyStatus.ACTIVE, rent, 2, false, false,
+                LocalDateTime.now(), "Casa", null, null);
+    }
+}
@@ -0,0 +1,39 @@
+package com.alugaserra.security;
+
+import com.alugaserra.security.AuthMetrics.Stage;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Teste de unidade puro: as métricas são registradas num registro em memória.
+class AuthMetricsTest {
+
+    @Test
+    @DisplayName("Deve registrar as etapas com percentis, sem alocar memória por medição")
+    void recordStage_ShouldPublishPercentiles_WithoutAllocating() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AuthMetrics authMetrics = new AuthMetrics(meterRegistry);
+        for (int i = 0; i < 10_000; i++) {
+            authMetrics.recordStage(Stage.VERIFY, System.nanoTime());
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            authMetrics.recordStage(Stage.VERIFY, System.nanoTime());
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        Timer timer = meterRegistry.get("security.auth.stage").tag("stage", "verify").timer();
+        assertThat(timer.count()).isEqualTo(110_000);
+        assertThat(timer.takeSnapshot().percentileValues()).hasSize(3);
+        // Folga para alguma alocação pontual (ex: rotação da janela dos percentis), nunca uma por medição
+        assertThat(allocated).isLessThan(100_000);
+    }
+}
@@ -0,0 +1,53 @@
+package com.alugaserra.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Micro-benchmark do custo por requisição do limitador.
+ * Só roda quando pedido (fora do "mvn test", os tempos variam com a máquina e não são verificados):
+ * mvn test -Dtest=RateLimiterBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RateLimiterBenchmark {
+
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 2_000_000;
+
+    @Test
+    @DisplayName("Custo de tryAcquire num balde já existente")
+    void measureHotPath() {
+        RateLimiter rateLimiter = new RateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(rateLimiter, "environment", new MockEnvironment()
+                .withProperty("security.rate-limit.routes.login", "1000000000/1s"));
+        ReflectionTestUtils.setField(rateLimiter, "enabled", true);
+        ReflectionTestUtils.setField(rateLimiter, "idleTimeout", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(rateLimiter, "maxBuckets", 100_000);
+        rateLimiter.init();
+
+        String[] clients = new String[1024];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+        for (int i = 0; i < WARMUP; i++) {
+            rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, clients[i & 1023]);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, clients[i & 1023]);
+        }
+        double nanos = (System.nanoTime() - start) / (double) ITERATIONS;
+
+        System.out.printf("Limitador: %.0f ns/req com %d baldes%n", nanos, rateLimiter.bucketCount());
+        assertThat(rateLimiter.bucketCount()).isEqualTo(clients.length);
+    }
+}
@@ -0,0 +1,138 @@
+package com.alugaserra.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Teste de unidade puro: o limitador usa um relógio manual e um registro de métricas em memória.
+class RateLimiterTest {
+
+    private RateLimiter rateLimiter;
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicLong now;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        now = new AtomicLong(1_000_000_000L);
+        rateLimiter = new RateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(rateLimiter, "environment", new MockEnvironment()
+                .withProperty("security.rate-limit.routes.login", "3/3s"));
+        ReflectionTestUtils.setField(rateLimiter, "enabled", true);
+        ReflectionTestUtils.setField(rateLimiter, "idleTimeout", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(rateLimiter, "maxBuckets", 1000);
+        rateLimiter.ticker = now::get;
+        rateLimiter.init();
+    }
+
+    @Test
+    @DisplayName("Deve permitir a rajada inteira e recusar a próxima, informando a espera")
+    void tryAcquire_ShouldRejectAfterBurst() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.1")).isZero();
+        }
+
+        assertThat(rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.1")).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        // Outro IP tem o próprio balde
+        assertThat(rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.2")).isZero();
+        assertThat(counter("login", "allowed")).isEqualTo(4);
+        assertThat(counter("login", "rejected")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve repor uma ficha por intervalo")
+    void tryAcquire_ShouldRefillOverTime() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.1");
+        }
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.1")).isZero();
+        assertThat(rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.1")).isPositive();
+    }
+
+    @Test
+    @DisplayName("Deve manter o limite de baldes, com os clientes novos dividindo o balde reserva da rota")
+    void tryAcquire_ShouldShareOverflowBucket_WhenBucketLimitIsReached() {
+        ReflectionTestUtils.setField(rateLimiter, "maxBuckets", 2);
+        // Dois clientes com o balde em uso: nenhum pode ser descartado
+        rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.1");
+        rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.2");
+
+        for (int i = 3; i <= 5; i++) {
+            assertThat(rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0." + i)).isZero();
+        }
+        // A rajada do balde reserva acabou para todos os clientes novos
+        assertThat(rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.6")).isPositive();
+        assertThat(rateLimiter.bucketCount()).isEqualTo(2);
+        assertThat(meterRegistry.get("security.rate-limit.overflow").tag("route", "login").counter().count()).isEqualTo(4);
+
+        // Quando os baldes antigos enchem de novo, voltam a ser descartados e o cliente ganha o próprio balde
+        now.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        assertThat(rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.7")).isZero();
+        assertThat(rateLimiter.bucketCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve descartar só os baldes ociosos")
+    void evictIdle_ShouldRemoveIdleBuckets() {
+        rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.1");
+        now.addAndGet(Duration.ofMinutes(9).toNanos());
+        rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.2");
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        rateLimiter.evictIdle();
+
+        assertThat(rateLimiter.bucketCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("security.rate-limit.buckets").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve deixar passar mais que a capacidade com threads concorrentes")
+    void tryAcquire_ShouldNotOverAdmit_UnderContention() throws Exception {
+        ReflectionTestUtils.setField(rateLimiter, "environment", new MockEnvironment()
+                .withProperty("security.rate-limit.routes.login", "100/1h"));
+        rateLimiter.init();
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        if (rateLimiter.tryAcquire(RateLimitedRoute.LOGIN, "10.0.0.1") == 0) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(allowed).hasValue(100);
+    }
+
+    private double counter(String route, String result) {
+        return meterRegistry.get("security.rate-limit.requests").tag("route", route).tag("result", result).counter().count();
+    }
+}
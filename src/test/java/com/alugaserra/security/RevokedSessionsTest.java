@@ -0,0 +1,94 @@
+package com.alugaserra.security;
+
+import com.alugaserra.repository.RefreshTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Teste de unidade puro: a lista é carregada de um repositório mockado.
+class RevokedSessionsTest {
+
+    private RevokedSessions revokedSessions;
+    private RefreshTokenRepository repository;
+    private UUID revokedBeforeRestart;
+
+    @BeforeEach
+    void setUp() {
+        revokedBeforeRestart = UUID.randomUUID();
+        repository = mock(RefreshTokenRepository.class);
+        when(repository.findSessionsRevokedSince(any())).thenReturn(List.of(revokedBeforeRestart));
+
+        revokedSessions = new RevokedSessions();
+        ReflectionTestUtils.setField(revokedSessions, "refreshTokenRepository", repository);
+        ReflectionTestUtils.setField(revokedSessions, "accessTokenExpiration", Duration.ofMinutes(15).toMillis());
+        ReflectionTestUtils.setField(revokedSessions, "expectedSessions", 1000);
+        ReflectionTestUtils.setField(revokedSessions, "falsePositiveRate", 0.01);
+        revokedSessions.clock = Clock.fixed(Instant.parse("2024-01-01T12:00:00Z"), ZoneOffset.UTC);
+        revokedSessions.load();
+    }
+
+    @Test
+    @DisplayName("Deve reconhecer as sessões encerradas, inclusive as carregadas do banco, sem falsos negativos")
+    void isRevoked_ShouldHaveNoFalseNegatives() {
+        List<UUID> revoked = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID sessionId = UUID.randomUUID();
+            revokedSessions.revoke(sessionId);
+            revoked.add(sessionId);
+        }
+
+        assertThat(revokedSessions.isRevoked(revokedBeforeRestart)).isTrue();
+        assertThat(revoked).allMatch(revokedSessions::isRevoked);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(revokedSessions.isRevoked(UUID.randomUUID())).isFalse();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve descartar na compactação as sessões encerradas há mais tempo que a validade do access token")
+    void compact_ShouldDropSessionsOlderThanAccessTokenLifetime() {
+        UUID recent = UUID.randomUUID();
+        revokedSessions.clock = Clock.fixed(Instant.parse("2024-01-01T12:10:00Z"), ZoneOffset.UTC);
+        revokedSessions.revoke(recent);
+
+        revokedSessions.clock = Clock.fixed(Instant.parse("2024-01-01T12:20:00Z"), ZoneOffset.UTC);
+        revokedSessions.compact();
+
+        assertThat(revokedSessions.isRevoked(revokedBeforeRestart)).isFalse();
+        assertThat(revokedSessions.isRevoked(recent)).isTrue();
+        assertThat(revokedSessions.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve passar a recusar, na releitura, as sessões encerradas em outro nó")
+    void refresh_ShouldMergeSessionsRevokedElsewhere() {
+        UUID revokedElsewhere = UUID.randomUUID();
+        when(repository.findSessionsRevokedSince(any())).thenReturn(List.of(revokedBeforeRestart, revokedElsewhere));
+        assertThat(revokedSessions.isRevoked(revokedElsewhere)).isFalse();
+
+        revokedSessions.clock = Clock.fixed(Instant.parse("2024-01-01T12:00:05Z"), ZoneOffset.UTC);
+        revokedSessions.refresh();
+
+        assertThat(revokedSessions.isRevoked(revokedElsewhere)).isTrue();
+        assertThat(revokedSessions.isRevoked(revokedBeforeRestart)).isTrue();
+        assertThat(revokedSessions.size()).isEqualTo(2);
+        // A releitura volta um pouco antes da anterior, para não perder commits atrasados
+        verify(repository).findSessionsRevokedSince(LocalDateTime.parse("2024-01-01T11:59:00"));
+    }
+}
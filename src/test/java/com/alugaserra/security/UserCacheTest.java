@@ -0,0 +1,150 @@
+package com.alugaserra.security;
+
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Teste de unidade puro: o cache é montado à mão, com o repositório mockado.
+class UserCacheTest {
+
+    private UserCache cache;
+    private UserRepository userRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private User locador;
+
+    @BeforeEach
+    void setUp() {
+        locador = user("locador@email.com", UserRole.LOCADOR);
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findByEmail(locador.getEmail())).thenReturn(Optional.of(locador));
+        when(userRepository.findById(locador.getId())).thenReturn(Optional.of(locador));
+
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new UserCache();
+        ReflectionTestUtils.setField(cache, "userRepository", userRepository);
+        ReflectionTestUtils.setField(cache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(5));
+        cache.registerMetrics();
+    }
+
+    @Test
+    @DisplayName("Deve servir por id um usuário carregado pelo email, devolvendo sempre uma cópia nova")
+    void find_ShouldHitById_AfterLoadingByEmail() {
+        User first = cache.findByEmail(locador.getEmail()).orElseThrow();
+        User second = cache.findById(locador.getId()).orElseThrow();
+
+        verify(userRepository, times(1)).findByEmail(locador.getEmail());
+        verify(userRepository, times(0)).findById(any());
+        assertThat(second).isEqualTo(first).isNotSameAs(first);
+        assertThat(counter("security.user-cache.requests", "result", "hit")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Deve recarregar o usuário depois de invalidado e depois do TTL")
+    void find_ShouldReload_AfterInvalidationAndTtl() {
+        Instant now = Instant.parse("2024-01-01T12:00:00Z");
+        cache.clock = Clock.fixed(now, ZoneOffset.UTC);
+        cache.findByEmail(locador.getEmail());
+
+        locador.setRole(UserRole.ADMIN);
+        cache.invalidate(locador.getId(), locador.getEmail());
+        assertThat(cache.findByEmail(locador.getEmail()).orElseThrow().getRole()).isEqualTo(UserRole.ADMIN);
+
+        cache.clock = Clock.fixed(now.plus(Duration.ofMinutes(6)), ZoneOffset.UTC);
+        cache.findById(locador.getId());
+
+        verify(userRepository, times(2)).findByEmail(locador.getEmail());
+        verify(userRepository, times(1)).findById(locador.getId());
+        assertThat(counter("security.user-cache.evictions", "cause", "invalidated")).isEqualTo(1);
+        assertThat(counter("security.user-cache.evictions", "cause", "expired")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Não deve guardar um usuário lido enquanto ele era alterado")
+    void find_ShouldNotStore_WhenInvalidatedDuringLoad() {
+        User outro = user("outro@email.com", UserRole.INQUILINO);
+        when(userRepository.findByEmail(outro.getEmail())).thenAnswer(invocation -> {
+            cache.invalidate(outro.getId(), outro.getEmail());
+            return Optional.of(outro);
+        });
+
+        cache.findByEmail(outro.getEmail());
+
+        assertThat(cache.entryCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve respeitar o limite de entradas sob acessos concorrentes")
+    void find_ShouldStayBounded_UnderConcurrentAccess() throws Exception {
+        ReflectionTestUtils.setField(cache, "maxEntries", 50);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            User user = user("usuario" + i + "@email.com", UserRole.INQUILINO);
+            when(userRepository.findByEmail(user.getEmail())).thenReturn(Optional.of(user));
+            users.add(user);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        User user = users.get((i * 7 + offset) % users.size());
+                        assertThat(cache.findByEmail(user.getEmail()).orElseThrow().getId()).isEqualTo(user.getId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // O descarte é feito por uma thread de cada vez, então o limite pode ser passado por pouco
+        assertThat(cache.entryCount()).isLessThanOrEqualTo(50 + 8);
+        assertThat(counter("security.user-cache.evictions", "cause", "size")).isPositive();
+    }
+
+    private double counter(String name, String tag, String value) {
+        return meterRegistry.get(name).tag(tag, value).counter().count();
+    }
+
+    private static User user(String email, UserRole role) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail(email);
+        user.setName("Usuário");
+        user.setPasswordHash("hash");
+        user.setRole(role);
+        return user;
+    }
+}
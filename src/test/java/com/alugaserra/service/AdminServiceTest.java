@@ -0,0 +1,75 @@
+package com.alugaserra.service;
+
+import com.alugaserra.enums.ExportFormat;
+import com.alugaserra.repository.PropertyRepository;
+import com.alugaserra.repository.PropertyListingRepository.ListingVisitor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AdminServiceTest {
+
+    @Mock
+    private PropertyRepository propertyRepository;
+
+    @Mock
+    private ObjectMapper objectMapper;
+
+    @InjectMocks
+    private AdminService adminService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(adminService, "exportFetchSize", 10);
+        ReflectionTestUtils.setField(adminService, "exportBatchSize", 10);
+        // Um único imóvel no catálogo; o conteúdo não importa, quem serializa é o ObjectMapper simulado
+        when(propertyRepository.forEachListing(anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            invocation.<ListingVisitor>getArgument(2).accept(null);
+            return 1L;
+        });
+    }
+
+    @Test
+    @DisplayName("Deve falhar a exportação quando a serialização de um imóvel falha")
+    void exportProperties_ShouldFail_WhenSerializationFails() throws Exception {
+        when(objectMapper.writeValueAsBytes(any())).thenThrow(new JsonProcessingException("falha de teste") {
+        });
+
+        assertThatThrownBy(() -> adminService.exportProperties(ExportFormat.NDJSON, new ByteArrayOutputStream()))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasCauseInstanceOf(JsonProcessingException.class);
+    }
+
+    @Test
+    @DisplayName("Deve encerrar a exportação sem erro quando o cliente desconecta")
+    void exportProperties_ShouldStopQuietly_WhenClientDisconnects() throws Exception {
+        when(objectMapper.writeValueAsBytes(any())).thenReturn("{}".getBytes());
+        OutputStream disconnected = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThat(adminService.exportProperties(ExportFormat.NDJSON, disconnected)).isZero();
+    }
+}
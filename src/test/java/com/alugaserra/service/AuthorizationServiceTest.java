@@ -1,7 +1,7 @@
 package com.alugaserra.service;
 
 import com.alugaserra.model.User;
-import com.alugaserra.repository.UserRepository;
+import com.alugaserra.security.UserCache;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,7 +20,7 @@ import static org.mockito.Mockito.when;
 class AuthorizationServiceTest {
 
     @Mock
-    private UserRepository userRepository;
+    private UserCache userCache;
 
     @InjectMocks
     private AuthorizationService authorizationService;
@@ -33,9 +33,9 @@ class AuthorizationServiceTest {
         User user = new User();
         user.setEmail(email);
 
-        // Dizemos ao nosso mock do repositório para retornar o nosso usuário de teste
+        // Dizemos ao nosso mock do cache de usuários para retornar o nosso usuário de teste
         // quando o método findByEmail for chamado com este email.
-        when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
+        when(userCache.findByEmail(email)).thenReturn(Optional.of(user));
 
         // --- Ação (Act) ---
         UserDetails userDetails = authorizationService.loadUserByUsername(email);
@@ -52,7 +52,7 @@ class AuthorizationServiceTest {
         String email = "email.inexistente@email.com";
 
         // Dizemos ao nosso mock para retornar um Optional vazio, simulando que não encontrou o usuário.
-        when(userRepository.findByEmail(email)).thenReturn(Optional.empty());
+        when(userCache.findByEmail(email)).thenReturn(Optional.empty());
 
         // --- Ação e Verificação (Act & Assert) ---
         // Verificamos se a exceção correta é lançada ao chamar o método.
@@ -0,0 +1,170 @@
+package com.alugaserra.service;
+
+import com.alugaserra.dto.ChatInboxItemDto;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.Chat;
+import com.alugaserra.model.Property;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.ChatRepository;
+import com.alugaserra.repository.PropertyRepository;
+import com.alugaserra.repository.UserRepository;
+import com.alugaserra.security.UserCache;
+import com.alugaserra.websocket.ChatContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Sem @Transactional: o preenchimento e o gravador de mensagens usam as próprias transações.
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+class ChatBackfillTest {
+
+    @Autowired private ChatBackfill chatBackfill;
+    @Autowired private ChatService chatService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PropertyRepository propertyRepository;
+    @Autowired private ChatRepository chatRepository;
+    @Autowired private UserCache userCache;
+
+    private User locador;
+    private User inquilino;
+    private Property property;
+    private Chat chat;
+    private Chat duplicate;
+
+    // Um chat "antigo": gravado antes do estado da caixa de entrada existir, já com mensagens
+    @BeforeEach
+    void setUp() {
+        locador = newUser("locador.backfill@email.com", UserRole.LOCADOR);
+        inquilino = newUser("inquilino.backfill@email.com", UserRole.INQUILINO);
+
+        property = new Property();
+        property.setOwner(locador);
+        property.setTitle("Casa com conversa antiga");
+        property.setType(PropertyType.CASA);
+        propertyRepository.save(property);
+
+        chat = new Chat();
+        chat.setProperty(property);
+        chat.setParticipants(new ArrayList<>(List.of(inquilino, locador)));
+        chatRepository.save(chat);
+
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+        insertMessage(inquilino, "Olá, ainda está disponível?", start);
+        insertMessage(locador, "Está sim, pode visitar amanhã.", start.plusMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (duplicate != null) {
+            chatRepository.delete(duplicate);
+        }
+        // Devolve o NOT NULL, se o teste das chaves parou no meio
+        chatBackfill.backfillConversationKeys();
+        jdbcTemplate.update("DELETE FROM chat_messages WHERE chat_id = ?", chat.getId());
+        jdbcTemplate.update("DELETE FROM chat_participant_states WHERE chat_id = ?", chat.getId());
+        chatRepository.delete(chat);
+        propertyRepository.delete(property);
+        userRepository.deleteAll(List.of(inquilino, locador));
+        userCache.invalidateAll();
+    }
+
+    @Test
+    @DisplayName("Deve criar o estado da caixa de entrada dos chats antigos, com a última mensagem, uma única vez")
+    void backfill_ShouldCreateMissingInboxStates() throws Exception {
+        assertThat(chatService.getInbox(inquilino.getId(), null, null).items()).isEmpty();
+
+        assertThat(chatBackfill.backfillParticipantStates()).isGreaterThanOrEqualTo(2);
+
+        ChatInboxItemDto item = chatService.getInbox(inquilino.getId(), null, null).items().get(0);
+        assertThat(item.chatId()).isEqualTo(chat.getId());
+        assertThat(item.lastMessagePreview()).isEqualTo("Está sim, pode visitar amanhã.");
+        assertThat(item.lastMessageSenderId()).isEqualTo(locador.getId());
+        assertThat(item.lastActivityAt()).isEqualTo(LocalDateTime.of(2024, 1, 1, 12, 5));
+        assertThat(item.unreadCount()).isZero();
+        // Idempotente: uma nova subida não duplica nada
+        assertThat(chatBackfill.backfillParticipantStates()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_participant_states WHERE chat_id = ?",
+                Long.class, chat.getId())).isEqualTo(2);
+
+        // O chat antigo passa a se comportar como um novo: o gravador atualiza o estado e a leitura o zera
+        chatService.sendMessage(new ChatContext(chat.getId(), property.getId(), List.of(inquilino.getId(), locador.getId())),
+                inquilino.getId(), "Combinado!");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (unreadFor(locador) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(unreadFor(locador)).isEqualTo(1);
+        chatService.markAsRead(chat.getId(), locador.getId());
+        assertThat(unreadFor(locador)).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve preencher a chave dos chats antigos, para o próximo contato reaproveitar a conversa")
+    void backfill_ShouldFillConversationKeys_AndReuseOldChat() {
+        // Uma duplicata antiga da mesma conversa, de quando não havia chave
+        duplicate = new Chat();
+        duplicate.setProperty(property);
+        duplicate.setParticipants(new ArrayList<>(List.of(locador, inquilino)));
+        duplicate.setConversationKey(Chat.uniqueConversationKey(UUID.randomUUID()));
+        chatRepository.save(duplicate);
+        // Como era antes: a coluna aceitava nulos, e os chats não tinham chave
+        jdbcTemplate.execute("ALTER TABLE chats ALTER COLUMN conversation_key DROP NOT NULL");
+        jdbcTemplate.update("UPDATE chats SET conversation_key = NULL, created_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.of(2024, 1, 1, 12, 0)), chat.getId());
+        jdbcTemplate.update("UPDATE chats SET conversation_key = NULL, created_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.of(2024, 2, 1, 12, 0)), duplicate.getId());
+
+        assertThat(chatBackfill.backfillConversationKeys()).isGreaterThanOrEqualTo(2);
+
+        String key = Chat.conversationKey(property.getId(), inquilino.getId(), locador.getId());
+        assertThat(keyOf(chat)).isEqualTo(key);
+        assertThat(keyOf(duplicate)).isEqualTo(Chat.uniqueConversationKey(duplicate.getId()));
+        assertThat(chatService.findOrCreateChat(property.getId(), inquilino.getId())).isEqualTo(chat.getId());
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chats WHERE property_id = ?", Long.class, property.getId()))
+                .isEqualTo(2);
+        // Sem chaves nulas, a coluna volta a ser NOT NULL; de novo, não há nada a fazer
+        assertThat(jdbcTemplate.queryForObject("SELECT is_nullable FROM information_schema.columns " +
+                "WHERE LOWER(table_name) = 'chats' AND LOWER(column_name) = 'conversation_key'", String.class)).isEqualTo("NO");
+        assertThat(chatBackfill.backfillConversationKeys()).isZero();
+    }
+
+    private String keyOf(Chat target) {
+        return jdbcTemplate.queryForObject("SELECT conversation_key FROM chats WHERE id = ?", String.class, target.getId());
+    }
+
+    private int unreadFor(User user) {
+        return chatService.getInbox(user.getId(), null, null).items().get(0).unreadCount();
+    }
+
+    private void insertMessage(User sender, String content, LocalDateTime timestamp) {
+        jdbcTemplate.update("INSERT INTO chat_messages (id, chat_id, sender_id, content, timestamp) VALUES (?, ?, ?, ?, ?)",
+                UUID.randomUUID(), chat.getId(), sender.getId(), content, Timestamp.valueOf(timestamp));
+    }
+
+    private User newUser(String email, UserRole role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPasswordHash("hash");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,310 @@
+package com.alugaserra.service;
+
+import com.alugaserra.dto.ChatInboxItemDto;
+import com.alugaserra.dto.ChatMessageViewDto;
+import com.alugaserra.dto.ChatParticipantDto;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.Chat;
+import com.alugaserra.model.ChatParticipantState;
+import com.alugaserra.model.Property;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.ChatMessageRepository;
+import com.alugaserra.repository.ChatParticipantStateRepository;
+import com.alugaserra.repository.ChatRepository;
+import com.alugaserra.repository.PropertyRepository;
+import com.alugaserra.repository.UserRepository;
+import com.alugaserra.security.UserCache;
+import com.alugaserra.websocket.ChatContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.spy;
+
+// Sem @Transactional: o gravador usa as próprias conexões, então o chat precisa estar gravado de verdade.
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+class ChatMessageWriterTest {
+
+    @Autowired private ChatMessageWriter chatMessageWriter;
+    @Autowired private ChatService chatService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PropertyRepository propertyRepository;
+    @Autowired private ChatRepository chatRepository;
+    @Autowired private ChatMessageRepository chatMessageRepository;
+    @Autowired private ChatParticipantStateRepository chatParticipantStateRepository;
+    @Autowired private UserCache userCache;
+
+    private User locador;
+    private User inquilino;
+    private Property property;
+    private Chat chat;
+
+    @BeforeEach
+    void setUp() {
+        locador = newUser("locador.writer@email.com", UserRole.LOCADOR);
+        inquilino = newUser("inquilino.writer@email.com", UserRole.INQUILINO);
+
+        property = new Property();
+        property.setOwner(locador);
+        property.setTitle("Casa do chat em lote");
+        property.setType(PropertyType.CASA);
+        propertyRepository.save(property);
+
+        chat = new Chat();
+        chat.setProperty(property);
+        chat.setParticipants(new ArrayList<>(List.of(inquilino, locador)));
+        chatRepository.save(chat);
+        for (User participant : chat.getParticipants()) {
+            ChatParticipantState state = new ChatParticipantState();
+            state.setChat(chat);
+            state.setUser(participant);
+            state.setLastActivityAt(LocalDateTime.now().minusMinutes(1));
+            chatParticipantStateRepository.save(state);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM chat_messages WHERE chat_id = ?", chat.getId());
+        jdbcTemplate.update("DELETE FROM chat_participant_states WHERE chat_id = ?", chat.getId());
+        chatRepository.delete(chat);
+        propertyRepository.delete(property);
+        userRepository.deleteAll(List.of(inquilino, locador));
+        userCache.invalidateAll();
+    }
+
+    @Test
+    @DisplayName("Deve gravar em lote as mensagens enviadas, com o id e o timestamp definidos no envio")
+    void sendMessage_ShouldPersistMessagesInBatches() throws Exception {
+        List<ChatMessageViewDto> sent = send(25);
+
+        awaitRows(25);
+
+        List<ChatMessageViewDto> stored = chatMessageRepository.findLatest(chat.getId(), Limit.unlimited());
+        assertThat(stored).extracting(ChatMessageViewDto::id)
+                .containsExactlyInAnyOrderElementsOf(sent.stream().map(ChatMessageViewDto::id).toList());
+        ChatMessageViewDto first = sent.get(0);
+        ChatMessageViewDto storedFirst = stored.stream().filter(m -> m.id().equals(first.id())).findFirst().orElseThrow();
+        assertThat(storedFirst.timestamp()).isEqualTo(first.timestamp());
+        assertThat(storedFirst.content()).isEqualTo(first.content());
+        assertThat(storedFirst.senderId()).isEqualTo(inquilino.getId());
+    }
+
+    @Test
+    @DisplayName("Deve atualizar a caixa de entrada de cada participante junto com a gravação das mensagens")
+    void write_ShouldUpdateInboxState() throws Exception {
+        List<ChatMessageViewDto> sent = send(3);
+        awaitRows(3);
+        ChatMessageViewDto latest = sent.stream()
+                .max(Comparator.comparing(ChatMessageViewDto::timestamp).thenComparing(ChatMessageViewDto::id))
+                .orElseThrow();
+
+        ChatInboxItemDto forOwner = chatService.getInbox(locador.getId(), null, null).items().get(0);
+        assertThat(forOwner.chatId()).isEqualTo(chat.getId());
+        assertThat(forOwner.unreadCount()).isEqualTo(3);
+        assertThat(forOwner.lastMessagePreview()).isEqualTo(latest.content());
+        assertThat(forOwner.lastMessageSenderId()).isEqualTo(inquilino.getId());
+        assertThat(forOwner.lastActivityAt()).isEqualTo(latest.timestamp());
+        assertThat(forOwner.participants()).extracting(ChatParticipantDto::id)
+                .containsExactlyInAnyOrder(inquilino.getId(), locador.getId());
+        // As mensagens do próprio remetente não contam como não lidas para ele
+        assertThat(chatService.getInbox(inquilino.getId(), null, null).items().get(0).unreadCount()).isZero();
+
+        chatService.markAsRead(chat.getId(), locador.getId());
+        assertThat(chatService.getInbox(locador.getId(), null, null).items().get(0).unreadCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("Deve gravar o que está na fila ao desligar")
+    void stop_ShouldFlushPendingMessages() {
+        send(10);
+        try {
+            chatMessageWriter.stop();
+
+            assertThat(chatMessageWriter.pendingCount()).isZero();
+            assertThat(countRows()).isEqualTo(10);
+        } finally {
+            chatMessageWriter.start();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve repetir a gravação depois de uma falha transitória do banco")
+    void write_ShouldRetry_WhenDatabaseFails() throws Exception {
+        JdbcTemplate failing = spy(jdbcTemplate);
+        doThrow(new TransientDataAccessResourceException("Banco indisponível"))
+                .doCallRealMethod()
+                .when(failing).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        double retriesBefore = meterRegistry.get("chat.write-behind.retries").counter().count();
+        ReflectionTestUtils.setField(chatMessageWriter, "jdbcTemplate", failing);
+        try {
+            send(5);
+            awaitRows(5);
+        } finally {
+            ReflectionTestUtils.setField(chatMessageWriter, "jdbcTemplate", jdbcTemplate);
+        }
+
+        assertThat(meterRegistry.get("chat.write-behind.retries").counter().count()).isGreaterThan(retriesBefore);
+    }
+
+    @Test
+    @DisplayName("Deve descartar só a mensagem recusada pelo banco e gravar as demais do lote")
+    void write_ShouldDropOnlyInvalidMessage() throws Exception {
+        double droppedBefore = dropped();
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        chatMessageWriter.enqueue(new ChatMessageViewDto(UUID.randomUUID(), chat.getId(), inquilino.getId(), "ok 1", now));
+        // Chat inexistente: viola a chave estrangeira
+        chatMessageWriter.enqueue(new ChatMessageViewDto(UUID.randomUUID(), UUID.randomUUID(), inquilino.getId(), "inválida", now));
+        chatMessageWriter.enqueue(new ChatMessageViewDto(UUID.randomUUID(), chat.getId(), locador.getId(), "ok 2", now));
+
+        awaitRows(2);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dropped() == droppedBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(dropped()).isEqualTo(droppedBefore + 1);
+    }
+
+    @Test
+    @DisplayName("Deve repetir a gravação linha a linha depois de uma falha transitória, sem perder o lote")
+    void write_ShouldRetryOneByOne_WhenDatabaseFailsAfterRefusal() throws Exception {
+        double droppedBefore = dropped();
+        double retriesBefore = meterRegistry.get("chat.write-behind.retries").counter().count();
+        // O lote é recusado de verdade (chave estrangeira); a primeira regravação linha a linha falha de passagem
+        JdbcTemplate failing = spy(jdbcTemplate);
+        doCallRealMethod()
+                .doThrow(new TransientDataAccessResourceException("Banco indisponível"))
+                .doCallRealMethod()
+                .when(failing).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        ReflectionTestUtils.setField(chatMessageWriter, "jdbcTemplate", failing);
+        try {
+            LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            chatMessageWriter.enqueue(new ChatMessageViewDto(UUID.randomUUID(), chat.getId(), inquilino.getId(), "ok 1", now));
+            chatMessageWriter.enqueue(new ChatMessageViewDto(UUID.randomUUID(), UUID.randomUUID(), inquilino.getId(), "inválida", now));
+            chatMessageWriter.enqueue(new ChatMessageViewDto(UUID.randomUUID(), chat.getId(), locador.getId(), "ok 2", now));
+
+            awaitRows(2);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (dropped() == droppedBefore && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            ReflectionTestUtils.setField(chatMessageWriter, "jdbcTemplate", jdbcTemplate);
+        }
+
+        assertThat(dropped()).isEqualTo(droppedBefore + 1);
+        assertThat(meterRegistry.get("chat.write-behind.retries").counter().count()).isEqualTo(retriesBefore + 1);
+    }
+
+    @Test
+    @DisplayName("Deve gravar na ordem dos timestamps, mesmo com envios concorrentes")
+    void enqueue_ShouldKeepQueueOrderEqualToTimestampOrder() throws Exception {
+        // Guarda as mensagens na ordem em que chegam ao INSERT
+        List<LocalDateTime> inserted = Collections.synchronizedList(new ArrayList<>());
+        JdbcTemplate recording = spy(jdbcTemplate);
+        doAnswer(invocation -> {
+            if (invocation.<String>getArgument(0).startsWith("INSERT INTO chat_messages")) {
+                for (Object pending : invocation.<Collection<?>>getArgument(1)) {
+                    inserted.add(((ChatMessageViewDto) ReflectionTestUtils.invokeGetterMethod(pending, "message")).timestamp());
+                }
+            }
+            return invocation.callRealMethod();
+        }).when(recording).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        ReflectionTestUtils.setField(chatMessageWriter, "jdbcTemplate", recording);
+        try {
+            ExecutorService senders = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<List<ChatMessageViewDto>>> sent = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    sent.add(senders.submit(() -> send(50)));
+                }
+                for (Future<List<ChatMessageViewDto>> future : sent) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+            } finally {
+                senders.shutdown();
+            }
+            awaitRows(200);
+        } finally {
+            ReflectionTestUtils.setField(chatMessageWriter, "jdbcTemplate", jdbcTemplate);
+        }
+
+        assertThat(inserted).hasSize(200);
+        for (int i = 1; i < inserted.size(); i++) {
+            assertThat(inserted.get(i)).isAfter(inserted.get(i - 1));
+        }
+    }
+
+    private List<ChatMessageViewDto> send(int count) {
+        List<ChatMessageViewDto> sent = new ArrayList<>();
+        ChatContext context = new ChatContext(chat.getId(), property.getId(), List.of(inquilino.getId(), locador.getId()));
+        for (int i = 0; i < count; i++) {
+            sent.add(chatService.sendMessage(context, inquilino.getId(), "Mensagem " + i));
+        }
+        sent.sort(Comparator.comparing(ChatMessageViewDto::timestamp));
+        return sent;
+    }
+
+    private void awaitRows(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (countRows() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(countRows()).isEqualTo(expected);
+    }
+
+    private long countRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chat_messages WHERE chat_id = ?", Long.class, chat.getId());
+    }
+
+    private double dropped() {
+        return meterRegistry.get("chat.write-behind.messages").tag("result", "dropped").counter().count();
+    }
+
+    private User newUser(String email, UserRole role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPasswordHash("hash");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,139 @@
+package com.alugaserra.service;
+
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.Property;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.ChatRepository;
+import com.alugaserra.repository.PropertyRepository;
+import com.alugaserra.repository.UserRepository;
+import com.alugaserra.security.UserCache;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Sem @Transactional: as criações precisam fazer commit de verdade, em paralelo umas com as outras.
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+class ChatServiceTest {
+
+    private static final int STARTS_PER_TENANT = 40;
+
+    @Autowired private ChatService chatService;
+    @Autowired private ChatRepository chatRepository;
+    @Autowired private PropertyRepository propertyRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private UserCache userCache;
+
+    private User locador;
+    private User inquilino;
+    private User outroInquilino;
+    private Property property;
+
+    @BeforeEach
+    void setUp() {
+        locador = newUser("locador.start@email.com", UserRole.LOCADOR);
+        inquilino = newUser("inquilino.start@email.com", UserRole.INQUILINO);
+        outroInquilino = newUser("outro.start@email.com", UserRole.INQUILINO);
+
+        property = new Property();
+        property.setOwner(locador);
+        property.setTitle("Casa muito procurada");
+        property.setType(PropertyType.CASA);
+        propertyRepository.save(property);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM chat_participant_states WHERE chat_id IN (SELECT id FROM chats WHERE property_id = ?)", property.getId());
+        chatRepository.deleteAll(chatRepository.findAll().stream()
+                .filter(c -> c.getProperty().getId().equals(property.getId())).toList());
+        propertyRepository.delete(property);
+        userRepository.deleteAll(List.of(inquilino, outroInquilino, locador));
+        userCache.invalidateAll();
+    }
+
+    @Test
+    @DisplayName("Deve criar uma única conversa por inquilino mesmo com muitos cliques simultâneos em \"falar com o locador\"")
+    void findOrCreateChat_ShouldCreateOneChatPerPair_UnderConcurrency() throws Exception {
+        Set<UUID> chatsDoInquilino = ConcurrentHashMap.newKeySet();
+        Set<UUID> chatsDoOutro = ConcurrentHashMap.newKeySet();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < STARTS_PER_TENANT; i++) {
+                futures.add(executor.submit(() -> {
+                    go.await();
+                    return chatsDoInquilino.add(chatService.findOrCreateChat(property.getId(), inquilino.getId()));
+                }));
+                futures.add(executor.submit(() -> {
+                    go.await();
+                    return chatsDoOutro.add(chatService.findOrCreateChat(property.getId(), outroInquilino.getId()));
+                }));
+            }
+            go.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(chatsDoInquilino).hasSize(1);
+        assertThat(chatsDoOutro).hasSize(1).doesNotContainAnyElementsOf(chatsDoInquilino);
+        assertThat(countChats()).isEqualTo(2);
+        // Cada conversa entra uma única vez na caixa de entrada de cada participante
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM chat_participant_states WHERE chat_id IN (SELECT id FROM chats WHERE property_id = ?)",
+                Long.class, property.getId())).isEqualTo(4);
+        // Uma nova chamada encontra a conversa já criada
+        assertThat(chatService.findOrCreateChat(property.getId(), inquilino.getId()))
+                .isEqualTo(chatsDoInquilino.iterator().next());
+    }
+
+    @Test
+    @DisplayName("Não deve criar conversa do locador com ele mesmo nem para imóvel inexistente")
+    void findOrCreateChat_ShouldRejectInvalidStarts() {
+        assertThatThrownBy(() -> chatService.findOrCreateChat(property.getId(), locador.getId()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> chatService.findOrCreateChat(UUID.randomUUID(), inquilino.getId()))
+                .isInstanceOf(EntityNotFoundException.class);
+        assertThat(countChats()).isZero();
+    }
+
+    private long countChats() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chats WHERE property_id = ?", Long.class, property.getId());
+    }
+
+    private User newUser(String email, UserRole role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPasswordHash("hash");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
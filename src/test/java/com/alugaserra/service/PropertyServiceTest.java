@@ -2,14 +2,20 @@ package com.alugaserra.service;
 
 import com.alugaserra.dto.PropertyCreateDto;
 import com.alugaserra.dto.PropertyResponseDto;
+import com.alugaserra.dto.PropertySearchFilter;
 import com.alugaserra.enums.PropertyStatus;
 import com.alugaserra.enums.PropertyType;
+import com.alugaserra.event.PropertyChangedEvent;
+import com.alugaserra.exception.ServiceOverloadedException;
 import com.alugaserra.model.Plan;
 import com.alugaserra.model.Property;
 import com.alugaserra.model.Subscription;
 import com.alugaserra.model.User;
 import com.alugaserra.repository.PropertyRepository;
 import com.alugaserra.repository.SubscriptionRepository;
+import com.alugaserra.search.GeoGridIndex;
+import com.alugaserra.search.PropertyFilterIndex;
+import com.alugaserra.search.PropertyTextIndex;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -17,6 +23,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -39,6 +46,18 @@ class PropertyServiceTest {
     @Mock
     private SubscriptionRepository subscriptionRepository;
 
+    @Mock
+    private PropertyFilterIndex propertyFilterIndex;
+
+    @Mock
+    private PropertyTextIndex propertyTextIndex;
+
+    @Mock
+    private GeoGridIndex geoGridIndex;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     // Cria uma instância real do PropertyService e injeta os Mocks acima nela.
     @InjectMocks
     private PropertyService propertyService;
@@ -104,6 +123,7 @@ class PropertyServiceTest {
         assertNotNull(resultDto);
         assertEquals(savedProperty.getId(), resultDto.id());
         verify(propertyRepository, times(1)).save(any(Property.class));
+        verify(eventPublisher, times(1)).publishEvent(any(PropertyChangedEvent.class));
     }
 
     @Test
@@ -152,5 +172,16 @@ class PropertyServiceTest {
         assertEquals("Usuário não possui uma assinatura ativa para cadastrar imóveis.", exception.getMessage());
         verify(propertyRepository, never()).save(any());
     }
-}
 
+    @Test
+    @DisplayName("Deve responder como indisponível (503), e não como conflito, enquanto o índice textual carrega")
+    void searchProperties_ShouldThrowOverloaded_WhileTextIndexIsLoading() {
+        PropertySearchFilter filter = new PropertySearchFilter(null, null, null, null, "chalé", null);
+
+        ServiceOverloadedException exception = assertThrows(ServiceOverloadedException.class,
+                () -> propertyService.searchProperties(filter, null, null, null));
+
+        assertTrue(exception.getRetryAfter().toSeconds() > 0);
+        verify(propertyTextIndex, never()).search(any());
+    }
+}
@@ -0,0 +1,102 @@
+package com.alugaserra.service;
+
+import com.alugaserra.dto.RegisterRequestDto;
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.repository.SubscriptionRepository;
+import com.alugaserra.repository.UserRepository;
+import com.alugaserra.security.UserCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Sem @Transactional: cada cadastro precisa fazer commit de verdade, em paralelo com os outros.
+// O BCrypt mais barato deixa o teste medir a transação, não o hash.
+@SpringBootTest
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties", properties = "security.password.bcrypt-strength=4")
+class RegistrationServiceTest {
+
+    private static final String EMAIL_SUFFIX = "@carga.alugaserra.com";
+    private static final int USERS = 300;
+    private static final int DUPLICATES = 50;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private UserCache userCache;
+
+    @AfterEach
+    void tearDown() {
+        subscriptionRepository.deleteAll(subscriptionRepository.findAll().stream()
+                .filter(s -> s.getUser().getEmail().endsWith(EMAIL_SUFFIX)).toList());
+        userRepository.deleteAll(userRepository.findAll().stream()
+                .filter(u -> u.getEmail().endsWith(EMAIL_SUFFIX)).toList());
+        userCache.invalidateAll();
+    }
+
+    @Test
+    @DisplayName("Deve cadastrar centenas de usuários em paralelo, barrando e-mails repetidos pela constraint")
+    void register_ShouldHandleConcurrentRegistrations() throws Exception {
+        List<RegisterRequestDto> requests = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            requests.add(dto("usuario" + i + EMAIL_SUFFIX, String.format("9%010d", i)));
+        }
+        // Os primeiros e-mails chegam duas vezes, ao mesmo tempo, com outro CPF
+        for (int i = 0; i < DUPLICATES; i++) {
+            requests.add(dto("usuario" + i + EMAIL_SUFFIX, String.format("9%010d", USERS + i)));
+        }
+
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (RegisterRequestDto request : requests) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        registrationService.register(request);
+                        created.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        rejected.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(created).hasValue(USERS);
+        assertThat(rejected).hasValue(DUPLICATES);
+        assertThat(subscriptionRepository.findAll().stream()
+                .filter(s -> s.getUser().getEmail().endsWith(EMAIL_SUFFIX))
+                .allMatch(s -> s.getPlan().getName().equals("Bronze"))).isTrue();
+        assertThat(userRepository.findAll().stream().filter(u -> u.getEmail().endsWith(EMAIL_SUFFIX)).count()).isEqualTo(USERS);
+    }
+
+    private static RegisterRequestDto dto(String email, String cpf) {
+        return new RegisterRequestDto("Usuário Carga", email, "senha123", cpf, "31900000000", UserRole.INQUILINO);
+    }
+}
@@ -0,0 +1,73 @@
+package com.alugaserra.service;
+
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.User;
+import com.alugaserra.security.AuthMetrics;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.JWTVerifier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Micro-benchmark do custo por requisição da validação do token.
+ * Só roda quando pedido (fora do "mvn test", os tempos variam com a máquina e não são verificados):
+ * mvn test -Dtest=TokenServiceBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TokenServiceBenchmark {
+
+    private static final String SECRET = "MinhaChaveSecretaSuperLongaParaProtegerMeuTokenJWTDoAlugaSerra";
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 200_000;
+
+    @Test
+    @DisplayName("Validação do mesmo token: verificador por chamada x verificador único + cache")
+    void compareVerification() {
+        TokenService tokenService = new TokenService();
+        ReflectionTestUtils.setField(tokenService, "secret", SECRET);
+        ReflectionTestUtils.setField(tokenService, "expiration", 3600000L);
+        ReflectionTestUtils.setField(tokenService, "authMetrics", new AuthMetrics(new SimpleMeterRegistry()));
+        tokenService.init();
+
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("usuario.teste@email.com");
+        user.setRole(UserRole.LOCADOR);
+        String token = tokenService.generateToken(user);
+
+        // Antes: Algorithm e JWTVerifier novos, HMAC e parse do JSON a cada requisição
+        double before = nanosPerCall(() -> JWT.require(Algorithm.HMAC256(SECRET))
+                .withIssuer("alugaserra-api")
+                .build()
+                .verify(token)
+                .getSubject());
+        // Só o verificador reaproveitado (primeira vez que o token aparece)
+        JWTVerifier verifier = JWT.require(Algorithm.HMAC256(SECRET)).withIssuer("alugaserra-api").build();
+        double reused = nanosPerCall(() -> verifier.verify(token).getSubject());
+        // Depois: o mesmo token, já verificado, sai do cache
+        double after = nanosPerCall(() -> tokenService.verifyToken(token).email());
+
+        System.out.printf("Validação do token: antes %.0f ns/req, verificador único %.0f ns/req, com cache %.0f ns/req (%.1fx)%n",
+                before, reused, after, before / after);
+        assertThat(tokenService.verifyToken(token).email()).isEqualTo(user.getEmail());
+    }
+
+    private static double nanosPerCall(Runnable call) {
+        for (int i = 0; i < WARMUP; i++) {
+            call.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.run();
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+}
@@ -1,17 +1,27 @@
 package com.alugaserra.service;
 
+import com.alugaserra.enums.UserRole;
 import com.alugaserra.model.User;
+import com.alugaserra.security.AuthMetrics;
+import com.alugaserra.security.TokenClaims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 // Este é um teste de unidade puro, não precisa de anotações do Spring.
 class TokenServiceTest {
 
     private TokenService tokenService;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setUp() {
@@ -20,6 +30,9 @@ class TokenServiceTest {
         // manualmente usando uma ferramenta de teste chamada ReflectionTestUtils.
         ReflectionTestUtils.setField(tokenService, "secret", "MinhaChaveSecretaSuperLongaParaProtegerMeuTokenJWTDoAlugaSerra");
         ReflectionTestUtils.setField(tokenService, "expiration", 3600000L);
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(tokenService, "authMetrics", new AuthMetrics(meterRegistry));
+        tokenService.init();
     }
 
     @Test
@@ -38,6 +51,70 @@ class TokenServiceTest {
         assertThat(subject).isEqualTo("usuario.teste@email.com");
     }
 
+    @Test
+    @DisplayName("Deve embutir o id, o papel e a versão dos tokens do usuário nas claims")
+    void verifyToken_ShouldReturnUserClaims() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("locador@email.com");
+        user.setRole(UserRole.LOCADOR);
+        user.setTokenVersion(3);
+
+        TokenClaims claims = tokenService.verifyToken(tokenService.generateToken(user));
+
+        assertThat(claims).isEqualTo(new TokenClaims("locador@email.com", user.getId(), UserRole.LOCADOR, 3, null, claims.expiresAt()));
+        assertThat(claims.expiresAt()).isAfter(Instant.now());
+        assertThat(claims.isSelfContained()).isTrue();
+        assertThat(tokenService.verifyToken("token.invalido.jwt")).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve guardar só tokens válidos no cache, respeitando o limite de entradas")
+    void verifyToken_ShouldCacheOnlyValidTokens_UpToTheLimit() {
+        ReflectionTestUtils.setField(tokenService, "verifiedCacheMaxEntries", 2);
+        User user = new User();
+        user.setEmail("usuario.teste@email.com");
+        String token = tokenService.generateToken(user);
+
+        TokenClaims first = tokenService.verifyToken(token);
+        assertThat(tokenService.verifyToken(token)).isSameAs(first);
+
+        // Assinatura adulterada e token expirado nunca entram no cache
+        assertThat(tokenService.verifyToken(token.substring(0, token.length() - 2) + "xx")).isNull();
+        ReflectionTestUtils.setField(tokenService, "expiration", -1000L);
+        assertThat(tokenService.verifyToken(tokenService.generateToken(user))).isNull();
+        assertThat(tokenService.verifiedCacheSize()).isEqualTo(1);
+
+        ReflectionTestUtils.setField(tokenService, "expiration", 3600000L);
+        for (int i = 0; i < 5; i++) {
+            user.setEmail("usuario" + i + "@email.com");
+            assertThat(tokenService.verifyToken(tokenService.generateToken(user)).email()).isEqualTo(user.getEmail());
+        }
+        assertThat(tokenService.verifiedCacheSize()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Deve abrir espaço no cache cheio descartando o token mais antigo, e guardar o novo")
+    void verifyToken_ShouldEvictOldestToken_WhenCacheIsFull() {
+        ReflectionTestUtils.setField(tokenService, "verifiedCacheMaxEntries", 3);
+        User user = new User();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            user.setEmail("cheio" + i + "@email.com");
+            tokens.add(tokenService.generateToken(user));
+            tokenService.verifyToken(tokens.get(i));
+        }
+        TokenClaims oldest = tokenService.verifyToken(tokens.get(0));
+
+        user.setEmail("novo@email.com");
+        String newest = tokenService.generateToken(user);
+        TokenClaims claims = tokenService.verifyToken(newest);
+
+        assertThat(tokenService.verifyToken(newest)).isSameAs(claims);
+        assertThat(tokenService.verifiedCacheSize()).isEqualTo(3);
+        assertThat(tokenService.verifyToken(tokens.get(0))).isNotSameAs(oldest);
+    }
+
     @Test
     @DisplayName("Deve retornar uma string vazia ao validar um token inválido")
     void validateToken_ShouldReturnEmptyString_WhenTokenIsInvalid() {
@@ -50,4 +127,30 @@ class TokenServiceTest {
         // --- Verificação (Assert) ---
         assertThat(subject).isEmpty();
     }
+
+    @Test
+    @DisplayName("Deve contar as falhas de verificação pelo motivo e as idas ao cache")
+    void verifyToken_ShouldRecordFailureReasonsAndCacheResults() {
+        User user = new User();
+        user.setEmail("usuario.teste@email.com");
+        String token = tokenService.generateToken(user);
+
+        tokenService.verifyToken(token);
+        tokenService.verifyToken(token);
+        tokenService.verifyToken(token.substring(0, token.length() - 2) + "xx");
+        tokenService.verifyToken("nao-e-um-jwt");
+        ReflectionTestUtils.setField(tokenService, "expiration", -1000L);
+        tokenService.verifyToken(tokenService.generateToken(user));
+
+        assertThat(counter("security.auth.failures", "reason", "bad-signature")).isEqualTo(1);
+        assertThat(counter("security.auth.failures", "reason", "malformed")).isEqualTo(1);
+        assertThat(counter("security.auth.failures", "reason", "expired")).isEqualTo(1);
+        assertThat(counter("security.auth.token-cache", "result", "hit")).isEqualTo(1);
+        assertThat(counter("security.auth.token-cache", "result", "miss")).isEqualTo(4);
+        assertThat(meterRegistry.get("security.auth.stage").tag("stage", "hmac").timer().count()).isEqualTo(1);
+    }
+
+    private double counter(String name, String tag, String value) {
+        return meterRegistry.get(name).tag(tag, value).counter().count();
+    }
 }
@@ -0,0 +1,198 @@
+package com.alugaserra.websocket;
+
+import com.alugaserra.dto.ChatMessageViewDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+// Teste de unidade puro: vários "nós" montados à mão sobre o mesmo hub do relay em memória.
+class ChatFanoutTest {
+
+    private final InMemoryChatRelay.Hub hub = new InMemoryChatRelay.Hub();
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    // Lotes de mensagens recebidos por nó
+    private final Map<String, AtomicInteger> messageFrames = new ConcurrentHashMap<>();
+    private final List<Node> nodes = new ArrayList<>();
+    private int maxPayloadBytes = Integer.MAX_VALUE;
+
+    private record Node(ChatFanout fanout, ChatSessionRegistry sessions, SimpMessagingTemplate template) {
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Node node : nodes) {
+            if (node.fanout().isRunning()) {
+                node.fanout().stop();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Deve encaminhar em lote só para o nó que tem o destinatário conectado")
+    void deliver_ShouldRelayInBatchesOnlyToNodeHoldingRecipient() {
+        Node a = node("a");
+        Node b = node("b");
+        Node c = node("c");
+        UUID destinatario = UUID.randomUUID();
+        b.sessions().register("sessao-b", destinatario);
+        await(() -> a.fanout().nodesHolding(destinatario).equals(Set.of("b")));
+
+        for (int i = 0; i < 20; i++) {
+            a.fanout().deliver(destinatario, message(i));
+        }
+
+        verify(b.template(), timeout(2000).times(20))
+                .convertAndSendToUser(eq(destinatario.toString()), eq("/queue/messages"), any(ChatMessageViewDto.class), headersOf("sessao-b"));
+        assertThat(messageFrames.get("b").get()).isLessThan(20);
+        assertThat(messageFrames.get("c").get()).isZero();
+        verify(c.template(), never()).convertAndSendToUser(any(), any(), any(), anyHeaders());
+        verify(a.template(), never()).convertAndSendToUser(any(), any(), any(), anyHeaders());
+    }
+
+    @Test
+    @DisplayName("Deve ensinar a presença a um nó novo e esquecer o nó que desliga")
+    void presence_ShouldSyncNewNodesAndForgetStoppedOnes() {
+        Node a = node("a");
+        UUID usuario = UUID.randomUUID();
+        a.sessions().register("sessao-a", usuario);
+
+        Node d = node("d");
+        await(() -> d.fanout().nodesHolding(usuario).contains("a"));
+
+        a.sessions().onDisconnect(new SessionDisconnectEvent(
+                this, MessageBuilder.withPayload(new byte[0]).build(), "sessao-a", CloseStatus.NORMAL));
+        await(() -> d.fanout().nodesHolding(usuario).isEmpty());
+
+        a.sessions().register("sessao-a2", usuario);
+        await(() -> d.fanout().nodesHolding(usuario).contains("a"));
+        a.fanout().stop();
+        assertThat(d.fanout().nodesHolding(usuario)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Deve aceitar no envio só o conteúdo que cabe numa entrega do relay, medido em bytes do JSON")
+    void fitsRelay_ShouldMatchWhatTheRelayDelivers() {
+        maxPayloadBytes = 1000;
+        Node a = node("a");
+        Node b = node("b");
+        UUID destinatario = UUID.randomUUID();
+        b.sessions().register("sessao-b", destinatario);
+        await(() -> a.fanout().nodesHolding(destinatario).equals(Set.of("b")));
+        // "ã" ocupa 2 bytes em UTF-8: o maior conteúdo aceito tem bem menos que 1000 caracteres
+        int length = 0;
+        while (a.fanout().fitsRelay("ã".repeat(length + 1))) {
+            length++;
+        }
+        assertThat(length).isBetween(300, 500);
+
+        ChatMessageViewDto largest = new ChatMessageViewDto(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                "ã".repeat(length), LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        a.fanout().deliver(destinatario, largest);
+
+        verify(b.template(), timeout(2000))
+                .convertAndSendToUser(eq(destinatario.toString()), eq("/queue/messages"), eq(largest), headersOf("sessao-b"));
+    }
+
+    private Node node(String id) {
+        messageFrames.put(id, new AtomicInteger());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        InMemoryChatRelay relay = new InMemoryChatRelay(hub) {
+            @Override
+            public void sendToNode(String nodeId, String payload) {
+                if (payload.contains("\"type\":\"MESSAGES\"")) {
+                    messageFrames.get(nodeId).incrementAndGet();
+                }
+                super.sendToNode(nodeId, payload);
+            }
+
+            @Override
+            public int maxPayloadBytes() {
+                return maxPayloadBytes;
+            }
+        };
+
+        ChatFanout fanout = new ChatFanout();
+        ChatSessionRegistry sessions = new ChatSessionRegistry();
+        ReflectionTestUtils.setField(sessions, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(sessions, "eventPublisher",
+                (ApplicationEventPublisher) event -> fanout.onUserPresence((UserPresenceEvent) event));
+        sessions.registerMetrics();
+
+        ReflectionTestUtils.setField(fanout, "relay", relay);
+        ReflectionTestUtils.setField(fanout, "chatSessionRegistry", sessions);
+        ReflectionTestUtils.setField(fanout, "messagingTemplate", template);
+        ReflectionTestUtils.setField(fanout, "stompWireFormats", new StompWireFormats());
+        ReflectionTestUtils.setField(fanout, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(fanout, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(fanout, "configuredNodeId", id);
+        ReflectionTestUtils.setField(fanout, "batchSize", 8);
+        ReflectionTestUtils.setField(fanout, "flushInterval", Duration.ofMillis(5));
+        ReflectionTestUtils.setField(fanout, "heartbeatInterval", Duration.ofSeconds(10));
+        fanout.start();
+
+        Node node = new Node(fanout, sessions, template);
+        nodes.add(node);
+        return node;
+    }
+
+    private static Map<String, Object> anyHeaders() {
+        return any();
+    }
+
+    // Cliente JSON: o convertAndSendToUser recebe só o endereço da sessão, sem content-type
+    private static Map<String, Object> headersOf(String sessionId) {
+        return argThat(headers -> sessionId.equals(headers.get(SimpMessageHeaderAccessor.SESSION_ID_HEADER))
+                && !headers.containsKey(MessageHeaders.CONTENT_TYPE));
+    }
+
+    private static ChatMessageViewDto message(int i) {
+        return new ChatMessageViewDto(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), "Mensagem " + i,
+                LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
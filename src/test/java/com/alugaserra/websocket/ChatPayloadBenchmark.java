@@ -0,0 +1,122 @@
+package com.alugaserra.websocket;
+
+import com.alugaserra.dto.ChatMessageViewDto;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.Chat;
+import com.alugaserra.model.ChatMessage;
+import com.alugaserra.model.Property;
+import com.alugaserra.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Micro-benchmark do tamanho e do custo de serialização de uma mensagem de chat.
+ * Só roda quando pedido (fora do "mvn test", os tempos variam com a máquina e não são verificados):
+ * mvn test -Dtest=ChatPayloadBenchmark -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ChatPayloadBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 200_000;
+
+    @Test
+    @DisplayName("Mensagem de chat: entidade em JSON x view em JSON x view em CBOR")
+    void comparePayloads() throws Exception {
+        ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper cbor = CBORMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        // Antes: a entidade, com o chat, o imóvel, o dono e os participantes serializados junto
+        ChatMessage entity = entityGraph();
+        ChatMessageViewDto view = new ChatMessageViewDto(entity.getId(), entity.getChat().getId(),
+                entity.getSender().getId(), entity.getContent(), entity.getTimestamp());
+
+        int entityBytes = json.writeValueAsBytes(entity).length;
+        int viewJsonBytes = json.writeValueAsBytes(view).length;
+        int viewCborBytes = cbor.writeValueAsBytes(view).length;
+
+        double entityNanos = nanosPerMessage(json, entity);
+        double viewJsonNanos = nanosPerMessage(json, view);
+        double viewCborNanos = nanosPerMessage(cbor, view);
+
+        System.out.printf("Entidade/JSON: %d bytes, %.0f ns/msg%n", entityBytes, entityNanos);
+        System.out.printf("View/JSON: %d bytes, %.0f ns/msg%n", viewJsonBytes, viewJsonNanos);
+        System.out.printf("View/CBOR: %d bytes, %.0f ns/msg%n", viewCborBytes, viewCborNanos);
+        assertThat(viewJsonBytes).isLessThan(entityBytes);
+        assertThat(viewCborBytes).isLessThan(viewJsonBytes);
+    }
+
+    private static ChatMessage entityGraph() {
+        User owner = user("Dona do Imóvel", "locadora@email.com", UserRole.LOCADOR);
+        User tenant = user("Inquilino", "inquilino@email.com", UserRole.INQUILINO);
+
+        Property property = new Property();
+        property.setId(UUID.randomUUID());
+        property.setOwner(owner);
+        property.setTitle("Casa com vista para a serra");
+        property.setDescription("Três quartos, quintal e garagem coberta, a dez minutos do centro.");
+        property.setType(PropertyType.CASA);
+        property.setRentValue(1800);
+        property.setRooms(3);
+        property.setBathrooms(2);
+        property.setApproximateLocation("Centro");
+        property.setPhotoUrls(new ArrayList<>(List.of("https://cdn.alugaserra.com/fotos/1.jpg",
+                "https://cdn.alugaserra.com/fotos/2.jpg")));
+        property.setCreatedAt(LocalDateTime.now());
+        property.setUpdatedAt(LocalDateTime.now());
+
+        Chat chat = new Chat();
+        chat.setId(UUID.randomUUID());
+        chat.setProperty(property);
+        chat.setParticipants(new ArrayList<>(List.of(tenant, owner)));
+        chat.setCreatedAt(LocalDateTime.now());
+
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setChat(chat);
+        message.setSender(tenant);
+        message.setContent("Olá! A casa ainda está disponível para visita no sábado?");
+        message.setTimestamp(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+        return message;
+    }
+
+    private static User user(String name, String email, UserRole role) {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setName(name);
+        user.setEmail(email);
+        user.setCpf("12345678901");
+        user.setPhone("24999990000");
+        user.setRole(role);
+        return user;
+    }
+
+    private static double nanosPerMessage(ObjectMapper mapper, Object payload) throws JsonProcessingException {
+        for (int i = 0; i < WARMUP; i++) {
+            mapper.writeValueAsBytes(payload);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mapper.writeValueAsBytes(payload);
+        }
+        return (System.nanoTime() - start) / (double) ITERATIONS;
+    }
+}
@@ -0,0 +1,269 @@
+package com.alugaserra.websocket;
+
+import com.alugaserra.dto.ApiErrorDto;
+import com.alugaserra.dto.ChatMessageViewDto;
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.Property;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.PropertyRepository;
+import com.alugaserra.repository.UserRepository;
+import com.alugaserra.security.RevokedSessions;
+import com.alugaserra.service.ChatService;
+import com.alugaserra.service.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ponta a ponta: clientes STOMP de verdade, pelo SockJS de "/ws" e pelo WebSocket puro de "/ws-native",
+ * contra o servidor numa porta aleatória.
+ * Banco próprio, porque aqui os dados são gravados de verdade (sem a transação desfeita dos outros testes).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties",
+        properties = "spring.datasource.url=jdbc:h2:mem:stomptest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE")
+class ChatStompIntegrationTest {
+
+    @LocalServerPort private int port;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PropertyRepository propertyRepository;
+    @Autowired private ChatService chatService;
+    @Autowired private TokenService tokenService;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private RevokedSessions revokedSessions;
+    @Autowired private SimpMessagingTemplate messagingTemplate;
+
+    private final List<StompSession> sessions = new ArrayList<>();
+    private WebSocketStompClient client;
+    private WebSocketStompClient nativeClient;
+    private User locador;
+    private User inquilino;
+    private User outroUsuario;
+    private UUID chatId;
+
+    @BeforeEach
+    void setUp() {
+        client = new WebSocketStompClient(new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        nativeClient = new WebSocketStompClient(new StandardWebSocketClient());
+        locador = newUser(UserRole.LOCADOR);
+        inquilino = newUser(UserRole.INQUILINO);
+        outroUsuario = newUser(UserRole.INQUILINO);
+
+        Property property = new Property();
+        property.setOwner(locador);
+        property.setTitle("Casa para conversar pelo WebSocket");
+        property.setType(PropertyType.CASA);
+        propertyRepository.save(property);
+        chatId = chatService.startChat(property.getId(), inquilino.getId()).id();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessions.forEach(StompSession::disconnect);
+        client.stop();
+        nativeClient.stop();
+    }
+
+    @Test
+    @DisplayName("Deve entregar a mensagem enviada pelo WebSocket ao outro participante do chat")
+    void sendMessage_ShouldDeliverToRecipient() throws Exception {
+        StompSession sender = connect(inquilino);
+        BlockingQueue<byte[]> received = subscribe(connect(locador), "/user/queue/messages");
+
+        send(sender, Map.of("chatId", chatId, "content", "Olá, o imóvel ainda está disponível?"));
+
+        ChatMessageViewDto message = objectMapper.readValue(poll(received), ChatMessageViewDto.class);
+        assertThat(message.chatId()).isEqualTo(chatId);
+        assertThat(message.senderId()).isEqualTo(inquilino.getId());
+        assertThat(message.content()).isEqualTo("Olá, o imóvel ainda está disponível?");
+    }
+
+    @Test
+    @DisplayName("Deve devolver o erro só para a sessão que enviou para um chat de que não participa")
+    void sendMessage_ShouldReportError_WhenUserIsNotParticipant() throws Exception {
+        StompSession intruder = connect(outroUsuario);
+        BlockingQueue<byte[]> errors = subscribe(intruder, "/user/queue/errors");
+        BlockingQueue<byte[]> delivered = subscribe(connect(locador), "/user/queue/messages");
+
+        send(intruder, Map.of("chatId", chatId, "content", "Mensagem intrusa"));
+
+        ApiErrorDto error = objectMapper.readValue(poll(errors), ApiErrorDto.class);
+        assertThat(error.status()).isEqualTo(403);
+        assertThat(error.path()).isEqualTo("/app/chat.sendMessage");
+        assertThat(delivered.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        // A sessão continua aberta depois do erro
+        assertThat(intruder.isConnected()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Deve recusar com 400 a mensagem longa demais, sem entregá-la")
+    void sendMessage_ShouldReportError_WhenContentIsTooLong() throws Exception {
+        StompSession sender = connect(inquilino);
+        BlockingQueue<byte[]> errors = subscribe(sender, "/user/queue/errors");
+        BlockingQueue<byte[]> delivered = subscribe(connect(locador), "/user/queue/messages");
+
+        send(sender, Map.of("chatId", chatId, "content", "a".repeat(2001)));
+
+        ApiErrorDto error = objectMapper.readValue(poll(errors), ApiErrorDto.class);
+        assertThat(error.status()).isEqualTo(400);
+        assertThat(error.message()).contains("2000");
+        assertThat(delivered.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve entregar em CBOR, num frame binário, à sessão do WebSocket puro que pediu CBOR")
+    void sendMessage_ShouldDeliverCbor_WhenNativeSessionAsksForIt() throws Exception {
+        StompSession sender = connect(inquilino);
+        BlockingQueue<byte[]> cbor = subscribe(connect(nativeClient, "/ws-native", locador, "application/cbor"), "/user/queue/messages");
+        // A outra sessão do mesmo usuário não pediu CBOR: segue em JSON
+        BlockingQueue<byte[]> json = subscribe(connect(locador), "/user/queue/messages");
+
+        send(sender, Map.of("chatId", chatId, "content", "Ação: três quartos e vista para a serra ⛰"));
+
+        ChatMessageViewDto decoded = StompWireFormats.cborMapper().readValue(poll(cbor), ChatMessageViewDto.class);
+        assertThat(decoded.content()).isEqualTo("Ação: três quartos e vista para a serra ⛰");
+        assertThat(decoded.senderId()).isEqualTo(inquilino.getId());
+        ChatMessageViewDto plain = objectMapper.readValue(poll(json), ChatMessageViewDto.class);
+        assertThat(plain.id()).isEqualTo(decoded.id());
+        assertThat(plain.timestamp()).isEqualTo(decoded.timestamp());
+    }
+
+    @Test
+    @DisplayName("Deve entregar em JSON à sessão SockJS que pediu CBOR, já que o SockJS só transporta texto")
+    void sendMessage_ShouldFallBackToJson_WhenSockJsSessionAsksForCbor() throws Exception {
+        StompSession sender = connect(inquilino);
+        BlockingQueue<byte[]> received = subscribe(connect(client, "/ws", locador, "application/cbor"), "/user/queue/messages");
+
+        send(sender, Map.of("chatId", chatId, "content", "Ação ⛰"));
+
+        assertThat(objectMapper.readValue(poll(received), ChatMessageViewDto.class).content()).isEqualTo("Ação ⛰");
+    }
+
+    @Test
+    @DisplayName("Deve descartar o envio e avisar a sessão depois do logout da sessão de login do token")
+    void sendMessage_ShouldReportError_AfterLogout() throws Exception {
+        UUID loginSession = UUID.randomUUID();
+        StompSession sender = connect(client, "/ws", tokenService.generateAccessToken(inquilino, loginSession), null);
+        BlockingQueue<byte[]> errors = subscribe(sender, "/user/queue/errors");
+        BlockingQueue<byte[]> delivered = subscribe(connect(locador), "/user/queue/messages");
+
+        revokedSessions.revoke(loginSession);
+        send(sender, Map.of("chatId", chatId, "content", "Depois do logout"));
+
+        ApiErrorDto error = objectMapper.readValue(poll(errors), ApiErrorDto.class);
+        assertThat(error.status()).isEqualTo(401);
+        assertThat(error.message()).contains("Sessão encerrada");
+        assertThat(error.path()).isEqualTo("/app/chat.sendMessage");
+        assertThat(delivered.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    private User newUser(UserRole role) {
+        String email = UUID.randomUUID() + "@email.com";
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPasswordHash("hash");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+
+    private StompSession connect(User user) throws Exception {
+        return connect(client, "/ws", user, null);
+    }
+
+    private StompSession connect(WebSocketStompClient stompClient, String endpoint, User user, String accept) throws Exception {
+        return connect(stompClient, endpoint, tokenService.generateToken(user), accept);
+    }
+
+    private StompSession connect(WebSocketStompClient stompClient, String endpoint, String token, String accept) throws Exception {
+        StompHeaders headers = new StompHeaders();
+        headers.add("Authorization", "Bearer " + token);
+        if (accept != null) {
+            headers.add("accept", accept);
+        }
+        StompSession session = stompClient.connectAsync("ws://localhost:{port}" + endpoint, new WebSocketHttpHeaders(), headers,
+                new StompSessionHandlerAdapter() {
+                }, port).get(5, TimeUnit.SECONDS);
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * Os frames de uma sessão são tratados em ordem, mas os de sessões diferentes não: um envio de outra
+     * sessão pode chegar ao broker antes desta assinatura. Por isso espera uma assinatura-sonda, feita
+     * logo depois nesta mesma sessão, receber uma publicação: a partir daí a assinatura pedida também vale.
+     */
+    private BlockingQueue<byte[]> subscribe(StompSession session, String destination) throws InterruptedException {
+        BlockingQueue<byte[]> frames = subscribeNow(session, destination);
+        String probe = "/topic/sonda-" + UUID.randomUUID();
+        BlockingQueue<byte[]> probes = subscribeNow(session, probe);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            messagingTemplate.convertAndSend(probe, "sonda");
+            if (probes.poll(50, TimeUnit.MILLISECONDS) != null) {
+                return frames;
+            }
+        }
+        throw new AssertionError("A assinatura de " + destination + " não chegou ao broker a tempo.");
+    }
+
+    private static BlockingQueue<byte[]> subscribeNow(StompSession session, String destination) {
+        BlockingQueue<byte[]> frames = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add((byte[]) payload);
+            }
+        });
+        return frames;
+    }
+
+    private void send(StompSession session, Object payload) throws Exception {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/app/chat.sendMessage");
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        session.send(headers, objectMapper.writeValueAsBytes(payload));
+    }
+
+    private static byte[] poll(BlockingQueue<byte[]> frames) throws InterruptedException {
+        byte[] frame = frames.poll(5, TimeUnit.SECONDS);
+        assertThat(frame).as("frame recebido").isNotNull();
+        return frame;
+    }
+}
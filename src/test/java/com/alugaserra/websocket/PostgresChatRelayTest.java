@@ -0,0 +1,145 @@
+package com.alugaserra.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Relay de chat sobre o LISTEN/NOTIFY de um PostgreSQL de verdade: dois "nós" montados à mão sobre o
+ * mesmo banco. O H2 dos outros testes não tem LISTEN/NOTIFY, então o teste só roda com um PostgreSQL
+ * informado pela variável de ambiente (senão é pulado), por exemplo:
+ * CHAT_RELAY_POSTGRES_URL="jdbc:postgresql://localhost:5432/alugaserra?user=postgres&password=postgres" mvn test
+ */
+@EnabledIfEnvironmentVariable(named = "CHAT_RELAY_POSTGRES_URL", matches = ".+")
+class PostgresChatRelayTest {
+
+    private static final String PING = "ping-";
+
+    private final List<PostgresChatRelay> relays = new ArrayList<>();
+    private JdbcTemplate jdbcTemplate;
+
+    private record Node(String id, PostgresChatRelay relay, BlockingQueue<String> received, AtomicInteger resubscriptions) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getenv("CHAT_RELAY_POSTGRES_URL"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        relays.forEach(PostgresChatRelay::close);
+    }
+
+    @Test
+    @DisplayName("Deve entregar o lote só ao nó de destino e o broadcast a todos os nós, inclusive ao que enviou")
+    void relay_ShouldDeliverToTargetNode_AndBroadcastToAll() throws Exception {
+        Node a = startNode();
+        Node b = startNode();
+
+        a.relay().sendToNode(b.id(), "lote para b");
+        assertThat(b.received().poll(5, TimeUnit.SECONDS)).isEqualTo("lote para b");
+
+        b.relay().broadcast("presença de b");
+        assertThat(a.received().poll(5, TimeUnit.SECONDS)).isEqualTo("presença de b");
+        assertThat(b.received().poll(5, TimeUnit.SECONDS)).isEqualTo("presença de b");
+        // O lote para b não passou pelo canal de a
+        assertThat(a.received().poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve aceitar um payload do tamanho máximo configurado, com caracteres de mais de um byte")
+    void relay_ShouldDeliverPayload_UpToMaxPayloadBytes() throws Exception {
+        Node a = startNode();
+        Node b = startNode();
+        // "ã" ocupa 2 bytes em UTF-8: o limite é em bytes, não em caracteres
+        String payload = "ã".repeat(a.relay().maxPayloadBytes() / 2);
+
+        a.relay().sendToNode(b.id(), payload);
+
+        assertThat(b.received().poll(5, TimeUnit.SECONDS)).isEqualTo(payload);
+    }
+
+    @Test
+    @DisplayName("Deve refazer a escuta e avisar o listener quando a conexão do LISTEN cai")
+    void relay_ShouldResubscribe_WhenListenConnectionIsTerminated() throws Exception {
+        Node a = startNode();
+        Node b = startNode();
+
+        // Derruba as conexões que estão escutando os canais do relay (as dos dois nós)
+        jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity"
+                + " WHERE datname = current_database() AND pid <> pg_backend_pid()"
+                + " AND query LIKE 'LISTEN " + PostgresChatRelay.CHANNEL_PREFIX + "%'");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (b.resubscriptions().get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(b.resubscriptions().get()).isEqualTo(1);
+
+        a.relay().sendToNode(b.id(), "depois da reconexão");
+        assertThat(b.received().poll(5, TimeUnit.SECONDS)).isEqualTo("depois da reconexão");
+    }
+
+    private Node startNode() throws InterruptedException {
+        PostgresChatRelay relay = new PostgresChatRelay();
+        ReflectionTestUtils.setField(relay, "dataSource", jdbcTemplate.getDataSource());
+        ReflectionTestUtils.setField(relay, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(relay, "maxPayloadBytes", 7500);
+        ReflectionTestUtils.setField(relay, "pollTimeout", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(relay, "reconnectBackoff", Duration.ofMillis(100));
+        relays.add(relay);
+
+        String nodeId = "teste_" + UUID.randomUUID().toString().replace("-", "");
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        BlockingQueue<String> pings = new LinkedBlockingQueue<>();
+        AtomicInteger resubscriptions = new AtomicInteger();
+        relay.subscribe(nodeId, new ChatRelay.Listener() {
+            @Override
+            public void onPayload(String payload) {
+                (payload.startsWith(PING) ? pings : received).add(payload);
+            }
+
+            @Override
+            public void onResubscribed() {
+                resubscriptions.incrementAndGet();
+            }
+        });
+        awaitListening(relay, pings);
+        return new Node(nodeId, relay, received, resubscriptions);
+    }
+
+    // O LISTEN roda na thread do relay: espera um broadcast do próprio nó chegar antes de seguir.
+    // Os pings ficam numa fila à parte, já que os outros nós também os recebem.
+    private static void awaitListening(PostgresChatRelay relay, BlockingQueue<String> pings) throws InterruptedException {
+        String ping = PING + UUID.randomUUID();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            relay.broadcast(ping);
+            String payload;
+            while ((payload = pings.poll(100, TimeUnit.MILLISECONDS)) != null) {
+                if (payload.equals(ping)) {
+                    return;
+                }
+            }
+        }
+        throw new AssertionError("O relay não começou a escutar a tempo.");
+    }
+}
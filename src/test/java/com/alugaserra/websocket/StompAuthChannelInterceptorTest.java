@@ -0,0 +1,241 @@
+package com.alugaserra.websocket;
+
+import com.alugaserra.enums.PropertyType;
+import com.alugaserra.enums.UserRole;
+import com.alugaserra.model.Chat;
+import com.alugaserra.model.Property;
+import com.alugaserra.model.User;
+import com.alugaserra.repository.ChatRepository;
+import com.alugaserra.repository.PropertyRepository;
+import com.alugaserra.repository.UserRepository;
+import com.alugaserra.security.RevokedSessions;
+import com.alugaserra.security.TokenVersions;
+import com.alugaserra.service.ChatService;
+import com.alugaserra.service.TokenService;
+import com.alugaserra.websocket.StompAuthChannelInterceptor.Credentials;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+@TestPropertySource(locations = "classpath:application-test.properties")
+class StompAuthChannelInterceptorTest {
+
+    @Autowired private StompAuthChannelInterceptor interceptor;
+    @Autowired private ChatSessionRegistry chatSessionRegistry;
+    @Autowired private ChatService chatService;
+    @Autowired private TokenService tokenService;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PropertyRepository propertyRepository;
+    @Autowired private ChatRepository chatRepository;
+    @Autowired private RevokedSessions revokedSessions;
+    @Autowired private TokenVersions tokenVersions;
+
+    private User locador;
+    private User inquilino;
+    private Chat chat;
+
+    @BeforeEach
+    void setUp() {
+        locador = newUser("locador.stomp@email.com", UserRole.LOCADOR);
+        inquilino = newUser("inquilino.stomp@email.com", UserRole.INQUILINO);
+
+        chat = new Chat();
+        chat.setProperty(newProperty("Casa do chat em tempo real"));
+        chat.setParticipants(new ArrayList<>(List.of(inquilino, locador)));
+        chatRepository.save(chat);
+    }
+
+    @Test
+    @DisplayName("Deve recusar o CONNECT sem token ou com token inválido")
+    void connect_ShouldFail_WithoutValidToken() {
+        assertThatThrownBy(() -> interceptor.preSend(connect("sessao-sem-token", null), null))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> interceptor.preSend(connect("sessao-token-invalido", "Bearer nao.e.um.jwt"), null))
+                .isInstanceOf(BadCredentialsException.class);
+        assertThatThrownBy(() -> chatSessionRegistry.userOf("sessao-sem-token"))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    @DisplayName("Deve autenticar o CONNECT e servir os chats da sessão com uma única consulta")
+    void connect_ShouldAuthenticateAndCacheChats() {
+        String sessionId = UUID.randomUUID().toString();
+        Message<byte[]> connect = connect(sessionId, "Bearer " + tokenService.generateToken(inquilino));
+
+        Message<?> result = interceptor.preSend(connect, null);
+
+        assertThat(StompHeaderAccessor.wrap(result).getUser()).isEqualTo(new ChatUser(inquilino.getId()));
+        assertThat(chatSessionRegistry.userOf(sessionId)).isEqualTo(inquilino.getId());
+        double loadsBefore = loads();
+        for (int i = 0; i < 5; i++) {
+            ChatContext context = chatSessionRegistry.chatOf(sessionId, chat.getId());
+            assertThat(context.recipientsFor(inquilino.getId())).containsExactly(locador.getId());
+        }
+        assertThat(loads()).isEqualTo(loadsBefore + 1);
+        assertThatThrownBy(() -> chatSessionRegistry.chatOf(sessionId, UUID.randomUUID()))
+                .isInstanceOf(AccessDeniedException.class);
+
+        chatSessionRegistry.onDisconnect(new SessionDisconnectEvent(this, connect, sessionId, CloseStatus.NORMAL));
+        assertThatThrownBy(() -> chatSessionRegistry.chatOf(sessionId, chat.getId()))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    @DisplayName("Deve recarregar os chats da sessão quando uma conversa nova do usuário é criada")
+    void chatOf_ShouldSeeNewChat_AfterCreation() {
+        String sessionId = UUID.randomUUID().toString();
+        interceptor.preSend(connect(sessionId, "Bearer " + tokenService.generateToken(locador)), null);
+        chatSessionRegistry.chatOf(sessionId, chat.getId());
+
+        User outroInquilino = newUser("outro.stomp@email.com", UserRole.INQUILINO);
+        Property outroImovel = newProperty("Apartamento do chat em tempo real");
+        UUID novoChat = chatService.findOrCreateChat(outroImovel.getId(), outroInquilino.getId());
+
+        assertThat(chatSessionRegistry.chatOf(sessionId, novoChat).recipientsFor(locador.getId()))
+                .containsExactly(outroInquilino.getId());
+    }
+
+    @Test
+    @DisplayName("Deve achar no banco, antes de negar, um chat criado em outro nó (sem o evento deste nó)")
+    void chatOf_ShouldReloadOnce_WhenChatWasCreatedElsewhere() {
+        String sessionId = UUID.randomUUID().toString();
+        interceptor.preSend(connect(sessionId, "Bearer " + tokenService.generateToken(locador)), null);
+        chatSessionRegistry.chatOf(sessionId, chat.getId());
+
+        // Gravado direto no banco, como faria outro nó: nenhum ChatCreatedEvent aqui
+        User outroInquilino = newUser("remoto.stomp@email.com", UserRole.INQUILINO);
+        Chat remoto = new Chat();
+        remoto.setProperty(newProperty("Chalé criado em outro nó"));
+        remoto.setParticipants(new ArrayList<>(List.of(outroInquilino, locador)));
+        chatRepository.saveAndFlush(remoto);
+
+        double loadsBefore = loads();
+        assertThat(chatSessionRegistry.chatOf(sessionId, remoto.getId()).recipientsFor(locador.getId()))
+                .containsExactly(outroInquilino.getId());
+        assertThat(chatSessionRegistry.chatOf(sessionId, remoto.getId())).isNotNull();
+        assertThat(loads()).isEqualTo(loadsBefore + 1);
+
+        assertThatThrownBy(() -> chatSessionRegistry.chatOf(sessionId, UUID.randomUUID()))
+                .isInstanceOf(AccessDeniedException.class);
+        assertThat(loads()).isEqualTo(loadsBefore + 2);
+    }
+
+    @Test
+    @DisplayName("Deve descartar o SEND depois do logout da sessão de login do token")
+    void send_ShouldBeDropped_AfterLogout() {
+        String sessionId = UUID.randomUUID().toString();
+        UUID loginSession = UUID.randomUUID();
+        Map<String, Object> attributes = new HashMap<>();
+        interceptor.preSend(connect(sessionId, "Bearer " + tokenService.generateAccessToken(inquilino, loginSession), attributes), null);
+        assertThat(interceptor.preSend(send(sessionId, attributes), null)).isNotNull();
+
+        revokedSessions.revoke(loginSession);
+
+        assertThat(interceptor.preSend(send(sessionId, attributes), null)).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve descartar o SEND depois de os tokens do usuário serem revogados (ex: troca de papel)")
+    void send_ShouldBeDropped_AfterTokenVersionChange() {
+        // Usuário só deste teste: a revogação vale para todos os tokens dele
+        User revogado = newUser("revogado.stomp@email.com", UserRole.INQUILINO);
+        String sessionId = UUID.randomUUID().toString();
+        Map<String, Object> attributes = new HashMap<>();
+        interceptor.preSend(connect(sessionId, "Bearer " + tokenService.generateToken(revogado), attributes), null);
+        assertThat(interceptor.preSend(send(sessionId, attributes), null)).isNotNull();
+
+        tokenVersions.revoke(revogado.getId(), revogado.getTokenVersion() + 1);
+
+        assertThat(interceptor.preSend(send(sessionId, attributes), null)).isNull();
+    }
+
+    @Test
+    @DisplayName("Deve descartar o SEND depois que o token do CONNECT expira")
+    void send_ShouldBeDropped_AfterTokenExpiry() {
+        String sessionId = UUID.randomUUID().toString();
+        Map<String, Object> attributes = new HashMap<>();
+        interceptor.preSend(connect(sessionId, "Bearer " + tokenService.generateToken(inquilino), attributes), null);
+        Credentials credentials = (Credentials) attributes.get(StompAuthChannelInterceptor.CREDENTIALS);
+        assertThat(credentials.expiresAt()).isAfter(Instant.now());
+
+        // Como se a validade do token tivesse passado com a sessão aberta
+        attributes.put(StompAuthChannelInterceptor.CREDENTIALS, new Credentials(credentials.userId(),
+                credentials.tokenVersion(), credentials.loginSessionId(), Instant.now().minusSeconds(1)));
+
+        assertThat(interceptor.preSend(send(sessionId, attributes), null)).isNull();
+    }
+
+    private double loads() {
+        return meterRegistry.get("chat.sessions.context-loads").counter().count();
+    }
+
+    private static Message<byte[]> connect(String sessionId, String authorization) {
+        return connect(sessionId, authorization, new HashMap<>());
+    }
+
+    private static Message<byte[]> connect(String sessionId, String authorization, Map<String, Object> attributes) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(attributes);
+        if (authorization != null) {
+            accessor.setNativeHeader("Authorization", authorization);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> send(String sessionId, Map<String, Object> attributes) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(attributes);
+        accessor.setDestination("/app/chat.sendMessage");
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Property newProperty(String title) {
+        Property property = new Property();
+        property.setOwner(locador);
+        property.setTitle(title);
+        property.setType(PropertyType.CASA);
+        return propertyRepository.save(property);
+    }
+
+    // E-mail único por teste: o UserCache guarda o usuário pelo e-mail e o rollback não o invalida
+    private User newUser(String email, UserRole role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(UUID.randomUUID() + "." + email);
+        user.setPasswordHash("hash");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
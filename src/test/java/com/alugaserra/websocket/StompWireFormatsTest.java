@@ -0,0 +1,81 @@
+package com.alugaserra.websocket;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Teste de unidade puro: o interceptor recebe frames CONNECT montados à mão.
+class StompWireFormatsTest {
+
+    private final StompWireFormats wireFormats = new StompWireFormats();
+
+    @Test
+    @DisplayName("Deve enviar em CBOR só para a sessão que pediu no CONNECT e voltar ao JSON ao reconectar sem pedir")
+    void headersFor_ShouldFollowConnectAcceptHeader() throws Exception {
+        wireFormats.preSend(connect("sessao-1", true, "application/cbor, application/json"), null);
+        wireFormats.preSend(connect("sessao-2", true, "application/json"), null);
+
+        assertThat(wireFormats.headersFor("sessao-1"))
+                .containsEntry(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_OCTET_STREAM)
+                .containsEntry(SimpMessageHeaderAccessor.SESSION_ID_HEADER, "sessao-1");
+        byte[] cbor = (byte[]) wireFormats.payloadFor("sessao-1", Map.of("content", "Olá, ação!"));
+        assertThat(StompWireFormats.cborMapper().readValue(cbor, Map.class)).containsEntry("content", "Olá, ação!");
+        assertThat(wireFormats.headersFor("sessao-2")).doesNotContainKey(MessageHeaders.CONTENT_TYPE);
+        assertThat(wireFormats.payloadFor("sessao-2", "json")).isEqualTo("json");
+        assertThat(wireFormats.isCbor("desconhecida")).isFalse();
+
+        wireFormats.preSend(connect("sessao-1", true, null), null);
+        assertThat(wireFormats.isCbor("sessao-1")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve manter o JSON numa sessão SockJS, que só transporta texto, mesmo pedindo CBOR")
+    void preSend_ShouldKeepJson_WhenTransportIsNotBinary() {
+        wireFormats.preSend(connect("sessao-sockjs", false, "application/cbor"), null);
+
+        assertThat(wireFormats.isCbor("sessao-sockjs")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve esquecer a preferência quando a sessão cai")
+    void onDisconnect_ShouldForgetPreference() {
+        wireFormats.preSend(connect("sessao-1", true, "application/cbor"), null);
+
+        wireFormats.onDisconnect(new SessionDisconnectEvent(this, MessageBuilder.withPayload(new byte[0]).build(),
+                "sessao-1", CloseStatus.NORMAL));
+
+        assertThat(wireFormats.isCbor("sessao-1")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Deve ignorar um cabeçalho accept inválido, mantendo o JSON")
+    void prefersCbor_ShouldIgnoreInvalidHeader() {
+        assertThat(StompWireFormats.prefersCbor("não é um tipo;;")).isFalse();
+        assertThat(StompWireFormats.prefersCbor("application/json, application/cbor")).isFalse();
+        assertThat(StompWireFormats.prefersCbor("application/cbor")).isTrue();
+    }
+
+    private static Message<byte[]> connect(String sessionId, boolean binary, String accept) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(binary ? new HashMap<>(Map.of(StompWireFormats.BINARY_TRANSPORT, true)) : new HashMap<>());
+        if (accept != null) {
+            accessor.setNativeHeader("accept", accept);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}